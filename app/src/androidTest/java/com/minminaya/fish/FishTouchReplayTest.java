@@ -0,0 +1,155 @@
+package com.minminaya.fish;
+
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+
+import com.minminaya.fish.core.FishTouchGenerator;
+import com.minminaya.fish.core.FishTouchTrace;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在真机上录触摸、重放生成的一大串点击和拖动
+ */
+@RunWith(AndroidJUnit4.class)
+public class FishTouchReplayTest {
+
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    @Rule
+    public final ActivityTestRule<MainActivity> mActivityRule = new ActivityTestRule<>(MainActivity.class);
+
+    @Test
+    public void record_capturesDispatchedTouches() throws Exception {
+        final FishView fishView = (FishView) mActivityRule.getActivity().findViewById(R.id.fish_view);
+        final FishTouchTrace[] recorded = new FishTouchTrace[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                fishView.startTouchRecording();
+                long now = SystemClock.uptimeMillis();
+                dispatch(fishView, now, MotionEvent.ACTION_DOWN, 100, 200);
+                dispatch(fishView, now + 16, MotionEvent.ACTION_MOVE, 110, 210);
+                dispatch(fishView, now + 32, MotionEvent.ACTION_UP, 110, 210);
+                recorded[0] = fishView.stopTouchRecording();
+            }
+        });
+        FishTouchTrace trace = recorded[0];
+        assertEquals(3, trace.size());
+        assertEquals(FishTouchTrace.ACTION_MOVE, trace.getAction(1));
+        assertEquals(32000000L, trace.getDurationNanos());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.write(out);
+        FishTouchTrace copy = FishTouchTrace.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(trace.getSeed(), copy.getSeed());
+        assertEquals(110f, copy.getX(2), 0f);
+    }
+
+    @Test
+    public void replay_burstOfTapsAndDrags() throws Exception {
+        final FishView fishView = (FishView) mActivityRule.getActivity().findViewById(R.id.fish_view);
+        final FishTouchTrace trace = new FishTouchTrace();
+        DisplayMetrics metrics = fishView.getResources().getDisplayMetrics();
+        FishTouchGenerator generator = new FishTouchGenerator(42, metrics.widthPixels, metrics.heightPixels);
+        generator.taps(trace, 1000, 5000000);
+        generator.drags(trace, 20, 30, 16666667, 20);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                fishView.replayTouchTrace(trace);
+            }
+        });
+
+        waitForReplay(fishView);
+    }
+
+    @Test
+    public void replayTwice_endsAtSamePose() throws Exception {
+        final FishView fishView = (FishView) mActivityRule.getActivity().findViewById(R.id.fish_view);
+        final FishTouchTrace trace = new FishTouchTrace();
+        DisplayMetrics metrics = fishView.getResources().getDisplayMetrics();
+        FishTouchGenerator generator = new FishTouchGenerator(7, metrics.widthPixels, metrics.heightPixels);
+        generator.taps(trace, 30, 50000000);
+        generator.drags(trace, 3, 20, 16666667, 20);
+        trace.setStartPose(100, 100, 90);
+        trace.addStartSchoolFish(300, 400, 45, 0);
+
+        float[] first = replayAndSettle(fishView, trace);
+        //两次之间随便点一下，重放前要摆回去
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                long now = SystemClock.uptimeMillis();
+                dispatch(fishView, now, MotionEvent.ACTION_DOWN, 50, 60);
+                dispatch(fishView, now + 16, MotionEvent.ACTION_UP, 50, 60);
+            }
+        });
+        float[] second = replayAndSettle(fishView, trace);
+        assertEquals(first[0], second[0], 0f);
+        assertEquals(first[1], second[1], 0f);
+        assertEquals(first[2], second[2], 0f);
+    }
+
+    /**
+     * @return 重放完、鱼游到最后停下来时的x、y和朝向
+     */
+    private static float[] replayAndSettle(final FishView fishView, final FishTouchTrace trace) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                fishView.replayTouchTrace(trace);
+            }
+        });
+        waitForReplay(fishView);
+        //最后一下游完
+        SystemClock.sleep(3000);
+        final float[] pose = new float[3];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                pose[0] = fishView.getFishX();
+                pose[1] = fishView.getFishY();
+                pose[2] = fishView.getFishAngle();
+            }
+        });
+        return pose;
+    }
+
+    private static void waitForReplay(FishView fishView) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (isReplaying(fishView)) {
+            assertTrue("replay timed out", SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(100);
+        }
+    }
+
+    private static boolean isReplaying(final FishView fishView) {
+        final boolean[] replaying = new boolean[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                replaying[0] = fishView.isReplaying();
+            }
+        });
+        return replaying[0];
+    }
+
+    private static void dispatch(FishView fishView, long time, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(time, time, action, x, y, 0);
+        fishView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+}
@@ -0,0 +1,126 @@
+package com.minminaya.fish;
+
+import android.view.Choreographer;
+
+/**
+ * 所有鱼、鱼鳍、波纹和游动路径共用的动画时钟
+ * <p>
+ * 跟着Choreographer的vsync走，每帧把和上一帧的时间差分发给订阅者，由订阅者自己按时间推进相位。
+ * 没有订阅者时不再注册帧回调，订阅者在不可见、被移除或者暂停时退订，界面静止时就完全不占CPU。
+ * 只能在主线程使用
+ */
+public final class FishClock implements Choreographer.FrameCallback {
+
+    public interface OnTickListener {
+        /**
+         * @param frameTimeNanos 这一帧的vsync时间
+         * @param deltaNanos     和上一帧的时间差，刚开始走或者暂停后恢复的第一帧为0
+         */
+        void onTick(long frameTimeNanos, long deltaNanos);
+    }
+
+    private static FishClock sInstance;
+
+    private OnTickListener[] mListeners = new OnTickListener[4];
+    /**
+     * 分发时的快照，回调里增删订阅者不影响这一帧的分发
+     */
+    private OnTickListener[] mDispatching = new OnTickListener[4];
+    private int mCount;
+
+    private boolean running;
+    /**
+     * 帧回调已经注册还没回来，避免同一帧注册俩次
+     */
+    private boolean posted;
+    private long lastFrameTimeNanos;
+
+    public static FishClock getInstance() {
+        if (sInstance == null) {
+            sInstance = new FishClock();
+        }
+        return sInstance;
+    }
+
+    private FishClock() {
+    }
+
+    /**
+     * 订阅，重复订阅没有影响，有订阅者就开始走
+     */
+    public void addListener(OnTickListener listener) {
+        if (indexOf(listener) >= 0) {
+            return;
+        }
+        if (mCount == mListeners.length) {
+            OnTickListener[] listeners = new OnTickListener[mCount * 2];
+            System.arraycopy(mListeners, 0, listeners, 0, mCount);
+            mListeners = listeners;
+            mDispatching = new OnTickListener[mCount * 2];
+        }
+        mListeners[mCount++] = listener;
+        if (!running) {
+            running = true;
+            lastFrameTimeNanos = 0;
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * 退订，没有订阅者以后下一帧就停
+     */
+    public void removeListener(OnTickListener listener) {
+        int index = indexOf(listener);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(mListeners, index + 1, mListeners, index, mCount - index - 1);
+        mListeners[--mCount] = null;
+        if (mCount == 0 && running) {
+            running = false;
+            posted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        if (!running) {
+            return;
+        }
+        long delta = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+        lastFrameTimeNanos = frameTimeNanos;
+
+        int count = mCount;
+        OnTickListener[] dispatching = mDispatching;
+        System.arraycopy(mListeners, 0, dispatching, 0, count);
+        for (int i = 0; i < count; i++) {
+            dispatching[i].onTick(frameTimeNanos, delta);
+            dispatching[i] = null;
+        }
+        if (running) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!posted) {
+            posted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private int indexOf(OnTickListener listener) {
+        for (int i = 0; i < mCount; i++) {
+            if (mListeners[i] == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
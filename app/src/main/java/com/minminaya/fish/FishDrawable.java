@@ -1,19 +1,21 @@
 package com.minminaya.fish;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.PixelFormat;
 import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
-import android.view.animation.LinearInterpolator;
+import android.view.View;
+import android.view.animation.AccelerateDecelerateInterpolator;
+
+import com.minminaya.fish.core.FishFrameMetrics;
+import com.minminaya.fish.core.FishFrameThrottle;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishQualityGovernor;
+import com.minminaya.fish.core.FishSkeleton;
 
 import java.util.Random;
 
@@ -25,81 +27,158 @@ public class FishDrawable extends Drawable {
     /**
      * 头部半径
      */
-    private static final float HEAD_RADIUS = 30f;
-    /**
-     * 第一节身体长度
-     */
-    private static final float BODY_LENGH = HEAD_RADIUS * 3.2f;
+    private static final float HEAD_RADIUS = FishSkeleton.HEAD_RADIUS;
+
     /**
-     * 身体的透明度
+     * 图层模式：和canvas一样大的半透明图层，原来的画法
      */
-    private static final int BODY_ALPHA = 220;
+    public static final int LAYER_MODE_FULL_CANVAS = 0;
     /**
-     * 鱼鳍的透明度
+     * 图层模式：半透明图层只开到鱼的包围盒那么大
      */
-    private static final int FINS_ALPHA = 100;
-
+    public static final int LAYER_MODE_BOUNDS = 1;
     /**
-     * 其他部分的透明度
+     * 图层模式：不开图层，把图层的透明度乘进每个部分的颜色里
      */
-    private static final int OTHER_ALPHA = 160;
+    public static final int LAYER_MODE_NONE = 2;
 
     /**
-     * 左鱼鳍
+     * 半透明图层的透明度
      */
-    private static final int FINS_LEFT = 1;
+    private static final int LAYER_ALPHA = 240;
     /**
-     * 右鱼鳍
+     * 刷新区域在包围盒外多留的像素
      */
-    private static final int FINS_RIGHT = -1;
+    private static final int DIRTY_PADDING = 2;
 
     /**
-     * 鱼鳍的俩个控制点的长度，即鱼鳍宽度
+     * 鱼鳍扭动一次默认的时长
      */
-    private static final float FINS_LENGTH = HEAD_RADIUS * 1.3f;
+    private static final long FINS_DURATION = 300;
     /**
-     * 鱼的总长度
+     * 每隔多久自己扭一次鱼鳍，即原来动画引擎重复一次的时长
      */
-    private static final float TOTAL_LENGTH = HEAD_RADIUS * 6.79f;
+    private static final long FINS_PERIOD = 180 * 1000;
 
+    /**
+     * 不游的时候的扭动频率
+     */
+    public static final float RESTING_WAVE_FREQUENCE = 1;
 
     //控制的
     /**
-     * 动画控制引擎变量值
+     * 相位，即动画引擎变量值乘以全局频率，由时钟按经过的时间累加
      */
-    private float currentValue = 0;
+    private float phase = 0;
     private float mainAngle = 90;
-    private ObjectAnimator finsAnimator;
     /**
      * 全局频率，三角函数里面的
      */
-    private float waveFrequence = 1;
+    private float waveFrequence = RESTING_WAVE_FREQUENCE;
 
     /**
-     * 鱼头点
+     * 动画时钟，可见时订阅，不可见时退订
+     */
+    private final FishClock.OnTickListener mTicker = new FishClock.OnTickListener() {
+        @Override
+        public void onTick(long frameTimeNanos, long deltaNanos) {
+            if (mIdleThrottle != null) {
+                if (isResting()) {
+                    deltaNanos = mIdleThrottle.onFrame(deltaNanos);
+                    if (deltaNanos < 0) {
+                        return;
+                    }
+                } else {
+                    deltaNanos += mIdleThrottle.flush();
+                }
+            }
+            if (mMetrics == null) {
+                tick(deltaNanos / 1000000f);
+                return;
+            }
+            long start = System.nanoTime();
+            tick(deltaNanos / 1000000f);
+            mMetrics.addSimulation(frameTimeNanos, System.nanoTime() - start);
+        }
+    };
+    /**
+     * 空闲时降低帧率，null表示总是每个vsync都画
      */
-    private PointF headPoint;
+    private FishFrameThrottle mIdleThrottle;
+    /**
+     * 宿主告诉的，鱼没在游并且扭动频率回到了{@link #RESTING_WAVE_FREQUENCE}
+     */
+    private boolean idle;
+    /**
+     * 距离上次自己扭鱼鳍过了多久
+     */
+    private float finsPeriodElapsed;
+    /**
+     * 鱼鳍动画：已经过的时长、每次的时长、还剩几次（含当前这次）
+     */
+    private float finsElapsed;
+    private long finsDuration = FINS_DURATION;
+    private int finsCycles;
+    private final AccelerateDecelerateInterpolator mFinsInterpolator = new AccelerateDecelerateInterpolator();
+    private final Random mRandom = new Random();
 
+    /**
+     * 骨架缓冲区，每帧的所有顶点都写在这里，避免draw里面创建对象
+     */
+    private final float[] mSkeleton = new float[FishSkeleton.SIZE];
 
     //转弯更自然的中心点
     /**
      * 重心
      */
-    private PointF middlePoint;
+    private float middleX;
+    private float middleY;
 
-    private float finsAngle = 0;
+    /**
+     * 给外部读取用的，复用同一个对象
+     */
+    private final PointF headPoint = new PointF();
+    private final PointF middlePoint = new PointF();
 
+    private int layerMode = LAYER_MODE_BOUNDS;
     /**
-     * 身体的画笔
+     * 鱼这一帧精确的包围盒，left、top、right、bottom，骨架一变就重算
      */
-    private Paint bodyPaint;
+    private final float[] mBounds = new float[4];
+    /**
+     * 给外部读取用的包围盒，复用同一个对象
+     */
+    private final RectF fishBounds = new RectF();
+    /**
+     * 上一次画的时候鱼占的区域，重画时要连它一起刷新，旧的鱼才擦得掉
+     */
+    private final Rect mDrawnBounds = new Rect();
+    private final Rect mDirtyBounds = new Rect();
 
-    private Path mPath;
+    /**
+     * 预渲染的帧缓存，null表示每帧都用矢量画
+     */
+    private FishSpriteAtlas spriteAtlas;
+
+    /**
+     * 每帧统计，null表示不统计
+     */
+    private FishFrameMetrics mMetrics;
 
+    private float finsAngle = 0;
+
+    /**
+     * 各部分的画笔和路径都在painter里
+     */
+    private FishPainter mPainter;
     /**
-     * 主画笔
+     * 按画出来的大小选细节，null表示总是画全部细节
      */
-    private Paint mPaint;
+    private FishLod mLod;
+    /**
+     * 画质档位，见{@link FishQualityGovernor}
+     */
+    private int quality = FishQualityGovernor.QUALITY_FULL;
     private Context mContext;
 
     public FishDrawable(Context context) {
@@ -108,316 +187,257 @@ public class FishDrawable extends Drawable {
     }
 
     public PointF getHeadPoint() {
+        headPoint.set(mSkeleton[FishSkeleton.HEAD], mSkeleton[FishSkeleton.HEAD + 1]);
         return headPoint;
     }
 
     public PointF getMiddlePoint() {
+        middlePoint.set(mSkeleton[FishSkeleton.MIDDLE], mSkeleton[FishSkeleton.MIDDLE + 1]);
         return middlePoint;
     }
 
+    /**
+     * @return 鱼这一帧精确的包围盒，和Drawable自己的坐标一致，不含抗锯齿留的边
+     */
+    public RectF getFishBounds() {
+        fishBounds.set(mBounds[0], mBounds[1], mBounds[2], mBounds[3]);
+        return fishBounds;
+    }
+
     /**
      * 初始化
      */
     private void init() {
-        mPath = new Path();
+        //各部分的画笔
+        mPainter = new FishPainter();
 
-        //主画笔
-        mPaint = new Paint();
-        mPaint.setAntiAlias(true);
-        mPaint.setStyle(Paint.Style.FILL);
-        mPaint.setDither(true);
-        mPaint.setColor(Color.argb(OTHER_ALPHA, 244, 92, 71));
+        //将重心坐标设置为重点
+        middleX = 4.18f * HEAD_RADIUS;
+        middleY = 4.18f * HEAD_RADIUS;
+        //先算一次骨架，保证第一次draw之前也能拿到鱼头和重心
+        updateSkeleton();
+    }
 
-        bodyPaint = new Paint();
-        bodyPaint.setAntiAlias(true);
-        bodyPaint.setStyle(Paint.Style.FILL);
-        bodyPaint.setDither(true);
-        bodyPaint.setColor(Color.argb(OTHER_ALPHA, 244, 92, 71));
+    /**
+     * 重算骨架和包围盒，相位、鱼鳍或者方向变了就要调用
+     */
+    private void updateSkeleton() {
+        FishSkeleton.evaluate(mSkeleton, 0, middleX, middleY, mainAngle, phase, finsAngle);
+        FishSkeleton.computeBounds(mSkeleton, 0, mBounds);
+    }
 
-        //将重心坐标设置为重点
-        middlePoint = new PointF(4.18f * HEAD_RADIUS, 4.18f * HEAD_RADIUS);
-
-        //鱼鳍灵动的动画等
-        finsAnimator = ObjectAnimator.ofFloat(this, "finsAngle", 0f, 1f, 0f);
-        finsAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        finsAnimator.setRepeatCount(new Random().nextInt(3));
-
-        //动画引擎
-        ValueAnimator valueAnimator = ValueAnimator.ofFloat(0, 540 * 100);
-        valueAnimator.setDuration(180 * 1000);
-        valueAnimator.setInterpolator(new LinearInterpolator());
-        valueAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        valueAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        valueAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                //引擎
-                currentValue = (float) valueAnimator.getAnimatedValue();
-                invalidateSelf();
+    /**
+     * 时钟每帧回调，按经过的时间推进相位和鱼鳍
+     *
+     * @param deltaMillis 和上一帧的时间差
+     */
+    private void tick(float deltaMillis) {
+        //引擎，按公共周期取余，频率变化时相位也是连续的
+        phase = (phase + deltaMillis * FishSkeleton.ENGINE_SPEED * waveFrequence) % FishSkeleton.PHASE_CYCLE;
+
+        //原来引擎每重复一次扭一次鱼鳍
+        finsPeriodElapsed += deltaMillis;
+        if (finsPeriodElapsed >= FINS_PERIOD) {
+            finsPeriodElapsed -= FINS_PERIOD;
+            flapFins(mRandom.nextInt(3), FINS_DURATION);
+        }
+
+        if (finsCycles > 0) {
+            finsElapsed += deltaMillis;
+            while (finsCycles > 0 && finsElapsed >= finsDuration) {
+                finsElapsed -= finsDuration;
+                finsCycles--;
             }
-        });
-        valueAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-                super.onAnimationRepeat(animation);
-                //监听重复动画，动作为开始播放动画
-                finsAnimator.start();
+            if (finsCycles > 0) {
+                //0到1再回到0，来回重复时反过来也是一样的
+                float fraction = mFinsInterpolator.getInterpolation(finsElapsed / finsDuration);
+                finsAngle = 1 - Math.abs(2 * fraction - 1);
+            } else {
+                finsAngle = 0;
             }
-        });
-        valueAnimator.start();
+        }
+        updateSkeleton();
+        invalidateSelf();
     }
 
-    @Override
-    public void draw(Canvas canvas) {
-
-        //设置一个半透明图层，避免与白色背景形成干扰，并且尺寸必须与view的大小一致否则鱼显示不完全
-        canvas.saveLayerAlpha(0, 0, canvas.getWidth(), canvas.getHeight(), 240, Canvas.ALL_SAVE_FLAG);
-        makeBody(canvas, HEAD_RADIUS);
-        canvas.restore();
-        mPath.reset();
-        //恢复颜色
-        mPaint.setColor(Color.argb(OTHER_ALPHA, 244, 92, 71));
+    /**
+     * 不用FishClock的宿主自己推进动画，比如在渲染线程上画的FishSurfaceView，这时不要调用setVisible订阅时钟
+     *
+     * @param deltaMillis 和上一帧的时间差
+     */
+    void advance(float deltaMillis) {
+        tick(deltaMillis);
     }
 
-
     /**
-     * 画鱼的身子
-     * <p>
-     * 主方向是头到尾的方向跟x轴正方向的夹角
-     * 前进方向跟主方向相差180度
+     * 扭鱼鳍
      *
-     * @param canvas
-     * @param headRadius
+     * @param repeatCount 重复次数，0表示只扭一次
+     * @param duration    扭一次的时长，其实就是扭鱼鳍的快慢
      */
-    private void makeBody(Canvas canvas, float headRadius) {
-        //现有的角度 = 原始角度 + sin(域值)*可摆动的角度    sin是用来控制周期运动的
-        float angle = (float) (mainAngle + Math.sin(Math.toRadians(currentValue * 1.2 * waveFrequence)) * 2);//中心轴线加偏移量和x轴顺时针方向夹角，其实就是偏移角-2到2
-
-        //假设现在BODY_LENGH / 2线段在x轴上，旋转90度得到头部终点坐标
-        headPoint = calculatPoint(middlePoint, BODY_LENGH / 2, mainAngle);
-        //画头
-        canvas.drawCircle(headPoint.x, headPoint.y, HEAD_RADIUS, mPaint);
-
-        //右鱼鳍  右鱼鳍轴的起点  起点相对鱼头方向顺时针转了110度
-        PointF pointFFinsRight = calculatPoint(headPoint, headRadius * 0.9f, angle - 110);
-        makeFins(canvas, pointFFinsRight, FINS_RIGHT, angle);
-        //左鱼鳍
-        PointF pointFFinsLeft = calculatPoint(headPoint, headRadius * 0.9f, angle + 110);
-        makeFins(canvas, pointFFinsLeft, FINS_LEFT, angle);
-
-        //躯干底部的圆位置   相对鱼头方向旋转180度
-        PointF endPointF = calculatPoint(headPoint, BODY_LENGH, angle - 180);
-
-        //大躯干的下面的躯干2,
-        PointF mainPointF = new PointF(endPointF.x, endPointF.y);
-        makeSegments(canvas, mainPointF, headRadius * 0.7f, 0.6f, angle);
-
-        //鱼的最大身子
-        PointF pointF1, pointF2, pointF3, pointF4, controlLeftPointF, controlRightPointF;
-
+    public void flapFins(int repeatCount, long duration) {
+        finsDuration = Math.max(1, duration);
+        finsCycles = repeatCount + 1;
+        finsElapsed = 0;
+    }
 
-        pointF1 = calculatPoint(headPoint, headRadius, angle - 80);//80度得到的点偏上一点，看起来会更好，右上
-        pointF4 = calculatPoint(headPoint, headRadius, angle + 80);//左上
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        //看不见就不用走时钟了，时钟没人订阅就会停下来
+        if (visible) {
+            FishClock.getInstance().addListener(mTicker);
+        } else {
+            FishClock.getInstance().removeListener(mTicker);
+        }
+        return changed;
+    }
 
-        pointF2 = calculatPoint(endPointF, headRadius * 0.7f, angle - 90);//右下
-        pointF3 = calculatPoint(endPointF, headRadius * 0.7f, angle + 90);//左下
+    @Override
+    public void draw(Canvas canvas) {
+        mPainter.resetCounts();
+        if (mMetrics == null) {
+            drawFish(canvas);
+            return;
+        }
+        long start = System.nanoTime();
+        int layerCalls = drawFish(canvas);
+        mMetrics.addDraw(System.nanoTime() - start, mPainter.getDrawCalls() + layerCalls, mPainter.getPathCount());
+    }
 
-        //贝塞尔曲线控制点
-        controlRightPointF = calculatPoint(headPoint, BODY_LENGH * 0.56f, angle - 130);//右控制点
-        controlLeftPointF = calculatPoint(headPoint, BODY_LENGH * 0.56f, angle + 130);
+    /**
+     * @return 开图层和贴图的次数，画笔画的次数在painter里
+     */
+    private int drawFish(Canvas canvas) {
+        //骨架和包围盒在变化的时候已经算好了，这里只读不写
+        roundOut(mDrawnBounds);
+        //鱼整个在可见区域外面就不画了，鱼群游出屏幕时能省下大部分开销
+        if (canvas.quickReject(mBounds[0], mBounds[1], mBounds[2], mBounds[3], Canvas.EdgeType.AA)) {
+            return 0;
+        }
+
+        //有现成的帧就直接贴图，贴图的透明度等同于半透明图层
+        if (spriteAtlas != null && spriteAtlas.draw(canvas, middleX, middleY, mainAngle, phase, finsAngle)) {
+            return 1;
+        }
+
+        //只有要按大小选细节或者关小鱼的抗锯齿时才需要取画布矩阵
+        boolean needsLength = mLod != null || quality >= FishQualityGovernor.QUALITY_NO_SMALL_ANTI_ALIAS;
+        float projectedLength = needsLength ? mPainter.projectedLength(canvas, viewScale(canvas)) : FishSkeleton.TOTAL_LENGTH;
+        mPainter.applyQuality(quality, projectedLength);
+        int tier = mLod == null ? FishLod.FULL : mLod.update(projectedLength, 1);
+        switch (effectiveLayerMode()) {
+            case LAYER_MODE_NONE:
+                //透明度直接乘进颜色里，省掉整个离屏图层
+                drawSkeleton(canvas, tier);
+                return 0;
+            case LAYER_MODE_BOUNDS:
+                //半透明图层只要盖住鱼就够了，多留1像素给抗锯齿
+                canvas.saveLayerAlpha(mBounds[0] - 1, mBounds[1] - 1, mBounds[2] + 1, mBounds[3] + 1, LAYER_ALPHA, Canvas.ALL_SAVE_FLAG);
+                drawSkeleton(canvas, tier);
+                canvas.restore();
+                return 1;
+            default:
+                //设置一个半透明图层，避免与白色背景形成干扰，并且尺寸必须与view的大小一致否则鱼显示不完全
+                canvas.saveLayerAlpha(0, 0, canvas.getWidth(), canvas.getHeight(), LAYER_ALPHA, Canvas.ALL_SAVE_FLAG);
+                drawSkeleton(canvas, tier);
+                canvas.restore();
+                return 1;
+        }
+    }
 
-        mPath.reset();
-        mPath.moveTo(pointF1.x, pointF1.y);
-        mPath.quadTo(controlRightPointF.x, controlRightPointF.y, pointF2.x, pointF2.y);
-        mPath.lineTo(pointF3.x, pointF3.y);
+    /**
+     * 画在ImageView里时按它到窗口的缩放算，直接画在别的画布上时画布的矩阵就是全部
+     */
+    private float viewScale(Canvas canvas) {
+        Callback callback = getCallback();
+        return FishPainter.viewScale(callback instanceof View ? (View) callback : null, canvas);
+    }
 
-        mPath.quadTo(controlLeftPointF.x, controlLeftPointF.y, pointF4.x, pointF4.y);
-        mPath.lineTo(pointF1.x, pointF1.y);
-        //画出鱼最大身子
-        mPaint.setColor(Color.argb(BODY_ALPHA, 244, 92, 71));
-        canvas.drawPath(mPath, mPaint);
+    /**
+     * 先记下来再按部分分组画，一条鱼只换3次画笔，不用跟着绘制顺序来回换
+     */
+    private void drawSkeleton(Canvas canvas, int tier) {
+        mPainter.record(mSkeleton, 0, tier, 0);
+        mPainter.replay(canvas);
     }
 
     /**
-     * 画第二节节肢
+     * 按鱼画出来的大小自动降低细节，缩得很小时不画鱼鳍、节肢合成一块，再小就只画一个轮廓
      *
-     * @param canvas
-     * @param mainPointF       该段的顶部圆心的坐标
-     * @param segmentTopRadius 该段的顶部半径
-     * @param ratio            梯形上下比例
-     * @param fatherAngle      鱼头方向（父控件），默认为90
+     * @param lod null表示总是画全部细节
      */
-    private void makeSegments(Canvas canvas, PointF mainPointF, float segmentTopRadius, float ratio, float fatherAngle) {
-
-        float angle = (float) (fatherAngle + Math.cos(Math.toRadians(currentValue * 1.5 * waveFrequence)) * 15);//中心轴线和X轴顺时针方向夹角，15度左右摇摆
-
-        //身长
-        float segmentLength = segmentTopRadius * (ratio + 1);
-        //底部圆心坐标
-        PointF bottomPointF = calculatPoint(mainPointF, segmentLength, angle - 180);
-
-        PointF pointF1, pointF2, pointF3, pointF4;
-        //梯形4个角的坐标
-        pointF1 = calculatPoint(mainPointF, segmentTopRadius, angle - 90);//左上
-        pointF4 = calculatPoint(mainPointF, segmentTopRadius, angle + 90);//右上
-
-        pointF2 = calculatPoint(bottomPointF, segmentTopRadius * ratio, angle - 90);//左下
-        pointF3 = calculatPoint(bottomPointF, segmentTopRadius * ratio, angle + 90);//右下
-
-        //画上下俩个圆
-        canvas.drawCircle(mainPointF.x, mainPointF.y, segmentTopRadius, mPaint);
-        canvas.drawCircle(bottomPointF.x, bottomPointF.y, segmentTopRadius * ratio, mPaint);
-
-        mPath.reset();
-        mPath.moveTo(pointF1.x, pointF1.y);
-        mPath.lineTo(pointF4.x, pointF4.y);
-        mPath.lineTo(pointF3.x, pointF3.y);
-        mPath.lineTo(pointF2.x, pointF2.y);
-        canvas.drawPath(mPath, mPaint);
-
-        //躯干2的下面的躯干，和躯干2差不多
-        PointF topPointF2 = new PointF(bottomPointF.x, bottomPointF.y);
-        makeSegmentLong(canvas, topPointF2, segmentTopRadius * 0.6f, 0.4f, angle);
+    public void setLevelOfDetail(FishLod lod) {
+        mLod = lod;
+        invalidateSelf();
     }
 
     /**
-     * 画第三节节肢
+     * 设置半透明图层的画法
      *
-     * @param canvas
-     * @param topPointF2       该段的顶部圆心的坐标
-     * @param segmentTopRadius 该段的顶部半径
-     * @param ratio            梯形上下比例
-     * @param fatherAngle      上面控件方向，默认为90
+     * @param layerMode {@link #LAYER_MODE_FULL_CANVAS}、{@link #LAYER_MODE_BOUNDS}或{@link #LAYER_MODE_NONE}
      */
-    private void makeSegmentLong(Canvas canvas, PointF topPointF2, float segmentTopRadius, float ratio, float fatherAngle) {
-
-        float angle = (float) (fatherAngle + Math.sin(Math.toRadians(currentValue * 1.5 * waveFrequence)) * 35);//中心轴线和X轴顺时针方向夹角,这里为35度比上面部分控件越来越大，扭动时候可以体现出鱼灵动的摇尾巴的动作
-
-        //身长
-        float segmentLength = segmentTopRadius * (ratio + 2.7f);
-        //同上面
-        PointF bottomPointF = calculatPoint(topPointF2, segmentLength, angle - 180);
-
-        PointF pointF1, pointF2, pointF3, pointF4;
-        //梯形4个角的坐标
-        pointF1 = calculatPoint(topPointF2, segmentTopRadius, angle - 90);//左上
-        pointF4 = calculatPoint(topPointF2, segmentTopRadius, angle + 90);//右上
-
-        pointF2 = calculatPoint(bottomPointF, segmentTopRadius * ratio, angle - 90);//左下
-        pointF3 = calculatPoint(bottomPointF, segmentTopRadius * ratio, angle + 90);//右下
-
-
-//        makeTail(canvas, topPointF2, segmentLength, segmentTopRadius, angle);
-        //为了扭得更骚，加了50宽度
-        makeTail(canvas, topPointF2, segmentLength, segmentTopRadius + 50, angle);
-        //画上下俩个圆
-        canvas.drawCircle(bottomPointF.x, bottomPointF.y, segmentTopRadius * ratio, mPaint);
+    public void setLayerMode(int layerMode) {
+        if (layerMode != LAYER_MODE_FULL_CANVAS && layerMode != LAYER_MODE_BOUNDS && layerMode != LAYER_MODE_NONE) {
+            throw new IllegalArgumentException("unknown layer mode: " + layerMode);
+        }
+        this.layerMode = layerMode;
+        mPainter.setGlobalAlpha(effectiveLayerMode() == LAYER_MODE_NONE ? LAYER_ALPHA : 255);
+        invalidateSelf();
+    }
 
-        mPath.reset();
-        mPath.moveTo(pointF1.x, pointF1.y);
-        mPath.lineTo(pointF4.x, pointF4.y);
-        mPath.lineTo(pointF3.x, pointF3.y);
-        mPath.lineTo(pointF2.x, pointF2.y);
-        canvas.drawPath(mPath, mPaint);
+    public int getLayerMode() {
+        return layerMode;
     }
 
     /**
-     * 画尾巴
+     * 设置画质档位，低档位关掉抖动、小鱼的抗锯齿和半透明图层，设置的图层模式保留，回到高档位时恢复
      *
-     * @param topPointF2 上个控件的底部圆心，
-     * @param length     上个控件的底部圆半径
-     * @param maxWidth   最大的宽度，用来确定三角形的左右俩宽度不越界
-     * @param angle      上级控件的当前角度
+     * @param quality {@link FishQualityGovernor}的QUALITY_*
      */
-    private void makeTail(Canvas canvas, PointF topPointF2, float length, float maxWidth, float angle) {
-        //三角形的最大2分之宽度，随三角函数变化
-        float newWidth = (float) (Math.abs(Math.sin(Math.toRadians(currentValue * 1.7 * waveFrequence))) * maxWidth + (HEAD_RADIUS * 1) / 5);
-
-        //大小三角形的底边中点，1为大
-        PointF bottomPointF1 = calculatPoint(topPointF2, length, angle - 180);
-        PointF bottomPointF2 = calculatPoint(topPointF2, length - 10, angle - 180);//小的
-
-        //2个三角形的左右顶点，共4个
-        PointF pointF1, pointF2, pointF3, pointF4;
-
-        pointF1 = calculatPoint(bottomPointF1, newWidth, angle - 90);//右定点 大三角形
-        pointF4 = calculatPoint(bottomPointF1, newWidth, angle + 90);//左
-
-        pointF2 = calculatPoint(bottomPointF2, newWidth - 20, angle - 90);//右定点， 小三角形   这里用10和20都可以
-        pointF3 = calculatPoint(bottomPointF2, newWidth - 20, angle + 90);//左
-
-        //小三角形
-        mPath.reset();
-        mPath.moveTo(topPointF2.x, topPointF2.y);
-        mPath.lineTo(pointF2.x, pointF2.y);
-        mPath.lineTo(pointF3.x, pointF3.y);
-        mPath.lineTo(topPointF2.x, topPointF2.y);
-        canvas.drawPath(mPath, mPaint);
-
-        //大三角形
-        mPath.reset();
-        mPath.moveTo(topPointF2.x, topPointF2.y);
-        mPath.lineTo(pointF1.x, pointF1.y);
-        mPath.lineTo(pointF4.x, pointF4.y);
-        mPath.lineTo(topPointF2.x, topPointF2.y);
-        canvas.drawPath(mPath, mPaint);
-
+    public void setQuality(int quality) {
+        if (quality < FishQualityGovernor.QUALITY_FULL || quality > FishQualityGovernor.LOWEST_QUALITY) {
+            throw new IllegalArgumentException("unknown quality: " + quality);
+        }
+        this.quality = quality;
+        mPainter.setGlobalAlpha(effectiveLayerMode() == LAYER_MODE_NONE ? LAYER_ALPHA : 255);
+        invalidateSelf();
+    }
 
+    public int getQuality() {
+        return quality;
     }
 
     /**
-     * @param canvas
-     * @param pointFFinsRight 鱼鳍主轴的起点
-     * @param type
-     * @param angle           鱼头的方向
+     * 画质降到不开图层时不管设置的是什么都不开
      */
-    private void makeFins(Canvas canvas, PointF pointFFinsRight, int type, float angle) {
-        float controlAngle = 110;//鱼鳍控制点相对于鱼主轴方向的角度，模型示意图中是110
-        mPath.reset();
-
-        mPath.moveTo(pointFFinsRight.x, pointFFinsRight.y);
-        //计算鱼鳍主轴的终点，按照模型图（博客里）,如果是右鱼鳍，那么按照模型图，鱼的角度减去鱼鳍扭的角度还有减去180度就是鱼主轴的另外一个方向
-        PointF endPointF = calculatPoint(pointFFinsRight, FINS_LENGTH, type == FINS_RIGHT ? angle - finsAngle - 180 : angle + finsAngle + 180);
-        //贝塞尔曲线辅助控制点
-        PointF controlPointF = calculatPoint(pointFFinsRight, FINS_LENGTH * 1.8f, type == FINS_RIGHT ? angle - finsAngle - controlAngle : angle + finsAngle + controlAngle);
-
-        //画贝塞尔曲线
-        mPath.quadTo(controlPointF.x, controlPointF.y, endPointF.x, endPointF.y);
-        mPath.lineTo(pointFFinsRight.x, pointFFinsRight.y);
-
-
-        mPaint.setColor(Color.argb(FINS_ALPHA, 244, 92, 71));
-        canvas.drawPath(mPath, mPaint);
-        mPaint.setColor(Color.argb(OTHER_ALPHA, 244, 92, 71));
+    private int effectiveLayerMode() {
+        return quality >= FishQualityGovernor.QUALITY_NO_LAYER ? LAYER_MODE_NONE : layerMode;
+    }
 
+    /**
+     * 设置预渲染的帧缓存，多条鱼可以共用同一个，传null回到矢量画法
+     */
+    public void setSpriteAtlas(FishSpriteAtlas spriteAtlas) {
+        this.spriteAtlas = spriteAtlas;
+        invalidateSelf();
     }
 
     /**
-     * 输入起点、长度、旋转角度计算终点
-     * <p>
-     * 知道一个线段，一个定点，线段旋转角度求终点坐标
-     * 根据极坐标系原理 x = pcog(a), y = psin(a)
-     *
-     * @param startPoint 起点
-     * @param length     长度
-     * @param angle      旋转角度
-     * @return 计算结果点
+     * 把推进动画和绘制的耗时记进metrics，传null不统计
      */
-    private static PointF calculatPoint(PointF startPoint, float length, float angle) {
-        float deltaX = (float) Math.cos(Math.toRadians(angle)) * length;
-        //符合Android坐标的y轴朝下的标准，和y轴有关的统一减180度
-        float deltaY = (float) Math.sin(Math.toRadians(angle - 180)) * length;
-        return new PointF(startPoint.x + deltaX, startPoint.y + deltaY);
+    public void setFrameMetrics(FishFrameMetrics metrics) {
+        mMetrics = metrics;
     }
 
     @Override
     public void setAlpha(int i) {
-        mPaint.setAlpha(i);
+        mPainter.setAlpha(i);
     }
 
     @Override
     public void setColorFilter(ColorFilter colorFilter) {
-        mPaint.setColorFilter(colorFilter);
+        mPainter.setColorFilter(colorFilter);
     }
 
     @Override
@@ -428,6 +448,31 @@ public class FishDrawable extends Drawable {
 
     public void setMainAngle(float mainAngle) {
         this.mainAngle = mainAngle;
+        updateSkeleton();
+        //这一帧时钟可能已经刷新过了，转向以后的位置也要刷新到
+        invalidateSelf();
+    }
+
+    /**
+     * View刷新drawable时只刷新这个区域：上次画的位置和现在的位置的并集
+     */
+    @Override
+    public Rect getDirtyBounds() {
+        roundOut(mDirtyBounds);
+        mDirtyBounds.union(mDrawnBounds);
+        return mDirtyBounds;
+    }
+
+    /**
+     * 当前包围盒往外取整，再多留抗锯齿和贴图旋转的误差
+     */
+    private void roundOut(Rect out) {
+        out.set((int) Math.floor(mBounds[0]) - DIRTY_PADDING, (int) Math.floor(mBounds[1]) - DIRTY_PADDING,
+                (int) Math.ceil(mBounds[2]) + DIRTY_PADDING, (int) Math.ceil(mBounds[3]) + DIRTY_PADDING);
+    }
+
+    public float getMainAngle() {
+        return mainAngle;
     }
 
     public float getHeadRadius() {
@@ -438,8 +483,52 @@ public class FishDrawable extends Drawable {
         this.waveFrequence = waveFrequence;
     }
 
-    public ObjectAnimator getFinsAnimator() {
-        return finsAnimator;
+    /**
+     * 空闲时每秒最多画几帧，相位照样按真实时间走，只是画得少。扭鱼鳍的时候不降
+     *
+     * @param frameRate 0表示空闲时也每个vsync都画
+     */
+    public void setIdleFrameRate(float frameRate) {
+        if (frameRate < 0) {
+            throw new IllegalArgumentException("negative frame rate: " + frameRate);
+        }
+        if (frameRate == 0) {
+            mIdleThrottle = null;
+        } else if (mIdleThrottle == null) {
+            mIdleThrottle = new FishFrameThrottle(frameRate);
+        } else {
+            mIdleThrottle.setFrameRate(frameRate);
+        }
+    }
+
+    public float getIdleFrameRate() {
+        return mIdleThrottle == null ? 0 : mIdleThrottle.getFrameRate();
+    }
+
+    /**
+     * 宿主在鱼停下来、扭动频率回到{@link #RESTING_WAVE_FREQUENCE}时设为true，再开始游时马上设回false，
+     * 下一个vsync就恢复全帧率
+     */
+    public void setIdle(boolean idle) {
+        this.idle = idle;
+    }
+
+    public boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * 重置自己扭鱼鳍的随机数，重放触摸时鱼鳍每次扭几下都一样
+     */
+    public void setRandomSeed(long seed) {
+        mRandom.setSeed(seed);
+    }
+
+    /**
+     * 空闲并且没在扭鱼鳍，这时可以降帧率
+     */
+    boolean isResting() {
+        return idle && finsCycles == 0;
     }
 
     @Override
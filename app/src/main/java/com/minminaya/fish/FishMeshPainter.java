@@ -0,0 +1,101 @@
+package com.minminaya.fish;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishMesh;
+
+/**
+ * 把整群鱼拍平成三角形，一批只调一次Canvas.drawVertices
+ * <p>
+ * 三角形不做抗锯齿，鱼小而多的时候看不出来，换来的是画布调用从每条鱼十来次变成每批一次
+ */
+class FishMeshPainter implements FishMesh.Target {
+
+    private final FishMesh mMesh = new FishMesh(this);
+    /**
+     * 调色板，颜色在顶点上，几种颜色都在同一批里
+     */
+    private int[] mSkins = {FishGeometry.FISH_RGB};
+
+    /**
+     * 颜色都在顶点上，画笔只提供混合方式
+     */
+    private final Paint mPaint = new Paint();
+
+    /**
+     * 正在画的画布，只在begin和end之间有效
+     */
+    private Canvas mCanvas;
+
+    FishMeshPainter() {
+        mPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * @param scale 骨架坐标到屏幕像素的缩放，圆和曲线按这个决定切几段
+     */
+    void begin(Canvas canvas, float scale) {
+        mCanvas = canvas;
+        //画布缩到0时什么都看不见，按最粗的切法
+        mMesh.setScale(Math.max(0.01f, scale));
+    }
+
+    /**
+     * 把一条鱼加进当前这一批，满了会先画掉前面的
+     *
+     * @param tier {@link com.minminaya.fish.core.FishLod}的档位
+     */
+    void add(float[] p, int o, int tier) {
+        add(p, o, tier, 0);
+    }
+
+    /**
+     * @param skin 调色板里的第几种颜色，超出调色板时用第0种
+     */
+    void add(float[] p, int o, int tier, int skin) {
+        mMesh.setRgb(mSkins[skin < mSkins.length ? skin : 0]);
+        FishGeometry.emit(p, o, mMesh, tier);
+    }
+
+    /**
+     * @param skins 每种颜色的RGB，不含透明度
+     */
+    void setSkins(int[] skins) {
+        if (skins.length == 0) {
+            throw new IllegalArgumentException("need at least one skin");
+        }
+        mSkins = skins.clone();
+    }
+
+    /**
+     * 画掉剩下的三角形
+     */
+    void end() {
+        mMesh.flush();
+        mCanvas = null;
+    }
+
+    /**
+     * 不开图层时把图层的透明度乘进顶点颜色里
+     */
+    void setGlobalAlpha(int globalAlpha) {
+        mMesh.setGlobalAlpha(globalAlpha);
+    }
+
+    int getDrawCalls() {
+        return mMesh.getBatchCount();
+    }
+
+    void resetCounts() {
+        mMesh.resetCounts();
+    }
+
+    @Override
+    public void drawTriangles(float[] vertices, int[] colors, int vertexCount, short[] indices, int indexCount) {
+        //这里的vertexCount是坐标的个数
+        mCanvas.drawVertices(Canvas.VertexMode.TRIANGLES, vertexCount * 2, vertices, 0, null, 0,
+                colors, 0, indices, 0, indexCount, mPaint);
+    }
+}
@@ -0,0 +1,302 @@
+package com.minminaya.fish;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.view.View;
+import android.view.ViewParent;
+
+import com.minminaya.fish.core.FishCommandBuffer;
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishQualityGovernor;
+import com.minminaya.fish.core.FishRenderer;
+import com.minminaya.fish.core.FishSkeleton;
+
+/**
+ * 把FishGeometry输出的圆和路径画到Canvas上
+ * <p>
+ * 每种颜色的每个部分预先建好一支画笔，换部分只是换一支笔，不改画笔的状态。
+ * 路径只有一份，FishDrawable画一条鱼，FishView的鱼群画成百上千条鱼都复用同一个对象。
+ * 先record再replay时按(颜色, 部分)分组画，一帧换笔的次数和鱼的条数无关
+ */
+class FishPainter implements FishRenderer {
+
+    private final Path mPath = new Path();
+
+    /**
+     * 整体透明度，不用图层时乘进每个部分的颜色里，255就是原来的颜色
+     */
+    private int mGlobalAlpha = 255;
+    /**
+     * Drawable.setAlpha设的透明度，和上面的一起乘进颜色里
+     */
+    private int mAlpha = 255;
+
+    /**
+     * 调色板，不含透明度
+     */
+    private int[] mSkins = {FishGeometry.FISH_RGB};
+    /**
+     * 第skin种颜色的第part个部分用mPaints[skin * PART_COUNT + part]
+     */
+    private Paint[] mPaints;
+    /**
+     * 当前用的画笔
+     */
+    private Paint mPaint;
+    private int mSkin;
+    private boolean mAntiAlias = true;
+    private boolean mDither = true;
+    private ColorFilter mColorFilter;
+
+    /**
+     * 按画笔分组的命令，第一次record时才建
+     */
+    private FishCommandBuffer mCommands;
+
+    /**
+     * 正在画的画布，只在draw期间有效
+     */
+    private Canvas mCanvas;
+
+    /**
+     * 画了多少次、其中多少次是路径，给每帧统计用，由调用方取走后清零
+     */
+    private int mDrawCalls;
+    private int mPaths;
+
+    /**
+     * 取画布变换用的，不用每帧新建
+     */
+    private final Matrix mMatrix = new Matrix();
+
+    FishPainter() {
+        createPaints();
+    }
+
+    /**
+     * 换调色板，鱼的skin超出调色板时用第0种颜色。会重建画笔，不要每帧调
+     *
+     * @param skins 每种颜色的RGB，不含透明度
+     */
+    void setSkins(int[] skins) {
+        if (skins.length == 0) {
+            throw new IllegalArgumentException("need at least one skin");
+        }
+        mSkins = skins.clone();
+        createPaints();
+        mCommands = null;
+    }
+
+    int getSkinCount() {
+        return mSkins.length;
+    }
+
+    void setGlobalAlpha(int globalAlpha) {
+        if (mGlobalAlpha != globalAlpha) {
+            mGlobalAlpha = globalAlpha;
+            updateColors();
+        }
+    }
+
+    void setAlpha(int alpha) {
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            updateColors();
+        }
+    }
+
+    void setColorFilter(ColorFilter colorFilter) {
+        mColorFilter = colorFilter;
+        for (Paint paint : mPaints) {
+            paint.setColorFilter(colorFilter);
+        }
+    }
+
+    /**
+     * 按画质档位开关抖动和抗锯齿
+     *
+     * @param quality         {@link FishQualityGovernor}的档位
+     * @param projectedLength 鱼画出来有多长，太小的鱼在低档位不开抗锯齿
+     */
+    void applyQuality(int quality, float projectedLength) {
+        boolean dither = quality < FishQualityGovernor.QUALITY_NO_DITHER;
+        boolean antiAlias = quality < FishQualityGovernor.QUALITY_NO_SMALL_ANTI_ALIAS
+                || projectedLength >= FishQualityGovernor.SMALL_FISH_LENGTH;
+        //每帧都会调，没变就不碰画笔
+        if (dither == mDither && antiAlias == mAntiAlias) {
+            return;
+        }
+        mDither = dither;
+        mAntiAlias = antiAlias;
+        for (Paint paint : mPaints) {
+            paint.setDither(dither);
+            paint.setAntiAlias(antiAlias);
+        }
+    }
+
+    int getDrawCalls() {
+        return mDrawCalls;
+    }
+
+    int getPathCount() {
+        return mPaths;
+    }
+
+    void resetCounts() {
+        mDrawCalls = 0;
+        mPaths = 0;
+    }
+
+    private void createPaints() {
+        mPaints = new Paint[mSkins.length * PART_COUNT];
+        for (int i = 0; i < mPaints.length; i++) {
+            Paint paint = new Paint();
+            paint.setStyle(Paint.Style.FILL);
+            paint.setAntiAlias(mAntiAlias);
+            paint.setDither(mDither);
+            paint.setColorFilter(mColorFilter);
+            mPaints[i] = paint;
+        }
+        updateColors();
+        mSkin = 0;
+        mPaint = mPaints[PART_OTHER];
+    }
+
+    private void updateColors() {
+        for (int skin = 0; skin < mSkins.length; skin++) {
+            int rgb = mSkins[skin];
+            for (int part = 0; part < PART_COUNT; part++) {
+                int alpha = FishGeometry.alphaOf(part) * mGlobalAlpha / 255 * mAlpha / 255;
+                mPaints[skin * PART_COUNT + part].setColor(Color.argb(alpha, Color.red(rgb), Color.green(rgb), Color.blue(rgb)));
+            }
+        }
+    }
+
+    /**
+     * 鱼在屏幕上实际有多长，画布和View缩放过的话跟着变
+     *
+     * @param viewScale View到窗口的缩放，见{@link #viewScale}
+     */
+    @SuppressWarnings("deprecation")
+    float projectedLength(Canvas canvas, float viewScale) {
+        canvas.getMatrix(mMatrix);
+        return mMatrix.mapRadius(FishSkeleton.TOTAL_LENGTH) * viewScale;
+    }
+
+    /**
+     * View和它所有的父View的scaleX、scaleY等变换一起把View里的内容缩放了多少
+     * <p>
+     * 硬件加速的画布和软件图层的画布上，{@link Canvas#getMatrix}只有View在自己的绘制里做的变换，
+     * View本身和父View的变换在合成时才加上，要自己沿着父View乘起来；
+     * 整个窗口软件绘制时画布的矩阵已经包含了这些变换，不能再乘一遍
+     *
+     * @param view null表示不在View里画，比如SurfaceView自己的surface
+     */
+    static float viewScale(View view, Canvas canvas) {
+        if (view == null || !canvas.isHardwareAccelerated() && view.getLayerType() != View.LAYER_TYPE_SOFTWARE) {
+            return 1;
+        }
+        float scale = view.getMatrix().mapRadius(1);
+        for (ViewParent parent = view.getParent(); parent instanceof View; parent = parent.getParent()) {
+            scale *= ((View) parent).getMatrix().mapRadius(1);
+        }
+        return scale;
+    }
+
+    /**
+     * 画一条鱼
+     *
+     * @param canvas
+     * @param p      骨架缓冲区
+     * @param o      这条鱼在缓冲区里的起始下标
+     */
+    void draw(Canvas canvas, float[] p, int o) {
+        draw(canvas, p, o, FishLod.FULL);
+    }
+
+    /**
+     * 按细节档位画一条鱼
+     *
+     * @param tier {@link FishLod}的档位
+     */
+    void draw(Canvas canvas, float[] p, int o, int tier) {
+        mCanvas = canvas;
+        FishGeometry.emit(p, o, this, tier);
+        mCanvas = null;
+        mPath.reset();
+    }
+
+    /**
+     * 记下一条鱼，等replay时和别的鱼按画笔分组一起画
+     *
+     * @param tier {@link FishLod}的档位
+     * @param skin 调色板里的第几种颜色
+     */
+    void record(float[] p, int o, int tier, int skin) {
+        if (mCommands == null) {
+            mCommands = new FishCommandBuffer(mSkins.length);
+        }
+        mCommands.setVariant(skin < mSkins.length ? skin : 0);
+        FishGeometry.emit(p, o, mCommands, tier);
+    }
+
+    /**
+     * 按颜色、部分的顺序画完记下的鱼并清空
+     */
+    void replay(Canvas canvas) {
+        if (mCommands == null) {
+            return;
+        }
+        mCanvas = canvas;
+        for (int skin = 0; skin < mSkins.length; skin++) {
+            if (!mCommands.isEmpty(skin)) {
+                mSkin = skin;
+                mCommands.replay(skin, this);
+            }
+        }
+        mCommands.clear();
+        mCanvas = null;
+        mPath.reset();
+        mSkin = 0;
+        mPaint = mPaints[PART_OTHER];
+    }
+
+    @Override
+    public void setPart(int part) {
+        mPaint = mPaints[mSkin * PART_COUNT + part];
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius) {
+        mCanvas.drawCircle(cx, cy, radius, mPaint);
+        mDrawCalls++;
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        mPath.reset();
+        mPath.moveTo(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        mPath.lineTo(x, y);
+    }
+
+    @Override
+    public void quadTo(float controlX, float controlY, float x, float y) {
+        mPath.quadTo(controlX, controlY, x, y);
+    }
+
+    @Override
+    public void fillPath() {
+        mCanvas.drawPath(mPath, mPaint);
+        mDrawCalls++;
+        mPaths++;
+    }
+}
@@ -0,0 +1,251 @@
+package com.minminaya.fish;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishSkeleton;
+import com.minminaya.fish.core.FishSpriteCache;
+
+/**
+ * 预渲染的鱼的帧缓存
+ * <p>
+ * 鱼的样子只由相位、朝向和鱼鳍角度决定，把它们量化以后每一格渲染成一张位图，
+ * 画的时候直接贴最接近的那张，朝向剩下的零头用canvas旋转补上。
+ * 位图在后台线程按需生成，总大小超过预算时淘汰最久没用过的，还没生成好的帧由调用方按原来的矢量画法画。
+ * 帧的编号和淘汰顺序见{@link FishSpriteCache}，一圈相位要放得进预算，不然循环取帧时一次也命中不了
+ * <p>
+ * 相位保持细的档位，尾巴才摆得顺，省内存靠帧本身变小：每个朝向只裁到鱼实际占的范围；
+ * 鱼只有一种颜色，各部分只是透明度不同，所以帧存成ALPHA_8，贴的时候用画笔的颜色上色，和原来画出来的一样；
+ * 这样还放不下就整体缩小，缩到一半还放不下就不能用
+ */
+public class FishSpriteAtlas {
+
+    /**
+     * 相位按身体各节波形的公共周期量化
+     */
+    private static final float PHASE_CYCLE = FishSkeleton.PHASE_CYCLE;
+    private static final int FINS_STEPS = FishSpriteCache.FINS_STEPS;
+    /**
+     * 后台最多同时排队的帧数，鱼游得比生成快的时候旧的请求已经没用了，不再往里塞
+     */
+    private static final int MAX_PENDING = 8;
+
+    /**
+     * 默认预算16M，相位分360档，一圈两档鱼鳍角度共720帧。
+     * 裁好的帧最大的朝向上ALPHA_8一帧大约44K，一圈要32M，所以缩到0.72倍左右，一帧22K
+     */
+    public static final int DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+    public static final int DEFAULT_PHASE_STEPS = FishSpriteCache.DEFAULT_PHASE_STEPS;
+    public static final int DEFAULT_HEADING_STEPS = 36;
+
+    private final int headingSteps;
+    private final FishSpriteCache mCache;
+    /**
+     * 每个朝向上鱼相对重心的范围，没缩放，见{@link FishSpriteCache#measureHeadingBounds}
+     */
+    private final float[] mHeadingBounds;
+    /**
+     * 帧相对原来大小的缩放
+     */
+    private final float scale;
+    /**
+     * 最大的一帧的字节数，预算按它算
+     */
+    private final int frameBytes;
+
+    /**
+     * 按key存的帧，key见{@link FishSpriteCache#key}
+     */
+    private final Bitmap[] frames;
+    private final boolean[] pending;
+    private int pendingCount;
+
+    /**
+     * 贴图的画笔，透明度就是原来半透明图层的透明度
+     */
+    private final Paint mBlitPaint;
+
+    private final HandlerThread mThread;
+    private final Handler mBackgroundHandler;
+    private volatile boolean released;
+
+    //下面这些只在后台线程用
+    private final float[] mSkeleton = new float[FishSkeleton.SIZE];
+    private final FishPainter mPainter = new FishPainter();
+
+    public FishSpriteAtlas() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget 所有帧加起来最多占用的字节数
+     */
+    public FishSpriteAtlas(int memoryBudget) {
+        this(memoryBudget, DEFAULT_PHASE_STEPS, DEFAULT_HEADING_STEPS);
+    }
+
+    /**
+     * @param memoryBudget 所有帧加起来最多占用的字节数，缩到{@link FishSpriteCache#MIN_SCALE}时要放得下两圈相位（俩档鱼鳍角度各一圈）
+     * @param phaseSteps   一个波形周期分成多少帧
+     * @param headingSteps 一圈朝向分成多少帧
+     * @throws IllegalArgumentException 预算放不下一圈相位
+     */
+    public FishSpriteAtlas(int memoryBudget, int phaseSteps, int headingSteps) {
+        if (memoryBudget <= 0 || phaseSteps <= 0 || headingSteps <= 0) {
+            throw new IllegalArgumentException("budget and steps must be positive");
+        }
+        this.headingSteps = headingSteps;
+        mHeadingBounds = FishSpriteCache.measureHeadingBounds(phaseSteps, headingSteps);
+        scale = FishSpriteCache.scaleForBudget(memoryBudget, phaseSteps, mHeadingBounds);
+        if (scale < FishSpriteCache.MIN_SCALE) {
+            throw new IllegalArgumentException("budget " + memoryBudget + " does not fit one cycle of "
+                    + phaseSteps + " phases");
+        }
+        frameBytes = FishSpriteCache.maxFrameBytes(mHeadingBounds, scale);
+        mCache = new FishSpriteCache(memoryBudget / frameBytes, phaseSteps, headingSteps);
+
+        int keys = mCache.keyCount();
+        frames = new Bitmap[keys];
+        pending = new boolean[keys];
+
+        //ALPHA_8的帧按画笔的颜色上色，透明度就是原来半透明图层的透明度
+        mBlitPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        int rgb = FishGeometry.FISH_RGB;
+        mBlitPaint.setColor(Color.argb(240, Color.red(rgb), Color.green(rgb), Color.blue(rgb)));
+
+        mThread = new HandlerThread("FishSpriteAtlas");
+        mThread.start();
+        mBackgroundHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * 贴出最接近的一帧
+     *
+     * @return false表示这一帧还没生成好，已经排进后台，调用方需要自己用矢量画一次，
+     * 鱼本来每帧都在重画，生成好以后下一帧自然就用上了
+     */
+    boolean draw(Canvas canvas, float middleX, float middleY, float mainAngle, float phase, float finsAngle) {
+        float heading = mainAngle % 360;
+        if (heading < 0) {
+            heading += 360;
+        }
+        int phaseIndex = mCache.phaseIndex(phase);
+        int headingIndex = mCache.headingIndex(heading);
+        int finsIndex = FishSpriteCache.finsIndex(finsAngle);
+        int key = mCache.key(phaseIndex, headingIndex, finsIndex);
+
+        Bitmap frame;
+        synchronized (this) {
+            frame = frames[key];
+            if (frame == null) {
+                if (!pending[key] && !released && pendingCount < MAX_PENDING) {
+                    pending[key] = true;
+                    pendingCount++;
+                    mBackgroundHandler.post(new RenderTask(key, phaseIndex, headingIndex, finsIndex));
+                }
+                return false;
+            }
+            mCache.touch(key);
+        }
+
+        //朝向量化剩下的零头，Android的y轴朝下，逆时针要取反
+        float residual = heading - headingIndex * 360f / headingSteps;
+        int o = headingIndex * 4;
+        canvas.save();
+        canvas.rotate(-residual, middleX, middleY);
+        canvas.translate(middleX + mHeadingBounds[o], middleY + mHeadingBounds[o + 1]);
+        if (scale != 1) {
+            canvas.scale(1 / scale, 1 / scale);
+        }
+        canvas.drawBitmap(frame, 0, 0, mBlitPaint);
+        canvas.restore();
+        return true;
+    }
+
+    /**
+     * 清空所有帧并停掉后台线程，之后不能再用
+     */
+    public void release() {
+        released = true;
+        mThread.quit();
+        synchronized (this) {
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = null;
+                pending[i] = false;
+            }
+            pendingCount = 0;
+            mCache.clear();
+        }
+    }
+
+    /**
+     * @return 按最大的一帧算的占用，不会比实际的少
+     */
+    public synchronized int getUsedBytes() {
+        return mCache.size() * frameBytes;
+    }
+
+    public int getPhaseSteps() {
+        return mCache.getPhaseSteps();
+    }
+
+    /**
+     * @return 帧相对原来大小的缩放，预算够时是1
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * 后台生成一帧
+     */
+    private class RenderTask implements Runnable {
+        private final int key;
+        private final int phaseIndex;
+        private final int headingIndex;
+        private final int finsIndex;
+
+        RenderTask(int key, int phaseIndex, int headingIndex, int finsIndex) {
+            this.key = key;
+            this.phaseIndex = phaseIndex;
+            this.headingIndex = headingIndex;
+            this.finsIndex = finsIndex;
+        }
+
+        @Override
+        public void run() {
+            int o = headingIndex * 4;
+            float left = mHeadingBounds[o];
+            float top = mHeadingBounds[o + 1];
+            Bitmap bitmap = Bitmap.createBitmap(FishSpriteCache.frameSize(mHeadingBounds[o + 2] - left, scale),
+                    FishSpriteCache.frameSize(mHeadingBounds[o + 3] - top, scale), Bitmap.Config.ALPHA_8);
+            //重心放在这个朝向的范围里对应的位置
+            FishSkeleton.evaluate(mSkeleton, 0, -left, -top,
+                    headingIndex * 360f / headingSteps,
+                    phaseIndex * PHASE_CYCLE / mCache.getPhaseSteps(),
+                    finsIndex / (float) (FINS_STEPS - 1));
+            Canvas canvas = new Canvas(bitmap);
+            canvas.scale(scale, scale);
+            mPainter.draw(canvas, mSkeleton, 0);
+
+            synchronized (FishSpriteAtlas.this) {
+                pending[key] = false;
+                pendingCount--;
+                if (released) {
+                    return;
+                }
+                frames[key] = bitmap;
+                mCache.add(key);
+                //超出预算时淘汰最久没用过的，O(1)，不会在拿着draw也要的锁时扫一遍所有的key
+                for (int oldest = mCache.evict(); oldest >= 0; oldest = mCache.evict()) {
+                    frames[oldest] = null;
+                }
+            }
+        }
+    }
+}
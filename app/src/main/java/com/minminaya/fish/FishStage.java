@@ -0,0 +1,809 @@
+package com.minminaya.fish;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PointF;
+
+import com.minminaya.fish.core.FishFlock;
+import com.minminaya.fish.core.FishFrameMetrics;
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishGrid;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishNavField;
+import com.minminaya.fish.core.FishQualityGovernor;
+import com.minminaya.fish.core.FishRipples;
+import com.minminaya.fish.core.FishSchool;
+import com.minminaya.fish.core.FishSkeleton;
+import com.minminaya.fish.core.FishSteering;
+import com.minminaya.fish.core.FishTouchTrace;
+import com.minminaya.fish.core.FishTrail;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * FishView和FishSurfaceView共用的场景：波纹、主鱼的游动路径、鱼群、障碍物、触摸重放和画质档位，
+ * 推进和画到Canvas上都在这里，和View无关
+ * <p>
+ * 不加锁，FishView只在主线程上用；FishSurfaceView在主线程和渲染线程上用，调用方拿着自己的锁。
+ * 主鱼的drawable由View持有，这里只改它的位置、朝向和扭动，推进和画由View决定
+ */
+final class FishStage {
+
+    /**
+     * 波纹的线宽
+     */
+    static final int STROKE_WIDTH = 8;
+    /**
+     * 最多同时显示几个波纹，再点就顶掉最老的
+     */
+    private static final int MAX_RIPPLES = 16;
+    /**
+     * 鱼游一次的时长
+     */
+    private static final long TRAIL_DURATION = 2 * 1000;
+    /**
+     * 重放时每帧固定推进的时间，和真实的帧间隔无关
+     */
+    private static final long REPLAY_STEP_NANOS = 16666667;
+    /**
+     * 鱼群半透明图层的透明度
+     */
+    private static final int SCHOOL_LAYER_ALPHA = 240;
+
+    private final FishDrawable fishDrawable;
+    /**
+     * 鱼的drawable左上角的位置，FishView里就是ImageView的x、y
+     */
+    private float fishX;
+    private float fishY;
+    /**
+     * 画面的大小，鱼群的边界和导航场都按这个
+     */
+    private int width;
+    private int height;
+
+    private final Paint mPaint;
+    /**
+     * 同时存在的所有波纹
+     */
+    private final FishRipples mRipples = new FishRipples(MAX_RIPPLES, FishRipples.DEFAULT_RADIUS, FishRipples.DEFAULT_DURATION);
+
+    /**
+     * 鱼群，所有鱼共用一个画笔一次画完
+     */
+    private final FishSchool mSchool = new FishSchool();
+    private final FishPainter mSchoolPainter = new FishPainter();
+    /**
+     * 鱼群的调色板，每条鱼按自己的skin取颜色
+     */
+    private int[] mSchoolSkins = {FishGeometry.FISH_RGB};
+    private final float[] mSchoolBounds = new float[4];
+    /**
+     * 这一帧没被裁掉的鱼的下标，鱼群变大时跟着扩容
+     */
+    private int[] mVisibleFish = new int[16];
+    /**
+     * 这一帧所有要画的鱼的包围盒合起来，鱼群的半透明图层只开这么大
+     */
+    private final float[] mLayerBounds = new float[4];
+    /**
+     * 鱼群重心的网格索引，每帧和鱼群同步一次，查附近的鱼和点中的鱼用
+     */
+    private final FishGrid mSchoolGrid = new FishGrid();
+    /**
+     * 点中测试的候选，鱼挤在一起装不下时扩容
+     */
+    private int[] mHitCandidates = new int[64];
+    /**
+     * 鱼群的细节档位，按缩放后的大小和鱼的数量整群一起选
+     */
+    private final FishLod mSchoolLod = new FishLod();
+    /**
+     * 鱼群拍平成三角形一批画完，null表示每条鱼单独画
+     */
+    private FishMeshPainter mSchoolMesh;
+    /**
+     * 鱼群自主游动，null表示鱼群由外面摆位置
+     */
+    private FishFlock mFlock;
+    /**
+     * 鱼群并行用的线程池，{@link #release}时关掉，再推进时重新创建
+     */
+    private ForkJoinPool mFlockPool;
+
+    /**
+     * 当前的游动路径，按弧长等分好的位置和切线角度，点一下重建一次
+     */
+    private final FishTrail mTrail = new FishTrail();
+    private boolean swimming;
+    private float trailElapsed;
+    /**
+     * 这条路径起点的速度，见{@link FishTrail#progress}，新点一下从0开始，游到一半换目标时接上旧路径的速度
+     */
+    private float trailStartSpeed;
+    private final float[] mTrailSample = new float[FishTrail.SAMPLE_SIZE];
+    /**
+     * 计算路径的起点、控制点和终点用的缓冲区
+     */
+    private final float[] mTrailPoints = new float[FishSteering.routeSize(FishNavField.MAX_WAYPOINTS + 1)];
+    /**
+     * 绕障碍物的导航场，加第一个障碍物时才创建，没有时直接游向触摸点
+     */
+    private FishNavField mNavField;
+    private final float[] mWaypoints = new float[FishNavField.MAX_WAYPOINTS * 2];
+
+    private final Random mRandom = new Random();
+
+    /**
+     * 还没处理的触摸，一帧里来多少个都只留最后一个，下一帧开头统一处理
+     */
+    private boolean touchPending;
+    /**
+     * 这一帧里有没有按下，按下才算重新开始游，拖动只是换目标
+     */
+    private boolean touchDownPending;
+    private float pendingX;
+    private float pendingY;
+
+    /**
+     * 正在重放的触摸，下一个要放的事件和从开始重放过了多久
+     */
+    private FishTouchTrace mReplay;
+    private int replayIndex;
+    private long replayElapsedNanos;
+
+    /**
+     * 每帧统计，null表示没开
+     */
+    private FishFrameMetrics mMetrics;
+    /**
+     * 按帧耗时自动调画质，null表示总是最高画质
+     */
+    private FishQualityGovernor mGovernor;
+    private FishQualityGovernor.OnQualityChangeListener mQualityListener;
+    private final FishQualityGovernor.OnQualityChangeListener mApplyQuality = new FishQualityGovernor.OnQualityChangeListener() {
+        @Override
+        public void onQualityChanged(int quality, int previous) {
+            applyQuality(quality);
+            if (mQualityListener != null) {
+                mQualityListener.onQualityChanged(quality, previous);
+            }
+        }
+    };
+
+    FishStage(FishDrawable fishDrawable) {
+        this.fishDrawable = fishDrawable;
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setDither(true);
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(STROKE_WIDTH);
+    }
+
+    /**
+     * 画面大小变了，鱼群的边界和导航场的格子跟着变
+     */
+    void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        if (mFlock != null) {
+            mFlock.setBounds(0, 0, width, height);
+        }
+        if (mNavField != null && width > 0 && height > 0) {
+            mNavField.setSize(width, height);
+        }
+    }
+
+    float getFishX() {
+        return fishX;
+    }
+
+    float getFishY() {
+        return fishY;
+    }
+
+    FishSchool getSchool() {
+        return mSchool;
+    }
+
+    int addSchoolFish(float middleX, float middleY, float mainAngle) {
+        return mSchool.add(middleX, middleY, mainAngle);
+    }
+
+    void removeSchoolFish(int index) {
+        mSchool.remove(index);
+        if (mFlock != null && index < mFlock.size()) {
+            mFlock.remove(index);
+        }
+    }
+
+    void clearSchool() {
+        mSchool.clear();
+        if (mFlock != null) {
+            mFlock.clear();
+        }
+    }
+
+    void setSchoolSkins(int[] skins) {
+        mSchoolPainter.setSkins(skins);
+        if (mSchoolMesh != null) {
+            mSchoolMesh.setSkins(skins);
+        }
+        mSchoolSkins = skins.clone();
+    }
+
+    int addObstacle(float left, float top, float right, float bottom) {
+        if (mNavField == null) {
+            //还没布局时先按1个像素建，setSize时再按实际大小重建格子；鱼头到身体边缘大约俩个头的半径，留这么宽的空隙
+            mNavField = new FishNavField(Math.max(1, width), Math.max(1, height),
+                    FishNavField.DEFAULT_CELL_SIZE, 2 * fishDrawable.getHeadRadius());
+            if (mFlock != null) {
+                mFlock.setNavigationField(mNavField);
+            }
+        }
+        return mNavField.addObstacle(left, top, right, bottom);
+    }
+
+    void removeObstacle(int id) {
+        if (mNavField == null) {
+            throw new IllegalArgumentException("no obstacle " + id);
+        }
+        mNavField.removeObstacle(id);
+    }
+
+    void clearObstacles() {
+        if (mNavField != null) {
+            mNavField.clearObstacles();
+        }
+    }
+
+    /**
+     * @return 有没有变
+     */
+    boolean setSchoolFlockingEnabled(boolean enabled) {
+        if (enabled == (mFlock != null)) {
+            return false;
+        }
+        if (enabled) {
+            mFlockPool = new ForkJoinPool();
+            mFlock = new FishFlock(mFlockPool, flockStepMillis(getQuality()));
+            mFlock.setBounds(0, 0, width, height);
+            mFlock.setNavigationField(mNavField);
+            mFlock.sync(mSchool);
+        } else {
+            release();
+            mFlock = null;
+        }
+        return true;
+    }
+
+    /**
+     * 关掉鱼群的线程池，View离开窗口时调用，不然线程一直留着。鱼群的状态不变，再推进时换一个新的线程池
+     */
+    void release() {
+        if (mFlockPool != null) {
+            mFlock.setPool(null);
+            mFlockPool.shutdown();
+            mFlockPool = null;
+        }
+    }
+
+    /**
+     * @return 有没有变
+     */
+    boolean setSchoolBatchedEnabled(boolean enabled) {
+        if (enabled == (mSchoolMesh != null)) {
+            return false;
+        }
+        mSchoolMesh = enabled ? new FishMeshPainter() : null;
+        if (mSchoolMesh != null) {
+            mSchoolMesh.setSkins(mSchoolSkins);
+        }
+        return true;
+    }
+
+    boolean isSchoolBatched() {
+        return mSchoolMesh != null;
+    }
+
+    void setSchoolLodLengthThresholds(float reducedLength, float minimalLength) {
+        mSchoolLod.setLengthThresholds(reducedLength, minimalLength);
+    }
+
+    void setSchoolLodCountThresholds(int reducedCount, int minimalCount) {
+        mSchoolLod.setCountThresholds(reducedCount, minimalCount);
+    }
+
+    void setSchoolLodHysteresis(float hysteresis) {
+        mSchoolLod.setHysteresis(hysteresis);
+    }
+
+    int findSchoolFishNear(float x, float y, float radius, int[] out) {
+        mSchoolGrid.update(mSchool);
+        return mSchoolGrid.queryRadius(x, y, radius, out);
+    }
+
+    int findSchoolFishAt(float x, float y) {
+        mSchoolGrid.update(mSchool);
+        int candidates = mSchoolGrid.queryRadius(x, y, FishSkeleton.MAX_EXTENT, mHitCandidates);
+        if (candidates > mHitCandidates.length) {
+            mHitCandidates = new int[Integer.highestOneBit(candidates) * 2];
+            mSchoolGrid.queryRadius(x, y, FishSkeleton.MAX_EXTENT, mHitCandidates);
+        }
+        //骨架只在画的时候算，上次画完以后加的、挪过的鱼要按现在的位置重算
+        for (int c = 0; c < candidates; c++) {
+            mSchool.evaluate(mHitCandidates[c]);
+        }
+        return FishGrid.hitTest(x, y, mSchool.getSkeletons(), mHitCandidates, candidates, mSchoolBounds);
+    }
+
+    /**
+     * 画的耗时和画布调用次数记在这里，推进的耗时由View记
+     */
+    void setFrameMetrics(FishFrameMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 重置所有随机数：鱼自己扭鱼鳍、点一下扭几下鱼鳍、新加的鱼的相位
+     */
+    void setRandomSeed(long seed) {
+        mRandom.setSeed(seed);
+        fishDrawable.setRandomSeed(seed);
+        mSchool.setRandomSeed(seed);
+    }
+
+    /**
+     * 把主鱼现在的位置、朝向和整个鱼群记进录像，重放前摆回去
+     */
+    void captureStartState(FishTouchTrace trace) {
+        trace.setStartPose(fishX, fishY, fishDrawable.getMainAngle());
+        for (int i = 0; i < mSchool.size(); i++) {
+            trace.addStartSchoolFish(mSchool.getX(i), mSchool.getY(i), mSchool.getMainAngle(i), mSchool.getSkin(i));
+        }
+    }
+
+    /**
+     * 开始重放前清掉游了一半的路径、波纹和没处理的触摸，有初始场景的话把主鱼和鱼群摆回录的时候的样子，
+     * 再用录下的种子重置随机数，同一段录像每次重放都从同一个场景开始
+     *
+     * @param trace null或者空的表示停止重放
+     */
+    void replayTouchTrace(FishTouchTrace trace) {
+        mReplay = trace == null || trace.size() == 0 ? null : trace;
+        replayIndex = 0;
+        replayElapsedNanos = 0;
+        if (mReplay == null) {
+            return;
+        }
+        swimming = false;
+        trailElapsed = 0;
+        trailStartSpeed = 0;
+        touchPending = false;
+        touchDownPending = false;
+        mRipples.clear();
+        if (mFlock != null) {
+            mFlock.clearTarget();
+        }
+        fishDrawable.setWaveFrequence(FishDrawable.RESTING_WAVE_FREQUENCE);
+        fishDrawable.setIdle(true);
+        //先重置随机数，摆回去的鱼群的相位也从种子开始
+        setRandomSeed(trace.getSeed());
+        if (trace.hasStartPose()) {
+            fishX = trace.getStartX();
+            fishY = trace.getStartY();
+            fishDrawable.setMainAngle(trace.getStartAngle());
+            clearSchool();
+            for (int i = 0; i < trace.getStartSchoolSize(); i++) {
+                int index = mSchool.add(trace.getStartSchoolX(i), trace.getStartSchoolY(i), trace.getStartSchoolAngle(i));
+                mSchool.setSkin(index, trace.getStartSchoolSkin(i));
+            }
+        }
+    }
+
+    boolean isReplaying() {
+        return mReplay != null;
+    }
+
+    /**
+     * @return 有没有变
+     */
+    boolean setQualityGovernorEnabled(boolean enabled) {
+        if (enabled == (mGovernor != null)) {
+            return false;
+        }
+        if (enabled) {
+            mGovernor = new FishQualityGovernor();
+            mGovernor.setOnQualityChangeListener(mApplyQuality);
+        } else {
+            mGovernor = null;
+        }
+        applyQuality(FishQualityGovernor.QUALITY_FULL);
+        return true;
+    }
+
+    /**
+     * 调参数的时候画质调节要开着，关掉再打开会回到默认参数
+     */
+    FishQualityGovernor requireGovernor() {
+        if (mGovernor == null) {
+            throw new IllegalStateException("quality governor is off");
+        }
+        return mGovernor;
+    }
+
+    boolean isQualityGovernorEnabled() {
+        return mGovernor != null;
+    }
+
+    /**
+     * 档位变化时回调，这时新的档位已经生效
+     */
+    void setOnQualityChangeListener(FishQualityGovernor.OnQualityChangeListener listener) {
+        mQualityListener = listener;
+    }
+
+    int getQuality() {
+        return mGovernor == null ? FishQualityGovernor.QUALITY_FULL : mGovernor.getQuality();
+    }
+
+    /**
+     * 每帧开头喂上一帧的耗时，没打开画质调节时什么都不做
+     */
+    void onFrame(long deltaNanos, long workNanos) {
+        if (mGovernor != null) {
+            mGovernor.onFrame(deltaNanos, workNanos);
+        }
+    }
+
+    private void applyQuality(int quality) {
+        fishDrawable.setQuality(quality);
+        if (mFlock != null) {
+            mFlock.setStepMillis(flockStepMillis(quality));
+        }
+    }
+
+    /**
+     * 最低档位模拟频率减半，渲染时照样插值
+     */
+    static float flockStepMillis(int quality) {
+        return quality >= FishQualityGovernor.QUALITY_LOW_SIMULATION
+                ? FishFlock.DEFAULT_STEP_MILLIS * 2 : FishFlock.DEFAULT_STEP_MILLIS;
+    }
+
+    /**
+     * 还有没有要推进的：没处理的触摸、重放、波纹、游动或者鱼群
+     */
+    boolean isAnimating() {
+        return touchPending || mReplay != null || mRipples.size() > 0 || swimming || mSchool.size() > 0;
+    }
+
+    int getRippleCount() {
+        return mRipples.size();
+    }
+
+    /**
+     * @see FishRipples#computeBounds(float[], float)
+     */
+    boolean computeRippleBounds(float[] out) {
+        //描边一半在圆外面，再多留1像素给抗锯齿
+        return mRipples.computeBounds(out, STROKE_WIDTH / 2f + 1);
+    }
+
+    /**
+     * 只记最新的位置，攒到下一帧一起处理，拖得再快一帧也只换一次目标
+     *
+     * @param action {@link FishTouchTrace}里的动作，抬起不换目标
+     */
+    void offerTouch(int action, float touchX, float touchY) {
+        //重放时真的触摸会打乱录下的结果
+        if (mReplay == null) {
+            queueTouch(action, touchX, touchY);
+        }
+    }
+
+    private void queueTouch(int action, float touchX, float touchY) {
+        if (action == FishTouchTrace.ACTION_UP) {
+            return;
+        }
+        if (action == FishTouchTrace.ACTION_DOWN) {
+            touchDownPending = true;
+        }
+        pendingX = touchX;
+        pendingY = touchY;
+        touchPending = true;
+    }
+
+    /**
+     * 每帧开头把重放到这一帧为止的触摸放进去，和真的触摸走同一条路
+     * <p>
+     * 重放时不管真实的帧间隔，每帧固定推进{@link #REPLAY_STEP_NANOS}，触摸落在哪一帧、游到一半换目标时鱼在哪都和机器快慢无关；
+     * 掉帧时重放比录的时候慢，但结果一样
+     *
+     * @return 这一帧要推进的时间，没在重放时就是deltaNanos
+     */
+    long replayTouches(long deltaNanos) {
+        if (mReplay == null) {
+            return deltaNanos;
+        }
+        replayElapsedNanos += REPLAY_STEP_NANOS;
+        FishTouchTrace trace = mReplay;
+        while (replayIndex < trace.size() && trace.getOffsetNanos(replayIndex) <= replayElapsedNanos) {
+            queueTouch(trace.getAction(replayIndex), trace.getX(replayIndex), trace.getY(replayIndex));
+            replayIndex++;
+        }
+        if (replayIndex == trace.size()) {
+            mReplay = null;
+        }
+        return REPLAY_STEP_NANOS;
+    }
+
+    /**
+     * 推进波纹、游动路径和鱼群，主鱼的drawable不在这里推进
+     *
+     * @param deltaMillis 和上一帧的时间差
+     */
+    void tick(float deltaMillis) {
+        if (touchPending) {
+            applyTouch();
+        }
+
+        if (mRipples.size() > 0) {
+            mRipples.advance(deltaMillis);
+        }
+
+        if (swimming) {
+            trailElapsed += deltaMillis;
+            float fraction = Math.min(1, trailElapsed / TRAIL_DURATION);
+            moveAlongTrail(FishTrail.progress(fraction, trailStartSpeed));
+            if (fraction >= 1) {
+                swimming = false;
+                //游完了恢复扭动频率，空闲时降低帧率
+                fishDrawable.setWaveFrequence(FishDrawable.RESTING_WAVE_FREQUENCE);
+                fishDrawable.setIdle(true);
+            }
+        }
+
+        if (mSchool.size() > 0) {
+            if (mFlock != null) {
+                if (mFlockPool == null) {
+                    mFlockPool = new ForkJoinPool();
+                    mFlock.setPool(mFlockPool);
+                }
+                //新加的鱼从它现在的位置开始游，按固定步长推进，再插值出这一帧的位置
+                mFlock.sync(mSchool);
+                mFlock.advance(deltaMillis);
+                mFlock.apply(mSchool);
+            }
+            mSchool.advance(deltaMillis * FishSkeleton.ENGINE_SPEED);
+            //只有换了格子的鱼才挪桶，鱼不动时只是比较一遍
+            mSchoolGrid.update(mSchool);
+        }
+    }
+
+    /**
+     * 每帧最多一次，用这一帧最后的触摸位置开始波纹和游动
+     */
+    private void applyTouch() {
+        touchPending = false;
+        //新加一个波纹，之前的接着扩散
+        mRipples.add(pendingX, pendingY);
+        if (mFlock != null) {
+            mFlock.setTarget(pendingX, pendingY, TRAIL_DURATION);
+            if (mNavField != null) {
+                mNavField.setTarget(pendingX, pendingY);
+            }
+        }
+
+        //画鱼的游泳路径，正在游的时候换目标
+        makeTrail(pendingX, pendingY, touchDownPending || !swimming);
+        touchDownPending = false;
+    }
+
+    /**
+     * 正在游的时候新路径从当前的位置、朝向和速度接着游
+     *
+     * @param fresh true表示新按下一次，要重新扭鱼鳍，拖动换目标时不再重复扭
+     */
+    private void makeTrail(float touchX, float touchY, boolean fresh) {
+        //一点下去马上恢复全帧率
+        fishDrawable.setIdle(false);
+        PointF middle = fishDrawable.getMiddlePoint();
+        PointF head = fishDrawable.getHeadPoint();
+        //有障碍物时先在导航场里找途经点，挡不住就是0个，和原来一样一段曲线
+        int waypoints = 0;
+        if (mNavField != null && mNavField.getObstacleCount() > 0) {
+            waypoints = mNavField.route(fishX + head.x, fishY + head.y, touchX, touchY, mWaypoints);
+        }
+        int segments = FishSteering.makeRoute(mTrailPoints, fishX, fishY, middle.x, middle.y,
+                head.x, head.y, fishDrawable.getHeadRadius(), touchX, touchY, mWaypoints, waypoints);
+
+        float speed = 0;
+        if (swimming) {
+            //新路径的起点切线沿着当前的朝向
+            FishSteering.alignStart(mTrailPoints, mTrailSample[FishTrail.SAMPLE_ANGLE]);
+            //当前的速度，像素每个路径时长
+            float fraction = Math.min(1, trailElapsed / TRAIL_DURATION);
+            speed = FishTrail.progressSpeed(fraction, trailStartSpeed) * mTrail.getLength();
+        }
+
+        //新路径直接替换正在游的路径，位置和角度以后每帧都从这张表里取
+        mTrail.build(mTrailPoints, segments);
+        float length = mTrail.getLength();
+        trailStartSpeed = length > 0 ? Math.min(3, speed / length) : 0;
+        swimming = true;
+        trailElapsed = 0;
+
+        if (!fresh) {
+            return;
+        }
+
+        //设定扭动频率
+        fishDrawable.setWaveFrequence(2f);
+        //动态设置扭动动画，动画次数体现出鱼的生物性，时长其实就是扭尾巴的快慢
+        fishDrawable.flapFins(mRandom.nextInt(3), 500);
+    }
+
+    /**
+     * 按路径长度的百分比移动鱼并转向
+     *
+     * @param persent 插值后的百分比
+     */
+    private void moveAlongTrail(float persent) {
+        //按弧长的百分比直接查表，得到当前的位置和切线角度，y轴已经按Android的朝下反转过
+        mTrail.sample(persent, mTrailSample);
+        fishX = mTrailSample[FishTrail.SAMPLE_X];
+        fishY = mTrailSample[FishTrail.SAMPLE_Y];
+        fishDrawable.setMainAngle(mTrailSample[FishTrail.SAMPLE_ANGLE]);
+    }
+
+    /**
+     * 画鱼群和波纹，主鱼由View自己画
+     *
+     * @param viewScale View到窗口的缩放，见{@link FishPainter#viewScale}
+     */
+    void draw(Canvas canvas, float viewScale) {
+        long start = mMetrics == null ? 0 : System.nanoTime();
+        mSchoolPainter.resetCounts();
+        if (mSchoolMesh != null) {
+            mSchoolMesh.resetCounts();
+        }
+        int schoolLayers = drawSchool(canvas, viewScale);
+        int ripples = mRipples.size();
+        for (int i = 0; i < ripples; i++) {
+            //点击后的波纹的颜色，越大越淡
+            mPaint.setARGB(mRipples.getAlpha(i), 0, 125, 251);
+            //画波纹的圈，这里的半径随着动画引擎变化
+            canvas.drawCircle(mRipples.getX(i), mRipples.getY(i), mRipples.getRadius(i), mPaint);
+        }
+        if (mMetrics != null) {
+            //鱼群的图层和每个波纹各算一次
+            int layerCalls = schoolLayers + ripples;
+            int meshCalls = mSchoolMesh == null ? 0 : mSchoolMesh.getDrawCalls();
+            mMetrics.addDraw(System.nanoTime() - start, mSchoolPainter.getDrawCalls() + meshCalls + layerCalls,
+                    mSchoolPainter.getPathCount());
+        }
+    }
+
+    /**
+     * 一次画完整个鱼群，整群鱼共用一个半透明图层，画质降到不开图层时透明度乘进颜色里
+     *
+     * @return 开图层的次数
+     */
+    private int drawSchool(Canvas canvas, float viewScale) {
+        int count = mSchool.size();
+        if (count == 0) {
+            return 0;
+        }
+        mSchool.evaluate();
+        float[] skeletons = mSchool.getSkeletons();
+        if (mVisibleFish.length < count) {
+            mVisibleFish = new int[Math.max(count, mVisibleFish.length * 2)];
+        }
+        //先裁掉游出可见区域的鱼，细节档位按真正要画的鱼的数量选，剩下的鱼的包围盒合起来给图层用
+        int visible = 0;
+        mLayerBounds[0] = Float.MAX_VALUE;
+        mLayerBounds[1] = Float.MAX_VALUE;
+        mLayerBounds[2] = -Float.MAX_VALUE;
+        mLayerBounds[3] = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            FishSkeleton.computeBounds(skeletons, i * FishSkeleton.SIZE, mSchoolBounds);
+            if (!canvas.quickReject(mSchoolBounds[0], mSchoolBounds[1], mSchoolBounds[2], mSchoolBounds[3], Canvas.EdgeType.AA)) {
+                mVisibleFish[visible++] = i;
+                mLayerBounds[0] = Math.min(mLayerBounds[0], mSchoolBounds[0]);
+                mLayerBounds[1] = Math.min(mLayerBounds[1], mSchoolBounds[1]);
+                mLayerBounds[2] = Math.max(mLayerBounds[2], mSchoolBounds[2]);
+                mLayerBounds[3] = Math.max(mLayerBounds[3], mSchoolBounds[3]);
+            }
+        }
+        if (visible == 0) {
+            return 0;
+        }
+        float projectedLength = mSchoolPainter.projectedLength(canvas, viewScale);
+        int tier = mSchoolLod.update(projectedLength, visible);
+        int quality = getQuality();
+        boolean layered = quality < FishQualityGovernor.QUALITY_NO_LAYER;
+        int globalAlpha = layered ? 255 : SCHOOL_LAYER_ALPHA;
+        mSchoolPainter.applyQuality(quality, projectedLength);
+        mSchoolPainter.setGlobalAlpha(globalAlpha);
+        if (layered) {
+            //和FishDrawable的LAYER_MODE_BOUNDS一样只盖住要画的鱼，多留1像素给抗锯齿，一条小鱼不用开整屏的离屏图层
+            canvas.saveLayerAlpha(mLayerBounds[0] - 1, mLayerBounds[1] - 1, mLayerBounds[2] + 1, mLayerBounds[3] + 1,
+                    SCHOOL_LAYER_ALPHA, Canvas.ALL_SAVE_FLAG);
+        }
+        if (mSchoolMesh != null) {
+            mSchoolMesh.setGlobalAlpha(globalAlpha);
+            mSchoolMesh.begin(canvas, projectedLength / FishSkeleton.TOTAL_LENGTH);
+        }
+        for (int v = 0; v < visible; v++) {
+            int i = mVisibleFish[v];
+            if (mSchoolMesh != null) {
+                mSchoolMesh.add(skeletons, i * FishSkeleton.SIZE, tier, mSchool.getSkin(i));
+            } else {
+                mSchoolPainter.record(skeletons, i * FishSkeleton.SIZE, tier, mSchool.getSkin(i));
+            }
+        }
+        if (mSchoolMesh != null) {
+            mSchoolMesh.end();
+        }
+        //没合批的鱼按颜色和部分分组画
+        mSchoolPainter.replay(canvas);
+        if (layered) {
+            canvas.restore();
+        }
+        return layered ? 1 : 0;
+    }
+
+    /**
+     * 统计浮层的文字
+     */
+    static void buildOverlayText(StringBuilder text, FishFrameMetrics.Snapshot snapshot) {
+        text.setLength(0);
+        text.append("frames ").append(snapshot.frames).append(" dropped ").append(snapshot.droppedFrames).append('\n');
+        text.append("sim p50 ");
+        appendMillis(text, snapshot.simulationP50).append(" p99 ");
+        appendMillis(text, snapshot.simulationP99).append(" max ");
+        appendMillis(text, snapshot.simulationMax).append(" ms\n");
+        text.append("draw p50 ");
+        appendMillis(text, snapshot.drawP50).append(" p99 ");
+        appendMillis(text, snapshot.drawP99).append(" max ");
+        appendMillis(text, snapshot.drawMax).append(" ms\n");
+        text.append("total p90 ");
+        appendMillis(text, snapshot.totalP90).append(" p99 ");
+        appendMillis(text, snapshot.totalP99).append(" ms\n");
+        text.append("calls ").append(Math.round(snapshot.averageDrawCalls))
+                .append(" paths ").append(Math.round(snapshot.averagePaths))
+                .append(" alloc ").append(Math.round(snapshot.averageAllocatedBytes)).append(" B");
+    }
+
+    /**
+     * 纳秒按毫秒保留两位小数，不用String.format免得每次刷新都创建对象
+     */
+    private static StringBuilder appendMillis(StringBuilder text, long nanos) {
+        long hundredths = nanos / 10000;
+        text.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction);
+    }
+
+    /**
+     * 统计浮层画在鱼的上面，一行一行画
+     */
+    static void drawOverlay(Canvas canvas, CharSequence text, Paint paint) {
+        float lineHeight = paint.getFontSpacing();
+        float y = lineHeight;
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || text.charAt(i) == '\n') {
+                canvas.drawText(text, start, i, lineHeight / 2, y, paint);
+                y += lineHeight;
+                start = i + 1;
+            }
+        }
+    }
+}
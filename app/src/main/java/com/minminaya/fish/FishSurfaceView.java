@@ -0,0 +1,782 @@
+package com.minminaya.fish;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.minminaya.fish.core.FishFrameMetrics;
+import com.minminaya.fish.core.FishFrameThrottle;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishQualityGovernor;
+import com.minminaya.fish.core.FishTouchQueue;
+import com.minminaya.fish.core.FishTouchTrace;
+
+/**
+ * 在自己的渲染线程上推进和绘制的FishView，公开接口和FishView一样，场景重的时候直接替换
+ * <p>
+ * 渲染线程有自己的Looper和Choreographer，跟着vsync走，主线程上的布局、输入处理和别的工作都不会占鱼的帧时间。
+ * 触摸由主线程放进{@link FishTouchQueue}，渲染线程每帧开头一次取完，和FishView一样只用这一帧最后的位置。
+ * 场景和FishView一样是一个{@link FishStage}，只在拿着锁的时候碰，主线程调用公开接口时和渲染线程的推进、绘制互斥。
+ * 鱼一直在原地摆尾巴，所以surface在并且没暂停时每帧都画，暂停或者surface销毁时停止注册帧回调
+ * <p>
+ * surface默认是不透明的，在窗口下面按{@link #setSceneColor}的颜色清屏，不会盖住别的View和对话框；
+ * 要透出窗口的背景就调{@link #setTranslucentOnTop}
+ */
+public class FishSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    /**
+     * 统计浮层每隔多少帧刷新一次
+     */
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    /**
+     * Android 10
+     */
+    private static final int API_Q = 29;
+
+    /**
+     * 渲染线程和主线程共用的锁，保护下面所有的场景状态
+     */
+    private final Object mLock = new Object();
+
+    private final FishDrawable fishDrawable;
+    private final FishStage mStage;
+    /**
+     * 每帧清屏的颜色，透明时按{@link PorterDuff.Mode#CLEAR}清
+     */
+    private int sceneColor = Color.WHITE;
+
+    /**
+     * 主线程放、渲染线程取的触摸点
+     */
+    private final FishTouchQueue mTouches = new FishTouchQueue();
+    /**
+     * 主线程录的触摸
+     */
+    private FishTouchTrace mRecording;
+    private final float[] mTouchBuffer = new float[FishTouchQueue.DEFAULT_CAPACITY * FishTouchQueue.ENTRY_SIZE];
+
+    private FishFrameMetrics mMetrics;
+    private long lastAllocSize;
+    private boolean metricsOverlay;
+    private int overlayFrames;
+    private Paint mOverlayPaint;
+    private final StringBuilder mOverlayText = new StringBuilder();
+    private final FishFrameMetrics.Snapshot mSnapshot = new FishFrameMetrics.Snapshot();
+
+    /**
+     * 渲染线程，surface创建时启动，销毁时退出
+     */
+    private HandlerThread mRenderThread;
+    private Handler mRenderHandler;
+    /**
+     * 以下只在渲染线程上读写
+     */
+    private SurfaceHolder mSurface;
+    private boolean framePosted;
+    private long lastFrameTimeNanos;
+    /**
+     * 上一帧推进加绘制的耗时，不含等surface缓冲区的时间
+     */
+    private long lastWorkNanos;
+    /**
+     * 整个场景都静止时降低帧率，null表示每个vsync都画
+     */
+    private FishFrameThrottle mIdleThrottle = new FishFrameThrottle();
+    private volatile boolean resumed = true;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            framePosted = false;
+            renderFrame(frameTimeNanos);
+        }
+    };
+
+    private final Runnable mWakeUp = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    public FishSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public FishSurfaceView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public FishSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        getHolder().setFormat(PixelFormat.OPAQUE);
+        getHolder().addCallback(this);
+
+        //不订阅主线程的FishClock，由渲染线程每帧推进
+        fishDrawable = new FishDrawable(context);
+        fishDrawable.setIdle(true);
+        fishDrawable.setBounds(0, 0, fishDrawable.getIntrinsicWidth(), fishDrawable.getIntrinsicHeight());
+        mStage = new FishStage(fishDrawable);
+    }
+
+    /**
+     * 每帧清屏的颜色，默认白色
+     *
+     * @param color 不透明的颜色，要透明见{@link #setTranslucentOnTop}
+     */
+    public void setSceneColor(int color) {
+        if (Color.alpha(color) != 0xff) {
+            throw new IllegalArgumentException("scene color must be opaque, use setTranslucentOnTop");
+        }
+        synchronized (mLock) {
+            sceneColor = color;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 把surface换成透明的并且放到整个窗口的最上面，看起来和FishView一样透出下面的背景。
+     * 代价是盖住同一个窗口里所有的View，包括画在它上面的按钮和浮层，只在鱼是最上面一层的时候用；
+     * 要在attach到窗口以前调用
+     */
+    public void setTranslucentOnTop(boolean translucent) {
+        setZOrderOnTop(translucent);
+        getHolder().setFormat(translucent ? PixelFormat.TRANSLUCENT : PixelFormat.OPAQUE);
+        synchronized (mLock) {
+            sceneColor = translucent ? Color.TRANSPARENT : Color.WHITE;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 往鱼群里加一条鱼
+     *
+     * @see FishView#addSchoolFish(float, float, float)
+     */
+    public int addSchoolFish(float middleX, float middleY, float mainAngle) {
+        int index;
+        synchronized (mLock) {
+            index = mStage.addSchoolFish(middleX, middleY, mainAngle);
+        }
+        requestFrame();
+        return index;
+    }
+
+    public void removeSchoolFish(int index) {
+        synchronized (mLock) {
+            mStage.removeSchoolFish(index);
+        }
+        requestFrame();
+    }
+
+    public void clearSchool() {
+        synchronized (mLock) {
+            mStage.clearSchool();
+        }
+        requestFrame();
+    }
+
+    public int getSchoolSize() {
+        synchronized (mLock) {
+            return mStage.getSchool().size();
+        }
+    }
+
+    public void setSchoolFishPosition(int index, float middleX, float middleY) {
+        synchronized (mLock) {
+            mStage.getSchool().setPosition(index, middleX, middleY);
+        }
+        requestFrame();
+    }
+
+    public void setSchoolFishAngle(int index, float mainAngle) {
+        synchronized (mLock) {
+            mStage.getSchool().setMainAngle(index, mainAngle);
+        }
+        requestFrame();
+    }
+
+    public void setSchoolFishWaveFrequence(int index, float waveFrequence) {
+        synchronized (mLock) {
+            mStage.getSchool().setWaveFrequence(index, waveFrequence);
+        }
+    }
+
+    /**
+     * @see FishView#setSchoolSkins(int...)
+     */
+    public void setSchoolSkins(int... skins) {
+        synchronized (mLock) {
+            mStage.setSchoolSkins(skins);
+        }
+        requestFrame();
+    }
+
+    /**
+     * @see FishView#setSchoolFishSkin(int, int)
+     */
+    public void setSchoolFishSkin(int index, int skin) {
+        synchronized (mLock) {
+            mStage.getSchool().setSkin(index, skin);
+        }
+        requestFrame();
+    }
+
+    /**
+     * @see FishView#addObstacle(float, float, float, float)
+     */
+    public int addObstacle(float left, float top, float right, float bottom) {
+        synchronized (mLock) {
+            return mStage.addObstacle(left, top, right, bottom);
+        }
+    }
+
+    /**
+     * @see FishView#removeObstacle(int)
+     */
+    public void removeObstacle(int id) {
+        synchronized (mLock) {
+            mStage.removeObstacle(id);
+        }
+    }
+
+    /**
+     * @see FishView#clearObstacles()
+     */
+    public void clearObstacles() {
+        synchronized (mLock) {
+            mStage.clearObstacles();
+        }
+    }
+
+    /**
+     * @see FishView#setSchoolFlockingEnabled(boolean)
+     */
+    public void setSchoolFlockingEnabled(boolean enabled) {
+        synchronized (mLock) {
+            mStage.setSchoolFlockingEnabled(enabled);
+        }
+        requestFrame();
+    }
+
+    /**
+     * @see FishView#setSchoolBatchedEnabled(boolean)
+     */
+    public void setSchoolBatchedEnabled(boolean enabled) {
+        synchronized (mLock) {
+            mStage.setSchoolBatchedEnabled(enabled);
+        }
+        requestFrame();
+    }
+
+    /**
+     * 在渲染线程下一帧生效
+     *
+     * @see FishLod#setLengthThresholds(float, float)
+     */
+    public void setSchoolLodLengthThresholds(float reducedLength, float minimalLength) {
+        synchronized (mLock) {
+            mStage.setSchoolLodLengthThresholds(reducedLength, minimalLength);
+        }
+        requestFrame();
+    }
+
+    /**
+     * @see FishLod#setCountThresholds(int, int)
+     */
+    public void setSchoolLodCountThresholds(int reducedCount, int minimalCount) {
+        synchronized (mLock) {
+            mStage.setSchoolLodCountThresholds(reducedCount, minimalCount);
+        }
+        requestFrame();
+    }
+
+    public void setSchoolLodHysteresis(float hysteresis) {
+        synchronized (mLock) {
+            mStage.setSchoolLodHysteresis(hysteresis);
+        }
+    }
+
+    /**
+     * @see FishView#findSchoolFishNear(float, float, float, int[])
+     */
+    public int findSchoolFishNear(float x, float y, float radius, int[] out) {
+        synchronized (mLock) {
+            return mStage.findSchoolFishNear(x, y, radius, out);
+        }
+    }
+
+    /**
+     * @see FishView#findSchoolFishAt(float, float)
+     */
+    public int findSchoolFishAt(float x, float y) {
+        synchronized (mLock) {
+            return mStage.findSchoolFishAt(x, y);
+        }
+    }
+
+    /**
+     * 打开或关闭每帧统计，这里统计的是渲染线程上的耗时和分配
+     *
+     * @see FishView#setFrameMetricsEnabled(boolean)
+     */
+    @SuppressWarnings("deprecation")
+    public void setFrameMetricsEnabled(boolean enabled) {
+        synchronized (mLock) {
+            if (enabled == (mMetrics != null)) {
+                return;
+            }
+            if (enabled) {
+                mMetrics = new FishFrameMetrics();
+                Debug.startAllocCounting();
+                //分配按线程算，渲染线程第一次记的时候再取基准
+                lastAllocSize = -1;
+            } else {
+                mMetrics = null;
+                Debug.stopAllocCounting();
+                metricsOverlay = false;
+            }
+            fishDrawable.setFrameMetrics(mMetrics);
+            mStage.setFrameMetrics(mMetrics);
+        }
+        requestFrame();
+    }
+
+    public FishFrameMetrics getFrameMetrics() {
+        return mMetrics;
+    }
+
+    public void setFrameMetricsOverlayEnabled(boolean enabled) {
+        if (enabled) {
+            setFrameMetricsEnabled(true);
+        }
+        synchronized (mLock) {
+            if (enabled && mOverlayPaint == null) {
+                mOverlayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                mOverlayPaint.setColor(0xff000000);
+                mOverlayPaint.setTextSize(12 * getResources().getDisplayMetrics().density);
+            }
+            overlayFrames = OVERLAY_REFRESH_FRAMES;
+            metricsOverlay = enabled && mMetrics != null;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 没有波纹、鱼群，鱼也停着不游的时候每秒最多画几帧，有触摸马上恢复全帧率
+     *
+     * @param frameRate 0表示不降
+     * @see FishView#setIdleFrameRate(float)
+     */
+    public void setIdleFrameRate(float frameRate) {
+        if (frameRate < 0) {
+            throw new IllegalArgumentException("negative frame rate: " + frameRate);
+        }
+        synchronized (mLock) {
+            if (frameRate == 0) {
+                mIdleThrottle = null;
+            } else if (mIdleThrottle == null) {
+                mIdleThrottle = new FishFrameThrottle(frameRate);
+            } else {
+                mIdleThrottle.setFrameRate(frameRate);
+            }
+        }
+    }
+
+    public float getIdleFrameRate() {
+        synchronized (mLock) {
+            return mIdleThrottle == null ? 0 : mIdleThrottle.getFrameRate();
+        }
+    }
+
+    /**
+     * 打开或关闭画质自动调节，这里看的是渲染线程上的耗时
+     *
+     * @see FishView#setQualityGovernorEnabled(boolean)
+     */
+    public void setQualityGovernorEnabled(boolean enabled) {
+        synchronized (mLock) {
+            mStage.setQualityGovernorEnabled(enabled);
+        }
+        requestFrame();
+    }
+
+    /**
+     * @see FishView#setQualityFrameIntervalNanos(long)
+     */
+    public void setQualityFrameIntervalNanos(long frameIntervalNanos) {
+        synchronized (mLock) {
+            mStage.requireGovernor().setFrameIntervalNanos(frameIntervalNanos);
+        }
+    }
+
+    /**
+     * @see FishView#setQualityWatermarks(float, float)
+     */
+    public void setQualityWatermarks(float high, float low) {
+        synchronized (mLock) {
+            mStage.requireGovernor().setWatermarks(high, low);
+        }
+    }
+
+    /**
+     * @see FishView#setQualityWindowFrames(int)
+     */
+    public void setQualityWindowFrames(int frames) {
+        synchronized (mLock) {
+            mStage.requireGovernor().setWindowFrames(frames);
+        }
+    }
+
+    /**
+     * 降档时回调是在调用这个方法的线程上
+     *
+     * @see FishView#setLowestQuality(int)
+     */
+    public void setLowestQuality(int lowest) {
+        synchronized (mLock) {
+            mStage.requireGovernor().setLowestQuality(lowest);
+        }
+        requestFrame();
+    }
+
+    /**
+     * 档位变化时回调，和FishView不同，这里是在渲染线程上
+     */
+    public void setOnQualityChangeListener(FishQualityGovernor.OnQualityChangeListener listener) {
+        synchronized (mLock) {
+            mStage.setOnQualityChangeListener(listener);
+        }
+    }
+
+    public int getQuality() {
+        synchronized (mLock) {
+            return mStage.getQuality();
+        }
+    }
+
+    /**
+     * 所在的Activity进入后台时调用，渲染线程停止注册帧回调
+     */
+    public void onPause() {
+        resumed = false;
+    }
+
+    /**
+     * 所在的Activity回到前台时调用
+     */
+    public void onResume() {
+        resumed = true;
+        requestFrame();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        synchronized (mLock) {
+            mStage.release();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int action;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                action = FishTouchQueue.ACTION_DOWN;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                action = FishTouchQueue.ACTION_MOVE;
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (mRecording != null) {
+                    mRecording.add(event.getEventTime() * 1000000L, FishTouchTrace.ACTION_UP, event.getX(), event.getY());
+                }
+                return super.onTouchEvent(event);
+            default:
+                return super.onTouchEvent(event);
+        }
+        if (mRecording != null) {
+            mRecording.add(event.getEventTime() * 1000000L, action, event.getX(), event.getY());
+        }
+        mTouches.offer(action, event.getX(), event.getY());
+        requestFrame();
+        return true;
+    }
+
+    /**
+     * @see FishView#setRandomSeed(long)
+     */
+    public void setRandomSeed(long seed) {
+        synchronized (mLock) {
+            mStage.setRandomSeed(seed);
+        }
+    }
+
+    /**
+     * @see FishView#startTouchRecording()
+     */
+    public void startTouchRecording() {
+        long seed = System.nanoTime();
+        setRandomSeed(seed);
+        FishTouchTrace recording = new FishTouchTrace();
+        recording.setSeed(seed);
+        synchronized (mLock) {
+            mStage.captureStartState(recording);
+        }
+        mRecording = recording;
+    }
+
+    /**
+     * @see FishView#stopTouchRecording()
+     */
+    public FishTouchTrace stopTouchRecording() {
+        FishTouchTrace trace = mRecording;
+        mRecording = null;
+        return trace;
+    }
+
+    /**
+     * 在渲染线程上按录下的时间间隔放进场景，和真的触摸走同一条路
+     *
+     * @see FishView#replayTouchTrace(FishTouchTrace)
+     */
+    public void replayTouchTrace(FishTouchTrace trace) {
+        synchronized (mLock) {
+            mStage.replayTouchTrace(trace);
+        }
+        requestFrame();
+    }
+
+    public boolean isReplaying() {
+        synchronized (mLock) {
+            return mStage.isReplaying();
+        }
+    }
+
+    /**
+     * @see FishView#getFishX()
+     */
+    public float getFishX() {
+        synchronized (mLock) {
+            return mStage.getFishX();
+        }
+    }
+
+    public float getFishY() {
+        synchronized (mLock) {
+            return mStage.getFishY();
+        }
+    }
+
+    public float getFishAngle() {
+        synchronized (mLock) {
+            return fishDrawable.getMainAngle();
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mRenderThread = new HandlerThread("FishRender");
+        mRenderThread.start();
+        mRenderHandler = new Handler(mRenderThread.getLooper());
+        final SurfaceHolder surface = holder;
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurface = surface;
+                lastFrameTimeNanos = 0;
+            }
+        });
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, final int width, final int height) {
+        if (mRenderHandler == null) {
+            return;
+        }
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mLock) {
+                    mStage.setSize(width, height);
+                }
+                scheduleFrame();
+            }
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        if (mRenderThread == null) {
+            return;
+        }
+        //surface销毁以后不能再画，等渲染线程处理完手头这一帧再返回
+        final HandlerThread thread = mRenderThread;
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurface = null;
+                Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+                framePosted = false;
+                thread.quit();
+            }
+        });
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mRenderThread = null;
+        mRenderHandler = null;
+    }
+
+    /**
+     * 主线程改了场景或者恢复以后唤醒渲染线程
+     */
+    private void requestFrame() {
+        Handler handler = mRenderHandler;
+        if (handler != null) {
+            handler.post(mWakeUp);
+        }
+    }
+
+    /**
+     * 只在渲染线程调用，这个线程的Choreographer跟着vsync回调
+     */
+    private void scheduleFrame() {
+        if (framePosted || mSurface == null || !resumed) {
+            return;
+        }
+        framePosted = true;
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    /**
+     * 渲染线程每帧：取触摸、推进、画，再注册下一帧
+     */
+    private void renderFrame(long frameTimeNanos) {
+        if (mSurface == null || !resumed) {
+            lastFrameTimeNanos = 0;
+            return;
+        }
+        long deltaNanos = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+        lastFrameTimeNanos = frameTimeNanos;
+
+        long workNanos;
+        boolean batched;
+        synchronized (mLock) {
+            //降帧跳过的vsync也要喂，不然会当成掉帧
+            mStage.onFrame(deltaNanos, lastWorkNanos);
+            lastWorkNanos = 0;
+            if (mMetrics != null) {
+                beginMetricsFrame(frameTimeNanos, deltaNanos);
+            }
+            if (mIdleThrottle != null) {
+                deltaNanos = isSceneIdle() ? mIdleThrottle.onFrame(deltaNanos) : deltaNanos + mIdleThrottle.flush();
+                if (deltaNanos < 0) {
+                    scheduleFrame();
+                    return;
+                }
+            }
+            long start = System.nanoTime();
+            deltaNanos = mStage.replayTouches(deltaNanos);
+            int touches = mTouches.drain(mTouchBuffer);
+            for (int i = 0; i < touches; i++) {
+                int entry = i * FishTouchQueue.ENTRY_SIZE;
+                mStage.offerTouch((int) mTouchBuffer[entry + FishTouchQueue.ENTRY_ACTION],
+                        mTouchBuffer[entry + FishTouchQueue.ENTRY_X], mTouchBuffer[entry + FishTouchQueue.ENTRY_Y]);
+            }
+            float deltaMillis = deltaNanos / 1000000f;
+            fishDrawable.advance(deltaMillis);
+            mStage.tick(deltaMillis);
+            workNanos = System.nanoTime() - start;
+            if (mMetrics != null) {
+                mMetrics.addSimulation(frameTimeNanos, workNanos);
+            }
+            batched = mStage.isSchoolBatched();
+        }
+
+        Canvas canvas = lockCanvas(batched);
+        if (canvas != null) {
+            try {
+                long start = System.nanoTime();
+                synchronized (mLock) {
+                    drawScene(canvas);
+                }
+                workNanos += System.nanoTime() - start;
+            } finally {
+                mSurface.unlockCanvasAndPost(canvas);
+            }
+        }
+
+        lastWorkNanos = workNanos;
+        scheduleFrame();
+    }
+
+    /**
+     * 鱼停着、没有波纹和鱼群、也没有没处理的触摸，要拿着锁调用
+     */
+    private boolean isSceneIdle() {
+        return !mStage.isAnimating() && mTouches.size() == 0 && fishDrawable.isResting();
+    }
+
+    private Canvas lockCanvas(boolean batched) {
+        //8.0开始可以直接拿硬件加速的画布；drawVertices到10.0（API 29，编译用的SDK里还没有这个常量）才支持硬件加速，
+        //合批画的时候还用软件画布
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && (!batched || Build.VERSION.SDK_INT >= API_Q)) {
+            return mSurface.lockHardwareCanvas();
+        }
+        return mSurface.lockCanvas();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void beginMetricsFrame(long frameTimeNanos, long deltaNanos) {
+        mMetrics.beginFrame(frameTimeNanos, deltaNanos);
+        long allocSize = Debug.getThreadAllocSize();
+        if (lastAllocSize >= 0) {
+            mMetrics.addAllocations(Math.max(0, allocSize - lastAllocSize));
+        }
+        lastAllocSize = allocSize;
+        if (metricsOverlay && ++overlayFrames >= OVERLAY_REFRESH_FRAMES) {
+            overlayFrames = 0;
+            mMetrics.snapshot(mSnapshot);
+            FishStage.buildOverlayText(mOverlayText, mSnapshot);
+        }
+    }
+
+    /**
+     * 整个surface每帧重画：清屏、鱼群和波纹、鱼，最后是统计浮层
+     */
+    private void drawScene(Canvas canvas) {
+        if (sceneColor == Color.TRANSPARENT) {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        } else {
+            canvas.drawColor(sceneColor);
+        }
+        //surface不跟着View的变换缩放，画布的矩阵就是全部
+        mStage.draw(canvas, 1);
+
+        canvas.save();
+        canvas.translate(mStage.getFishX(), mStage.getFishY());
+        fishDrawable.draw(canvas);
+        canvas.restore();
+
+        if (metricsOverlay) {
+            FishStage.drawOverlay(canvas, mOverlayText, mOverlayPaint);
+        }
+    }
+}
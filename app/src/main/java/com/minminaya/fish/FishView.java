@@ -1,27 +1,26 @@
 package com.minminaya.fish;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.PathMeasure;
-import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
-import android.support.annotation.RequiresApi;
+import android.os.Debug;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.MotionEvent;
+import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.view.animation.AccelerateDecelerateInterpolator;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
 
-import java.util.Random;
+import com.minminaya.fish.core.FishFrameMetrics;
+import com.minminaya.fish.core.FishFrameThrottle;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishQualityGovernor;
+import com.minminaya.fish.core.FishTouchTrace;
 
 /**
  * 注意点：
@@ -35,14 +34,13 @@ import java.util.Random;
 public class FishView extends RelativeLayout {
 
     /**
-     * 波纹的线宽
+     * 统计浮层每隔多少帧刷新一次
      */
-    private static final int STROKE_WIDTH = 8;
-
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
     /**
-     * 默认的波纹半径
+     * Android 10
      */
-    private static final float DEFAULT_RADIUS = 150;
+    private static final int API_Q = 29;
     /**
      * 屏幕宽
      */
@@ -55,18 +53,92 @@ public class FishView extends RelativeLayout {
     private ImageView ivFish;
     private FishDrawable fishDrawable;
 
-    private Paint mPaint;
-    private int alpha = 100;
     private Canvas canvas;
 
-    //当前按下的坐标点x和y
-    private float x = 0;
-    private float y = 0;
+    /**
+     * 波纹、游动路径和鱼群，推进和画都在这里
+     */
+    private FishStage mStage;
+    /**
+     * 老版本上合批时换成软件图层，关掉合批时换回来
+     */
+    private int layerTypeBeforeBatching = LAYER_TYPE_NONE;
+    /**
+     * 波纹的包围盒，上一帧的要和这一帧的一起刷新，旧的圈才擦得掉
+     */
+    private final float[] mRippleBounds = new float[4];
+    private final Rect mRippleRect = new Rect();
+    private final Rect mLastRippleRect = new Rect();
+    private final Rect mDirtyRect = new Rect();
 
     /**
-     * 波纹的半径
+     * 波纹、游动路径和鱼群共用的时钟，有东西在动并且看得见的时候才订阅
      */
-    private float radius = 0;
+    private final FishClock.OnTickListener mTicker = new FishClock.OnTickListener() {
+        @Override
+        public void onTick(long frameTimeNanos, long deltaNanos) {
+            long stepNanos = mStage.replayTouches(deltaNanos);
+            if (mMetrics == null) {
+                tick(stepNanos / 1000000f);
+                return;
+            }
+            long start = System.nanoTime();
+            tick(stepNanos / 1000000f);
+            mMetrics.addSimulation(frameTimeNanos, System.nanoTime() - start);
+        }
+    };
+
+    /**
+     * 每帧统计，null表示没开，没开时除了判空没有别的开销
+     */
+    private FishFrameMetrics mMetrics;
+    /**
+     * 开了统计就每帧都订阅时钟，负责分帧、算掉帧和内存分配
+     */
+    private final FishClock.OnTickListener mMetricsTicker = new FishClock.OnTickListener() {
+        @Override
+        public void onTick(long frameTimeNanos, long deltaNanos) {
+            onMetricsFrame(frameTimeNanos, deltaNanos);
+        }
+    };
+    private long lastAllocSize;
+    private boolean metricsOverlay;
+    private int overlayFrames;
+    private Paint mOverlayPaint;
+    private final StringBuilder mOverlayText = new StringBuilder();
+    private final FishFrameMetrics.Snapshot mSnapshot = new FishFrameMetrics.Snapshot();
+    private FishQualityGovernor.OnQualityChangeListener mQualityListener;
+    /**
+     * 每帧开头喂上一帧的耗时，从这一帧的时钟回调算到本View画完
+     */
+    private final FishClock.OnTickListener mGovernorTicker = new FishClock.OnTickListener() {
+        @Override
+        public void onTick(long frameTimeNanos, long deltaNanos) {
+            mStage.onFrame(deltaNanos, frameWorkNanos);
+            frameWorkNanos = 0;
+            frameStartNanos = System.nanoTime();
+        }
+    };
+    private final FishQualityGovernor.OnQualityChangeListener mApplyQuality = new FishQualityGovernor.OnQualityChangeListener() {
+        @Override
+        public void onQualityChanged(int quality, int previous) {
+            invalidate();
+            if (mQualityListener != null) {
+                mQualityListener.onQualityChanged(quality, previous);
+            }
+        }
+    };
+    private long frameStartNanos;
+    private long frameWorkNanos;
+    /**
+     * 所在的Activity是否在前台
+     */
+    private boolean resumed = true;
+
+    /**
+     * 正在录的触摸，null表示没在录
+     */
+    private FishTouchTrace mRecording;
 
     public FishView(Context context) {
         this(context, null);
@@ -90,20 +162,461 @@ public class FishView extends RelativeLayout {
         //获取
         getScreenParams();
 
-        mPaint = new Paint();
-        mPaint.setAntiAlias(true);
-        mPaint.setDither(true);
-        mPaint.setStyle(Paint.Style.STROKE);
-        mPaint.setStrokeWidth(STROKE_WIDTH);
-
-        ivFish = new ImageView(context);
+        ivFish = new FishImageView(context);
         LayoutParams layoutParams = new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
         ivFish.setLayoutParams(layoutParams);
 
         fishDrawable = new FishDrawable(context);
+        //还没游的时候就是空闲的
+        fishDrawable.setIdleFrameRate(FishFrameThrottle.DEFAULT_IDLE_FRAME_RATE);
+        fishDrawable.setIdle(true);
         ivFish.setImageDrawable(fishDrawable);
 
         addView(ivFish);
+
+        mStage = new FishStage(fishDrawable);
+        mStage.setSize(mScreenWidth, mScreenHeight);
+        mStage.setOnQualityChangeListener(mApplyQuality);
+    }
+
+    /**
+     * 往鱼群里加一条鱼
+     *
+     * @param middleX   重心x，相对本View
+     * @param middleY   重心y，相对本View
+     * @param mainAngle 主方向
+     * @return 这条鱼在鱼群里的下标，删鱼时最后一条鱼会挪到被删的位置
+     */
+    public int addSchoolFish(float middleX, float middleY, float mainAngle) {
+        int index = mStage.addSchoolFish(middleX, middleY, mainAngle);
+        updateTicking();
+        invalidate();
+        return index;
+    }
+
+    public void removeSchoolFish(int index) {
+        mStage.removeSchoolFish(index);
+        updateTicking();
+        invalidate();
+    }
+
+    public void clearSchool() {
+        mStage.clearSchool();
+        updateTicking();
+        invalidate();
+    }
+
+    public int getSchoolSize() {
+        return mStage.getSchool().size();
+    }
+
+    public void setSchoolFishPosition(int index, float middleX, float middleY) {
+        mStage.getSchool().setPosition(index, middleX, middleY);
+    }
+
+    public void setSchoolFishAngle(int index, float mainAngle) {
+        mStage.getSchool().setMainAngle(index, mainAngle);
+    }
+
+    public void setSchoolFishWaveFrequence(int index, float waveFrequence) {
+        mStage.getSchool().setWaveFrequence(index, waveFrequence);
+    }
+
+    /**
+     * 设置鱼群的调色板，按(颜色, 部分)分组画，几种颜色就多换几次画笔，和鱼的条数无关。
+     * 不同颜色的鱼重叠的地方按调色板的顺序叠，后面的颜色在上面
+     *
+     * @param skins 每种颜色的RGB，不含透明度，第0种是默认颜色
+     */
+    public void setSchoolSkins(int... skins) {
+        mStage.setSchoolSkins(skins);
+        invalidate();
+    }
+
+    /**
+     * @param skin 用调色板里的第几种颜色，超出调色板时用第0种
+     */
+    public void setSchoolFishSkin(int index, int skin) {
+        mStage.getSchool().setSkin(index, skin);
+        invalidate();
+    }
+
+    /**
+     * 加一个矩形障碍物，主鱼和鱼群游过去时都绕开。
+     * 障碍物只在加删时改动它盖住的格子，点一下算一次整个画面的导航场，鱼再多也只算一次
+     *
+     * @return 障碍物的编号，删的时候用
+     */
+    public int addObstacle(float left, float top, float right, float bottom) {
+        return mStage.addObstacle(left, top, right, bottom);
+    }
+
+    public void removeObstacle(int id) {
+        mStage.removeObstacle(id);
+    }
+
+    public void clearObstacles() {
+        mStage.clearObstacles();
+    }
+
+    /**
+     * 鱼群自己游，互相避让、跟着旁边的鱼游、往鱼多的地方靠，点屏幕时都往点的地方游。
+     * 鱼多的时候分到几个核上一起算，开着的时候外面摆的位置和朝向会被覆盖
+     */
+    public void setSchoolFlockingEnabled(boolean enabled) {
+        if (mStage.setSchoolFlockingEnabled(enabled)) {
+            updateTicking();
+        }
+    }
+
+    /**
+     * 整群鱼拍平成三角形，一批只调一次drawVertices，鱼多的时候画布调用少很多，代价是边缘没有抗锯齿。
+     * <p>
+     * 硬件加速的画布到10.0（API 29）才支持drawVertices，之前的版本上什么都画不出来。
+     * 这时开着合批的期间本View改用软件图层，和FishSurfaceView合批时拿软件画布一样，各个版本上画出来都一样；
+     * 不退回到每条鱼单独画，免得打开了合批在老版本上悄悄不起作用。关掉时恢复原来的图层类型
+     */
+    public void setSchoolBatchedEnabled(boolean enabled) {
+        if (!mStage.setSchoolBatchedEnabled(enabled)) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < API_Q) {
+            if (enabled) {
+                layerTypeBeforeBatching = getLayerType();
+                setLayerType(LAYER_TYPE_SOFTWARE, null);
+            } else {
+                setLayerType(layerTypeBeforeBatching, null);
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * 鱼群降档的长度阈值，见{@link FishLod#setLengthThresholds}
+     */
+    public void setSchoolLodLengthThresholds(float reducedLength, float minimalLength) {
+        mStage.setSchoolLodLengthThresholds(reducedLength, minimalLength);
+        invalidate();
+    }
+
+    /**
+     * 鱼群降档的数量阈值，见{@link FishLod#setCountThresholds}
+     */
+    public void setSchoolLodCountThresholds(int reducedCount, int minimalCount) {
+        mStage.setSchoolLodCountThresholds(reducedCount, minimalCount);
+        invalidate();
+    }
+
+    public void setSchoolLodHysteresis(float hysteresis) {
+        mStage.setSchoolLodHysteresis(hysteresis);
+    }
+
+    /**
+     * 重心离(x, y)不超过radius的鱼
+     *
+     * @param out 输出鱼的下标，装不下的不写
+     * @return 一共有几条
+     */
+    public int findSchoolFishNear(float x, float y, float radius, int[] out) {
+        return mStage.findSchoolFishNear(x, y, radius, out);
+    }
+
+    /**
+     * 点中了鱼群里的哪条鱼，按鱼现在的位置、朝向和相位判断
+     *
+     * @return 鱼的下标，没点中返回-1
+     */
+    public int findSchoolFishAt(float x, float y) {
+        return mStage.findSchoolFishAt(x, y);
+    }
+
+    /**
+     * 打开或关闭每帧统计，推进动画和绘制的耗时、绘制次数、掉帧和内存分配记在{@link #getFrameMetrics()}里
+     */
+    @SuppressWarnings("deprecation")
+    public void setFrameMetricsEnabled(boolean enabled) {
+        if (enabled == (mMetrics != null)) {
+            return;
+        }
+        if (enabled) {
+            mMetrics = new FishFrameMetrics();
+            //线程分配计数只能靠这个已经废弃的接口，只在打开统计时用
+            Debug.startAllocCounting();
+            lastAllocSize = Debug.getThreadAllocSize();
+        } else {
+            mMetrics = null;
+            Debug.stopAllocCounting();
+            metricsOverlay = false;
+        }
+        fishDrawable.setFrameMetrics(mMetrics);
+        mStage.setFrameMetrics(mMetrics);
+        updateTicking();
+        invalidate();
+    }
+
+    /**
+     * @return 每帧统计，可以设置监听或者取快照，没打开时为null
+     */
+    public FishFrameMetrics getFrameMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 在左上角显示最近几百帧的统计，会顺带打开统计
+     */
+    public void setFrameMetricsOverlayEnabled(boolean enabled) {
+        if (enabled) {
+            setFrameMetricsEnabled(true);
+            if (mOverlayPaint == null) {
+                mOverlayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                mOverlayPaint.setColor(0xff000000);
+                mOverlayPaint.setTextSize(12 * getResources().getDisplayMetrics().density);
+            }
+            overlayFrames = OVERLAY_REFRESH_FRAMES;
+        }
+        metricsOverlay = enabled && mMetrics != null;
+        invalidate();
+    }
+
+    /**
+     * 鱼停着不游的时候每秒最多画几帧，默认{@link FishFrameThrottle#DEFAULT_IDLE_FRAME_RATE}，
+     * 扭动的速度不变，只是画得少，点一下马上恢复全帧率
+     *
+     * @param frameRate 0表示不降
+     */
+    public void setIdleFrameRate(float frameRate) {
+        fishDrawable.setIdleFrameRate(frameRate);
+    }
+
+    public float getIdleFrameRate() {
+        return fishDrawable.getIdleFrameRate();
+    }
+
+    /**
+     * 重置所有随机数：鱼自己扭鱼鳍、点一下扭几下鱼鳍、新加的鱼的相位
+     */
+    public void setRandomSeed(long seed) {
+        mStage.setRandomSeed(seed);
+    }
+
+    /**
+     * 开始录触摸，换一个新的随机种子记在录下的内容里，重放时用同一个种子；
+     * 鱼现在的位置、朝向和鱼群也记进去，重放前摆回去
+     */
+    public void startTouchRecording() {
+        long seed = System.nanoTime();
+        setRandomSeed(seed);
+        mRecording = new FishTouchTrace();
+        mRecording.setSeed(seed);
+        mStage.captureStartState(mRecording);
+    }
+
+    /**
+     * @return 从{@link #startTouchRecording}到现在录下的触摸，没在录时为null
+     */
+    public FishTouchTrace stopTouchRecording() {
+        FishTouchTrace trace = mRecording;
+        mRecording = null;
+        return trace;
+    }
+
+    /**
+     * 按录下的时间间隔重放触摸，先把鱼和鱼群摆回录的时候的样子、清掉游了一半的路径和波纹，再用录下的种子重置随机数。
+     * 和真的触摸一样每帧开头只取到这一帧为止的最后一个位置，但每帧按固定的时间推进，每次重放的结果都一样；
+     * 重放时真的触摸不起作用
+     *
+     * @param trace null表示停止重放
+     */
+    public void replayTouchTrace(FishTouchTrace trace) {
+        mStage.replayTouchTrace(trace);
+        ivFish.setX(mStage.getFishX());
+        ivFish.setY(mStage.getFishY());
+        invalidate();
+        updateTicking();
+    }
+
+    /**
+     * @return 鱼现在的位置，和鱼的ImageView的左上角一样
+     */
+    public float getFishX() {
+        return mStage.getFishX();
+    }
+
+    public float getFishY() {
+        return mStage.getFishY();
+    }
+
+    /**
+     * @return 鱼头的朝向和x轴的夹角
+     */
+    public float getFishAngle() {
+        return fishDrawable.getMainAngle();
+    }
+
+    public boolean isReplaying() {
+        return mStage.isReplaying();
+    }
+
+    /**
+     * 打开或关闭画质自动调节：主线程的活超过帧间隔的高水位或者漏了vsync就降档，
+     * 一直有余量就升档，档位见{@link FishQualityGovernor}。关闭时回到最高画质
+     */
+    public void setQualityGovernorEnabled(boolean enabled) {
+        if (!mStage.setQualityGovernorEnabled(enabled)) {
+            return;
+        }
+        if (!enabled) {
+            frameStartNanos = 0;
+            frameWorkNanos = 0;
+        }
+        invalidate();
+        updateTicking();
+    }
+
+    /**
+     * 目标帧间隔，见{@link FishQualityGovernor#setFrameIntervalNanos}，画质调节要先打开
+     */
+    public void setQualityFrameIntervalNanos(long frameIntervalNanos) {
+        mStage.requireGovernor().setFrameIntervalNanos(frameIntervalNanos);
+    }
+
+    /**
+     * 见{@link FishQualityGovernor#setWatermarks}，画质调节要先打开
+     */
+    public void setQualityWatermarks(float high, float low) {
+        mStage.requireGovernor().setWatermarks(high, low);
+    }
+
+    /**
+     * 见{@link FishQualityGovernor#setWindowFrames}，画质调节要先打开
+     */
+    public void setQualityWindowFrames(int frames) {
+        mStage.requireGovernor().setWindowFrames(frames);
+    }
+
+    /**
+     * 最多降到哪一档，见{@link FishQualityGovernor#setLowestQuality}，画质调节要先打开
+     */
+    public void setLowestQuality(int lowest) {
+        mStage.requireGovernor().setLowestQuality(lowest);
+    }
+
+    /**
+     * 档位变化时回调，在主线程上，这时新的档位已经生效
+     */
+    public void setOnQualityChangeListener(FishQualityGovernor.OnQualityChangeListener listener) {
+        mQualityListener = listener;
+    }
+
+    /**
+     * @return 当前的画质档位
+     */
+    public int getQuality() {
+        return mStage.getQuality();
+    }
+
+    /**
+     * 所在的Activity进入后台时调用，停掉所有动画
+     */
+    public void onPause() {
+        resumed = false;
+        fishDrawable.setVisible(false, false);
+        updateTicking();
+    }
+
+    /**
+     * 所在的Activity回到前台时调用
+     */
+    public void onResume() {
+        resumed = true;
+        fishDrawable.setVisible(ivFish.isShown(), false);
+        updateTicking();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateTicking();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        updateTicking();
+        mStage.release();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateTicking();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateTicking();
+    }
+
+    /**
+     * 有波纹、游动或者鱼群，并且看得见的时候才订阅时钟
+     */
+    private void updateTicking() {
+        boolean visible = resumed && isAttachedToWindow() && getWindowVisibility() == VISIBLE && isShown();
+        if (mStage.isAnimating() && visible) {
+            FishClock.getInstance().addListener(mTicker);
+        } else {
+            FishClock.getInstance().removeListener(mTicker);
+        }
+        if (mMetrics != null && visible) {
+            FishClock.getInstance().addListener(mMetricsTicker);
+        } else {
+            FishClock.getInstance().removeListener(mMetricsTicker);
+        }
+        if (mStage.isQualityGovernorEnabled() && visible) {
+            FishClock.getInstance().addListener(mGovernorTicker);
+        } else {
+            FishClock.getInstance().removeListener(mGovernorTicker);
+        }
+    }
+
+    /**
+     * 开了统计时每帧开头调用
+     */
+    @SuppressWarnings("deprecation")
+    private void onMetricsFrame(long frameTimeNanos, long deltaNanos) {
+        mMetrics.beginFrame(frameTimeNanos, deltaNanos);
+        //主线程两帧之间分配的所有内存都算在这一帧上
+        long allocSize = Debug.getThreadAllocSize();
+        mMetrics.addAllocations(Math.max(0, allocSize - lastAllocSize));
+        lastAllocSize = allocSize;
+
+        if (metricsOverlay && ++overlayFrames >= OVERLAY_REFRESH_FRAMES) {
+            overlayFrames = 0;
+            mMetrics.snapshot(mSnapshot);
+            FishStage.buildOverlayText(mOverlayText, mSnapshot);
+            invalidate();
+        }
+    }
+
+    /**
+     * 时钟每帧回调，推进波纹、游动路径和鱼群，鱼的ImageView跟着游动路径走
+     *
+     * @param deltaMillis 和上一帧的时间差
+     */
+    private void tick(float deltaMillis) {
+        int ripples = mStage.getRippleCount();
+        mStage.tick(deltaMillis);
+        ivFish.setX(mStage.getFishX());
+        ivFish.setY(mStage.getFishY());
+        //新点的波纹和最后一个消失的波纹都要刷新
+        if (ripples > 0 || mStage.getRippleCount() > 0) {
+            invalidateRipples();
+        }
+        if (mStage.getSchool().size() > 0) {
+            invalidate();
+        }
+        updateTicking();
     }
 
 
@@ -120,135 +633,65 @@ public class FishView extends RelativeLayout {
         if (this.canvas == null) {
             this.canvas = canvas;
         }
-        //点击后的波纹的颜色
-        mPaint.setARGB(alpha, 0, 125, 251);
-        //画波纹的圈，这里的半径随着动画引擎变化
-        canvas.drawCircle(x, y, radius, mPaint);
+        mStage.draw(canvas, FishPainter.viewScale(this, canvas));
     }
 
     @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        x = event.getX();
-        y = event.getY();
-        ObjectAnimator objectAnimator = ObjectAnimator.ofFloat(this, "radius", 0f, 1f);
-        objectAnimator.start();
-
-        //画鱼的游泳路径
-        makeTrail(new PointF(x, y));
-
-        return super.onTouchEvent(event);
-    }
-
-    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
-    private void makeTrail(PointF touch) {
-        Path path = new Path();
-        PointF fishMiddlePointF = new PointF(ivFish.getX() + fishDrawable.getMiddlePoint().x, ivFish.getY() + fishDrawable.getMiddlePoint().y);
-        PointF fishHeadPointF = new PointF(ivFish.getX() + fishDrawable.getHeadPoint().x, ivFish.getY() + fishDrawable.getHeadPoint().y);
-
-        //将imageView的左顶点作为鱼的middlePoint， 就是点O
-        path.moveTo(ivFish.getX(), ivFish.getY());
-        //要的转动的角度，示意图中的角AOB
-        float angle = caculateScrollAngle(fishMiddlePointF, fishHeadPointF, touch);
-        //控制点2  AOB夹角中线
-        PointF controlPointF = calculatPoint(fishMiddlePointF, (float) (1.6 * fishDrawable.getHeadRadius()), angle / 2);
-        //A,C作为控制点，终点是触摸点偏左fishDrawable.getHeadPoint()距离（不明白这里的具体意思，感觉和示意图有点差别）
-        path.cubicTo(fishHeadPointF.x, fishHeadPointF.y, controlPointF.x, controlPointF.y, touch.x - fishDrawable.getHeadPoint().x, touch.y - fishDrawable.getHeadPoint().y);
-
-        final float[] pos = new float[2];
-        final float[] tan = new float[2];
-        final PathMeasure pathMeasure = new PathMeasure(path, false);
-
-        ObjectAnimator animator = ObjectAnimator.ofFloat(ivFish, "x", "y", path);
-        animator.setDuration(2 * 1000);
-        animator.setInterpolator(new AccelerateDecelerateInterpolator());
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                super.onAnimationCancel(animation);
-                //恢复扭动频率
-                fishDrawable.setWaveFrequence(1f);
-            }
-
-            @Override
-            public void onAnimationStart(Animator animation) {
-                super.onAnimationStart(animation);
-
-                //设定扭动频率
-                fishDrawable.setWaveFrequence(2f);
-                //动态设置扭动动画
-                //获取FishDrawable里头的扭尾巴动画，然后动态设置，为了更骚
-                ObjectAnimator finsAnimator = fishDrawable.getFinsAnimator();
-                //动画次数，体现出鱼的生物性
-                finsAnimator.setRepeatCount(new Random().nextInt(3));
-                //动画显示时长，其实就是扭尾巴的快慢
-                finsAnimator.setDuration((long) ((new Random().nextInt(1) + 1) * 500));
-                finsAnimator.start();
-            }
-        });
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                //属性改变百分比
-                float persent = valueAnimator.getAnimatedFraction();
-                //第一个参数一脸懵逼，个人理解应该是当前切线的轮廓乘以属性改变百分比
-                pathMeasure.getPosTan(pathMeasure.getLength() * persent, pos, tan);
-                //根据切线值得到当前的切线角度，并按Android 的y轴在下面将y轴反转
-                float actualAngle = (float) (Math.atan2(-tan[1], tan[0]) * 180.0 / Math.PI);
-                //动态设置角度到fishDrawable
-                fishDrawable.setMainAngle(actualAngle);
-            }
-        });
-        animator.start();
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (metricsOverlay) {
+            FishStage.drawOverlay(canvas, mOverlayText, mOverlayPaint);
+        }
+        //子View也画完了，这一帧主线程上的活到这里为止，RenderThread上的只能靠漏没漏vsync看出来
+        if (frameStartNanos != 0) {
+            frameWorkNanos = System.nanoTime() - frameStartNanos;
+            frameStartNanos = 0;
+        }
     }
 
-    /**
-     * objectAnimators自动执行
-     */
-    public void setRadius(float currentValue) {
-        alpha = (int) (100 * (1 - currentValue) / 2);
-        radius = DEFAULT_RADIUS * currentValue;
-        postInvalidate();
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int action;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                action = FishTouchTrace.ACTION_DOWN;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                action = FishTouchTrace.ACTION_MOVE;
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (mRecording != null) {
+                    mRecording.add(event.getEventTime() * 1000000L, FishTouchTrace.ACTION_UP, event.getX(), event.getY());
+                }
+                return super.onTouchEvent(event);
+            default:
+                return super.onTouchEvent(event);
+        }
+        if (mRecording != null) {
+            mRecording.add(event.getEventTime() * 1000000L, action, event.getX(), event.getY());
+        }
+        mStage.offerTouch(action, event.getX(), event.getY());
+        updateTicking();
+        return true;
     }
 
     /**
-     * 要的转动的角度，示意图中的角AOB
-     *
-     * @param fishMiddlePoint O点
-     * @param fishHeadPointF  A点
-     * @param touch           触摸点
-     * @return 要的转动的角度
-     */
-    private float caculateScrollAngle(PointF fishMiddlePoint, PointF fishHeadPointF, PointF touch) {
-        //计算OA向量乘OB向量
-        float abc = (fishHeadPointF.x - fishMiddlePoint.x) * (touch.x - fishMiddlePoint.x) + (fishHeadPointF.y - fishMiddlePoint.y) * (touch.y - fishMiddlePoint.y);
-        //向量积除以向量模
-        float angleCos = (float) (abc /
-                ((Math.sqrt((fishHeadPointF.x - fishMiddlePoint.x) * (fishHeadPointF.x - fishMiddlePoint.x) + (fishHeadPointF.y - fishMiddlePoint.y) * (fishHeadPointF.y - fishMiddlePoint.y)))
-                        * (Math.sqrt((touch.x - fishMiddlePoint.x) * (touch.x - fishMiddlePoint.x) + (touch.y - fishMiddlePoint.y) * (touch.y - fishMiddlePoint.y)))));
-
-        System.out.println(angleCos + "angleCos");
-
-        //要的转动的角度，示意图中的角AOB
-        float temAngle = (float) Math.toDegrees(Math.acos(angleCos));
-        //判断方向  正左侧  负右侧 0线上,但是Android的坐标系Y是朝下的，所以左右颠倒一下
-        //向量共线定理，x1y2-x2y1
-        float direction = (fishMiddlePoint.x - touch.x) * (fishHeadPointF.y - touch.y) - (fishMiddlePoint.y - touch.y) * (fishHeadPointF.x - touch.x);
-
-        if (direction == 0) {
-            //共线
-            if (abc >= 0) {
-                //abc大于0说明0到90度内，这里就是正方向的意思
-                return 0;
-            } else
-                return 180;
+     * 只刷新波纹这一帧和上一帧包围盒的并集，不再整个屏幕重画
+     */
+    private void invalidateRipples() {
+        if (mStage.computeRippleBounds(mRippleBounds)) {
+            mRippleRect.set((int) Math.floor(mRippleBounds[0]), (int) Math.floor(mRippleBounds[1]),
+                    (int) Math.ceil(mRippleBounds[2]), (int) Math.ceil(mRippleBounds[3]));
         } else {
-            if (direction > 0) {//右侧顺时针为负
-                //x1y2>x2y1说明点在线的右边，考虑到Android的角度正方向是逆时针，示意图中是顺时针的角度这里直接取反减少干扰
-                return -temAngle;
-            } else {
-                return temAngle;
-            }
+            mRippleRect.setEmpty();
         }
+        mDirtyRect.set(mLastRippleRect);
+        mDirtyRect.union(mRippleRect);
+        if (!mDirtyRect.isEmpty()) {
+            invalidate(mDirtyRect);
+        }
+        mLastRippleRect.set(mRippleRect);
     }
 
     /**
@@ -263,21 +706,28 @@ public class FishView extends RelativeLayout {
     }
 
     /**
-     * 输入起点、长度、旋转角度计算终点
-     * <p>
-     * 知道一个线段，一个定点，线段旋转角度求终点坐标
-     * 根据极坐标系原理 x = pcog(a), y = psin(a)
-     *
-     * @param startPoint 起点
-     * @param length     长度
-     * @param angle      旋转角度
-     * @return 计算结果点
+     * ImageView自己刷新drawable时整个View都重画，这里改成只刷新鱼的drawable给出的区域。
+     * 鱼的ImageView是包裹内容的，drawable不缩放不平移，坐标直接对应
      */
-    private static PointF calculatPoint(PointF startPoint, float length, float angle) {
-        float deltaX = (float) Math.cos(Math.toRadians(angle)) * length;
-        //符合Android坐标的y轴朝下的标准，和y轴有关的统一减180度
-        float deltaY = (float) Math.sin(Math.toRadians(angle - 180)) * length;
-        return new PointF(startPoint.x + deltaX, startPoint.y + deltaY);
-    }
+    private static class FishImageView extends ImageView {
+
+        FishImageView(Context context) {
+            super(context);
+        }
 
+        @Override
+        public void invalidateDrawable(Drawable dr) {
+            //drawable和View一样大时ImageView不用矩阵，否则还是整个刷新
+            boolean fits = dr.getIntrinsicWidth() == getWidth() - getPaddingLeft() - getPaddingRight()
+                    && dr.getIntrinsicHeight() == getHeight() - getPaddingTop() - getPaddingBottom();
+            if (dr != getDrawable() || !fits) {
+                super.invalidateDrawable(dr);
+                return;
+            }
+            Rect dirty = dr.getDirtyBounds();
+            int left = getPaddingLeft() + getScrollX();
+            int top = getPaddingTop() + getScrollY();
+            invalidate(dirty.left + left, dirty.top + top, dirty.right + left, dirty.bottom + top);
+        }
+    }
 }
@@ -7,12 +7,27 @@ import android.widget.ImageView;
 
 public class MainActivity extends Activity {
 
+    private FishView fishView;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         setContentView(R.layout.activity_main);
+        fishView = (FishView) findViewById(R.id.fish_view);
 //        ImageView imageView = (ImageView) findViewById(R.id.img);
 //        imageView.setImageDrawable(new FishDrawable(this));
     }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        fishView.onResume();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        fishView.onPause();
+    }
 }
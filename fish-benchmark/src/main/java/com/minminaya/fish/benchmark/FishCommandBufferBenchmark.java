@@ -0,0 +1,136 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishCommandBuffer;
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishRenderer;
+import com.minminaya.fish.core.FishSchool;
+import com.minminaya.fish.core.FishSkeleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鱼群直接按绘制顺序输出和先记下来再按画笔分组重放的开销，
+ * 后者多出来的是记录和重放本身，换来的是换画笔的次数和鱼的条数无关
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishCommandBufferBenchmark {
+
+    @Param({"10", "1000"})
+    public int count;
+
+    @Param({"1", "4"})
+    public int skins;
+
+    private FishSchool school;
+    private FishCommandBuffer buffer;
+    private final CountingRenderer renderer = new CountingRenderer();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        school = new FishSchool(count);
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * 1080, random.nextFloat() * 1920, random.nextFloat() * 360);
+            school.setSkin(i, random.nextInt(skins));
+        }
+        school.evaluate();
+        buffer = new FishCommandBuffer(skins);
+    }
+
+    /**
+     * @return 换了几次画笔
+     */
+    @Benchmark
+    public int direct(Blackhole blackhole) {
+        renderer.reset();
+        float[] skeletons = school.getSkeletons();
+        for (int i = 0; i < count; i++) {
+            //换颜色也算一次
+            renderer.setPart(-1 - school.getSkin(i));
+            FishGeometry.emit(skeletons, i * FishSkeleton.SIZE, renderer);
+        }
+        blackhole.consume(renderer.sum);
+        return renderer.changes;
+    }
+
+    @Benchmark
+    public int sorted(Blackhole blackhole) {
+        renderer.reset();
+        float[] skeletons = school.getSkeletons();
+        for (int i = 0; i < count; i++) {
+            buffer.setVariant(school.getSkin(i));
+            FishGeometry.emit(skeletons, i * FishSkeleton.SIZE, buffer);
+        }
+        buffer.replay(renderer);
+        buffer.clear();
+        blackhole.consume(renderer.sum);
+        return renderer.changes;
+    }
+
+    /**
+     * 数换了几次画笔，坐标只加起来
+     */
+    private static final class CountingRenderer implements FishRenderer {
+        int changes;
+        float sum;
+        private int part;
+
+        void reset() {
+            changes = 0;
+            sum = 0;
+            part = Integer.MIN_VALUE;
+        }
+
+        @Override
+        public void setPart(int part) {
+            if (part != this.part) {
+                changes++;
+                this.part = part;
+            }
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius) {
+            sum += cx + cy + radius;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            sum += x + y;
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            sum += x + y;
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            sum += controlX + controlY + x + y;
+        }
+
+        @Override
+        public void fillPath() {
+            sum += 1;
+        }
+    }
+}
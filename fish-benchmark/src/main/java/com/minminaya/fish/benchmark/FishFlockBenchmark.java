@@ -0,0 +1,85 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishFlock;
+import com.minminaya.fish.core.FishSchool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鱼群自主游动走一步的耗时，单线程和fork/join并行对比，以及渲染时插值写回鱼群的耗时
+ * <p>
+ * 鱼的密度保持一样，鱼越多铺的面积越大；限制在这块范围里游，密度不会一直变
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishFlockBenchmark {
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    private FishSchool school;
+    private FishFlock sequential;
+    private FishFlock parallel;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        float side = (float) Math.sqrt(count) * 100;
+        school = new FishSchool(count);
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * side, random.nextFloat() * side, random.nextFloat() * 360);
+        }
+        pool = new ForkJoinPool();
+        sequential = new FishFlock(null);
+        parallel = new FishFlock(pool);
+        sequential.sync(school);
+        parallel.sync(school);
+        sequential.setBounds(0, 0, side, side);
+        parallel.setBounds(0, 0, side, side);
+        //停在俩步中间，apply每次都要插值
+        sequential.advance(FishFlock.DEFAULT_STEP_MILLIS * 1.5f);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public float stepSequential() {
+        sequential.step();
+        return sequential.getX(0);
+    }
+
+    @Benchmark
+    public float stepParallel() {
+        parallel.step();
+        return parallel.getX(0);
+    }
+
+    @Benchmark
+    public float apply() {
+        sequential.apply(school);
+        return school.getX(0);
+    }
+}
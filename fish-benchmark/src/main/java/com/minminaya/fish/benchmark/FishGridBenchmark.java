@@ -0,0 +1,101 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishGrid;
+import com.minminaya.fish.core.FishSchool;
+import com.minminaya.fish.core.FishSkeleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网格索引的开销：每帧同步鱼群、按半径查、查最近的8条、点中测试
+ * <p>
+ * 鱼的密度保持一样，鱼越多铺的面积越大；每次同步前所有鱼都挪一小步，一部分会换格子
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishGridBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "10000", "50000"})
+    public int count;
+
+    private FishSchool school;
+    private FishGrid grid;
+    private float side;
+    private final float[] queries = new float[QUERIES * 2];
+    private final int[] out = new int[1024];
+    private final float[] bounds = new float[4];
+    private int cursor;
+    private float step = 1;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        //每条鱼平均占200x200
+        side = (float) Math.sqrt(count) * 200;
+        school = new FishSchool(count);
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * side, random.nextFloat() * side, random.nextFloat() * 360);
+        }
+        school.evaluate();
+        grid = new FishGrid(FishGrid.DEFAULT_CELL_SIZE, Integer.highestOneBit(count) * 2);
+        grid.update(school);
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextFloat() * side;
+        }
+    }
+
+    private int nextQuery() {
+        cursor = (cursor + 2) & (queries.length - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public int update() {
+        //来回挪，鱼群不会越漂越远
+        step = -step;
+        for (int i = 0; i < count; i++) {
+            school.setPosition(i, school.getX(i) + step * 3, school.getY(i) + step * 2);
+        }
+        grid.update(school);
+        return grid.size();
+    }
+
+    @Benchmark
+    public int queryRadius() {
+        int q = nextQuery();
+        return grid.queryRadius(queries[q], queries[q + 1], 300, out);
+    }
+
+    @Benchmark
+    public int queryNearest() {
+        int q = nextQuery();
+        grid.queryNearest(queries[q], queries[q + 1], 8, out);
+        return out[0];
+    }
+
+    @Benchmark
+    public int hitTest() {
+        int q = nextQuery();
+        int candidates = Math.min(out.length, grid.queryRadius(queries[q], queries[q + 1], FishSkeleton.MAX_EXTENT, out));
+        return FishGrid.hitTest(queries[q], queries[q + 1], school.getSkeletons(), out, candidates, bounds);
+    }
+}
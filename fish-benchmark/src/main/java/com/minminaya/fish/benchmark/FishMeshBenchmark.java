@@ -0,0 +1,91 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishMesh;
+import com.minminaya.fish.core.FishSchool;
+import com.minminaya.fish.core.FishSkeleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整群鱼拍平成三角形的开销，不含真正的绘制，只统计交出去几批、多少个三角形
+ * <p>
+ * 屏幕上的缩放从0.25到2，缩得越小切的段越少
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishMeshBenchmark {
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    @Param({"0.25", "1", "2"})
+    public float scale;
+
+    private FishSchool school;
+    private FishMesh mesh;
+    private final CountingTarget target = new CountingTarget();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        school = new FishSchool(count);
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * 1080, random.nextFloat() * 1920, random.nextFloat() * 360);
+        }
+        school.evaluate();
+        mesh = new FishMesh(target);
+        mesh.setScale(scale);
+    }
+
+    @Benchmark
+    public int flattenFull() {
+        return flatten(FishLod.FULL);
+    }
+
+    @Benchmark
+    public int flattenReduced() {
+        return flatten(FishLod.REDUCED);
+    }
+
+    private int flatten(int tier) {
+        float[] skeletons = school.getSkeletons();
+        for (int i = 0; i < count; i++) {
+            FishGeometry.emit(skeletons, i * FishSkeleton.SIZE, mesh, tier);
+        }
+        mesh.flush();
+        return target.triangles + (int) target.checksum;
+    }
+
+    /**
+     * 只数三角形，顺便读一个顶点防止JIT把拍平整个优化掉
+     */
+    static final class CountingTarget implements FishMesh.Target {
+        int triangles;
+        float checksum;
+
+        @Override
+        public void drawTriangles(float[] vertices, int[] colors, int vertexCount, short[] indices, int indexCount) {
+            triangles += indexCount / 3;
+            checksum += vertices[vertexCount * 2 - 1];
+        }
+    }
+}
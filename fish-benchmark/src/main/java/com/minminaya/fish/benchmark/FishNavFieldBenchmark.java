@@ -0,0 +1,98 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishNavField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导航场的开销：点一下算一遍整个画面、主鱼求路线、每条鱼查方向、加删一个障碍物
+ * <p>
+ * 1080x1920的画面，格子24像素，障碍物随机摆，每次点的位置都换格子，是最坏的情况
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishNavFieldBenchmark {
+
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 1920;
+    private static final int TAPS = 64;
+
+    @Param({"0", "8", "32"})
+    public int obstacles;
+
+    private FishNavField field;
+    private final float[] taps = new float[TAPS * 2];
+    private final float[] waypoints = new float[FishNavField.MAX_WAYPOINTS * 2];
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        field = new FishNavField(WIDTH, HEIGHT, FishNavField.DEFAULT_CELL_SIZE, 60);
+        for (int i = 0; i < obstacles; i++) {
+            float x = random.nextFloat() * WIDTH;
+            float y = random.nextFloat() * HEIGHT;
+            field.addObstacle(x, y, x + 40 + random.nextFloat() * 200, y + 40 + random.nextFloat() * 60);
+        }
+        for (int i = 0; i < taps.length; i++) {
+            taps[i] = random.nextFloat() * (i % 2 == 0 ? WIDTH : HEIGHT);
+        }
+    }
+
+    private int nextTap() {
+        cursor = (cursor + 2) & (taps.length - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public boolean setTarget() {
+        int t = nextTap();
+        return field.setTarget(taps[t], taps[t + 1]);
+    }
+
+    @Benchmark
+    public int route() {
+        int t = nextTap();
+        int s = (t + 2) & (taps.length - 1);
+        return field.route(taps[s], taps[s + 1], taps[t], taps[t + 1], waypoints);
+    }
+
+    /**
+     * 场已经算好时1000条鱼每步查方向
+     */
+    @Benchmark
+    public float flow1000() {
+        float sum = 0;
+        for (int i = 0; i < 1000; i++) {
+            int t = (i * 2) & (taps.length - 1);
+            int cell = field.cellAt(taps[t] + i, taps[t + 1]);
+            sum += field.getFlowX(cell) + field.getFlowY(cell);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int addRemoveObstacle() {
+        int t = nextTap();
+        int id = field.addObstacle(taps[t], taps[t + 1], taps[t] + 120, taps[t + 1] + 80);
+        field.removeObstacle(id);
+        return id;
+    }
+}
@@ -0,0 +1,55 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishSchool;
+import com.minminaya.fish.core.FishSkeleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鱼群一帧的开销：所有鱼推进相位并算出骨架
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishSchoolBenchmark {
+
+    private static final float FRAME_ENGINE_DELTA = FishSkeleton.ENGINE_SPEED * 1000 / 60f;
+
+    @Param({"10", "1000", "10000"})
+    public int count;
+
+    private FishSchool school;
+
+    @Setup
+    public void setUp() {
+        //固定种子，每次跑的鱼群分布都一样
+        Random random = new Random(42);
+        school = new FishSchool(count);
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * 1080, random.nextFloat() * 1920, random.nextFloat() * 360);
+        }
+    }
+
+    @Benchmark
+    public float[] frame() {
+        school.advance(FRAME_ENGINE_DELTA);
+        school.evaluate();
+        return school.getSkeletons();
+    }
+}
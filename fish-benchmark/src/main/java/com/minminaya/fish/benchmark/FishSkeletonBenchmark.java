@@ -0,0 +1,140 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishLod;
+import com.minminaya.fish.core.FishRenderer;
+import com.minminaya.fish.core.FishSkeleton;
+import com.minminaya.fish.core.FishTrig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一条鱼一帧的开销：算骨架，以及算骨架再把圆和路径交给渲染器
+ * <p>
+ * 相位每次往前走一帧，和FishDrawable每帧的调用方式一样
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishSkeletonBenchmark {
+
+    /**
+     * 60帧每秒时一帧的引擎增量
+     */
+    private static final float FRAME_ENGINE_DELTA = FishSkeleton.ENGINE_SPEED * 1000 / 60f;
+
+    private final float[] skeleton = new float[FishSkeleton.SIZE];
+    private final CountingRenderer renderer = new CountingRenderer();
+    private final FishTrig exactTrig = new FishTrig(1 << 16);
+    private float phase;
+    private float mainAngle = 90;
+
+    private void nextFrame() {
+        phase = (phase + FRAME_ENGINE_DELTA) % FishSkeleton.PHASE_CYCLE;
+        mainAngle = (mainAngle + 0.5f) % 360;
+    }
+
+    @Benchmark
+    public float[] evaluate() {
+        nextFrame();
+        FishSkeleton.evaluate(skeleton, 0, 125, 125, mainAngle, phase, 0.5f);
+        return skeleton;
+    }
+
+    /**
+     * 高精度三角函数表，和默认精度对比查表的代价
+     */
+    @Benchmark
+    public float[] evaluateFineTable() {
+        nextFrame();
+        FishSkeleton.evaluate(skeleton, 0, 125, 125, mainAngle, phase, 0.5f, exactTrig);
+        return skeleton;
+    }
+
+    @Benchmark
+    public void evaluateAndEmit(Blackhole blackhole) {
+        nextFrame();
+        FishSkeleton.evaluate(skeleton, 0, 125, 125, mainAngle, phase, 0.5f);
+        FishGeometry.emit(skeleton, 0, renderer);
+        blackhole.consume(renderer.checksum);
+    }
+
+    /**
+     * 降档后输出几何的代价，画布上的开销按调用次数大致是11比4比1
+     */
+    @Benchmark
+    public void evaluateAndEmitReduced(Blackhole blackhole) {
+        nextFrame();
+        FishSkeleton.evaluate(skeleton, 0, 125, 125, mainAngle, phase, 0.5f);
+        FishGeometry.emit(skeleton, 0, renderer, FishLod.REDUCED);
+        blackhole.consume(renderer.checksum);
+    }
+
+    @Benchmark
+    public void evaluateAndEmitMinimal(Blackhole blackhole) {
+        nextFrame();
+        FishSkeleton.evaluate(skeleton, 0, 125, 125, mainAngle, phase, 0.5f);
+        FishGeometry.emit(skeleton, 0, renderer, FishLod.MINIMAL);
+        blackhole.consume(renderer.checksum);
+    }
+
+    @Benchmark
+    public void computeBounds(Blackhole blackhole) {
+        nextFrame();
+        FishSkeleton.evaluate(skeleton, 0, 125, 125, mainAngle, phase, 0.5f);
+        FishSkeleton.computeBounds(skeleton, 0, renderer.bounds);
+        blackhole.consume(renderer.bounds);
+    }
+
+    /**
+     * 什么都不画，只把收到的坐标累加起来，防止JIT把几何输出整个优化掉
+     */
+    static final class CountingRenderer implements FishRenderer {
+        final float[] bounds = new float[4];
+        float checksum;
+
+        @Override
+        public void setPart(int part) {
+            checksum += part;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius) {
+            checksum += cx + cy + radius;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            checksum += x + y;
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            checksum += x + y;
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            checksum += controlX + controlY + x + y;
+        }
+
+        @Override
+        public void fillPath() {
+            checksum += 1;
+        }
+    }
+}
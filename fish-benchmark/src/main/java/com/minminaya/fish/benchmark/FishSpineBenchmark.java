@@ -0,0 +1,70 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishSkeleton;
+import com.minminaya.fish.core.FishSpine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据驱动的鱼身按节数算骨架和输出几何的开销，和{@link FishSkeletonBenchmark}里写死的骨架对比
+ * <p>
+ * 0节表示{@link FishSpine#classic()}，其余是对应节数的鳗鱼
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishSpineBenchmark {
+
+    private static final float FRAME_ENGINE_DELTA = FishSkeleton.ENGINE_SPEED * 1000 / 60f;
+
+    @Param({"0", "2", "8", "32"})
+    public int segments;
+
+    private FishSpine spine;
+    private float[] skeleton;
+    private final FishSkeletonBenchmark.CountingRenderer renderer = new FishSkeletonBenchmark.CountingRenderer();
+    private float phase;
+    private float mainAngle = 90;
+
+    @Setup
+    public void setUp() {
+        spine = segments == 0 ? FishSpine.classic() : FishSpine.eel(segments, 300);
+        skeleton = new float[spine.getSize()];
+    }
+
+    private void nextFrame() {
+        phase = (phase + FRAME_ENGINE_DELTA) % FishSkeleton.PHASE_CYCLE;
+        mainAngle = (mainAngle + 0.5f) % 360;
+    }
+
+    @Benchmark
+    public float[] evaluate() {
+        nextFrame();
+        spine.evaluate(skeleton, 0, 125, 125, mainAngle, phase);
+        return skeleton;
+    }
+
+    @Benchmark
+    public void evaluateAndEmit(Blackhole blackhole) {
+        nextFrame();
+        spine.evaluate(skeleton, 0, 125, 125, mainAngle, phase);
+        spine.emit(skeleton, 0, renderer);
+        blackhole.consume(renderer.checksum);
+    }
+}
@@ -0,0 +1,64 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishSteering;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 点一下屏幕时的开销：算转向角度，以及算出整条游动路径
+ * <p>
+ * 触摸点事先随机生成好，轮流取，避免JIT把常量输入直接算掉
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishSteeringBenchmark {
+
+    private static final int TOUCH_COUNT = 1024;
+
+    private final float[] touches = new float[TOUCH_COUNT * 2];
+    private final float[] trail = new float[FishSteering.TRAIL_SIZE];
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < touches.length; i += 2) {
+            touches[i] = random.nextFloat() * 1080;
+            touches[i + 1] = random.nextFloat() * 1920;
+        }
+    }
+
+    private int nextTouch() {
+        cursor = (cursor + 2) & (touches.length - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public float scrollAngle() {
+        int i = nextTouch();
+        return FishSteering.caculateScrollAngle(540, 960, 540, 912, touches[i], touches[i + 1]);
+    }
+
+    @Benchmark
+    public float[] makeTrail() {
+        int i = nextTouch();
+        FishSteering.makeTrail(trail, 415, 835, 125, 125, 125, 77, 30, touches[i], touches[i + 1]);
+        return trail;
+    }
+}
@@ -0,0 +1,134 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishNavField;
+import com.minminaya.fish.core.FishSteering;
+import com.minminaya.fish.core.FishTouchGenerator;
+import com.minminaya.fish.core.FishTouchQueue;
+import com.minminaya.fish.core.FishTouchTrace;
+import com.minminaya.fish.core.FishTrail;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按生成的触摸重放，一次是一帧：把到这一帧为止的触摸放进队列，取出来用最后一个算新路径，再沿路径取一次位置
+ * <p>
+ * 和FishSurfaceView渲染线程每帧开头做的一样，只是没有画。tapBurst是每秒二十次点击，
+ * dragBurst是一帧一个移动事件的拖动，重放到头从头再来；另外测一下整串触摸的存取
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FishTouchReplayBenchmark {
+
+    private static final long FRAME_NANOS = 16666667;
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 1920;
+
+    @Param({"tapBurst", "dragBurst"})
+    public String load;
+
+    @Param({"0", "8"})
+    public int obstacles;
+
+    private FishTouchTrace trace;
+    private byte[] encoded;
+    private final FishTouchQueue touches = new FishTouchQueue();
+    private final float[] touchBuffer = new float[FishTouchQueue.DEFAULT_CAPACITY * FishTouchQueue.ENTRY_SIZE];
+    private FishNavField field;
+    private final float[] waypoints = new float[FishNavField.MAX_WAYPOINTS * 2];
+    private final float[] route = new float[FishSteering.routeSize(FishNavField.MAX_WAYPOINTS + 1)];
+    private final FishTrail trail = new FishTrail();
+    private final float[] sample = new float[FishTrail.SAMPLE_SIZE];
+    private float fishX = 415;
+    private float fishY = 835;
+    private int index;
+    private long elapsed;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = new FishTouchTrace();
+        FishTouchGenerator generator = new FishTouchGenerator(42, WIDTH, HEIGHT);
+        if ("tapBurst".equals(load)) {
+            generator.taps(trace, 5000, 50000000);
+        } else {
+            generator.drags(trace, 100, 50, FRAME_NANOS, 15);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.write(out);
+        encoded = out.toByteArray();
+
+        if (obstacles > 0) {
+            Random random = new Random(42);
+            field = new FishNavField(WIDTH, HEIGHT, FishNavField.DEFAULT_CELL_SIZE, 60);
+            for (int i = 0; i < obstacles; i++) {
+                float x = random.nextFloat() * WIDTH;
+                float y = random.nextFloat() * HEIGHT;
+                field.addObstacle(x, y, x + 200, y + 60);
+            }
+        }
+    }
+
+    @Benchmark
+    public void replayFrame(Blackhole blackhole) {
+        elapsed += FRAME_NANOS;
+        while (index < trace.size() && trace.getOffsetNanos(index) <= elapsed) {
+            int action = trace.getAction(index);
+            if (action != FishTouchTrace.ACTION_UP) {
+                touches.offer(action, trace.getX(index), trace.getY(index));
+            }
+            index++;
+        }
+        if (index == trace.size()) {
+            index = 0;
+            elapsed = 0;
+        }
+
+        int count = touches.drain(touchBuffer);
+        if (count > 0) {
+            int last = (count - 1) * FishTouchQueue.ENTRY_SIZE;
+            float touchX = touchBuffer[last + FishTouchQueue.ENTRY_X];
+            float touchY = touchBuffer[last + FishTouchQueue.ENTRY_Y];
+            int points = field == null ? 0 : field.route(fishX + 125, fishY + 77, touchX, touchY, waypoints);
+            int segments = FishSteering.makeRoute(route, fishX, fishY, 125, 125, 125, 77, 30,
+                    touchX, touchY, waypoints, points);
+            trail.build(route, segments);
+        }
+        trail.sample(0.5f, sample);
+        fishX = sample[FishTrail.SAMPLE_X];
+        fishY = sample[FishTrail.SAMPLE_Y];
+        blackhole.consume(count);
+        blackhole.consume(fishX);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length);
+        trace.write(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public FishTouchTrace decode() throws IOException {
+        return FishTouchTrace.read(new ByteArrayInputStream(encoded));
+    }
+}
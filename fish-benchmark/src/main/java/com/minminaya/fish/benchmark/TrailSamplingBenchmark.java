@@ -0,0 +1,58 @@
+package com.minminaya.fish.benchmark;
+
+import com.minminaya.fish.core.FishSteering;
+import com.minminaya.fish.core.FishTrail;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 游动路径的开销：点一下屏幕时建一次弧长表，游动时每帧查一次位置和切线角度
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrailSamplingBenchmark {
+
+    /**
+     * 2秒的路径在60帧每秒下走完要120帧
+     */
+    private static final int FRAMES = 120;
+
+    private final float[] trail = new float[FishSteering.TRAIL_SIZE];
+    private final FishTrail table = new FishTrail();
+    private final float[] out = new float[FishTrail.SAMPLE_SIZE];
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        FishSteering.makeTrail(trail, 415, 835, 125, 125, 125, 77, 30, 900, 300);
+        table.build(trail);
+    }
+
+    @Benchmark
+    public FishTrail build() {
+        table.build(trail);
+        return table;
+    }
+
+    @Benchmark
+    public float[] sample() {
+        frame = (frame + 1) % (FRAMES + 1);
+        table.sample(frame / (float) FRAMES, out);
+        return out;
+    }
+}
@@ -0,0 +1,257 @@
+package com.minminaya.fish.core;
+
+import java.util.Arrays;
+
+/**
+ * 先把圆和路径记下来，再按画笔分组重放
+ * <p>
+ * 命令按(颜色, 部分)分桶存在float数组里，重放时同一个桶的命令挨着画，
+ * 一帧里换画笔的次数只和颜色数乘部分数有关，和鱼的条数、每条鱼有几段无关。
+ * 同一种颜色的半透明图形按source-over叠起来结果和先后顺序无关，所以同色的鱼重排以后画出来不变；
+ * 不同颜色的鱼互相重叠的地方按颜色的顺序叠。
+ * 数组只在装不下时扩容，clear以后接着用
+ */
+public final class FishCommandBuffer implements FishRenderer {
+
+    private static final int OP_MOVE = 0;
+    private static final int OP_LINE = 1;
+    private static final int OP_QUAD = 2;
+    private static final int OP_FILL = 3;
+
+    /**
+     * 每个桶一开始能放的float个数，够一条鱼的全部细节
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final int variants;
+    /**
+     * 圆单独一条流，每个圆3个float，不用操作码，重放时没有分支
+     */
+    private final float[][] circles;
+    private final int[] circleSizes;
+    /**
+     * 路径命令，操作码后面跟坐标
+     */
+    private final float[][] paths;
+    private final int[] pathSizes;
+
+    private int variant;
+    private int part = PART_OTHER;
+    /**
+     * 当前桶的数组和长度放在字段里，记命令时不用每次按桶下标去取，换桶时写回
+     */
+    private int bucket;
+    private float[] circle;
+    private int circleSize;
+    private float[] path;
+    private int pathSize;
+
+    public FishCommandBuffer() {
+        this(1);
+    }
+
+    /**
+     * @param variants 有几种颜色
+     */
+    public FishCommandBuffer(int variants) {
+        if (variants <= 0) {
+            throw new IllegalArgumentException("need at least one variant");
+        }
+        this.variants = variants;
+        circles = new float[variants * PART_COUNT][DEFAULT_CAPACITY];
+        circleSizes = new int[variants * PART_COUNT];
+        paths = new float[variants * PART_COUNT][DEFAULT_CAPACITY];
+        pathSizes = new int[variants * PART_COUNT];
+        select(0);
+    }
+
+    public int getVariantCount() {
+        return variants;
+    }
+
+    /**
+     * 接下来记的鱼用第几种颜色，部分不变
+     */
+    public void setVariant(int variant) {
+        if (variant < 0 || variant >= variants) {
+            throw new IllegalArgumentException("variant " + variant + ", count " + variants);
+        }
+        this.variant = variant;
+        select(variant * PART_COUNT + part);
+    }
+
+    /**
+     * 清掉记下的命令，回到第0种颜色
+     */
+    public void clear() {
+        Arrays.fill(circleSizes, 0);
+        Arrays.fill(pathSizes, 0);
+        variant = 0;
+        part = PART_OTHER;
+        //长度已经清零，不用写回
+        circle = null;
+        select(0);
+    }
+
+    /**
+     * @return 这种颜色下什么都没记
+     */
+    public boolean isEmpty(int variant) {
+        store();
+        for (int i = variant * PART_COUNT; i < (variant + 1) * PART_COUNT; i++) {
+            if (circleSizes[i] > 0 || pathSizes[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按部分的顺序重放一种颜色下记的命令，每个部分只调一次setPart，同一部分里先画圆再画路径
+     *
+     * @return 调了几次setPart
+     */
+    public int replay(int variant, FishRenderer target) {
+        store();
+        int parts = 0;
+        for (int part = 0; part < PART_COUNT; part++) {
+            int b = variant * PART_COUNT + part;
+            int circleSize = circleSizes[b];
+            int pathSize = pathSizes[b];
+            if (circleSize == 0 && pathSize == 0) {
+                continue;
+            }
+            target.setPart(part);
+            parts++;
+            float[] c = circles[b];
+            for (int i = 0; i < circleSize; i += 3) {
+                target.drawCircle(c[i], c[i + 1], c[i + 2]);
+            }
+            c = paths[b];
+            int i = 0;
+            while (i < pathSize) {
+                switch ((int) c[i]) {
+                    case OP_MOVE:
+                        target.moveTo(c[i + 1], c[i + 2]);
+                        i += 3;
+                        break;
+                    case OP_LINE:
+                        target.lineTo(c[i + 1], c[i + 2]);
+                        i += 3;
+                        break;
+                    case OP_QUAD:
+                        target.quadTo(c[i + 1], c[i + 2], c[i + 3], c[i + 4]);
+                        i += 5;
+                        break;
+                    default:
+                        target.fillPath();
+                        i++;
+                        break;
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * 按颜色的顺序重放全部命令，颜色之间目标自己分不出来，只有一种颜色时用
+     *
+     * @return 调了几次setPart
+     */
+    public int replay(FishRenderer target) {
+        int parts = 0;
+        for (int v = 0; v < variants; v++) {
+            parts += replay(v, target);
+        }
+        return parts;
+    }
+
+    /**
+     * 路径从moveTo到fillPath之间不能换部分，{@link FishGeometry}输出时都满足
+     */
+    @Override
+    public void setPart(int part) {
+        this.part = part;
+        select(variant * PART_COUNT + part);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius) {
+        int i = circleSize;
+        if (i + 3 > circle.length) {
+            circle = Arrays.copyOf(circle, circle.length * 2);
+            circles[bucket] = circle;
+        }
+        circle[i] = cx;
+        circle[i + 1] = cy;
+        circle[i + 2] = radius;
+        circleSize = i + 3;
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        point(OP_MOVE, x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        point(OP_LINE, x, y);
+    }
+
+    @Override
+    public void quadTo(float controlX, float controlY, float x, float y) {
+        float[] c = ensurePath(5);
+        int i = pathSize;
+        c[i] = OP_QUAD;
+        c[i + 1] = controlX;
+        c[i + 2] = controlY;
+        c[i + 3] = x;
+        c[i + 4] = y;
+        pathSize = i + 5;
+    }
+
+    @Override
+    public void fillPath() {
+        float[] c = ensurePath(1);
+        c[pathSize++] = OP_FILL;
+    }
+
+    private void point(int op, float x, float y) {
+        float[] c = ensurePath(3);
+        int i = pathSize;
+        c[i] = op;
+        c[i + 1] = x;
+        c[i + 2] = y;
+        pathSize = i + 3;
+    }
+
+    /**
+     * @return 当前桶的路径数组，保证还能放下extra个float
+     */
+    private float[] ensurePath(int extra) {
+        if (pathSize + extra > path.length) {
+            path = Arrays.copyOf(path, path.length * 2);
+            paths[bucket] = path;
+        }
+        return path;
+    }
+
+    /**
+     * 写回当前桶的长度，换到另一个桶
+     */
+    private void select(int bucket) {
+        store();
+        this.bucket = bucket;
+        circle = circles[bucket];
+        circleSize = circleSizes[bucket];
+        path = paths[bucket];
+        pathSize = pathSizes[bucket];
+    }
+
+    private void store() {
+        if (circle != null) {
+            circleSizes[bucket] = circleSize;
+            pathSizes[bucket] = pathSize;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.minminaya.fish.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 鱼群的自主游动，经典的boids：分离、对齐、聚拢，再加上往点击位置游
+ * <p>
+ * 按固定步长推进，每帧经过的时间先攒着，够一步走一步，渲染时在上一步和这一步之间插值，帧率和模拟频率互不影响。
+ * 每一步先把所有鱼的位置放进网格索引，再把鱼按下标分段交给fork/join并行算新速度，
+ * 每条鱼只读上一步的状态、只写自己的格子，结果和单线程算的完全一样
+ */
+public final class FishFlock {
+
+    /**
+     * 默认30步每秒，渲染时插值
+     */
+    public static final float DEFAULT_STEP_MILLIS = 1000 / 30f;
+    /**
+     * 一帧最多补几步，卡顿以后不会越补越慢
+     */
+    private static final int MAX_STEPS_PER_ADVANCE = 4;
+    /**
+     * 少于这么多条鱼就不再拆分，直接在当前线程算
+     */
+    private static final int PARALLEL_THRESHOLD = 512;
+    /**
+     * 每条鱼最多参考半径内最近的几个邻居，查询结果里还有它自己，多留一格
+     */
+    private static final int MAX_NEIGHBOURS = 32;
+    private static final int NEAREST = MAX_NEIGHBOURS + 1;
+    /**
+     * 速度往想要的方向靠拢的快慢，毫秒
+     */
+    private static final float RESPONSE_MILLIS = 300;
+
+    //行为参数，速度单位是像素每毫秒
+    private float neighbourRadius = 150;
+    private float separationRadius = 60;
+    private float separationWeight = 1.5f;
+    private float alignmentWeight = 1f;
+    private float cohesionWeight = 0.6f;
+    private float minSpeed = 0.03f;
+    private float maxSpeed = 0.12f;
+    private float maxForce = 0.0004f;
+    /**
+     * 朝目标转向时每毫秒最多转几度
+     */
+    private float maxTurnRate = 0.2f;
+
+    private float stepMillis;
+    private ForkJoinPool pool;
+    private final FishGrid grid;
+    /**
+     * 单线程时查邻居用的，并行时每一段自己带一份
+     */
+    private final int[] neighbours = new int[NEAREST];
+    private final float[] distances = new float[NEAREST];
+    /**
+     * 并行时每一段一个任务，连同查邻居的数组一起复用，鱼的数量跨过一段的边界时才重建
+     */
+    private final StepTask stepTask = new StepTask();
+    private RangeTask[] steerTasks = new RangeTask[0];
+    private RangeTask[] integrateTasks = new RangeTask[0];
+
+    private int count;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] vx = new float[0];
+    private float[] vy = new float[0];
+    /**
+     * 上一步的位置和朝向，插值用
+     */
+    private float[] prevX = new float[0];
+    private float[] prevY = new float[0];
+    private float[] prevAngle = new float[0];
+    private float[] angle = new float[0];
+    /**
+     * 这一步算出来的新速度，算完再换过去，保证每条鱼读到的都是上一步的状态
+     */
+    private float[] nextVx = new float[0];
+    private float[] nextVy = new float[0];
+
+    private float accumulator;
+
+    private boolean hasTarget;
+    private float targetX;
+    private float targetY;
+    private float targetRemaining;
+    /**
+     * 绕障碍物的导航场，没有障碍物时为null，直接往目标转
+     */
+    private FishNavField navField;
+
+    /**
+     * 活动范围，超出后慢慢掉头回来，right小于left表示不限制
+     */
+    private float boundLeft;
+    private float boundTop;
+    private float boundRight = -1;
+    private float boundBottom = -1;
+
+    /**
+     * @param pool 并行用的线程池，null表示单线程
+     */
+    public FishFlock(ForkJoinPool pool) {
+        this(pool, DEFAULT_STEP_MILLIS);
+    }
+
+    public FishFlock(ForkJoinPool pool, float stepMillis) {
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("step must be positive");
+        }
+        this.pool = pool;
+        this.stepMillis = stepMillis;
+        this.grid = new FishGrid(neighbourRadius, 4096);
+    }
+
+    /**
+     * 换线程池，null表示单线程；旧的线程池由调用方自己关
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 换模拟的步长，攒着的时间按比例换算，插值的位置不跳
+     */
+    public void setStepMillis(float stepMillis) {
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("step must be positive");
+        }
+        accumulator = accumulator / this.stepMillis * stepMillis;
+        this.stepMillis = stepMillis;
+    }
+
+    public float getStepMillis() {
+        return stepMillis;
+    }
+
+    /**
+     * 设置分离、对齐、聚拢的权重
+     */
+    public void setWeights(float separation, float alignment, float cohesion) {
+        separationWeight = separation;
+        alignmentWeight = alignment;
+        cohesionWeight = cohesion;
+    }
+
+    /**
+     * @param minSpeed 最慢，像素每毫秒
+     * @param maxSpeed 最快，像素每毫秒
+     */
+    public void setSpeedRange(float minSpeed, float maxSpeed) {
+        if (minSpeed < 0 || maxSpeed < minSpeed) {
+            throw new IllegalArgumentException("invalid speed range");
+        }
+        this.minSpeed = minSpeed;
+        this.maxSpeed = maxSpeed;
+    }
+
+    public void setBounds(float left, float top, float right, float bottom) {
+        boundLeft = left;
+        boundTop = top;
+        boundRight = right;
+        boundBottom = bottom;
+    }
+
+    /**
+     * 所有鱼往(x, y)游，持续一段时间
+     */
+    public void setTarget(float x, float y, float durationMillis) {
+        hasTarget = true;
+        targetX = x;
+        targetY = y;
+        targetRemaining = durationMillis;
+    }
+
+    public void clearTarget() {
+        hasTarget = false;
+    }
+
+    /**
+     * 有目标时按导航场里所在格子的方向转，不再直接朝目标转。
+     * 导航场的目标由调用方在{@link #setTarget}时一起设，所有鱼共用一次计算，步进时只读
+     *
+     * @param field 为null时去掉
+     */
+    public void setNavigationField(FishNavField field) {
+        navField = field;
+    }
+
+    public FishNavField getNavigationField() {
+        return navField;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 和鱼群同步数量，新加的鱼从鱼群里的位置和朝向开始，按朝向给一个初速度
+     */
+    public void sync(FishSchool school) {
+        int size = school.size();
+        ensureCapacity(size);
+        for (int i = count; i < size; i++) {
+            x[i] = prevX[i] = school.getX(i);
+            y[i] = prevY[i] = school.getY(i);
+            angle[i] = prevAngle[i] = school.getMainAngle(i);
+            float speed = (minSpeed + maxSpeed) / 2;
+            vx[i] = FishTrig.DEFAULT.cos(angle[i]) * speed;
+            //Android的y轴朝下
+            vy[i] = -FishTrig.DEFAULT.sin(angle[i]) * speed;
+        }
+        count = size;
+    }
+
+    /**
+     * 和FishSchool一样，最后一条鱼挪到被删的位置上
+     */
+    public void remove(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("fish " + i + ", size " + count);
+        }
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        prevX[i] = prevX[last];
+        prevY[i] = prevY[last];
+        angle[i] = angle[last];
+        prevAngle[i] = prevAngle[last];
+    }
+
+    public void clear() {
+        count = 0;
+        accumulator = 0;
+    }
+
+    /**
+     * 攒着经过的时间，够一步走一步
+     *
+     * @return 这次走了几步
+     */
+    public int advance(float deltaMillis) {
+        accumulator += deltaMillis;
+        int steps = 0;
+        while (accumulator >= stepMillis && steps < MAX_STEPS_PER_ADVANCE) {
+            step();
+            accumulator -= stepMillis;
+            steps++;
+        }
+        //补不完的直接丢掉
+        if (steps == MAX_STEPS_PER_ADVANCE) {
+            accumulator = Math.min(accumulator, stepMillis);
+        }
+        return steps;
+    }
+
+    /**
+     * 把上一步和这一步之间插值出来的位置和朝向写回鱼群
+     */
+    public void apply(FishSchool school) {
+        float t = Math.min(1, accumulator / stepMillis);
+        int size = Math.min(count, school.size());
+        for (int i = 0; i < size; i++) {
+            school.setPosition(i, prevX[i] + (x[i] - prevX[i]) * t, prevY[i] + (y[i] - prevY[i]) * t);
+            float delta = angle[i] - prevAngle[i];
+            if (delta > 180) {
+                delta -= 360;
+            } else if (delta < -180) {
+                delta += 360;
+            }
+            school.setMainAngle(i, prevAngle[i] + delta * t);
+        }
+    }
+
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getY(int i) {
+        return y[i];
+    }
+
+    public float getVelocityX(int i) {
+        return vx[i];
+    }
+
+    public float getVelocityY(int i) {
+        return vy[i];
+    }
+
+    /**
+     * 走一个固定步长
+     */
+    public void step() {
+        System.arraycopy(x, 0, prevX, 0, count);
+        System.arraycopy(y, 0, prevY, 0, count);
+        System.arraycopy(angle, 0, prevAngle, 0, count);
+        grid.update(x, y, count);
+
+        if (pool == null || count < PARALLEL_THRESHOLD) {
+            steer(0, count, neighbours, distances);
+            integrate(0, count);
+        } else {
+            prepareTasks();
+            stepTask.reinitialize();
+            pool.invoke(stepTask);
+        }
+
+        if (hasTarget) {
+            targetRemaining -= stepMillis;
+            if (targetRemaining <= 0) {
+                hasTarget = false;
+            }
+        }
+    }
+
+    /**
+     * 算[from, to)这些鱼的新速度，只读上一步的状态
+     */
+    private void steer(int from, int to, int[] neighbours, float[] distances) {
+        float dt = stepMillis;
+        float separationSquared = separationRadius * separationRadius;
+        for (int i = from; i < to; i++) {
+            float px = x[i];
+            float py = y[i];
+            //鱼挤在一起时只看最近的几条，和扫描的顺序无关
+            int found = grid.queryNearest(px, py, neighbourRadius, NEAREST, neighbours, distances);
+
+            float sepX = 0;
+            float sepY = 0;
+            float sumVx = 0;
+            float sumVy = 0;
+            float sumX = 0;
+            float sumY = 0;
+            int others = 0;
+            for (int n = 0; n < found; n++) {
+                int j = neighbours[n];
+                if (j == i) {
+                    continue;
+                }
+                float dx = px - x[j];
+                float dy = py - y[j];
+                float d = dx * dx + dy * dy;
+                if (d < separationSquared && d > 0) {
+                    //越近推得越开
+                    sepX += dx / d;
+                    sepY += dy / d;
+                }
+                sumVx += vx[j];
+                sumVy += vy[j];
+                sumX += x[j];
+                sumY += y[j];
+                others++;
+            }
+
+            float ax = 0;
+            float ay = 0;
+            if (others > 0) {
+                ax += separationWeight * sepX * maxSpeed * separationRadius;
+                ay += separationWeight * sepY * maxSpeed * separationRadius;
+                ax += alignmentWeight * (sumVx / others - vx[i]);
+                ay += alignmentWeight * (sumVy / others - vy[i]);
+                ax += cohesionWeight * (sumX / others - px) / neighbourRadius * maxSpeed;
+                ay += cohesionWeight * (sumY / others - py) / neighbourRadius * maxSpeed;
+            }
+            //超出范围就往回拉
+            if (boundRight > boundLeft) {
+                if (px < boundLeft) ax += maxSpeed;
+                if (px > boundRight) ax -= maxSpeed;
+                if (py < boundTop) ay += maxSpeed;
+                if (py > boundBottom) ay -= maxSpeed;
+            }
+            //想要的速度变化在RESPONSE_MILLIS内完成，转成加速度并限制大小
+            ax /= RESPONSE_MILLIS;
+            ay /= RESPONSE_MILLIS;
+            float force = (float) Math.sqrt(ax * ax + ay * ay);
+            if (force > maxForce) {
+                ax = ax / force * maxForce;
+                ay = ay / force * maxForce;
+            }
+            float nvx = vx[i] + ax * dt;
+            float nvy = vy[i] + ay * dt;
+
+            if (hasTarget) {
+                //和点击时一样，算鱼头朝向和目标的夹角，按最大转向速度往那边转
+                float aimX = targetX;
+                float aimY = targetY;
+                FishNavField field = navField;
+                if (field != null && field.hasTarget()) {
+                    //有障碍物时朝导航场的方向转，走不到的格子还是直接朝目标
+                    int cell = field.cellAt(px, py);
+                    float fx = field.getFlowX(cell);
+                    float fy = field.getFlowY(cell);
+                    if (fx != 0 || fy != 0) {
+                        aimX = px + fx * field.getCellSize();
+                        aimY = py + fy * field.getCellSize();
+                    }
+                }
+                float turn = FishSteering.caculateScrollAngle(px, py, px + nvx, py + nvy, aimX, aimY);
+                if (!Float.isNaN(turn)) {
+                    float limit = maxTurnRate * dt;
+                    turn = Math.max(-limit, Math.min(limit, turn));
+                    float cos = FishTrig.DEFAULT.cos(turn);
+                    float sin = FishTrig.DEFAULT.sin(turn);
+                    //y轴朝下，逆时针转在屏幕坐标里是(x*cos + y*sin, -x*sin + y*cos)
+                    float rx = nvx * cos + nvy * sin;
+                    float ry = -nvx * sin + nvy * cos;
+                    nvx = rx;
+                    nvy = ry;
+                }
+            }
+
+            float speed = (float) Math.sqrt(nvx * nvx + nvy * nvy);
+            if (speed > maxSpeed) {
+                nvx = nvx / speed * maxSpeed;
+                nvy = nvy / speed * maxSpeed;
+            } else if (speed < minSpeed) {
+                if (speed > 0) {
+                    nvx = nvx / speed * minSpeed;
+                    nvy = nvy / speed * minSpeed;
+                } else {
+                    nvx = vx[i];
+                    nvy = vy[i];
+                }
+            }
+            nextVx[i] = nvx;
+            nextVy[i] = nvy;
+        }
+    }
+
+    /**
+     * 用新速度更新[from, to)这些鱼的位置和朝向
+     */
+    private void integrate(int from, int to) {
+        for (int i = from; i < to; i++) {
+            vx[i] = nextVx[i];
+            vy[i] = nextVy[i];
+            x[i] += vx[i] * stepMillis;
+            y[i] += vy[i] * stepMillis;
+            angle[i] = (float) Math.toDegrees(Math.atan2(-vy[i], vx[i]));
+        }
+    }
+
+    /**
+     * 按鱼的数量切成每段不超过{@link #PARALLEL_THRESHOLD}条，段数没变时只改每段的范围
+     */
+    private void prepareTasks() {
+        int leaves = (count + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+        if (steerTasks.length != leaves) {
+            steerTasks = new RangeTask[leaves];
+            integrateTasks = new RangeTask[leaves];
+            for (int t = 0; t < leaves; t++) {
+                steerTasks[t] = new RangeTask(false);
+                integrateTasks[t] = new RangeTask(true);
+            }
+        }
+        for (int t = 0; t < leaves; t++) {
+            int from = (int) ((long) count * t / leaves);
+            int to = (int) ((long) count * (t + 1) / leaves);
+            steerTasks[t].setRange(from, to);
+            integrateTasks[t].setRange(from, to);
+        }
+    }
+
+    /**
+     * 先并行算完所有鱼的新速度，再并行更新位置，俩个阶段之间要等所有鱼都算完
+     */
+    private class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            reinitializeAll(steerTasks);
+            invokeAll(steerTasks);
+            reinitializeAll(integrateTasks);
+            invokeAll(integrateTasks);
+        }
+    }
+
+    private static void reinitializeAll(RangeTask[] tasks) {
+        for (RangeTask task : tasks) {
+            task.reinitialize();
+        }
+    }
+
+    /**
+     * 一段鱼，查邻居用的数组跟着任务走，每段各用各的
+     */
+    private class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean integrate;
+        private final int[] neighbours;
+        private final float[] distances;
+        private int from;
+        private int to;
+
+        RangeTask(boolean integrate) {
+            this.integrate = integrate;
+            neighbours = integrate ? null : new int[NEAREST];
+            distances = integrate ? null : new float[NEAREST];
+        }
+
+        void setRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (integrate) {
+                integrate(from, to);
+            } else {
+                steer(from, to, neighbours, distances);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        prevX = Arrays.copyOf(prevX, newCapacity);
+        prevY = Arrays.copyOf(prevY, newCapacity);
+        angle = Arrays.copyOf(angle, newCapacity);
+        prevAngle = Arrays.copyOf(prevAngle, newCapacity);
+        nextVx = Arrays.copyOf(nextVx, newCapacity);
+        nextVy = Arrays.copyOf(nextVy, newCapacity);
+    }
+}
@@ -0,0 +1,339 @@
+package com.minminaya.fish.core;
+
+/**
+ * 每帧的耗时、绘制次数、掉帧和内存分配统计
+ * <p>
+ * 最近的若干帧存在一个环形缓冲区里，写的一方只有主线程，每写完一帧才把计数往前推，读的一方不加锁，
+ * 读完以后再看一次计数，被写的一方追上覆盖掉的帧直接丢弃。
+ * 一帧以vsync时间区分，同一个vsync时间内记进来的耗时都算在这一帧里，第一次记下一个vsync时间时上一帧才定下来
+ */
+public final class FishFrameMetrics {
+
+    public interface OnFrameListener {
+        /**
+         * 一帧定下来时回调，在记录的线程上
+         *
+         * @param frameTimeNanos  这一帧的vsync时间
+         * @param simulationNanos 推进动画花的时间
+         * @param drawNanos       绘制花的时间
+         * @param drawCalls       画圆、画路径、开图层和贴图的次数
+         * @param paths           画路径的次数
+         * @param allocatedBytes  这一帧分配的内存，没开统计时为0
+         * @param droppedFrames   这一帧之前掉了几帧
+         */
+        void onFrame(long frameTimeNanos, long simulationNanos, long drawNanos, int drawCalls, int paths,
+                     long allocatedBytes, int droppedFrames);
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+    /**
+     * 60帧每秒的帧间隔
+     */
+    public static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    /**
+     * 直方图每格的宽度，0.25毫秒
+     */
+    public static final long BUCKET_NANOS = 250 * 1000;
+    /**
+     * 直方图的格数，最后一格装所有超过32毫秒的帧
+     */
+    public static final int BUCKET_COUNT = 129;
+
+    private final int mask;
+    private final long[] simulationNanos;
+    private final long[] drawNanos;
+    private final long[] allocatedBytes;
+    private final int[] drawCalls;
+    private final int[] paths;
+    private final int[] droppedFrames;
+    /**
+     * 已经写完的帧数，只增不减，写完一帧的所有数据以后才加一
+     */
+    private volatile long written;
+
+    private long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    private OnFrameListener mListener;
+
+    //正在记的这一帧，0表示还没开始
+    private long currentFrameTime;
+    private long currentSimulation;
+    private long currentDraw;
+    private long currentAllocated;
+    private int currentDrawCalls;
+    private int currentPaths;
+    private int currentDropped;
+
+    public FishFrameMetrics() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 最多保留的帧数，向上取到2的幂
+     */
+    public FishFrameMetrics(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        simulationNanos = new long[size];
+        drawNanos = new long[size];
+        allocatedBytes = new long[size];
+        drawCalls = new int[size];
+        paths = new int[size];
+        droppedFrames = new int[size];
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 掉帧按这个间隔算，120Hz的屏幕要设成对应的值
+     */
+    public void setFrameIntervalNanos(long frameIntervalNanos) {
+        if (frameIntervalNanos <= 0) {
+            throw new IllegalArgumentException("frame interval must be positive");
+        }
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    public void setOnFrameListener(OnFrameListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 开始一帧，并按和上一帧的时间差算出掉了几帧
+     *
+     * @param frameTimeNanos 这一帧的vsync时间
+     * @param deltaNanos     和上一帧的时间差，0表示刚开始走或者暂停后恢复，不算掉帧
+     */
+    public void beginFrame(long frameTimeNanos, long deltaNanos) {
+        ensureFrame(frameTimeNanos);
+        currentDropped = deltaNanos > 0 ? Math.max(0, Math.round(deltaNanos / (float) frameIntervalNanos) - 1) : 0;
+    }
+
+    public void addSimulation(long frameTimeNanos, long nanos) {
+        ensureFrame(frameTimeNanos);
+        currentSimulation += nanos;
+    }
+
+    /**
+     * 绘制在同一帧的动画回调之后，直接记在当前这一帧上
+     */
+    public void addDraw(long nanos, int calls, int pathCount) {
+        currentDraw += nanos;
+        currentDrawCalls += calls;
+        currentPaths += pathCount;
+    }
+
+    public void addAllocations(long bytes) {
+        currentAllocated += bytes;
+    }
+
+    /**
+     * 把正在记的这一帧定下来，之后再记的都算下一帧
+     */
+    public void flush() {
+        if (currentFrameTime == 0) {
+            return;
+        }
+        long index = written;
+        int slot = (int) (index & mask);
+        simulationNanos[slot] = currentSimulation;
+        drawNanos[slot] = currentDraw;
+        allocatedBytes[slot] = currentAllocated;
+        drawCalls[slot] = currentDrawCalls;
+        paths[slot] = currentPaths;
+        droppedFrames[slot] = currentDropped;
+        //volatile写放在最后，读的一方看到新计数时这一格已经写完
+        written = index + 1;
+
+        if (mListener != null) {
+            mListener.onFrame(currentFrameTime, currentSimulation, currentDraw, currentDrawCalls, currentPaths,
+                    currentAllocated, currentDropped);
+        }
+        currentFrameTime = 0;
+        currentSimulation = 0;
+        currentDraw = 0;
+        currentAllocated = 0;
+        currentDrawCalls = 0;
+        currentPaths = 0;
+        currentDropped = 0;
+    }
+
+    /**
+     * 清空所有记录，只能在记录的线程调用
+     */
+    public void reset() {
+        currentFrameTime = 0;
+        currentSimulation = 0;
+        currentDraw = 0;
+        currentAllocated = 0;
+        currentDrawCalls = 0;
+        currentPaths = 0;
+        currentDropped = 0;
+        written = 0;
+    }
+
+    /**
+     * @return 一共定下来了多少帧
+     */
+    public long getFrameCount() {
+        return written;
+    }
+
+    private void ensureFrame(long frameTimeNanos) {
+        if (frameTimeNanos == currentFrameTime) {
+            return;
+        }
+        flush();
+        currentFrameTime = frameTimeNanos;
+    }
+
+    /**
+     * 把最近的帧统计进snapshot，最多容量减一帧，任何线程都可以调用，不创建对象
+     */
+    public void snapshot(Snapshot out) {
+        out.ensureCapacity(mask + 1);
+        long end = written;
+        //写的一方正在写的那一帧会盖掉最老的一格，所以最多只读容量减一帧
+        int n = (int) Math.min(end, mask);
+        long start = end - n;
+        for (long i = start; i < end; i++) {
+            int slot = (int) (i & mask);
+            int k = (int) (i - start);
+            out.simulation[k] = simulationNanos[slot];
+            out.draw[k] = drawNanos[slot];
+            out.allocated[k] = allocatedBytes[slot];
+            out.calls[k] = drawCalls[slot];
+            out.pathCounts[k] = paths[slot];
+            out.dropped[k] = droppedFrames[slot];
+        }
+        //读的过程中又写了几帧的话，被盖掉的那几格可能已经是新帧的一半，不要了
+        long overwritten = written - (mask + 1);
+        int skip = (int) Math.max(0, Math.min(n, overwritten + 1 - start));
+        out.compute(skip, n);
+    }
+
+    /**
+     * 最近若干帧的统计结果，时间都是纳秒
+     */
+    public static final class Snapshot {
+        /**
+         * 参与统计的帧数
+         */
+        public int frames;
+        public int droppedFrames;
+
+        public long simulationP50;
+        public long simulationP99;
+        public long simulationMax;
+        public long drawP50;
+        public long drawP99;
+        public long drawMax;
+        /**
+         * 推进动画加绘制
+         */
+        public long totalP50;
+        public long totalP90;
+        public long totalP99;
+        public long totalMax;
+
+        public float averageDrawCalls;
+        public float averagePaths;
+        public float averageAllocatedBytes;
+
+        /**
+         * 推进动画加绘制的耗时直方图，第i格是[i * BUCKET_NANOS, (i + 1) * BUCKET_NANOS)
+         */
+        public final int[] histogram = new int[BUCKET_COUNT];
+
+        private final int[] simulationHistogram = new int[BUCKET_COUNT];
+        private final int[] drawHistogram = new int[BUCKET_COUNT];
+
+        private long[] simulation = new long[0];
+        private long[] draw = new long[0];
+        private long[] allocated = new long[0];
+        private int[] calls = new int[0];
+        private int[] pathCounts = new int[0];
+        private int[] dropped = new int[0];
+
+        private void ensureCapacity(int capacity) {
+            if (simulation.length >= capacity) {
+                return;
+            }
+            simulation = new long[capacity];
+            draw = new long[capacity];
+            allocated = new long[capacity];
+            calls = new int[capacity];
+            pathCounts = new int[capacity];
+            dropped = new int[capacity];
+        }
+
+        private void compute(int from, int to) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                histogram[i] = 0;
+                simulationHistogram[i] = 0;
+                drawHistogram[i] = 0;
+            }
+            frames = to - from;
+            droppedFrames = 0;
+            simulationMax = 0;
+            drawMax = 0;
+            totalMax = 0;
+            long callSum = 0;
+            long pathSum = 0;
+            long allocatedSum = 0;
+            for (int i = from; i < to; i++) {
+                long total = simulation[i] + draw[i];
+                histogram[bucket(total)]++;
+                simulationHistogram[bucket(simulation[i])]++;
+                drawHistogram[bucket(draw[i])]++;
+                simulationMax = Math.max(simulationMax, simulation[i]);
+                drawMax = Math.max(drawMax, draw[i]);
+                totalMax = Math.max(totalMax, total);
+                droppedFrames += dropped[i];
+                callSum += calls[i];
+                pathSum += pathCounts[i];
+                allocatedSum += allocated[i];
+            }
+            simulationP50 = percentile(simulationHistogram, frames, 0.5f, simulationMax);
+            simulationP99 = percentile(simulationHistogram, frames, 0.99f, simulationMax);
+            drawP50 = percentile(drawHistogram, frames, 0.5f, drawMax);
+            drawP99 = percentile(drawHistogram, frames, 0.99f, drawMax);
+            totalP50 = percentile(histogram, frames, 0.5f, totalMax);
+            totalP90 = percentile(histogram, frames, 0.9f, totalMax);
+            totalP99 = percentile(histogram, frames, 0.99f, totalMax);
+            averageDrawCalls = frames == 0 ? 0 : callSum / (float) frames;
+            averagePaths = frames == 0 ? 0 : pathSum / (float) frames;
+            averageAllocatedBytes = frames == 0 ? 0 : allocatedSum / (float) frames;
+        }
+
+        private static int bucket(long nanos) {
+            return (int) Math.min(BUCKET_COUNT - 1, nanos / BUCKET_NANOS);
+        }
+
+        /**
+         * 取直方图里对应百分位那一格的上界，不超过实际的最大值
+         */
+        private static long percentile(int[] histogram, int frames, float fraction, long max) {
+            if (frames == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(frames * fraction);
+            int seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return Math.min(max, (i + 1) * BUCKET_NANOS);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.minminaya.fish.core;
+
+/**
+ * 空闲时降低帧率：vsync照常回调，没到间隔的帧不推进也不画，经过的时间攒到下一次画的帧一起推进
+ * <p>
+ * 相位按攒下的真实时间推进，不管多少帧画一次动画的速度都不变。
+ * vsync间隔有抖动，离下一次还差不到半帧就算到了，60Hz上设30帧是稳定的隔一帧画一次
+ */
+public final class FishFrameThrottle {
+
+    /**
+     * 空闲时默认的帧率
+     */
+    public static final float DEFAULT_IDLE_FRAME_RATE = 30;
+
+    private long intervalNanos;
+    /**
+     * 跳过的帧攒下的时间
+     */
+    private long pendingNanos;
+
+    public FishFrameThrottle() {
+        this(DEFAULT_IDLE_FRAME_RATE);
+    }
+
+    public FishFrameThrottle(float frameRate) {
+        setFrameRate(frameRate);
+    }
+
+    /**
+     * @param frameRate 每秒最多画几帧
+     */
+    public void setFrameRate(float frameRate) {
+        if (!(frameRate > 0)) {
+            throw new IllegalArgumentException("frame rate must be positive");
+        }
+        intervalNanos = (long) (1000000000L / frameRate);
+    }
+
+    public float getFrameRate() {
+        return 1000000000f / intervalNanos;
+    }
+
+    /**
+     * 每个vsync调一次
+     *
+     * @param deltaNanos 和上一个vsync的间隔，0表示刚开始或者暂停后恢复，这一帧总是画
+     * @return 这一帧要推进的时间，包括之前跳过的帧；-1表示这一帧跳过
+     */
+    public long onFrame(long deltaNanos) {
+        long elapsed = pendingNanos + deltaNanos;
+        if (deltaNanos > 0 && elapsed + deltaNanos / 2 < intervalNanos) {
+            pendingNanos = elapsed;
+            return -1;
+        }
+        pendingNanos = 0;
+        return elapsed;
+    }
+
+    /**
+     * 恢复全帧率时调用
+     *
+     * @return 攒下还没推进的时间，加到下一帧里
+     */
+    public long flush() {
+        long pending = pendingNanos;
+        pendingNanos = 0;
+        return pending;
+    }
+}
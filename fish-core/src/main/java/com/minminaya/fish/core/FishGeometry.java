@@ -0,0 +1,193 @@
+package com.minminaya.fish.core;
+
+/**
+ * 把{@link FishSkeleton}算好的顶点按原来的顺序输出给{@link FishRenderer}
+ * <p>
+ * 先画头，然后是俩个鱼鳍、第二节节肢、尾巴、第三节节肢，最后是最大的身体，顺序决定了半透明叠加的效果。
+ * 降档时按{@link FishLod}的档位少画一些部分，全部细节11次，{@link FishLod#REDUCED}4次，{@link FishLod#MINIMAL}1次
+ */
+public final class FishGeometry {
+
+    /**
+     * 鱼默认的颜色，不含透明度
+     */
+    public static final int FISH_RGB = (244 << 16) | (92 << 8) | 71;
+    /**
+     * 各部分的透明度，按{@link FishRenderer}的PART_*下标取
+     */
+    private static final int[] PART_ALPHA = {160, 100, 220};
+    /**
+     * 重心到鱼头圆心的距离换算到鱼头圆心到鼻尖的距离
+     */
+    private static final float HEAD_TIP_SCALE = FishSkeleton.HEAD_RADIUS / (FishSkeleton.BODY_LENGH / 2);
+
+    private FishGeometry() {
+    }
+
+    /**
+     * @param part {@link FishRenderer}的PART_*
+     * @return 这个部分的透明度
+     */
+    public static int alphaOf(int part) {
+        return PART_ALPHA[part];
+    }
+
+    /**
+     * 输出一条鱼的全部细节
+     *
+     * @param p        骨架缓冲区
+     * @param o        这条鱼在缓冲区里的起始下标
+     * @param renderer 输出目标
+     */
+    public static void emit(float[] p, int o, FishRenderer renderer) {
+        emit(p, o, renderer, FishLod.FULL);
+    }
+
+    /**
+     * 按细节档位输出一条鱼
+     *
+     * @param tier {@link FishLod}的档位
+     */
+    public static void emit(float[] p, int o, FishRenderer renderer, int tier) {
+        switch (tier) {
+            case FishLod.MINIMAL:
+                emitMinimal(p, o, renderer);
+                return;
+            case FishLod.REDUCED:
+                emitReduced(p, o, renderer);
+                return;
+            default:
+                break;
+        }
+        renderer.setPart(FishRenderer.PART_OTHER);
+        //画头
+        renderer.drawCircle(p[o + FishSkeleton.HEAD], p[o + FishSkeleton.HEAD + 1], FishSkeleton.HEAD_RADIUS);
+
+        //右鱼鳍
+        emitFins(p, o + FishSkeleton.FINS_RIGHT_START, renderer);
+        //左鱼鳍
+        emitFins(p, o + FishSkeleton.FINS_LEFT_START, renderer);
+
+        //第二节节肢，画上下俩个圆
+        renderer.drawCircle(p[o + FishSkeleton.BODY_END], p[o + FishSkeleton.BODY_END + 1], FishSkeleton.SEGMENT_TOP_RADIUS);
+        renderer.drawCircle(p[o + FishSkeleton.SEGMENT_BOTTOM], p[o + FishSkeleton.SEGMENT_BOTTOM + 1], FishSkeleton.SEGMENT_BOTTOM_RADIUS);
+        emitTrapezoid(p, o + FishSkeleton.SEGMENT_BOTTOM, renderer);
+
+        //第三节节肢，先画尾巴再画底部圆
+        emitTail(p, o, renderer);
+        renderer.drawCircle(p[o + FishSkeleton.SEGMENT_LONG_BOTTOM], p[o + FishSkeleton.SEGMENT_LONG_BOTTOM + 1], FishSkeleton.SEGMENT_LONG_BOTTOM_RADIUS);
+        emitTrapezoid(p, o + FishSkeleton.SEGMENT_LONG_BOTTOM, renderer);
+
+        emitBody(p, o, renderer);
+    }
+
+    /**
+     * 不画鱼鳍，俩节节肢连成一个多边形，节肢的圆不画，尾巴只留大三角形
+     */
+    private static void emitReduced(float[] p, int o, FishRenderer renderer) {
+        renderer.setPart(FishRenderer.PART_OTHER);
+        renderer.drawCircle(p[o + FishSkeleton.HEAD], p[o + FishSkeleton.HEAD + 1], FishSkeleton.HEAD_RADIUS);
+
+        //沿一边从第二节顶部走到第三节底部，再从另一边走回来
+        renderer.moveTo(p[o + FishSkeleton.SEGMENT_LEFT_TOP], p[o + FishSkeleton.SEGMENT_LEFT_TOP + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_LEFT_BOTTOM], p[o + FishSkeleton.SEGMENT_LEFT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_LONG_LEFT_BOTTOM], p[o + FishSkeleton.SEGMENT_LONG_LEFT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_LONG_RIGHT_BOTTOM], p[o + FishSkeleton.SEGMENT_LONG_RIGHT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_RIGHT_BOTTOM], p[o + FishSkeleton.SEGMENT_RIGHT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_RIGHT_TOP], p[o + FishSkeleton.SEGMENT_RIGHT_TOP + 1]);
+        renderer.fillPath();
+
+        renderer.moveTo(p[o + FishSkeleton.SEGMENT_BOTTOM], p[o + FishSkeleton.SEGMENT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_BIG_RIGHT], p[o + FishSkeleton.TAIL_BIG_RIGHT + 1]);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_BIG_LEFT], p[o + FishSkeleton.TAIL_BIG_LEFT + 1]);
+        renderer.fillPath();
+
+        emitBody(p, o, renderer);
+    }
+
+    /**
+     * 整条鱼一个多边形：从鼻尖沿身体一边到尾巴，再沿另一边回来，曲线都换成直线
+     */
+    private static void emitMinimal(float[] p, int o, FishRenderer renderer) {
+        float headX = p[o + FishSkeleton.HEAD];
+        float headY = p[o + FishSkeleton.HEAD + 1];
+        float tipX = headX + (headX - p[o + FishSkeleton.MIDDLE]) * HEAD_TIP_SCALE;
+        float tipY = headY + (headY - p[o + FishSkeleton.MIDDLE + 1]) * HEAD_TIP_SCALE;
+
+        renderer.setPart(FishRenderer.PART_BODY);
+        renderer.moveTo(tipX, tipY);
+        //节肢梯形的左边和身体的右边在同一侧
+        renderer.lineTo(p[o + FishSkeleton.BODY_RIGHT_TOP], p[o + FishSkeleton.BODY_RIGHT_TOP + 1]);
+        renderer.lineTo(p[o + FishSkeleton.BODY_RIGHT_BOTTOM], p[o + FishSkeleton.BODY_RIGHT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_LEFT_BOTTOM], p[o + FishSkeleton.SEGMENT_LEFT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_LONG_LEFT_BOTTOM], p[o + FishSkeleton.SEGMENT_LONG_LEFT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_BIG_RIGHT], p[o + FishSkeleton.TAIL_BIG_RIGHT + 1]);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_BIG_LEFT], p[o + FishSkeleton.TAIL_BIG_LEFT + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_LONG_RIGHT_BOTTOM], p[o + FishSkeleton.SEGMENT_LONG_RIGHT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.SEGMENT_RIGHT_BOTTOM], p[o + FishSkeleton.SEGMENT_RIGHT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.BODY_LEFT_BOTTOM], p[o + FishSkeleton.BODY_LEFT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.BODY_LEFT_TOP], p[o + FishSkeleton.BODY_LEFT_TOP + 1]);
+        renderer.fillPath();
+    }
+
+    /**
+     * 鱼的最大身子
+     */
+    private static void emitBody(float[] p, int o, FishRenderer renderer) {
+        renderer.setPart(FishRenderer.PART_BODY);
+        renderer.moveTo(p[o + FishSkeleton.BODY_RIGHT_TOP], p[o + FishSkeleton.BODY_RIGHT_TOP + 1]);
+        renderer.quadTo(p[o + FishSkeleton.BODY_CONTROL_RIGHT], p[o + FishSkeleton.BODY_CONTROL_RIGHT + 1],
+                p[o + FishSkeleton.BODY_RIGHT_BOTTOM], p[o + FishSkeleton.BODY_RIGHT_BOTTOM + 1]);
+        renderer.lineTo(p[o + FishSkeleton.BODY_LEFT_BOTTOM], p[o + FishSkeleton.BODY_LEFT_BOTTOM + 1]);
+        renderer.quadTo(p[o + FishSkeleton.BODY_CONTROL_LEFT], p[o + FishSkeleton.BODY_CONTROL_LEFT + 1],
+                p[o + FishSkeleton.BODY_LEFT_TOP], p[o + FishSkeleton.BODY_LEFT_TOP + 1]);
+        renderer.lineTo(p[o + FishSkeleton.BODY_RIGHT_TOP], p[o + FishSkeleton.BODY_RIGHT_TOP + 1]);
+        renderer.fillPath();
+    }
+
+    /**
+     * @param bottom 该节底部圆心的下标，梯形4个角按左上、左下、右下、右上紧跟其后
+     */
+    private static void emitTrapezoid(float[] p, int bottom, FishRenderer renderer) {
+        renderer.moveTo(p[bottom + 2], p[bottom + 3]);
+        renderer.lineTo(p[bottom + 8], p[bottom + 9]);
+        renderer.lineTo(p[bottom + 6], p[bottom + 7]);
+        renderer.lineTo(p[bottom + 4], p[bottom + 5]);
+        renderer.fillPath();
+    }
+
+    /**
+     * 尾巴，俩个三角形共用第三节节肢的顶部圆心作为顶点
+     */
+    private static void emitTail(float[] p, int o, FishRenderer renderer) {
+        float topX = p[o + FishSkeleton.SEGMENT_BOTTOM];
+        float topY = p[o + FishSkeleton.SEGMENT_BOTTOM + 1];
+
+        //小三角形
+        renderer.moveTo(topX, topY);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_SMALL_RIGHT], p[o + FishSkeleton.TAIL_SMALL_RIGHT + 1]);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_SMALL_LEFT], p[o + FishSkeleton.TAIL_SMALL_LEFT + 1]);
+        renderer.lineTo(topX, topY);
+        renderer.fillPath();
+
+        //大三角形
+        renderer.moveTo(topX, topY);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_BIG_RIGHT], p[o + FishSkeleton.TAIL_BIG_RIGHT + 1]);
+        renderer.lineTo(p[o + FishSkeleton.TAIL_BIG_LEFT], p[o + FishSkeleton.TAIL_BIG_LEFT + 1]);
+        renderer.lineTo(topX, topY);
+        renderer.fillPath();
+    }
+
+    /**
+     * @param start 鱼鳍主轴起点的下标，主轴终点和贝塞尔控制点紧跟其后
+     */
+    private static void emitFins(float[] p, int start, FishRenderer renderer) {
+        renderer.setPart(FishRenderer.PART_FINS);
+        renderer.moveTo(p[start], p[start + 1]);
+        //贝塞尔曲线
+        renderer.quadTo(p[start + 4], p[start + 5], p[start + 2], p[start + 3]);
+        renderer.lineTo(p[start], p[start + 1]);
+        renderer.fillPath();
+        renderer.setPart(FishRenderer.PART_OTHER);
+    }
+}
@@ -0,0 +1,330 @@
+package com.minminaya.fish.core;
+
+import java.util.Arrays;
+
+/**
+ * 鱼群重心的均匀网格索引，用来查某个点附近有哪些鱼
+ * <p>
+ * 平面按cellSize切成方格，格子坐标散列到固定大小的桶里，屏幕外无限远的鱼也放得下。
+ * 每个桶里的鱼用int数组串成双向链表，每帧同步时只有换了格子的鱼才挪桶，其余的鱼只比较一下格子坐标。
+ * 查询只看覆盖查询范围的那几个格子，再按真实距离过滤，散列冲突进来的别的格子里的鱼也会被过滤掉
+ */
+public final class FishGrid {
+
+    /**
+     * 默认格子边长，差不多一条鱼的长度
+     */
+    public static final float DEFAULT_CELL_SIZE = 2 * FishSkeleton.MAX_EXTENT;
+
+    private static final int EMPTY = -1;
+
+    private final float cellSize;
+    private final float inverseCellSize;
+    private final int[] bucketHead;
+    private final int bucketMask;
+
+    private int count;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    /**
+     * 每条鱼所在的格子坐标和桶，以及桶里链表的前后
+     */
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private int[] bucket = new int[0];
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+
+    /**
+     * 所有鱼占的格子范围，找最近的鱼时一圈圈往外扩，超出这个范围就不用再扩了
+     */
+    private int minCellX;
+    private int minCellY;
+    private int maxCellX;
+    private int maxCellY;
+
+    /**
+     * 找最近的k条鱼时的候选距离，按距离从小到大
+     */
+    private float[] nearestDistance = new float[0];
+
+    public FishGrid() {
+        this(DEFAULT_CELL_SIZE, 4096);
+    }
+
+    /**
+     * @param cellSize 格子边长，和常用的查询半径差不多最好
+     * @param buckets  桶的个数，向上取到2的幂，比鱼的数量多一些冲突就少
+     */
+    public FishGrid(float cellSize, int buckets) {
+        if (cellSize <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException("cell size and buckets must be positive");
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1 / cellSize;
+        int size = Integer.highestOneBit(buckets);
+        if (size < buckets) {
+            size <<= 1;
+        }
+        bucketHead = new int[size];
+        bucketMask = size - 1;
+        Arrays.fill(bucketHead, EMPTY);
+    }
+
+    /**
+     * 和鱼群同步，鱼群删鱼时最后一条鱼挪到被删的下标上，这里按下标同步，挪过来的鱼换了位置自然会挪桶
+     */
+    public void update(FishSchool school) {
+        int size = school.size();
+        ensureCapacity(size);
+        //鱼少了，多出来的下标从桶里拿掉
+        while (count > size) {
+            unlink(--count);
+        }
+        for (int i = 0; i < size; i++) {
+            move(i, school.getX(i), school.getY(i), i >= count);
+        }
+        count = size;
+        updateExtent();
+    }
+
+    /**
+     * 直接用并列数组同步
+     */
+    public void update(float[] xs, float[] ys, int size) {
+        ensureCapacity(size);
+        while (count > size) {
+            unlink(--count);
+        }
+        for (int i = 0; i < size; i++) {
+            move(i, xs[i], ys[i], i >= count);
+        }
+        count = size;
+        updateExtent();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * 重心离(px, py)不超过radius的所有鱼，顺序不定
+     *
+     * @param out 输出鱼的下标，装不下的不写，但返回值照样算上
+     * @return 一共找到几条
+     */
+    public int queryRadius(float px, float py, float radius, int[] out) {
+        if (count == 0) {
+            return 0;
+        }
+        int found = 0;
+        float radiusSquared = radius * radius;
+        //只走有鱼的格子范围，半径再大也不会扫一大片空格子
+        int fromX = Math.max(cell(px - radius), minCellX);
+        int toX = Math.min(cell(px + radius), maxCellX);
+        int fromY = Math.max(cell(py - radius), minCellY);
+        int toY = Math.min(cell(py + radius), maxCellY);
+        for (int cy = fromY; cy <= toY; cy++) {
+            for (int cx = fromX; cx <= toX; cx++) {
+                for (int i = bucketHead[hash(cx, cy)]; i != EMPTY; i = next[i]) {
+                    //同一个桶里可能有散列过来的别的格子
+                    if (cellX[i] != cx || cellY[i] != cy) {
+                        continue;
+                    }
+                    float dx = x[i] - px;
+                    float dy = y[i] - py;
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        if (found < out.length) {
+                            out[found] = i;
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 重心离(px, py)最近的k条鱼，从近到远
+     *
+     * @param out 输出鱼的下标，长度至少k
+     * @return 实际找到几条，鱼不够k条时就是鱼的总数
+     */
+    public int queryNearest(float px, float py, int k, int[] out) {
+        if (nearestDistance.length < k) {
+            nearestDistance = new float[k];
+        }
+        return queryNearest(px, py, Float.POSITIVE_INFINITY, k, out, nearestDistance);
+    }
+
+    /**
+     * 重心离(px, py)不超过radius的鱼里最近的k条，从近到远。
+     * 候选距离放在调用方给的数组里，网格同步以后几个线程可以同时查
+     *
+     * @param out       输出鱼的下标，长度至少k
+     * @param distances 临时数组，长度至少k，返回后前几个是对应的距离的平方
+     * @return 实际找到几条
+     */
+    public int queryNearest(float px, float py, float radius, int k, int[] out, float[] distances) {
+        if (k <= 0 || count == 0) {
+            return 0;
+        }
+        float radiusSquared = radius * radius;
+        int found = 0;
+        int centerX = cell(px);
+        int centerY = cell(py);
+        //查询点到所有鱼的格子范围最远要扩几圈，第ring圈的格子离查询点至少(ring - 1) * cellSize
+        int maxRing = Math.max(Math.max(Math.abs(centerX - minCellX), Math.abs(maxCellX - centerX)),
+                Math.max(Math.abs(centerY - minCellY), Math.abs(maxCellY - centerY)));
+        if (radius * inverseCellSize < maxRing) {
+            maxRing = (int) (radius * inverseCellSize) + 1;
+        }
+        for (int ring = 0; ring <= maxRing && found < count; ring++) {
+            //所有鱼都找到了就停；已经找够并且最远的候选比这一圈更近也不用再扩了
+            if (found == k) {
+                float reach = (ring - 1) * cellSize;
+                if (reach > 0 && reach * reach > distances[k - 1]) {
+                    break;
+                }
+            }
+            for (int cy = centerY - ring; cy <= centerY + ring; cy++) {
+                //只走这一圈的边，里面的格子之前已经看过了
+                boolean edgeRow = cy == centerY - ring || cy == centerY + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int cx = centerX - ring; cx <= centerX + ring; cx += step) {
+                    found = collectNearest(cx, cy, px, py, radiusSquared, k, out, distances, found);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 点中的是哪条鱼，按骨架画出来的包围盒判断，重叠时取后画的那条（在上面）
+     * <p>
+     * 候选由调用方用{@link #queryRadius}按{@link FishSkeleton#MAX_EXTENT}查，返回值比数组长时要扩容再查一次，
+     * 候选是按桶的顺序来的，截掉一部分可能正好截掉最上面的那条
+     *
+     * @param skeletons  鱼群的骨架，见{@link FishSchool#getSkeletons()}，候选的骨架要是最新的
+     * @param candidates 候选鱼的下标
+     * @param count      候选的个数
+     * @param bounds     临时包围盒，长度至少4
+     * @return 鱼的下标，没点中返回-1
+     */
+    public static int hitTest(float px, float py, float[] skeletons, int[] candidates, int count, float[] bounds) {
+        int hit = -1;
+        for (int c = 0; c < count; c++) {
+            int i = candidates[c];
+            if (i <= hit) {
+                continue;
+            }
+            FishSkeleton.computeBounds(skeletons, i * FishSkeleton.SIZE, bounds);
+            if (px >= bounds[0] && px <= bounds[2] && py >= bounds[1] && py <= bounds[3]) {
+                hit = i;
+            }
+        }
+        return hit;
+    }
+
+    private int collectNearest(int cx, int cy, float px, float py, float radiusSquared, int k,
+                               int[] out, float[] distances, int found) {
+        for (int i = bucketHead[hash(cx, cy)]; i != EMPTY; i = next[i]) {
+            if (cellX[i] != cx || cellY[i] != cy) {
+                continue;
+            }
+            float dx = x[i] - px;
+            float dy = y[i] - py;
+            float d = dx * dx + dy * dy;
+            if (d > radiusSquared || found == k && d >= distances[k - 1]) {
+                continue;
+            }
+            //插入排序，k一般很小
+            int j = found == k ? k - 1 : found++;
+            while (j > 0 && distances[j - 1] > d) {
+                distances[j] = distances[j - 1];
+                out[j] = out[j - 1];
+                j--;
+            }
+            distances[j] = d;
+            out[j] = i;
+        }
+        return found;
+    }
+
+    /**
+     * @param fresh 这个下标还不在任何桶里
+     */
+    private void move(int i, float px, float py, boolean fresh) {
+        x[i] = px;
+        y[i] = py;
+        int cx = cell(px);
+        int cy = cell(py);
+        if (!fresh) {
+            if (cellX[i] == cx && cellY[i] == cy) {
+                return;
+            }
+            unlink(i);
+        }
+        cellX[i] = cx;
+        cellY[i] = cy;
+        int b = hash(cx, cy);
+        bucket[i] = b;
+        prev[i] = EMPTY;
+        next[i] = bucketHead[b];
+        if (bucketHead[b] != EMPTY) {
+            prev[bucketHead[b]] = i;
+        }
+        bucketHead[b] = i;
+    }
+
+    private void unlink(int i) {
+        if (prev[i] != EMPTY) {
+            next[prev[i]] = next[i];
+        } else {
+            bucketHead[bucket[i]] = next[i];
+        }
+        if (next[i] != EMPTY) {
+            prev[next[i]] = prev[i];
+        }
+    }
+
+    private void updateExtent() {
+        minCellX = Integer.MAX_VALUE;
+        minCellY = Integer.MAX_VALUE;
+        maxCellX = Integer.MIN_VALUE;
+        maxCellY = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            minCellX = Math.min(minCellX, cellX[i]);
+            minCellY = Math.min(minCellY, cellY[i]);
+            maxCellX = Math.max(maxCellX, cellX[i]);
+            maxCellY = Math.max(maxCellY, cellY[i]);
+        }
+    }
+
+    private int cell(float v) {
+        return (int) Math.floor(v * inverseCellSize);
+    }
+
+    private int hash(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & bucketMask;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        cellX = Arrays.copyOf(cellX, newCapacity);
+        cellY = Arrays.copyOf(cellY, newCapacity);
+        bucket = Arrays.copyOf(bucket, newCapacity);
+        next = Arrays.copyOf(next, newCapacity);
+        prev = Arrays.copyOf(prev, newCapacity);
+    }
+}
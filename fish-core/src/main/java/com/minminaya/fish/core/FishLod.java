@@ -0,0 +1,118 @@
+package com.minminaya.fish.core;
+
+/**
+ * 按鱼在屏幕上的大小和同时画的鱼的数量选细节档位
+ * <p>
+ * 鱼小到看不清鱼鳍、或者鱼多到画不过来时降档。往粗里降按阈值本身判断，往细里升要超过阈值一段才升，
+ * 大小和数量在阈值附近来回抖时档位不会一帧一变
+ */
+public final class FishLod {
+
+    /**
+     * 全部细节：鱼头、俩个鱼鳍、身体、俩节节肢的四个圆和梯形、俩个三角形的尾巴
+     */
+    public static final int FULL = 0;
+    /**
+     * 去掉鱼鳍，俩节节肢合成一个多边形，尾巴只画大三角形
+     */
+    public static final int REDUCED = 1;
+    /**
+     * 整条鱼一个多边形
+     */
+    public static final int MINIMAL = 2;
+
+    /**
+     * 鱼在屏幕上的长度小于这个就降到{@link #REDUCED}，像素
+     */
+    public static final float DEFAULT_REDUCED_LENGTH = 120;
+    public static final float DEFAULT_MINIMAL_LENGTH = 48;
+    /**
+     * 同时画的鱼多于这个就降到{@link #REDUCED}
+     */
+    public static final int DEFAULT_REDUCED_COUNT = 300;
+    public static final int DEFAULT_MINIMAL_COUNT = 3000;
+    /**
+     * 升档时要比阈值多出的比例
+     */
+    public static final float DEFAULT_HYSTERESIS = 0.2f;
+
+    private float reducedLength = DEFAULT_REDUCED_LENGTH;
+    private float minimalLength = DEFAULT_MINIMAL_LENGTH;
+    private int reducedCount = DEFAULT_REDUCED_COUNT;
+    private int minimalCount = DEFAULT_MINIMAL_COUNT;
+    private float hysteresis = DEFAULT_HYSTERESIS;
+
+    private int tier = FULL;
+
+    /**
+     * @param reducedLength 屏幕上的长度小于这个降到{@link #REDUCED}
+     * @param minimalLength 屏幕上的长度小于这个降到{@link #MINIMAL}
+     */
+    public void setLengthThresholds(float reducedLength, float minimalLength) {
+        if (minimalLength < 0 || reducedLength < minimalLength) {
+            throw new IllegalArgumentException("invalid length thresholds");
+        }
+        this.reducedLength = reducedLength;
+        this.minimalLength = minimalLength;
+    }
+
+    /**
+     * @param reducedCount 鱼多于这个降到{@link #REDUCED}
+     * @param minimalCount 鱼多于这个降到{@link #MINIMAL}
+     */
+    public void setCountThresholds(int reducedCount, int minimalCount) {
+        if (reducedCount < 0 || minimalCount < reducedCount) {
+            throw new IllegalArgumentException("invalid count thresholds");
+        }
+        this.reducedCount = reducedCount;
+        this.minimalCount = minimalCount;
+    }
+
+    public void setHysteresis(float hysteresis) {
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("hysteresis must not be negative");
+        }
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * 按这一帧的情况更新档位
+     *
+     * @param projectedLength 鱼在屏幕上的长度，像素
+     * @param count           这一帧要画几条鱼
+     * @return 新的档位
+     */
+    public int update(float projectedLength, int count) {
+        if (coarser(projectedLength, count, minimalLength, minimalCount, tier >= MINIMAL)) {
+            tier = MINIMAL;
+        } else if (coarser(projectedLength, count, reducedLength, reducedCount, tier >= REDUCED)) {
+            tier = REDUCED;
+        } else {
+            tier = FULL;
+        }
+        return tier;
+    }
+
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * 强制回到{@link #FULL}，下一次update重新判断
+     */
+    public void reset() {
+        tier = FULL;
+    }
+
+    /**
+     * @param current 现在是不是已经在粗的这一边
+     * @return 这一帧该不该在粗的这一边
+     */
+    private boolean coarser(float length, int count, float lengthThreshold, int countThreshold, boolean current) {
+        if (current) {
+            //已经降下来了，要明显变大、变少才升回去
+            return length < lengthThreshold * (1 + hysteresis) || count > countThreshold * (1 - hysteresis);
+        }
+        return length < lengthThreshold || count > countThreshold;
+    }
+}
@@ -0,0 +1,318 @@
+package com.minminaya.fish.core;
+
+/**
+ * 把{@link FishGeometry}输出的圆和路径拍平成三角形，攒进一块复用的顶点、颜色和下标缓冲区
+ * <p>
+ * 整群鱼的所有部分都进同一个缓冲区，满了或者画完时才交给{@link Target}一次画出去，
+ * 画布调用从每条鱼十来次变成每批一次。圆和贝塞尔曲线按屏幕上的大小决定切几段，
+ * 误差不超过容差，鱼缩小时顶点也跟着变少。路径都按第一个点做扇形三角化，鱼身上的形状都是凸的或者近似凸的
+ */
+public final class FishMesh implements FishRenderer {
+
+    /**
+     * 一批三角形的输出目标
+     */
+    public interface Target {
+        /**
+         * @param vertices    顶点，(x, y)成对
+         * @param colors      每个顶点的ARGB颜色
+         * @param vertexCount 顶点个数，vertices里用了它的俩倍
+         * @param indices     三角形的顶点下标，每三个一个三角形
+         * @param indexCount  下标个数
+         */
+        void drawTriangles(float[] vertices, int[] colors, int vertexCount, short[] indices, int indexCount);
+    }
+
+    /**
+     * 下标是short，一批最多这么多顶点
+     */
+    public static final int MAX_VERTICES = 0xFFFF;
+    /**
+     * 默认的拍平容差，屏幕上的像素
+     */
+    public static final float DEFAULT_TOLERANCE = 0.25f;
+
+    private static final int MIN_CIRCLE_SEGMENTS = 8;
+    private static final int MAX_CIRCLE_SEGMENTS = 64;
+    private static final int MAX_QUAD_SEGMENTS = 16;
+
+    private final Target mTarget;
+    private final float[] vertices;
+    private final int[] colors;
+    private final short[] indices;
+    private int vertexCount;
+    private int indexCount;
+
+    /**
+     * 正在拼的路径，填充时才知道有多少个点，先放在这里
+     */
+    private float[] path = new float[64];
+    private int pathPoints;
+
+    private float scale = 1;
+    private float tolerance = DEFAULT_TOLERANCE;
+    /**
+     * 鱼身上只有几种半径，记住每种半径切几段和每段转角的cos、sin，缩放和容差变了才重算
+     */
+    private final float[] cachedRadius = new float[8];
+    private final int[] cachedSegments = new int[8];
+    private final float[] cachedCos = new float[8];
+    private final float[] cachedSin = new float[8];
+    private int cached;
+    private int globalAlpha = 255;
+    /**
+     * 鱼的颜色，不含透明度
+     */
+    private int rgb = FishGeometry.FISH_RGB;
+    private int color;
+
+    /**
+     * 一共交给Target几次，给每帧统计用
+     */
+    private int batches;
+    private int triangles;
+
+    public FishMesh(Target target) {
+        this(target, MAX_VERTICES);
+    }
+
+    /**
+     * @param maxVertices 一批最多多少个顶点，不超过{@link #MAX_VERTICES}
+     */
+    public FishMesh(Target target, int maxVertices) {
+        if (maxVertices < 3 * MAX_CIRCLE_SEGMENTS || maxVertices > MAX_VERTICES) {
+            throw new IllegalArgumentException("max vertices out of range: " + maxVertices);
+        }
+        mTarget = target;
+        vertices = new float[maxVertices * 2];
+        //Android 10以前drawVertices按坐标的个数检查颜色数组的长度，多开一倍
+        colors = new int[maxVertices * 2];
+        //扇形三角化最坏每个顶点一个三角形
+        indices = new short[maxVertices * 3];
+        color = color(PART_OTHER);
+    }
+
+    /**
+     * @param scale 骨架坐标到屏幕像素的缩放，决定圆和曲线切几段
+     */
+    public void setScale(float scale) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("scale must be positive");
+        }
+        if (this.scale != scale) {
+            this.scale = scale;
+            cached = 0;
+        }
+    }
+
+    /**
+     * @param tolerance 拍平后离真实曲线最远多少像素
+     */
+    public void setTolerance(float tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+        cached = 0;
+    }
+
+    /**
+     * 整体透明度，乘进每个部分的颜色里，255就是原来的颜色
+     */
+    public void setGlobalAlpha(int globalAlpha) {
+        this.globalAlpha = globalAlpha;
+        color = color(PART_OTHER);
+    }
+
+    /**
+     * 接下来加的鱼用什么颜色，颜色在顶点上，换颜色不用另起一批
+     *
+     * @param rgb 不含透明度，各部分的透明度照旧
+     */
+    public void setRgb(int rgb) {
+        this.rgb = rgb & 0xFFFFFF;
+        color = color(PART_OTHER);
+    }
+
+    /**
+     * 把攒着的三角形交出去
+     */
+    public void flush() {
+        if (indexCount > 0) {
+            mTarget.drawTriangles(vertices, colors, vertexCount, indices, indexCount);
+            batches++;
+        }
+        vertexCount = 0;
+        indexCount = 0;
+    }
+
+    public int getBatchCount() {
+        return batches;
+    }
+
+    public int getTriangleCount() {
+        return triangles;
+    }
+
+    public void resetCounts() {
+        batches = 0;
+        triangles = 0;
+    }
+
+    /**
+     * 半径为radius的圆在屏幕上切几段
+     */
+    public int circleSegments(float radius) {
+        float r = radius * scale;
+        if (r <= tolerance) {
+            return MIN_CIRCLE_SEGMENTS;
+        }
+        //每段弦到弧的最大距离是r(1 - cos(θ/2))
+        double step = 2 * Math.acos(1 - tolerance / r);
+        int segments = (int) Math.ceil(2 * Math.PI / step);
+        return Math.max(MIN_CIRCLE_SEGMENTS, Math.min(MAX_CIRCLE_SEGMENTS, segments));
+    }
+
+    /**
+     * 二次贝塞尔曲线在屏幕上切几段，切成n段时误差不超过|p0 - 2p1 + p2| / (4n²)
+     */
+    public int quadSegments(float x0, float y0, float x1, float y1, float x2, float y2) {
+        float dx = x0 - 2 * x1 + x2;
+        float dy = y0 - 2 * y1 + y2;
+        float d = (float) Math.sqrt(dx * dx + dy * dy) * scale;
+        int segments = (int) Math.ceil(Math.sqrt(d / (4 * tolerance)));
+        return Math.max(1, Math.min(MAX_QUAD_SEGMENTS, segments));
+    }
+
+    @Override
+    public void setPart(int part) {
+        color = color(part);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius) {
+        int slot = circleSlot(radius);
+        int segments = cachedSegments[slot];
+        float cos = cachedCos[slot];
+        float sin = cachedSin[slot];
+        ensureRoom(segments + 1);
+        int center = addVertex(cx, cy);
+        //从(radius, 0)开始每次转一段的角度，不用每个点都查三角函数
+        float dx = radius;
+        float dy = 0;
+        for (int i = 0; i < segments; i++) {
+            addVertex(cx + dx, cy + dy);
+            float nx = dx * cos - dy * sin;
+            dy = dx * sin + dy * cos;
+            dx = nx;
+        }
+        for (int i = 0; i < segments; i++) {
+            addTriangle(center, center + 1 + i, center + 1 + (i + 1) % segments);
+        }
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        pathPoints = 0;
+        addPathPoint(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        addPathPoint(x, y);
+    }
+
+    @Override
+    public void quadTo(float controlX, float controlY, float x, float y) {
+        float x0 = path[pathPoints * 2 - 2];
+        float y0 = path[pathPoints * 2 - 1];
+        int segments = quadSegments(x0, y0, controlX, controlY, x, y);
+        for (int i = 1; i <= segments; i++) {
+            float t = i / (float) segments;
+            float u = 1 - t;
+            addPathPoint(u * u * x0 + 2 * u * t * controlX + t * t * x, u * u * y0 + 2 * u * t * controlY + t * t * y);
+        }
+    }
+
+    @Override
+    public void fillPath() {
+        int points = pathPoints;
+        //回到起点的那个点不用重复
+        if (points > 1 && path[0] == path[points * 2 - 2] && path[1] == path[points * 2 - 1]) {
+            points--;
+        }
+        if (points < 3) {
+            pathPoints = 0;
+            return;
+        }
+        ensureRoom(points);
+        int first = vertexCount;
+        for (int i = 0; i < points; i++) {
+            addVertex(path[i * 2], path[i * 2 + 1]);
+        }
+        for (int i = 1; i < points - 1; i++) {
+            addTriangle(first, first + i, first + i + 1);
+        }
+        pathPoints = 0;
+    }
+
+    private int circleSlot(float radius) {
+        for (int i = 0; i < cached; i++) {
+            if (cachedRadius[i] == radius) {
+                return i;
+            }
+        }
+        int slot = cached < cachedRadius.length ? cached++ : cachedRadius.length - 1;
+        int segments = circleSegments(radius);
+        double step = 2 * Math.PI / segments;
+        cachedRadius[slot] = radius;
+        cachedSegments[slot] = segments;
+        cachedCos[slot] = (float) Math.cos(step);
+        cachedSin[slot] = (float) Math.sin(step);
+        return slot;
+    }
+
+    private void addPathPoint(float x, float y) {
+        if (pathPoints * 2 + 2 > path.length) {
+            float[] grown = new float[path.length * 2];
+            System.arraycopy(path, 0, grown, 0, path.length);
+            path = grown;
+        }
+        path[pathPoints * 2] = x;
+        path[pathPoints * 2 + 1] = y;
+        pathPoints++;
+    }
+
+    /**
+     * 装不下接下来的顶点就先把这一批交出去
+     */
+    private void ensureRoom(int newVertices) {
+        if (newVertices > vertices.length / 2) {
+            throw new IllegalStateException("shape has " + newVertices + " vertices, more than a batch holds");
+        }
+        if (vertexCount + newVertices > vertices.length / 2) {
+            flush();
+        }
+    }
+
+    private int addVertex(float x, float y) {
+        int i = vertexCount++;
+        vertices[i * 2] = x;
+        vertices[i * 2 + 1] = y;
+        colors[i] = color;
+        return i;
+    }
+
+    private void addTriangle(int a, int b, int c) {
+        //超过32767的下标转成负数，画的时候按无符号读
+        indices[indexCount++] = (short) a;
+        indices[indexCount++] = (short) b;
+        indices[indexCount++] = (short) c;
+        triangles++;
+    }
+
+    private int color(int part) {
+        int alpha = FishGeometry.alphaOf(part) * globalAlpha / 255;
+        return (alpha << 24) | rgb;
+    }
+}
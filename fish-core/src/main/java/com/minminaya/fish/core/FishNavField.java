@@ -0,0 +1,496 @@
+package com.minminaya.fish.core;
+
+import java.util.Arrays;
+
+/**
+ * 绕开障碍物的导航场
+ * <p>
+ * 画面按固定大小分成格子，每个格子记着被几个障碍物盖住（障碍物按鱼要留的空隙向外扩），
+ * 加删障碍物时只改它盖住的那些格子。换目标或者障碍物变了以后从目标格子算一遍到每个格子的路程
+ * （横竖走一格算5，斜走算7，不能贴着障碍物的角斜穿），再顺手算出每个格子往目标走的方向。
+ * 同一个目标不重算，点一下不管有多少条鱼都只算一次，之后每条鱼查方向只是一次数组下标
+ * <p>
+ * {@link #route}沿着路程下降的方向从起点走到目标，再把互相看得见的点之间的格子拉直，
+ * 剩下的拐点就是途经点，交给{@link FishSteering#makeRoute}连成贝塞尔曲线
+ */
+public final class FishNavField {
+
+    public static final float DEFAULT_CELL_SIZE = 24;
+    /**
+     * 一条路线最多几个途经点，再多的拐弯就不管了，最后一段直接连到目标
+     */
+    public static final int MAX_WAYPOINTS = 8;
+    /**
+     * 走不到的格子的路程
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int STRAIGHT_COST = 5;
+    private static final int DIAGONAL_COST = 7;
+    private static final int[] NEIGHBOUR_X = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] NEIGHBOUR_Y = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    private final float cellSize;
+    private final float clearance;
+    private float width;
+    private float height;
+    private int cols;
+    private int rows;
+
+    /**
+     * 每个格子被几个障碍物盖住
+     */
+    private int[] blockers;
+    /**
+     * 每个格子到目标的路程
+     */
+    private int[] distance;
+    /**
+     * 每个格子往目标走的单位方向，走不到的格子为0
+     */
+    private float[] flowX;
+    private float[] flowY;
+    /**
+     * 算路程用的循环队列和是否已在队列里
+     */
+    private int[] queue;
+    private boolean[] queued;
+    /**
+     * 下降路径上的格子，拉直前先放这里
+     */
+    private int[] path;
+
+    /**
+     * 障碍物，每个4个float：左上右下，没扩过的
+     */
+    private float[] obstacles = new float[4 * 4];
+    private boolean[] used = new boolean[4];
+    private int obstacleCount;
+
+    private int targetCell = -1;
+    private float targetX;
+    private float targetY;
+    private boolean dirty = true;
+
+    public FishNavField(float width, float height) {
+        this(width, height, DEFAULT_CELL_SIZE, 0);
+    }
+
+    /**
+     * @param cellSize  格子多大，越小越准，算一遍的开销按格子数算
+     * @param clearance 离障碍物至少留多少空隙，一般是鱼身的半宽
+     */
+    public FishNavField(float width, float height, float cellSize, float clearance) {
+        if (!(cellSize > 0) || clearance < 0) {
+            throw new IllegalArgumentException("cell size must be positive and clearance not negative");
+        }
+        this.cellSize = cellSize;
+        this.clearance = clearance;
+        setSize(width, height);
+    }
+
+    /**
+     * 画面大小变了，障碍物保留，格子全部重建
+     */
+    public void setSize(float width, float height) {
+        if (!(width > 0) || !(height > 0)) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        int cells = cols * rows;
+        if (blockers == null || blockers.length < cells) {
+            blockers = new int[cells];
+            distance = new int[cells];
+            flowX = new float[cells];
+            flowY = new float[cells];
+            queue = new int[cells];
+            queued = new boolean[cells];
+            path = new int[cells];
+        } else {
+            Arrays.fill(blockers, 0);
+        }
+        for (int id = 0; id < used.length; id++) {
+            if (used[id]) {
+                stamp(id, 1);
+            }
+        }
+        targetCell = -1;
+        dirty = true;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * 加一个矩形障碍物
+     *
+     * @return 障碍物的编号，删的时候用，删掉的编号会被重用
+     */
+    public int addObstacle(float left, float top, float right, float bottom) {
+        if (!(right > left) || !(bottom > top)) {
+            throw new IllegalArgumentException("empty obstacle");
+        }
+        int id = 0;
+        while (id < used.length && used[id]) {
+            id++;
+        }
+        if (id == used.length) {
+            used = Arrays.copyOf(used, used.length * 2);
+            obstacles = Arrays.copyOf(obstacles, obstacles.length * 2);
+        }
+        used[id] = true;
+        obstacles[id * 4] = left;
+        obstacles[id * 4 + 1] = top;
+        obstacles[id * 4 + 2] = right;
+        obstacles[id * 4 + 3] = bottom;
+        obstacleCount++;
+        stamp(id, 1);
+        dirty = true;
+        return id;
+    }
+
+    public void removeObstacle(int id) {
+        if (id < 0 || id >= used.length || !used[id]) {
+            throw new IllegalArgumentException("no obstacle " + id);
+        }
+        stamp(id, -1);
+        used[id] = false;
+        obstacleCount--;
+        dirty = true;
+    }
+
+    public void clearObstacles() {
+        if (obstacleCount == 0) {
+            return;
+        }
+        Arrays.fill(used, false);
+        Arrays.fill(blockers, 0);
+        obstacleCount = 0;
+        dirty = true;
+    }
+
+    public int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    /**
+     * @return 这个点所在的格子被障碍物（含空隙）盖住了，画面外面也算
+     */
+    public boolean isBlocked(float x, float y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return true;
+        }
+        return blockers[cellAt(x, y)] > 0;
+    }
+
+    /**
+     * @return 点所在的格子，画面外的点算最近的边上的格子
+     */
+    public int cellAt(float x, float y) {
+        int col = Math.max(0, Math.min(cols - 1, (int) Math.floor(x / cellSize)));
+        int row = Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+        return row * cols + col;
+    }
+
+    /**
+     * 换目标，和上次在同一个格子并且障碍物没变时不重算
+     *
+     * @return 重算了
+     */
+    public boolean setTarget(float x, float y) {
+        targetX = x;
+        targetY = y;
+        int cell = cellAt(x, y);
+        if (cell == targetCell && !dirty) {
+            return false;
+        }
+        targetCell = cell;
+        dirty = false;
+        computeDistance(nearestFree(cell));
+        computeFlow();
+        return true;
+    }
+
+    public boolean hasTarget() {
+        return targetCell >= 0;
+    }
+
+    /**
+     * @return 这个格子到目标的路程，横竖一格算5，斜着一格算7
+     */
+    public int getDistance(int cell) {
+        return distance[cell];
+    }
+
+    /**
+     * @return 这个格子往目标走的单位方向x，走不到或者已经在目标格子时为0
+     */
+    public float getFlowX(int cell) {
+        return flowX[cell];
+    }
+
+    public float getFlowY(int cell) {
+        return flowY[cell];
+    }
+
+    /**
+     * 从起点到目标绕开障碍物的路线，会先按目标调{@link #setTarget}
+     *
+     * @param out 途经点，每个点x、y俩个float，长度至少2 * {@link #MAX_WAYPOINTS}
+     * @return 途经点的个数，不含起点和目标；0表示可以直接游过去，或者根本走不到，这时按直线游
+     */
+    public int route(float startX, float startY, float x, float y, float[] out) {
+        setTarget(x, y);
+        if (lineClear(startX, startY, x, y)) {
+            return 0;
+        }
+        int cell = cellAt(startX, startY);
+        if (distance[cell] == UNREACHABLE) {
+            //起点在障碍物的空隙里，先挪到旁边能走到的格子
+            cell = bestNeighbour(cell, true);
+            if (cell < 0) {
+                return 0;
+            }
+        }
+
+        //沿路程下降的方向走到目标
+        int length = 0;
+        path[length++] = cell;
+        while (distance[cell] > 0) {
+            int next = bestNeighbour(cell, false);
+            if (next < 0) {
+                break;
+            }
+            cell = next;
+            path[length++] = cell;
+        }
+
+        //拉直：从上一个拐点看不见下一个格子时，当前格子就是新的拐点
+        int count = 0;
+        float anchorX = startX;
+        float anchorY = startY;
+        for (int i = 0; i < length - 1 && count < MAX_WAYPOINTS; i++) {
+            int next = path[i + 1];
+            if (!lineClear(anchorX, anchorY, centerX(next), centerY(next))) {
+                anchorX = centerX(path[i]);
+                anchorY = centerY(path[i]);
+                out[count * 2] = anchorX;
+                out[count * 2 + 1] = anchorY;
+                count++;
+            }
+        }
+        //最后一个拐点到目标之间可能还挡着，目标在障碍物里时只能走到旁边
+        if (count < MAX_WAYPOINTS && length > 0 && !lineClear(anchorX, anchorY, targetX, targetY)) {
+            int last = path[length - 1];
+            if (centerX(last) != anchorX || centerY(last) != anchorY) {
+                out[count * 2] = centerX(last);
+                out[count * 2 + 1] = centerY(last);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 线段经过的格子都没被盖住，按半个格子的步长检查
+     */
+    public boolean lineClear(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        int steps = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / (cellSize / 2));
+        for (int i = 0; i <= steps; i++) {
+            float t = steps == 0 ? 0 : i / (float) steps;
+            float px = Math.max(0, Math.min(width - 1e-3f, x0 + dx * t));
+            float py = Math.max(0, Math.min(height - 1e-3f, y0 + dy * t));
+            if (blockers[cellAt(px, py)] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private float centerX(int cell) {
+        return (cell % cols + 0.5f) * cellSize;
+    }
+
+    private float centerY(int cell) {
+        return (cell / cols + 0.5f) * cellSize;
+    }
+
+    /**
+     * 障碍物盖住的格子计数加减
+     */
+    private void stamp(int id, int delta) {
+        int o = id * 4;
+        int left = Math.max(0, (int) Math.floor((obstacles[o] - clearance) / cellSize));
+        int top = Math.max(0, (int) Math.floor((obstacles[o + 1] - clearance) / cellSize));
+        int right = Math.min(cols - 1, (int) Math.floor((obstacles[o + 2] + clearance) / cellSize));
+        int bottom = Math.min(rows - 1, (int) Math.floor((obstacles[o + 3] + clearance) / cellSize));
+        for (int row = top; row <= bottom; row++) {
+            for (int col = left; col <= right; col++) {
+                blockers[row * cols + col] += delta;
+            }
+        }
+    }
+
+    /**
+     * 目标在障碍物里的话找最近的空格子，找不到就还用原来的格子
+     */
+    private int nearestFree(int cell) {
+        if (blockers[cell] == 0) {
+            return cell;
+        }
+        int cells = cols * rows;
+        Arrays.fill(queued, 0, cells, false);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = cell;
+        queued[cell] = true;
+        while (head < tail) {
+            int c = queue[head++];
+            if (blockers[c] == 0) {
+                return c;
+            }
+            int col = c % cols;
+            int row = c / cols;
+            for (int k = 0; k < 4; k++) {
+                int nc = col + NEIGHBOUR_X[k];
+                int nr = row + NEIGHBOUR_Y[k];
+                if (nc < 0 || nr < 0 || nc >= cols || nr >= rows) {
+                    continue;
+                }
+                int n = nr * cols + nc;
+                if (!queued[n]) {
+                    queued[n] = true;
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return cell;
+    }
+
+    /**
+     * 从目标格子往外松弛，队列里的格子路程变短了就重新入队，格子上基本每个只处理一两次
+     */
+    private void computeDistance(int seed) {
+        int cells = cols * rows;
+        Arrays.fill(distance, 0, cells, UNREACHABLE);
+        Arrays.fill(queued, 0, cells, false);
+        distance[seed] = 0;
+        int head = 0;
+        int size = 1;
+        queue[0] = seed;
+        queued[seed] = true;
+        while (size > 0) {
+            int c = queue[head];
+            head = head + 1 == cells ? 0 : head + 1;
+            size--;
+            queued[c] = false;
+            int col = c % cols;
+            int row = c / cols;
+            int d = distance[c];
+            for (int k = 0; k < 8; k++) {
+                int n = neighbour(col, row, k);
+                if (n < 0 || blockers[n] > 0) {
+                    continue;
+                }
+                int nd = d + (k < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+                if (nd < distance[n]) {
+                    distance[n] = nd;
+                    if (!queued[n]) {
+                        queued[n] = true;
+                        int tail = head + size;
+                        queue[tail >= cells ? tail - cells : tail] = n;
+                        size++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 方向取路程的梯度，横竖俩边的差；梯度为0时取路程最小的邻居
+     */
+    private void computeFlow() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int c = row * cols + col;
+                int d = distance[c];
+                if (d == UNREACHABLE || d == 0) {
+                    flowX[c] = 0;
+                    flowY[c] = 0;
+                    continue;
+                }
+                float gx = sampleDistance(col - 1, row, d) - sampleDistance(col + 1, row, d);
+                float gy = sampleDistance(col, row - 1, d) - sampleDistance(col, row + 1, d);
+                if (gx == 0 && gy == 0) {
+                    int next = bestNeighbour(c, false);
+                    if (next >= 0) {
+                        gx = next % cols - col;
+                        gy = next / cols - row;
+                    }
+                }
+                float length = (float) Math.sqrt(gx * gx + gy * gy);
+                flowX[c] = length > 0 ? gx / length : 0;
+                flowY[c] = length > 0 ? gy / length : 0;
+            }
+        }
+    }
+
+    /**
+     * 走不到或者出界的邻居当成比自己远一格
+     */
+    private float sampleDistance(int col, int row, int self) {
+        if (col < 0 || row < 0 || col >= cols || row >= rows) {
+            return self + STRAIGHT_COST;
+        }
+        int d = distance[row * cols + col];
+        return d == UNREACHABLE ? self + STRAIGHT_COST : d;
+    }
+
+    /**
+     * @param any true表示不要求比自己近，用来从走不到的格子里出来
+     * @return 路程最小的邻居，没有时为-1
+     */
+    private int bestNeighbour(int cell, boolean any) {
+        int col = cell % cols;
+        int row = cell / cols;
+        int best = -1;
+        int bestDistance = any ? UNREACHABLE : distance[cell];
+        for (int k = 0; k < 8; k++) {
+            int n = neighbour(col, row, k);
+            if (n >= 0 && distance[n] < bestDistance) {
+                best = n;
+                bestDistance = distance[n];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 第k个邻居，出界或者斜着贴障碍物的角穿过去时为-1
+     */
+    private int neighbour(int col, int row, int k) {
+        int nc = col + NEIGHBOUR_X[k];
+        int nr = row + NEIGHBOUR_Y[k];
+        if (nc < 0 || nr < 0 || nc >= cols || nr >= rows) {
+            return -1;
+        }
+        if (k >= 4 && (blockers[row * cols + nc] > 0 || blockers[nr * cols + col] > 0)) {
+            return -1;
+        }
+        return nr * cols + nc;
+    }
+}
@@ -0,0 +1,252 @@
+package com.minminaya.fish.core;
+
+/**
+ * 按实际的帧耗时自动升降画质
+ * <p>
+ * 每帧喂进来vsync间隔和这一帧主线程上干活的时间。超过预算的高水位或者漏了vsync算超时，
+ * 低于低水位算有余量。每攒够一个窗口的帧结算一次：超时的帧够多就降一档，
+ * 连续几个窗口每帧都有余量才升一档。刚升上去马上又降下来说明这一档撑不住，
+ * 下次要等的窗口数翻倍，不会在俩档之间来回跳；在一档上稳住以后再恢复。
+ * <p>
+ * 档位从高到低依次关掉抖动、小鱼的抗锯齿、半透明图层，最后降低模拟频率，具体怎么关由调用方决定
+ */
+public final class FishQualityGovernor {
+
+    public interface OnQualityChangeListener {
+        /**
+         * 在喂帧的线程上回调
+         *
+         * @param quality  新的档位
+         * @param previous 原来的档位
+         */
+        void onQualityChanged(int quality, int previous);
+    }
+
+    /**
+     * 全部效果都开
+     */
+    public static final int QUALITY_FULL = 0;
+    /**
+     * 关掉抖动
+     */
+    public static final int QUALITY_NO_DITHER = 1;
+    /**
+     * 画出来很小的鱼不开抗锯齿
+     */
+    public static final int QUALITY_NO_SMALL_ANTI_ALIAS = 2;
+    /**
+     * 不开半透明图层，透明度乘进颜色里
+     */
+    public static final int QUALITY_NO_LAYER = 3;
+    /**
+     * 鱼群的模拟频率减半
+     */
+    public static final int QUALITY_LOW_SIMULATION = 4;
+    public static final int LOWEST_QUALITY = QUALITY_LOW_SIMULATION;
+
+    /**
+     * 小于这个长度的鱼在{@link #QUALITY_NO_SMALL_ANTI_ALIAS}以下不开抗锯齿，像素
+     */
+    public static final float SMALL_FISH_LENGTH = FishLod.DEFAULT_MINIMAL_LENGTH;
+
+    public static final int DEFAULT_WINDOW_FRAMES = 30;
+    /**
+     * 干活超过帧间隔的这个比例算超时，剩下的留给RenderThread和系统
+     */
+    public static final float DEFAULT_HIGH_WATERMARK = 0.8f;
+    /**
+     * 干活不到帧间隔的这个比例算有余量
+     */
+    public static final float DEFAULT_LOW_WATERMARK = 0.4f;
+    /**
+     * 一个窗口里超时的帧到了这个比例就降档
+     */
+    private static final float DROP_FRACTION = 0.1f;
+    /**
+     * 升档至少要等几个窗口，来回跳时翻倍，最多翻到这么多
+     */
+    private static final int MIN_CALM_WINDOWS = 2;
+    private static final int MAX_CALM_WINDOWS = 32;
+
+    private long frameIntervalNanos = FishFrameMetrics.DEFAULT_FRAME_INTERVAL_NANOS;
+    private float highWatermark = DEFAULT_HIGH_WATERMARK;
+    private float lowWatermark = DEFAULT_LOW_WATERMARK;
+    private int windowFrames = DEFAULT_WINDOW_FRAMES;
+    private int lowestQuality = LOWEST_QUALITY;
+
+    private int quality = QUALITY_FULL;
+    private OnQualityChangeListener listener;
+
+    //当前窗口的计数
+    private int frames;
+    private int overruns;
+    private int busyFrames;
+
+    /**
+     * 连续几个窗口每帧都有余量
+     */
+    private int calmWindows;
+    /**
+     * 要等几个这样的窗口才升档
+     */
+    private int requiredCalmWindows = MIN_CALM_WINDOWS;
+    /**
+     * 上次升档以后过了几个窗口，-1表示最近一次变化是降档
+     */
+    private int windowsSinceRaise = -1;
+
+    /**
+     * 目标帧间隔，120Hz的屏幕要设成对应的值
+     */
+    public void setFrameIntervalNanos(long frameIntervalNanos) {
+        if (frameIntervalNanos <= 0) {
+            throw new IllegalArgumentException("frame interval must be positive");
+        }
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    /**
+     * @param high 干活超过帧间隔的这个比例算超时
+     * @param low  干活不到帧间隔的这个比例算有余量
+     */
+    public void setWatermarks(float high, float low) {
+        if (low <= 0 || high <= low) {
+            throw new IllegalArgumentException("need 0 < low < high");
+        }
+        highWatermark = high;
+        lowWatermark = low;
+    }
+
+    /**
+     * @param frames 每攒够多少帧结算一次
+     */
+    public void setWindowFrames(int frames) {
+        if (frames <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        windowFrames = frames;
+        resetWindow();
+    }
+
+    /**
+     * 最多降到哪一档，比如不想降低模拟频率就设成{@link #QUALITY_NO_LAYER}
+     */
+    public void setLowestQuality(int lowest) {
+        if (lowest < QUALITY_FULL || lowest > LOWEST_QUALITY) {
+            throw new IllegalArgumentException("unknown quality: " + lowest);
+        }
+        lowestQuality = lowest;
+        if (quality > lowest) {
+            change(lowest);
+        }
+    }
+
+    public void setOnQualityChangeListener(OnQualityChangeListener listener) {
+        this.listener = listener;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * 直接设成某一档，重新开始统计
+     */
+    public void setQuality(int quality) {
+        if (quality < QUALITY_FULL || quality > lowestQuality) {
+            throw new IllegalArgumentException("quality out of range: " + quality);
+        }
+        resetWindow();
+        calmWindows = 0;
+        change(quality);
+    }
+
+    /**
+     * 回到最高画质，清掉所有统计
+     */
+    public void reset() {
+        resetWindow();
+        calmWindows = 0;
+        requiredCalmWindows = MIN_CALM_WINDOWS;
+        windowsSinceRaise = -1;
+        change(QUALITY_FULL);
+    }
+
+    /**
+     * 喂一帧
+     *
+     * @param deltaNanos 和上一帧vsync的间隔，0表示刚开始或者暂停后恢复，不算
+     * @param workNanos  上一帧在自己线程上干活的时间，推进动画加绘制
+     * @return 当前档位
+     */
+    public int onFrame(long deltaNanos, long workNanos) {
+        if (deltaNanos <= 0) {
+            return quality;
+        }
+        frames++;
+        //间隔超过1.5帧就是漏了vsync，哪怕自己的活干得快，瓶颈可能在RenderThread
+        boolean missed = deltaNanos * 2 > frameIntervalNanos * 3;
+        if (missed || workNanos > frameIntervalNanos * highWatermark) {
+            overruns++;
+        }
+        if (missed || workNanos > frameIntervalNanos * lowWatermark) {
+            busyFrames++;
+        }
+        if (frames >= windowFrames) {
+            settle();
+        }
+        return quality;
+    }
+
+    private void settle() {
+        boolean drop = overruns >= Math.max(1, Math.round(frames * DROP_FRACTION));
+        boolean calm = busyFrames == 0;
+        resetWindow();
+        if (windowsSinceRaise >= 0) {
+            windowsSinceRaise++;
+        }
+
+        if (drop) {
+            calmWindows = 0;
+            if (quality >= lowestQuality) {
+                return;
+            }
+            //刚升上来一个窗口就撑不住，下次多等一倍再试；稳住过的话恢复原来的等待
+            if (windowsSinceRaise == 1) {
+                requiredCalmWindows = Math.min(MAX_CALM_WINDOWS, requiredCalmWindows * 2);
+            } else {
+                requiredCalmWindows = MIN_CALM_WINDOWS;
+            }
+            windowsSinceRaise = -1;
+            change(quality + 1);
+            return;
+        }
+        if (!calm) {
+            calmWindows = 0;
+            return;
+        }
+        calmWindows++;
+        if (calmWindows >= requiredCalmWindows && quality > QUALITY_FULL) {
+            calmWindows = 0;
+            windowsSinceRaise = 0;
+            change(quality - 1);
+        }
+    }
+
+    private void resetWindow() {
+        frames = 0;
+        overruns = 0;
+        busyFrames = 0;
+    }
+
+    private void change(int next) {
+        int previous = quality;
+        if (previous == next) {
+            return;
+        }
+        quality = next;
+        if (listener != null) {
+            listener.onQualityChanged(next, previous);
+        }
+    }
+}
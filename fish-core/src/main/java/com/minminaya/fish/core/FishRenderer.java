@@ -0,0 +1,50 @@
+package com.minminaya.fish.core;
+
+/**
+ * 鱼的几何输出接口，和具体的画布无关
+ * <p>
+ * {@link FishGeometry}按原来的绘制顺序把圆和路径依次交给实现类，
+ * Android上由Canvas实现，JVM上可以换成别的后端或者什么都不画只用来测性能
+ */
+public interface FishRenderer {
+
+    /**
+     * 鱼头、节肢和尾巴
+     */
+    int PART_OTHER = 0;
+    /**
+     * 鱼鳍
+     */
+    int PART_FINS = 1;
+    /**
+     * 最大的那节身体
+     */
+    int PART_BODY = 2;
+    /**
+     * 一共几个部分
+     */
+    int PART_COUNT = 3;
+
+    /**
+     * 接下来画的是鱼的哪个部分，不同部分透明度不一样
+     *
+     * @param part {@link #PART_OTHER}、{@link #PART_FINS}或{@link #PART_BODY}
+     */
+    void setPart(int part);
+
+    void drawCircle(float cx, float cy, float radius);
+
+    /**
+     * 开始一条新的闭合路径
+     */
+    void moveTo(float x, float y);
+
+    void lineTo(float x, float y);
+
+    void quadTo(float controlX, float controlY, float x, float y);
+
+    /**
+     * 填充当前路径
+     */
+    void fillPath();
+}
@@ -0,0 +1,157 @@
+package com.minminaya.fish.core;
+
+/**
+ * 点击波纹池，同时存在的波纹放在固定容量的环形缓冲区里
+ * <p>
+ * 所有波纹时长一样，最早加进来的总是最先结束，只需要从队头出队。
+ * 满了再加就直接顶掉最老的那个，点得再快也不创建对象
+ */
+public final class FishRipples {
+
+    public static final int DEFAULT_CAPACITY = 16;
+    /**
+     * 默认的波纹半径
+     */
+    public static final float DEFAULT_RADIUS = 150;
+    /**
+     * 默认的波纹时长
+     */
+    public static final float DEFAULT_DURATION = 300;
+    /**
+     * 刚点下去时的透明度，波纹变大的同时变淡到0
+     */
+    private static final int START_ALPHA = 50;
+
+    private final float maxRadius;
+    private final float duration;
+
+    private final float[] x;
+    private final float[] y;
+    private final float[] elapsed;
+    /**
+     * 最老的波纹所在的格子
+     */
+    private int head;
+    private int count;
+
+    public FishRipples() {
+        this(DEFAULT_CAPACITY, DEFAULT_RADIUS, DEFAULT_DURATION);
+    }
+
+    /**
+     * @param capacity  最多同时存在几个波纹
+     * @param maxRadius 波纹最后的半径
+     * @param duration  每个波纹的时长，毫秒
+     */
+    public FishRipples(int capacity, float maxRadius, float duration) {
+        if (capacity <= 0 || duration <= 0) {
+            throw new IllegalArgumentException("capacity and duration must be positive");
+        }
+        this.maxRadius = maxRadius;
+        this.duration = duration;
+        x = new float[capacity];
+        y = new float[capacity];
+        elapsed = new float[capacity];
+    }
+
+    /**
+     * 在触摸点加一个波纹，满了顶掉最老的
+     */
+    public void add(float touchX, float touchY) {
+        if (count == x.length) {
+            head = (head + 1) % x.length;
+            count--;
+        }
+        int slot = (head + count) % x.length;
+        x[slot] = touchX;
+        y[slot] = touchY;
+        elapsed[slot] = 0;
+        count++;
+    }
+
+    /**
+     * 所有波纹往前走，走完的出队
+     */
+    public void advance(float deltaMillis) {
+        for (int i = 0; i < count; i++) {
+            elapsed[(head + i) % x.length] += deltaMillis;
+        }
+        while (count > 0 && elapsed[head] >= duration) {
+            head = (head + 1) % x.length;
+            count--;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i 从最老的波纹数起的第几个
+     */
+    public float getX(int i) {
+        return x[slot(i)];
+    }
+
+    public float getY(int i) {
+        return y[slot(i)];
+    }
+
+    public float getRadius(int i) {
+        return maxRadius * value(i);
+    }
+
+    public int getAlpha(int i) {
+        return (int) (START_ALPHA * (1 - value(i)));
+    }
+
+    /**
+     * 所有波纹的包围盒的并集
+     *
+     * @param bounds  输出left、top、right、bottom
+     * @param padding 每个圆往外多留的距离，描边的一半加上抗锯齿
+     * @return false表示没有波纹，bounds不变
+     */
+    public boolean computeBounds(float[] bounds, float padding) {
+        if (count == 0) {
+            return false;
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int slot = slot(i);
+            float r = maxRadius * value(i) + padding;
+            left = Math.min(left, x[slot] - r);
+            top = Math.min(top, y[slot] - r);
+            right = Math.max(right, x[slot] + r);
+            bottom = Math.max(bottom, y[slot] + r);
+        }
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = right;
+        bounds[3] = bottom;
+        return true;
+    }
+
+    private int slot(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("ripple " + i + " of " + count);
+        }
+        return (head + i) % x.length;
+    }
+
+    /**
+     * 先加速后减速的进度，和AccelerateDecelerateInterpolator一样
+     */
+    private float value(int i) {
+        float fraction = Math.min(1, elapsed[slot(i)] / duration);
+        return (float) (Math.cos((fraction + 1) * Math.PI) / 2 + 0.5);
+    }
+}
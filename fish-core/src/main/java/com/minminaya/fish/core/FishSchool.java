@@ -0,0 +1,221 @@
+package com.minminaya.fish.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 鱼群，每条鱼的状态按属性分别存在并列的float数组里，第i条鱼就是各数组的第i格
+ * <p>
+ * 骨架也连续存在一块缓冲区里，第i条鱼从i * FishSkeleton.SIZE开始，
+ * 只有加鱼超出容量时才会扩容，其余时候每帧都不创建对象
+ */
+public class FishSchool {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int count;
+
+    /**
+     * 重心坐标
+     */
+    private float[] x;
+    private float[] y;
+    /**
+     * 主方向
+     */
+    private float[] mainAngle;
+    /**
+     * 扭动频率
+     */
+    private float[] waveFrequence;
+    /**
+     * 各自的相位，即FishDrawable里的动画引擎值乘以频率
+     */
+    private float[] phase;
+    private float[] finsAngle;
+    /**
+     * 用调色板里的第几种颜色，0是默认颜色
+     */
+    private int[] skin;
+
+    /**
+     * 所有鱼的骨架
+     */
+    private float[] skeletons;
+
+    private final Random mRandom = new Random();
+
+    public FishSchool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FishSchool(int capacity) {
+        capacity = Math.max(1, capacity);
+        x = new float[capacity];
+        y = new float[capacity];
+        mainAngle = new float[capacity];
+        waveFrequence = new float[capacity];
+        phase = new float[capacity];
+        finsAngle = new float[capacity];
+        skin = new int[capacity];
+        skeletons = new float[capacity * FishSkeleton.SIZE];
+    }
+
+    /**
+     * 重置新加的鱼的相位用的随机数，同一个种子加出来的鱼群步调一样
+     */
+    public void setRandomSeed(long seed) {
+        mRandom.setSeed(seed);
+    }
+
+    /**
+     * 加一条鱼，相位随机，免得整群鱼步调一致
+     *
+     * @return 这条鱼的下标
+     */
+    public int add(float middleX, float middleY, float angle) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        x[i] = middleX;
+        y[i] = middleY;
+        mainAngle[i] = angle;
+        waveFrequence[i] = 1;
+        phase[i] = mRandom.nextFloat() * FishSkeleton.PHASE_CYCLE;
+        finsAngle[i] = 0;
+        skin[i] = 0;
+        return i;
+    }
+
+    /**
+     * 删掉一条鱼，最后一条鱼会挪到它的位置上
+     */
+    public void remove(int i) {
+        checkIndex(i);
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        mainAngle[i] = mainAngle[last];
+        waveFrequence[i] = waveFrequence[last];
+        phase[i] = phase[last];
+        finsAngle[i] = finsAngle[last];
+        skin[i] = skin[last];
+        System.arraycopy(skeletons, last * FishSkeleton.SIZE, skeletons, i * FishSkeleton.SIZE, FishSkeleton.SIZE);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void setPosition(int i, float middleX, float middleY) {
+        checkIndex(i);
+        x[i] = middleX;
+        y[i] = middleY;
+    }
+
+    public void setMainAngle(int i, float angle) {
+        checkIndex(i);
+        mainAngle[i] = angle;
+    }
+
+    public void setWaveFrequence(int i, float frequence) {
+        checkIndex(i);
+        waveFrequence[i] = frequence;
+    }
+
+    public void setFinsAngle(int i, float angle) {
+        checkIndex(i);
+        finsAngle[i] = angle;
+    }
+
+    /**
+     * @param skin 调色板里的第几种颜色，调色板由画的一方决定
+     */
+    public void setSkin(int i, int skin) {
+        checkIndex(i);
+        if (skin < 0) {
+            throw new IllegalArgumentException("negative skin: " + skin);
+        }
+        this.skin[i] = skin;
+    }
+
+    public int getSkin(int i) {
+        checkIndex(i);
+        return skin[i];
+    }
+
+    public float getX(int i) {
+        checkIndex(i);
+        return x[i];
+    }
+
+    public float getY(int i) {
+        checkIndex(i);
+        return y[i];
+    }
+
+    public float getMainAngle(int i) {
+        checkIndex(i);
+        return mainAngle[i];
+    }
+
+    /**
+     * 所有鱼的相位往前走，每条鱼按自己的频率走
+     *
+     * @param engineDelta 动画引擎值的增量
+     */
+    public void advance(float engineDelta) {
+        for (int i = 0; i < count; i++) {
+            //按公共周期取余，防止相位无限增大丢精度
+            phase[i] = (phase[i] + engineDelta * waveFrequence[i]) % FishSkeleton.PHASE_CYCLE;
+        }
+    }
+
+    /**
+     * 只算一条鱼的骨架，点中测试时候选的鱼可能是上次画完以后才加的或者挪过的
+     */
+    public void evaluate(int i) {
+        checkIndex(i);
+        FishSkeleton.evaluate(skeletons, i * FishSkeleton.SIZE, x[i], y[i], mainAngle[i], phase[i], finsAngle[i]);
+    }
+
+    /**
+     * 一次算出所有鱼的骨架
+     */
+    public void evaluate() {
+        for (int i = 0; i < count; i++) {
+            FishSkeleton.evaluate(skeletons, i * FishSkeleton.SIZE, x[i], y[i], mainAngle[i], phase[i], finsAngle[i]);
+        }
+    }
+
+    /**
+     * @return 所有鱼的骨架，第i条鱼从i * FishSkeleton.SIZE开始
+     */
+    public float[] getSkeletons() {
+        return skeletons;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        mainAngle = Arrays.copyOf(mainAngle, newCapacity);
+        waveFrequence = Arrays.copyOf(waveFrequence, newCapacity);
+        phase = Arrays.copyOf(phase, newCapacity);
+        finsAngle = Arrays.copyOf(finsAngle, newCapacity);
+        skin = Arrays.copyOf(skin, newCapacity);
+        skeletons = Arrays.copyOf(skeletons, newCapacity * FishSkeleton.SIZE);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("fish " + i + ", size " + count);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.minminaya.fish.core;
+
+/**
+ * 鱼的骨架计算器
+ * <p>
+ * 把鱼头、鱼鳍、身体、俩节节肢和尾巴的所有顶点按(x, y)成对写进调用方预先分配好的float[]里，
+ * 下标常量指向x，y在下标+1，整个计算过程不创建任何对象。
+ * 身体的摆动、俩节节肢和尾巴按{@link FishSpine#classic()}的描述算，节肢的布局和FishSpine的一节一样；
+ * 鱼鳍和带贝塞尔曲线的身体是这条鱼特有的，在这里单独算
+ */
+public final class FishSkeleton {
+
+    /**
+     * 头部半径
+     */
+    public static final float HEAD_RADIUS = 30f;
+    /**
+     * 第一节身体长度
+     */
+    public static final float BODY_LENGH = HEAD_RADIUS * 3.2f;
+    /**
+     * 鱼鳍的俩个控制点的长度，即鱼鳍宽度
+     */
+    public static final float FINS_LENGTH = HEAD_RADIUS * 1.3f;
+    /**
+     * 鱼的总长度
+     */
+    public static final float TOTAL_LENGTH = HEAD_RADIUS * 6.79f;
+
+    /**
+     * 身体各节波形（1.2、1.5、1.7倍频率）的公共周期，相位按这个周期取余不会跳变
+     */
+    public static final float PHASE_CYCLE = 3600;
+    /**
+     * 动画引擎的速度，原来的引擎180秒走54000，即每毫秒0.3
+     */
+    public static final float ENGINE_SPEED = 540 * 100 / (180 * 1000f);
+
+    /**
+     * 第二节节肢顶部半径和梯形上下比例
+     */
+    public static final float SEGMENT_TOP_RADIUS = HEAD_RADIUS * 0.7f;
+    public static final float SEGMENT_RATIO = 0.6f;
+    public static final float SEGMENT_BOTTOM_RADIUS = SEGMENT_TOP_RADIUS * SEGMENT_RATIO;
+    /**
+     * 第三节节肢顶部半径和梯形上下比例
+     */
+    public static final float SEGMENT_LONG_TOP_RADIUS = SEGMENT_TOP_RADIUS * 0.6f;
+    public static final float SEGMENT_LONG_RATIO = 0.4f;
+    public static final float SEGMENT_LONG_BOTTOM_RADIUS = SEGMENT_LONG_TOP_RADIUS * SEGMENT_LONG_RATIO;
+
+    //各顶点在缓冲区里的下标
+    /**
+     * 重心
+     */
+    public static final int MIDDLE = 0;
+    /**
+     * 鱼头圆心
+     */
+    public static final int HEAD = 2;
+    /**
+     * 右鱼鳍：主轴起点、主轴终点、贝塞尔控制点
+     */
+    public static final int FINS_RIGHT_START = 4;
+    public static final int FINS_RIGHT_END = 6;
+    public static final int FINS_RIGHT_CONTROL = 8;
+    /**
+     * 左鱼鳍：主轴起点、主轴终点、贝塞尔控制点
+     */
+    public static final int FINS_LEFT_START = 10;
+    public static final int FINS_LEFT_END = 12;
+    public static final int FINS_LEFT_CONTROL = 14;
+    /**
+     * 大躯干：右上、右下、左下、左上四个角，底部圆心和左右俩个贝塞尔控制点
+     */
+    public static final int BODY_RIGHT_TOP = 16;
+    public static final int BODY_RIGHT_BOTTOM = 18;
+    public static final int BODY_LEFT_BOTTOM = 20;
+    public static final int BODY_LEFT_TOP = 22;
+    public static final int BODY_END = 24;
+    public static final int BODY_CONTROL_RIGHT = 26;
+    public static final int BODY_CONTROL_LEFT = 28;
+    /**
+     * 第二节节肢：底部圆心和梯形4个角（顶部圆心就是BODY_END）
+     */
+    public static final int SEGMENT_BOTTOM = 30;
+    public static final int SEGMENT_LEFT_TOP = 32;
+    public static final int SEGMENT_LEFT_BOTTOM = 34;
+    public static final int SEGMENT_RIGHT_BOTTOM = 36;
+    public static final int SEGMENT_RIGHT_TOP = 38;
+    /**
+     * 第三节节肢：底部圆心和梯形4个角（顶部圆心就是SEGMENT_BOTTOM）
+     */
+    public static final int SEGMENT_LONG_BOTTOM = 40;
+    public static final int SEGMENT_LONG_LEFT_TOP = 42;
+    public static final int SEGMENT_LONG_LEFT_BOTTOM = 44;
+    public static final int SEGMENT_LONG_RIGHT_BOTTOM = 46;
+    public static final int SEGMENT_LONG_RIGHT_TOP = 48;
+    /**
+     * 尾巴：大小三角形的底边中点，大三角形左右顶点，小三角形左右顶点（共同的顶点就是SEGMENT_BOTTOM）
+     */
+    public static final int TAIL_BIG_BOTTOM = 50;
+    public static final int TAIL_SMALL_BOTTOM = 52;
+    public static final int TAIL_BIG_RIGHT = 54;
+    public static final int TAIL_SMALL_RIGHT = 56;
+    public static final int TAIL_SMALL_LEFT = 58;
+    public static final int TAIL_BIG_LEFT = 60;
+
+    /**
+     * 一条鱼占用的float个数
+     */
+    public static final int SIZE = 62;
+
+    /**
+     * 画成圆的点和对应的半径：鱼头、第二节节肢上下俩个圆、第三节节肢底部的圆
+     */
+    private static final int[] CIRCLES = {HEAD, BODY_END, SEGMENT_BOTTOM, SEGMENT_LONG_BOTTOM};
+    private static final float[] CIRCLE_RADII = {HEAD_RADIUS, SEGMENT_TOP_RADIUS, SEGMENT_BOTTOM_RADIUS, SEGMENT_LONG_BOTTOM_RADIUS};
+    /**
+     * 实际画出来的多边形顶点，尾巴的顶点是SEGMENT_BOTTOM圆心，已经在圆里了
+     */
+    private static final int[] POLYGON_POINTS = {
+            FINS_RIGHT_START, FINS_RIGHT_END, FINS_LEFT_START, FINS_LEFT_END,
+            BODY_RIGHT_TOP, BODY_RIGHT_BOTTOM, BODY_LEFT_BOTTOM, BODY_LEFT_TOP,
+            SEGMENT_LEFT_TOP, SEGMENT_LEFT_BOTTOM, SEGMENT_RIGHT_BOTTOM, SEGMENT_RIGHT_TOP,
+            SEGMENT_LONG_LEFT_TOP, SEGMENT_LONG_LEFT_BOTTOM, SEGMENT_LONG_RIGHT_BOTTOM, SEGMENT_LONG_RIGHT_TOP,
+            TAIL_BIG_RIGHT, TAIL_SMALL_RIGHT, TAIL_SMALL_LEFT, TAIL_BIG_LEFT};
+    /**
+     * 二次贝塞尔曲线的起点、控制点、终点
+     */
+    private static final int[] QUADS = {
+            FINS_RIGHT_START, FINS_RIGHT_CONTROL, FINS_RIGHT_END,
+            FINS_LEFT_START, FINS_LEFT_CONTROL, FINS_LEFT_END,
+            BODY_RIGHT_TOP, BODY_CONTROL_RIGHT, BODY_RIGHT_BOTTOM,
+            BODY_LEFT_BOTTOM, BODY_CONTROL_LEFT, BODY_LEFT_TOP};
+
+    //鱼身上固定偏移角度的cos和sin，计算时把每节的基准方向旋转这些角度，不用再算三角函数
+    private static final float COS_80 = (float) Math.cos(Math.toRadians(80));
+    private static final float SIN_80 = (float) Math.sin(Math.toRadians(80));
+    private static final float COS_110 = (float) Math.cos(Math.toRadians(110));
+    private static final float SIN_110 = (float) Math.sin(Math.toRadians(110));
+    private static final float COS_130 = (float) Math.cos(Math.toRadians(130));
+    private static final float SIN_130 = (float) Math.sin(Math.toRadians(130));
+
+    /**
+     * 身体、节肢和尾巴的描述，要用到上面的常量
+     */
+    private static final FishSpine CLASSIC = FishSpine.classic();
+
+    /**
+     * 重心到画出来的鱼最远处的距离上限，任何相位、方向和鱼鳍角度下整条鱼都在这个圆里。
+     * 要用到上面的常量，必须放在它们后面初始化
+     */
+    public static final float MAX_EXTENT = measureMaxExtent();
+
+    private FishSkeleton() {
+    }
+
+    /**
+     * 用默认精度的三角函数表计算一条鱼的所有顶点
+     *
+     * @see #evaluate(float[], int, float, float, float, float, float, FishTrig)
+     */
+    public static void evaluate(float[] out, int offset, float middleX, float middleY, float mainAngle, float phase, float finsAngle) {
+        evaluate(out, offset, middleX, middleY, mainAngle, phase, finsAngle, FishTrig.DEFAULT);
+    }
+
+    /**
+     * 计算一条鱼的所有顶点
+     * <p>
+     * 每一节只查一次基准角度的cos和sin，±80、±90、±110、±130、180这些固定偏移的点都由基准方向旋转得到
+     *
+     * @param out       输出缓冲区
+     * @param offset    这条鱼在缓冲区里的起始下标
+     * @param middleX   重心x
+     * @param middleY   重心y
+     * @param mainAngle 主方向和x轴的夹角
+     * @param phase     动画引擎值乘以全局频率，即三角函数里面的域值
+     * @param finsAngle 鱼鳍扭动的角度
+     * @param trig      三角函数表
+     */
+    public static void evaluate(float[] out, int offset, float middleX, float middleY, float mainAngle, float phase,
+                         float finsAngle, FishTrig trig) {
+        out[offset + MIDDLE] = middleX;
+        out[offset + MIDDLE + 1] = middleY;
+
+        //假设现在BODY_LENGH / 2线段在x轴上，旋转主方向得到头部终点坐标
+        calculatPoint(out, offset + HEAD, middleX, middleY, BODY_LENGH / 2, trig.cos(mainAngle), trig.sin(mainAngle));
+        float headX = out[offset + HEAD];
+        float headY = out[offset + HEAD + 1];
+
+        //身体，中心轴线加偏移量和x轴顺时针方向夹角，其实就是偏移角-2到2
+        float angle = CLASSIC.segmentAngle(0, mainAngle, phase, trig);
+        float cos = trig.cos(angle);
+        float sin = trig.sin(angle);
+
+        //右鱼鳍  右鱼鳍轴的起点  起点相对鱼头方向顺时针转了110度
+        calculatPoint(out, offset + FINS_RIGHT_START, headX, headY, HEAD_RADIUS * 0.9f,
+                cos * COS_110 + sin * SIN_110, sin * COS_110 - cos * SIN_110);
+        //左鱼鳍
+        calculatPoint(out, offset + FINS_LEFT_START, headX, headY, HEAD_RADIUS * 0.9f,
+                cos * COS_110 - sin * SIN_110, sin * COS_110 + cos * SIN_110);
+        //鱼鳍主轴在身体方向上再扭finsAngle，右鳍顺时针，左鳍逆时针
+        float finsCos = trig.cos(finsAngle);
+        float finsSin = trig.sin(finsAngle);
+        makeFins(out, offset + FINS_RIGHT_START, cos * finsCos + sin * finsSin, sin * finsCos - cos * finsSin, -1);
+        makeFins(out, offset + FINS_LEFT_START, cos * finsCos - sin * finsSin, sin * finsCos + cos * finsSin, 1);
+
+        //躯干底部的圆位置   相对鱼头方向旋转180度
+        calculatPoint(out, offset + BODY_END, headX, headY, BODY_LENGH, -cos, -sin);
+        float endX = out[offset + BODY_END];
+        float endY = out[offset + BODY_END + 1];
+
+        //80度得到的点偏上一点，看起来会更好，右上、左上
+        calculatPoint(out, offset + BODY_RIGHT_TOP, headX, headY, HEAD_RADIUS, cos * COS_80 + sin * SIN_80, sin * COS_80 - cos * SIN_80);
+        calculatPoint(out, offset + BODY_LEFT_TOP, headX, headY, HEAD_RADIUS, cos * COS_80 - sin * SIN_80, sin * COS_80 + cos * SIN_80);
+        //右下、左下，旋转±90度就是交换cos和sin
+        calculatPoint(out, offset + BODY_RIGHT_BOTTOM, endX, endY, HEAD_RADIUS * 0.7f, sin, -cos);
+        calculatPoint(out, offset + BODY_LEFT_BOTTOM, endX, endY, HEAD_RADIUS * 0.7f, -sin, cos);
+        //贝塞尔曲线控制点
+        calculatPoint(out, offset + BODY_CONTROL_RIGHT, headX, headY, BODY_LENGH * 0.56f,
+                cos * COS_130 + sin * SIN_130, sin * COS_130 - cos * SIN_130);
+        calculatPoint(out, offset + BODY_CONTROL_LEFT, headX, headY, BODY_LENGH * 0.56f,
+                cos * COS_130 - sin * SIN_130, sin * COS_130 + cos * SIN_130);
+
+        //第二节节肢15度左右摇摆，第三节35度，比上面部分控件越来越大，扭动时候可以体现出鱼灵动的摇尾巴的动作。
+        //俩节从BODY_END开始紧挨着，和FishSpine的第1、2节布局一样
+        float segmentLongAngle = CLASSIC.evaluateSegments(out, offset + BODY_END, offset + SEGMENT_BOTTOM, 1, angle, phase, trig);
+
+        //尾巴，三角形的最大2分之宽度随三角函数变化，为了扭得更骚，加了50宽度
+        makeTail(out, offset, CLASSIC.getTailLength(), CLASSIC.tailWidth(phase, trig),
+                trig.cos(segmentLongAngle), trig.sin(segmentLongAngle));
+    }
+
+    /**
+     * 根据骨架算出鱼精确的包围盒：多边形按实际画出的顶点算，圆按圆心加半径算，
+     * 贝塞尔曲线按曲线本身的极值点算，不含控制点和只用来推算别的点的辅助点
+     *
+     * @param p      骨架缓冲区
+     * @param offset 这条鱼在缓冲区里的起始下标
+     * @param bounds 输出，依次是left、top、right、bottom
+     */
+    public static void computeBounds(float[] p, int offset, float[] bounds) {
+        bounds[0] = Float.MAX_VALUE;
+        bounds[1] = Float.MAX_VALUE;
+        bounds[2] = -Float.MAX_VALUE;
+        bounds[3] = -Float.MAX_VALUE;
+        for (int i = 0; i < POLYGON_POINTS.length; i++) {
+            include(bounds, p[offset + POLYGON_POINTS[i]], p[offset + POLYGON_POINTS[i] + 1], 0);
+        }
+        //鱼头和节肢的圆
+        for (int c = 0; c < CIRCLES.length; c++) {
+            include(bounds, p[offset + CIRCLES[c]], p[offset + CIRCLES[c] + 1], CIRCLE_RADII[c]);
+        }
+        //鱼鳍和身体的曲线，端点已经在多边形的顶点里了，只补上中间的极值点
+        for (int q = 0; q < QUADS.length; q += 3) {
+            int start = offset + QUADS[q];
+            int control = offset + QUADS[q + 1];
+            int end = offset + QUADS[q + 2];
+            includeQuadExtremum(bounds, p[start], p[control], p[end], p[start + 1], p[control + 1], p[end + 1], 0);
+            includeQuadExtremum(bounds, p[start + 1], p[control + 1], p[end + 1], p[start], p[control], p[end], 1);
+        }
+    }
+
+    private static void include(float[] bounds, float x, float y, float r) {
+        if (x - r < bounds[0]) bounds[0] = x - r;
+        if (x + r > bounds[2]) bounds[2] = x + r;
+        if (y - r < bounds[1]) bounds[1] = y - r;
+        if (y + r > bounds[3]) bounds[3] = y + r;
+    }
+
+    /**
+     * 二次贝塞尔曲线在一个坐标轴上的极值点，导数为0的t在0到1之间才算
+     *
+     * @param axis 0表示a是x坐标，1表示a是y坐标
+     */
+    private static void includeQuadExtremum(float[] bounds, float a0, float a1, float a2,
+                                            float b0, float b1, float b2, int axis) {
+        float denominator = a0 - 2 * a1 + a2;
+        if (denominator == 0) {
+            return;
+        }
+        float t = (a0 - a1) / denominator;
+        if (t <= 0 || t >= 1) {
+            return;
+        }
+        float u = 1 - t;
+        float a = u * u * a0 + 2 * u * t * a1 + t * t * a2;
+        float b = u * u * b0 + 2 * u * t * b1 + t * t * b2;
+        if (axis == 0) {
+            include(bounds, a, b, 0);
+        } else {
+            include(bounds, b, a, 0);
+        }
+    }
+
+    /**
+     * 朝x轴正方向扫一遍整个周期，取包围盒离重心最远的角，多留1像素给相位采样的误差
+     */
+    private static float measureMaxExtent() {
+        float[] p = new float[SIZE];
+        float[] bounds = new float[4];
+        float max = 0;
+        for (float phase = 0; phase < PHASE_CYCLE; phase += 5) {
+            for (int fins = 0; fins <= 1; fins++) {
+                evaluate(p, 0, 0, 0, 0, phase, fins);
+                computeBounds(p, 0, bounds);
+                float dx = Math.max(-bounds[0], bounds[2]);
+                float dy = Math.max(-bounds[1], bounds[3]);
+                max = Math.max(max, (float) Math.sqrt(dx * dx + dy * dy));
+            }
+        }
+        return max + 1;
+    }
+
+    /**
+     * 计算鱼鳍的主轴终点和贝塞尔曲线辅助控制点，起点已经写在start处，终点和控制点紧跟其后
+     *
+     * @param cos  鱼鳍基准方向的cos
+     * @param sin  鱼鳍基准方向的sin
+     * @param side 右鳍-1，左鳍1，控制点相对基准方向旋转side * 110度
+     */
+    private static void makeFins(float[] out, int start, float cos, float sin, int side) {
+        float startX = out[start];
+        float startY = out[start + 1];
+        calculatPoint(out, start + 2, startX, startY, FINS_LENGTH, -cos, -sin);
+        calculatPoint(out, start + 4, startX, startY, FINS_LENGTH * 1.8f,
+                cos * COS_110 - side * sin * SIN_110, sin * COS_110 + side * cos * SIN_110);
+    }
+
+    /**
+     * 计算尾巴的俩个三角形
+     *
+     * @param length 上个控件的身长
+     * @param width  大三角形的2分之宽度
+     * @param cos    上级控件当前角度的cos
+     * @param sin    上级控件当前角度的sin
+     */
+    private static void makeTail(float[] out, int offset, float length, float width, float cos, float sin) {
+        float topX = out[offset + SEGMENT_BOTTOM];
+        float topY = out[offset + SEGMENT_BOTTOM + 1];
+
+        //大小三角形的底边中点，1为大
+        calculatPoint(out, offset + TAIL_BIG_BOTTOM, topX, topY, length, -cos, -sin);
+        calculatPoint(out, offset + TAIL_SMALL_BOTTOM, topX, topY, length - 10, -cos, -sin);
+
+        float bigX = out[offset + TAIL_BIG_BOTTOM];
+        float bigY = out[offset + TAIL_BIG_BOTTOM + 1];
+        float smallX = out[offset + TAIL_SMALL_BOTTOM];
+        float smallY = out[offset + TAIL_SMALL_BOTTOM + 1];
+        calculatPoint(out, offset + TAIL_BIG_RIGHT, bigX, bigY, width, sin, -cos);//右定点 大三角形
+        calculatPoint(out, offset + TAIL_BIG_LEFT, bigX, bigY, width, -sin, cos);//左
+        calculatPoint(out, offset + TAIL_SMALL_RIGHT, smallX, smallY, width - 20, sin, -cos);//右定点， 小三角形
+        calculatPoint(out, offset + TAIL_SMALL_LEFT, smallX, smallY, width - 20, -sin, cos);//左
+    }
+
+    /**
+     * 输入起点、长度、方向计算终点，结果直接写进缓冲区
+     * <p>
+     * 知道一个线段，一个定点，线段旋转角度求终点坐标
+     * 根据极坐标系原理 x = pcog(a), y = psin(a)，符合Android坐标的y轴朝下的标准，y方向取反
+     *
+     * @param out    输出缓冲区
+     * @param index  终点在缓冲区里的下标
+     * @param startX 起点x
+     * @param startY 起点y
+     * @param length 长度
+     * @param cos    旋转角度的cos
+     * @param sin    旋转角度的sin
+     */
+    public static void calculatPoint(float[] out, int index, float startX, float startY, float length, float cos, float sin) {
+        out[index] = startX + cos * length;
+        out[index + 1] = startY - sin * length;
+    }
+}
@@ -0,0 +1,391 @@
+package com.minminaya.fish.core;
+
+/**
+ * 数据驱动的N节鱼身，每一节用长度、粗细比例、摆幅、频率和相位差描述，一个循环从头算到尾
+ * <p>
+ * 第i节的方向是上一节的方向加上amplitude * cos(frequency * phase - phaseLag)，
+ * 粗细从上一节末端的半径乘以比例得到，所以每节的开销一样，总开销和节数成正比。
+ * 节数少的鱼画起来便宜，节数多、相位差逐节增加的就是一条游得很顺的鳗鱼。
+ * {@link #classic()}用这种方式描述了{@link FishSkeleton}里身体、俩节节肢和尾巴的那套参数，
+ * FishSkeleton的节肢和尾巴就是按它算的，只有鱼鳍和带曲线的身体是自己画的。
+ * <p>
+ * 缓冲区布局：重心、鱼头，然后每节10个float依次是末端中心、左上、左下、右下、右上，
+ * 最后是尾巴的大三角形底边中点、右、左和小三角形底边中点、右、左。下标都指向x，y在下标+1
+ */
+public final class FishSpine {
+
+    /**
+     * 每节描述里的下标
+     */
+    public static final int SEGMENT_LENGTH = 0;
+    /**
+     * 末端半径和顶端半径的比例
+     */
+    public static final int SEGMENT_RADIUS_RATIO = 1;
+    /**
+     * 相对上一节摆动的最大角度
+     */
+    public static final int SEGMENT_AMPLITUDE = 2;
+    /**
+     * 摆动频率，乘在相位上
+     */
+    public static final int SEGMENT_FREQUENCY = 3;
+    /**
+     * 摆动落后多少度，逐节增加就是从头传到尾的波
+     */
+    public static final int SEGMENT_PHASE_LAG = 4;
+    public static final int SEGMENT_STRIDE = 5;
+
+    public static final int MIDDLE = 0;
+    public static final int HEAD = 2;
+    /**
+     * 第一节在缓冲区里的下标，每节{@link #SEGMENT_FLOATS}个float
+     */
+    public static final int FIRST_SEGMENT = 4;
+    public static final int SEGMENT_FLOATS = 10;
+
+    /**
+     * 尾巴的小三角形比大三角形短多少、窄多少
+     */
+    private static final float TAIL_SMALL_INSET = 10;
+    private static final float TAIL_SMALL_WIDTH_INSET = 20;
+
+    private final int count;
+    private final float headRadius;
+    private final float headOffset;
+    /**
+     * 按节展开的参数，循环里直接按下标取，不用每次乘步长
+     */
+    private final float[] lengths;
+    private final float[] topRadii;
+    private final float[] amplitudes;
+    private final float[] frequencies;
+    private final float[] phaseLags;
+    private final float tailLength;
+    private final float tailWidth;
+    private final float tailFlap;
+    private final float tailFrequency;
+    private final int tail;
+    private final int size;
+
+    /**
+     * @param headRadius    鱼头半径，也是第一节顶端的半径
+     * @param segments      每节{@link #SEGMENT_STRIDE}个float，按SEGMENT_*下标排列，从头到尾
+     * @param tailLength    尾巴从最后一节的顶端算起有多长
+     * @param tailWidth     尾巴大三角形不摆动时的半宽
+     * @param tailFlap      尾巴半宽随摆动最多再加多少
+     * @param tailFrequency 尾巴张合的频率，乘在相位上
+     */
+    public FishSpine(float headRadius, float[] segments, float tailLength, float tailWidth, float tailFlap, float tailFrequency) {
+        if (headRadius <= 0) {
+            throw new IllegalArgumentException("head radius must be positive");
+        }
+        if (segments.length == 0 || segments.length % SEGMENT_STRIDE != 0) {
+            throw new IllegalArgumentException("segments must hold whole segments, got " + segments.length + " floats");
+        }
+        count = segments.length / SEGMENT_STRIDE;
+        this.headRadius = headRadius;
+        lengths = new float[count];
+        topRadii = new float[count + 1];
+        amplitudes = new float[count];
+        frequencies = new float[count];
+        phaseLags = new float[count];
+        topRadii[0] = headRadius;
+        for (int i = 0; i < count; i++) {
+            int s = i * SEGMENT_STRIDE;
+            if (segments[s + SEGMENT_LENGTH] <= 0 || segments[s + SEGMENT_RADIUS_RATIO] <= 0) {
+                throw new IllegalArgumentException("segment " + i + " needs a positive length and radius ratio");
+            }
+            lengths[i] = segments[s + SEGMENT_LENGTH];
+            topRadii[i + 1] = topRadii[i] * segments[s + SEGMENT_RADIUS_RATIO];
+            amplitudes[i] = segments[s + SEGMENT_AMPLITUDE];
+            frequencies[i] = segments[s + SEGMENT_FREQUENCY];
+            phaseLags[i] = segments[s + SEGMENT_PHASE_LAG];
+        }
+        //重心在第一节的中点，和FishSkeleton一样
+        headOffset = lengths[0] / 2;
+        this.tailLength = tailLength;
+        this.tailWidth = tailWidth;
+        this.tailFlap = tailFlap;
+        this.tailFrequency = tailFrequency;
+        tail = FIRST_SEGMENT + count * SEGMENT_FLOATS;
+        size = tail + 12;
+    }
+
+    /**
+     * {@link FishSkeleton}的身体、俩节节肢和尾巴，参数一样，只是身体画成梯形
+     */
+    public static FishSpine classic() {
+        float segmentLength = FishSkeleton.SEGMENT_TOP_RADIUS * (FishSkeleton.SEGMENT_RATIO + 1);
+        float segmentLongLength = FishSkeleton.SEGMENT_LONG_TOP_RADIUS * (FishSkeleton.SEGMENT_LONG_RATIO + 2.7f);
+        return new FishSpine(FishSkeleton.HEAD_RADIUS, new float[]{
+                //身体，sin(x)就是cos(x - 90)
+                FishSkeleton.BODY_LENGH, FishSkeleton.SEGMENT_TOP_RADIUS / FishSkeleton.HEAD_RADIUS, 2, 1.2f, 90,
+                //第二节节肢，15度左右摇摆
+                segmentLength, FishSkeleton.SEGMENT_RATIO, 15, 1.5f, 0,
+                //第三节节肢，35度，比上一节晚90度
+                segmentLongLength, FishSkeleton.SEGMENT_LONG_RATIO, 35, 1.5f, 90,
+        }, segmentLongLength, FishSkeleton.HEAD_RADIUS / 5, FishSkeleton.SEGMENT_LONG_TOP_RADIUS + 50, 1.7f);
+    }
+
+    /**
+     * 只有身体和一节尾柄的便宜小鱼
+     */
+    public static FishSpine stubby() {
+        return new FishSpine(FishSkeleton.HEAD_RADIUS, new float[]{
+                FishSkeleton.BODY_LENGH, 0.7f, 3, 1.2f, 90,
+                FishSkeleton.BODY_LENGH * 0.4f, 0.4f, 30, 1.5f, 0,
+        }, FishSkeleton.BODY_LENGH * 0.4f, FishSkeleton.HEAD_RADIUS / 5, FishSkeleton.HEAD_RADIUS * 1.5f, 1.7f);
+    }
+
+    /**
+     * 细长的鳗鱼，每节一样长，越往后越细，摆幅越大，相位差逐节增加
+     *
+     * @param segments 节数
+     * @param length   总长，不含尾巴
+     */
+    public static FishSpine eel(int segments, float length) {
+        if (segments <= 0 || length <= 0) {
+            throw new IllegalArgumentException("segments and length must be positive");
+        }
+        float[] description = new float[segments * SEGMENT_STRIDE];
+        float segmentLength = length / segments;
+        //总共细到三分之一
+        float ratio = (float) Math.pow(1 / 3.0, 1.0 / segments);
+        for (int i = 0; i < segments; i++) {
+            int s = i * SEGMENT_STRIDE;
+            description[s + SEGMENT_LENGTH] = segmentLength;
+            description[s + SEGMENT_RADIUS_RATIO] = ratio;
+            //每节相对上一节的角度，越往后越大，整条身子叠起来是一个往后传的波
+            description[s + SEGMENT_AMPLITUDE] = 4 + 12f * i / segments;
+            description[s + SEGMENT_FREQUENCY] = 1.5f;
+            description[s + SEGMENT_PHASE_LAG] = 360f * i / segments;
+        }
+        float radius = FishSkeleton.HEAD_RADIUS * 0.6f;
+        return new FishSpine(radius, description, segmentLength * 1.5f, radius / 3, radius, 1.7f);
+    }
+
+    public int getSegmentCount() {
+        return count;
+    }
+
+    /**
+     * @return 一条鱼在缓冲区里占几个float
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 尾巴在缓冲区里的下标，依次是大三角形底边中点、右、左，小三角形底边中点、右、左
+     */
+    public int getTail() {
+        return tail;
+    }
+
+    /**
+     * 第i节在缓冲区里的下标
+     */
+    public int segment(int i) {
+        return FIRST_SEGMENT + i * SEGMENT_FLOATS;
+    }
+
+    /**
+     * 第i个关节的半径，0是鱼头，i是第i节的末端
+     */
+    public float getJointRadius(int i) {
+        return topRadii[i];
+    }
+
+    /**
+     * @see #evaluate(float[], int, float, float, float, float, FishTrig)
+     */
+    public void evaluate(float[] out, int offset, float middleX, float middleY, float mainAngle, float phase) {
+        evaluate(out, offset, middleX, middleY, mainAngle, phase, FishTrig.DEFAULT);
+    }
+
+    /**
+     * 计算所有顶点，每节查俩次三角函数表：一次摆动，一次方向
+     *
+     * @param out       输出缓冲区，从offset起至少{@link #getSize()}个float
+     * @param middleX   重心x
+     * @param middleY   重心y
+     * @param mainAngle 主方向和x轴的夹角
+     * @param phase     动画引擎值乘以全局频率
+     */
+    public void evaluate(float[] out, int offset, float middleX, float middleY, float mainAngle, float phase, FishTrig trig) {
+        out[offset + MIDDLE] = middleX;
+        out[offset + MIDDLE + 1] = middleY;
+        FishSkeleton.calculatPoint(out, offset + HEAD, middleX, middleY, headOffset, trig.cos(mainAngle), trig.sin(mainAngle));
+
+        float angle = evaluateSegments(out, offset + HEAD, offset + FIRST_SEGMENT, 0, mainAngle, phase, trig);
+        float cos = trig.cos(angle);
+        float sin = trig.sin(angle);
+        //尾巴从最后一节的顶端沿最后一节的方向伸出去，宽度随相位张合
+        int apex = offset + (count > 1 ? segment(count - 2) : HEAD);
+        float topX = out[apex];
+        float topY = out[apex + 1];
+        float width = tailWidth(phase, trig);
+        float smallWidth = width - TAIL_SMALL_WIDTH_INSET;
+        int o = offset + tail;
+        tailPoints(out, o, topX - cos * tailLength, topY + sin * tailLength, width, cos, sin);
+        tailPoints(out, o + 6, topX - cos * (tailLength - TAIL_SMALL_INSET), topY + sin * (tailLength - TAIL_SMALL_INSET),
+                smallWidth, cos, sin);
+    }
+
+    /**
+     * 第i节的方向，上一节的方向加上这一节的摆动
+     *
+     * @param angle 上一节的方向，第0节是主方向
+     */
+    public float segmentAngle(int i, float angle, float phase, FishTrig trig) {
+        return angle + amplitudes[i] * trig.cos(frequencies[i] * phase - phaseLags[i]);
+    }
+
+    /**
+     * 从第from节算到最后一节，每节{@link #SEGMENT_FLOATS}个float依次往后写，布局和{@link #segment}的一样
+     *
+     * @param joint 第from节顶端中心的下标，已经算好了
+     * @param first 第from节写在缓冲区里的下标
+     * @param angle 第from节上一节的方向，from是0时就是主方向
+     * @return 最后一节的方向
+     */
+    public float evaluateSegments(float[] out, int joint, int first, int from, float angle, float phase, FishTrig trig) {
+        float topX = out[joint];
+        float topY = out[joint + 1];
+        int o = first;
+        for (int i = from; i < count; i++, o += SEGMENT_FLOATS) {
+            angle = segmentAngle(i, angle, phase, trig);
+            float cos = trig.cos(angle);
+            float sin = trig.sin(angle);
+            float length = lengths[i];
+            float top = topRadii[i];
+            float bottom = topRadii[i + 1];
+            //末端中心在顶端中心的反方向
+            float bottomX = topX - cos * length;
+            float bottomY = topY + sin * length;
+            out[o] = bottomX;
+            out[o + 1] = bottomY;
+            //左右就是方向旋转±90度，和FishSkeleton的节肢一样
+            out[o + 2] = topX + sin * top;
+            out[o + 3] = topY + cos * top;
+            out[o + 4] = bottomX + sin * bottom;
+            out[o + 5] = bottomY + cos * bottom;
+            out[o + 6] = bottomX - sin * bottom;
+            out[o + 7] = bottomY - cos * bottom;
+            out[o + 8] = topX - sin * top;
+            out[o + 9] = topY - cos * top;
+            topX = bottomX;
+            topY = bottomY;
+        }
+        return angle;
+    }
+
+    /**
+     * 尾巴大三角形这一刻的半宽，小三角形再窄{@link #TAIL_SMALL_WIDTH_INSET}
+     */
+    public float tailWidth(float phase, FishTrig trig) {
+        return Math.abs(trig.sin(phase * tailFrequency)) * tailFlap + tailWidth;
+    }
+
+    /**
+     * 尾巴从最后一节的顶端算起有多长
+     */
+    public float getTailLength() {
+        return tailLength;
+    }
+
+    private static void tailPoints(float[] out, int o, float x, float y, float width, float cos, float sin) {
+        out[o] = x;
+        out[o + 1] = y;
+        out[o + 2] = x + sin * width;
+        out[o + 3] = y + cos * width;
+        out[o + 4] = x - sin * width;
+        out[o + 5] = y - cos * width;
+    }
+
+    /**
+     * 按FishGeometry的顺序输出：鱼头，各关节的圆和后面几节的梯形，尾巴，最后是第一节身体
+     * <p>
+     * 一共2 * 节数 + 3次调用
+     */
+    public void emit(float[] p, int o, FishRenderer renderer) {
+        renderer.setPart(FishRenderer.PART_OTHER);
+        renderer.drawCircle(p[o + HEAD], p[o + HEAD + 1], headRadius);
+        for (int i = 1; i < count; i++) {
+            //第i节顶端的关节就是上一节的末端
+            int previous = o + segment(i - 1);
+            renderer.drawCircle(p[previous], p[previous + 1], topRadii[i]);
+            emitTrapezoid(p, o + segment(i), renderer);
+        }
+        //尾巴的顶点是最后一节顶端的关节，先画小三角形
+        int apex = o + (count > 1 ? segment(count - 2) : HEAD);
+        emitTriangle(p, apex, o + tail + 6, renderer);
+        emitTriangle(p, apex, o + tail, renderer);
+        int last = o + segment(count - 1);
+        renderer.drawCircle(p[last], p[last + 1], topRadii[count]);
+
+        renderer.setPart(FishRenderer.PART_BODY);
+        emitTrapezoid(p, o + segment(0), renderer);
+    }
+
+    /**
+     * 包围盒，按多边形顶点和关节的圆算
+     *
+     * @param bounds 输出，依次是left、top、right、bottom
+     */
+    public void computeBounds(float[] p, int o, float[] bounds) {
+        float left = p[o + HEAD] - headRadius;
+        float top = p[o + HEAD + 1] - headRadius;
+        float right = p[o + HEAD] + headRadius;
+        float bottom = p[o + HEAD + 1] + headRadius;
+        for (int i = 0; i < count; i++) {
+            int s = o + segment(i);
+            float r = topRadii[i + 1];
+            left = Math.min(left, p[s] - r);
+            top = Math.min(top, p[s + 1] - r);
+            right = Math.max(right, p[s] + r);
+            bottom = Math.max(bottom, p[s + 1] + r);
+            for (int k = s + 2; k < s + SEGMENT_FLOATS; k += 2) {
+                left = Math.min(left, p[k]);
+                top = Math.min(top, p[k + 1]);
+                right = Math.max(right, p[k]);
+                bottom = Math.max(bottom, p[k + 1]);
+            }
+        }
+        for (int k = o + tail; k < o + size; k += 2) {
+            left = Math.min(left, p[k]);
+            top = Math.min(top, p[k + 1]);
+            right = Math.max(right, p[k]);
+            bottom = Math.max(bottom, p[k + 1]);
+        }
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = right;
+        bounds[3] = bottom;
+    }
+
+    /**
+     * 一节的梯形，s指向这一节的末端中心，后面是左上、左下、右下、右上
+     */
+    private static void emitTrapezoid(float[] p, int s, FishRenderer renderer) {
+        renderer.moveTo(p[s + 2], p[s + 3]);
+        renderer.lineTo(p[s + 4], p[s + 5]);
+        renderer.lineTo(p[s + 6], p[s + 7]);
+        renderer.lineTo(p[s + 8], p[s + 9]);
+        renderer.fillPath();
+    }
+
+    /**
+     * 尾巴的一个三角形
+     *
+     * @param apex 顶点的下标
+     * @param base 底边中点、右、左的下标
+     */
+    private static void emitTriangle(float[] p, int apex, int base, FishRenderer renderer) {
+        renderer.moveTo(p[apex], p[apex + 1]);
+        renderer.lineTo(p[base + 2], p[base + 3]);
+        renderer.lineTo(p[base + 4], p[base + 5]);
+        renderer.fillPath();
+    }
+}
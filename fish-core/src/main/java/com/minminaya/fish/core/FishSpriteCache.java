@@ -0,0 +1,252 @@
+package com.minminaya.fish.core;
+
+/**
+ * 预渲染帧的编号和淘汰顺序，和位图无关，FishSpriteAtlas用它决定贴哪一帧、淘汰哪一帧
+ * <p>
+ * 相位、朝向和鱼鳍角度量化成一个int的key。所有帧一样大，预算换算成最多放几帧。
+ * 最久没用过的顺序用按key下标的双向链表记，命中、加入和淘汰都是O(1)，不分配对象。
+ * 鱼停在一个朝向上摆尾巴时按相位一圈一圈地循环取帧，一圈放不下的话最近最少使用永远在淘汰下一帧要用的，
+ * 一次也命中不了。相位的档数不能为了省内存往下减，档太粗尾巴就一顿一顿的，
+ * 所以帧只裁到这个朝向上鱼实际占的范围、一个像素一个字节，还放不下就按比例缩小，见{@link #scaleForBudget}
+ */
+public final class FishSpriteCache {
+
+    /**
+     * 鱼鳍角度只有0到1度，分俩档就够了
+     */
+    public static final int FINS_STEPS = 2;
+    /**
+     * 一圈相位3600分360档，一档10，歇着的时候60帧每秒一帧走5，每两帧换一张，尾巴的一个摆动周期240有24张
+     */
+    public static final int DEFAULT_PHASE_STEPS = 360;
+    /**
+     * 帧最多缩到一半，再小贴出来就糊了，这时预算不够用
+     */
+    public static final float MIN_SCALE = 0.5f;
+    /**
+     * 抗锯齿多留的像素
+     */
+    private static final float PADDING = 2;
+
+    private final int phaseSteps;
+    private final int headingSteps;
+    private final int capacity;
+
+    /**
+     * 按key的前后指针，最后一格是链表头，头的next是最近用过的，prev是最久没用过的；-1表示不在缓存里
+     */
+    private final int[] next;
+    private final int[] prev;
+    private final int head;
+    private int size;
+
+    /**
+     * @param capacity     最多放几帧
+     * @param phaseSteps   一个波形周期分成多少帧，一圈要放得下
+     * @param headingSteps 一圈朝向分成多少帧
+     */
+    public FishSpriteCache(int capacity, int phaseSteps, int headingSteps) {
+        if (capacity <= 0 || phaseSteps <= 0 || headingSteps <= 0) {
+            throw new IllegalArgumentException("capacity and steps must be positive");
+        }
+        if (phaseSteps * FINS_STEPS > capacity) {
+            throw new IllegalArgumentException("one cycle of " + phaseSteps + " phases does not fit in "
+                    + capacity + " frames");
+        }
+        this.capacity = capacity;
+        this.phaseSteps = phaseSteps;
+        this.headingSteps = headingSteps;
+        int keys = phaseSteps * headingSteps * FINS_STEPS;
+        next = new int[keys + 1];
+        prev = new int[keys + 1];
+        head = keys;
+        clear();
+    }
+
+    /**
+     * 按量化后的相位和俩档鱼鳍角度扫一遍，量出每个朝向上鱼相对重心的范围，这个朝向的所有帧都裁成这么大
+     *
+     * @return 每个朝向4个float，依次是left、top、right、bottom，已经留了抗锯齿的边
+     */
+    public static float[] measureHeadingBounds(int phaseSteps, int headingSteps) {
+        float[] p = new float[FishSkeleton.SIZE];
+        float[] frame = new float[4];
+        float[] bounds = new float[headingSteps * 4];
+        for (int h = 0; h < headingSteps; h++) {
+            int o = h * 4;
+            bounds[o] = Float.MAX_VALUE;
+            bounds[o + 1] = Float.MAX_VALUE;
+            bounds[o + 2] = -Float.MAX_VALUE;
+            bounds[o + 3] = -Float.MAX_VALUE;
+            float heading = h * 360f / headingSteps;
+            for (int phase = 0; phase < phaseSteps; phase++) {
+                for (int fins = 0; fins < FINS_STEPS; fins++) {
+                    FishSkeleton.evaluate(p, 0, 0, 0, heading, phase * FishSkeleton.PHASE_CYCLE / phaseSteps,
+                            fins / (float) (FINS_STEPS - 1));
+                    FishSkeleton.computeBounds(p, 0, frame);
+                    bounds[o] = Math.min(bounds[o], frame[0] - PADDING);
+                    bounds[o + 1] = Math.min(bounds[o + 1], frame[1] - PADDING);
+                    bounds[o + 2] = Math.max(bounds[o + 2], frame[2] + PADDING);
+                    bounds[o + 3] = Math.max(bounds[o + 3], frame[3] + PADDING);
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * 缩放以后的帧边长
+     *
+     * @param extent 没缩放时的宽或高
+     */
+    public static int frameSize(float extent, float scale) {
+        return Math.max(1, (int) Math.ceil(extent * scale));
+    }
+
+    /**
+     * 最大的一个朝向的一帧占几个字节，一个像素一个字节
+     *
+     * @param headingBounds {@link #measureHeadingBounds}的结果
+     */
+    public static int maxFrameBytes(float[] headingBounds, float scale) {
+        int max = 0;
+        for (int o = 0; o < headingBounds.length; o += 4) {
+            int bytes = frameSize(headingBounds[o + 2] - headingBounds[o], scale)
+                    * frameSize(headingBounds[o + 3] - headingBounds[o + 1], scale);
+            max = Math.max(max, bytes);
+        }
+        return max;
+    }
+
+    /**
+     * 一圈相位（俩档鱼鳍角度各一圈）放得进预算的最大缩放，最多1
+     *
+     * @param headingBounds {@link #measureHeadingBounds}的结果
+     * @return 小于{@link #MIN_SCALE}表示预算不够
+     */
+    public static float scaleForBudget(int memoryBudget, int phaseSteps, float[] headingBounds) {
+        if (memoryBudget <= 0 || phaseSteps <= 0) {
+            throw new IllegalArgumentException("budget and steps must be positive");
+        }
+        long cycleFrames = (long) phaseSteps * FINS_STEPS;
+        float scale = (float) Math.min(1, Math.sqrt((double) memoryBudget / cycleFrames / maxFrameBytes(headingBounds, 1)));
+        //向上取整多出来的像素可能又超了一点，再缩一点
+        while (scale >= MIN_SCALE && cycleFrames * maxFrameBytes(headingBounds, scale) > memoryBudget) {
+            scale *= 0.99f;
+        }
+        return scale;
+    }
+
+    public int getPhaseSteps() {
+        return phaseSteps;
+    }
+
+    public int getHeadingSteps() {
+        return headingSteps;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int phaseIndex(float phase) {
+        float value = phase % FishSkeleton.PHASE_CYCLE;
+        if (value < 0) {
+            value += FishSkeleton.PHASE_CYCLE;
+        }
+        return Math.round(value / FishSkeleton.PHASE_CYCLE * phaseSteps) % phaseSteps;
+    }
+
+    /**
+     * @param heading 已经换算到0到360度
+     */
+    public int headingIndex(float heading) {
+        return Math.round(heading / 360 * headingSteps) % headingSteps;
+    }
+
+    public static int finsIndex(float finsAngle) {
+        return Math.min(FINS_STEPS - 1, Math.round(finsAngle * (FINS_STEPS - 1)));
+    }
+
+    public int key(int phaseIndex, int headingIndex, int finsIndex) {
+        return (phaseIndex * headingSteps + headingIndex) * FINS_STEPS + finsIndex;
+    }
+
+    public int keyCount() {
+        return head;
+    }
+
+    public boolean contains(int key) {
+        return next[key] >= 0;
+    }
+
+    /**
+     * 用了一次，在缓存里的挪到最近用过的位置
+     *
+     * @return 在不在缓存里
+     */
+    public boolean touch(int key) {
+        if (next[key] < 0) {
+            return false;
+        }
+        unlink(key);
+        linkFirst(key);
+        return true;
+    }
+
+    /**
+     * 加一帧，算最近用过的，已经在的话只是挪一下。超出容量时不自动淘汰，由调用方{@link #evict}后释放位图
+     */
+    public void add(int key) {
+        if (next[key] >= 0) {
+            unlink(key);
+        } else {
+            size++;
+        }
+        linkFirst(key);
+    }
+
+    /**
+     * 超出容量时淘汰最久没用过的一帧
+     *
+     * @return 淘汰的key，没超出时-1
+     */
+    public int evict() {
+        if (size <= capacity) {
+            return -1;
+        }
+        int oldest = prev[head];
+        unlink(oldest);
+        next[oldest] = -1;
+        prev[oldest] = -1;
+        size--;
+        return oldest;
+    }
+
+    public void clear() {
+        for (int i = 0; i < head; i++) {
+            next[i] = -1;
+            prev[i] = -1;
+        }
+        next[head] = head;
+        prev[head] = head;
+        size = 0;
+    }
+
+    private void unlink(int key) {
+        next[prev[key]] = next[key];
+        prev[next[key]] = prev[key];
+    }
+
+    private void linkFirst(int key) {
+        int first = next[head];
+        next[key] = first;
+        prev[key] = head;
+        prev[first] = key;
+        next[head] = key;
+    }
+}
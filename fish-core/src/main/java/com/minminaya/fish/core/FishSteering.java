@@ -0,0 +1,185 @@
+package com.minminaya.fish.core;
+
+/**
+ * 鱼的转向和游动路径的计算
+ * <p>
+ * 原来在FishView里面用PointF算，这里全部换成基本类型，结果写进调用方的float[]
+ */
+public final class FishSteering {
+
+    /**
+     * 游动路径：起点、俩个控制点、终点，一共8个float
+     */
+    public static final int TRAIL_SIZE = 8;
+    public static final int TRAIL_START = 0;
+    public static final int TRAIL_CONTROL1 = 2;
+    public static final int TRAIL_CONTROL2 = 4;
+    public static final int TRAIL_END = 6;
+    /**
+     * 绕障碍物的路线每多一段多6个float：俩个控制点和这一段的终点，上一段的终点就是这一段的起点
+     */
+    public static final int ROUTE_SEGMENT_SIZE = 6;
+
+    private FishSteering() {
+    }
+
+    /**
+     * 要的转动的角度，示意图中的角AOB
+     *
+     * @param middleX 鱼的重心O点x
+     * @param middleY 鱼的重心O点y
+     * @param headX   鱼头A点x
+     * @param headY   鱼头A点y
+     * @param touchX  触摸点B点x
+     * @param touchY  触摸点B点y
+     * @return 要的转动的角度，逆时针为正
+     */
+    public static float caculateScrollAngle(float middleX, float middleY, float headX, float headY, float touchX, float touchY) {
+        float oaX = headX - middleX;
+        float oaY = headY - middleY;
+        float obX = touchX - middleX;
+        float obY = touchY - middleY;
+        //计算OA向量乘OB向量
+        float abc = oaX * obX + oaY * obY;
+        //向量积除以向量模
+        float angleCos = (float) (abc / (Math.sqrt(oaX * oaX + oaY * oaY) * Math.sqrt(obX * obX + obY * obY)));
+
+        //要的转动的角度，示意图中的角AOB
+        float temAngle = (float) Math.toDegrees(Math.acos(angleCos));
+        //判断方向  正左侧  负右侧 0线上,但是Android的坐标系Y是朝下的，所以左右颠倒一下
+        //向量共线定理，x1y2-x2y1
+        float direction = (middleX - touchX) * (headY - touchY) - (middleY - touchY) * (headX - touchX);
+
+        if (direction == 0) {
+            //共线，abc大于0说明0到90度内，这里就是正方向的意思
+            return abc >= 0 ? 0 : 180;
+        }
+        //x1y2>x2y1说明点在线的右边，考虑到Android的角度正方向是逆时针，示意图中是顺时针的角度这里直接取反减少干扰
+        return direction > 0 ? -temAngle : temAngle;
+    }
+
+    /**
+     * 计算从鱼当前位置游到触摸点的三次贝塞尔曲线
+     * <p>
+     * 起点是鱼所在View的左上角，鱼头作为第一个控制点，AOB夹角中线上的点作为第二个控制点，
+     * 终点是触摸点往回偏一个鱼头在View里的坐标，这样游到的时候鱼头刚好在触摸点附近
+     *
+     * @param out        输出，长度至少{@link #TRAIL_SIZE}
+     * @param fishX      鱼所在View的左上角x
+     * @param fishY      鱼所在View的左上角y
+     * @param middleX    重心在View里的x
+     * @param middleY    重心在View里的y
+     * @param headX      鱼头在View里的x
+     * @param headY      鱼头在View里的y
+     * @param headRadius 头部半径
+     * @param touchX     触摸点x
+     * @param touchY     触摸点y
+     */
+    public static void makeTrail(float[] out, float fishX, float fishY, float middleX, float middleY,
+                                 float headX, float headY, float headRadius, float touchX, float touchY) {
+        float fishMiddleX = fishX + middleX;
+        float fishMiddleY = fishY + middleY;
+        float fishHeadX = fishX + headX;
+        float fishHeadY = fishY + headY;
+
+        //将imageView的左顶点作为鱼的middlePoint， 就是点O
+        out[TRAIL_START] = fishX;
+        out[TRAIL_START + 1] = fishY;
+        //A作为控制点1
+        out[TRAIL_CONTROL1] = fishHeadX;
+        out[TRAIL_CONTROL1 + 1] = fishHeadY;
+        //控制点2  AOB夹角中线
+        float angle = caculateScrollAngle(fishMiddleX, fishMiddleY, fishHeadX, fishHeadY, touchX, touchY);
+        calculatPoint(out, TRAIL_CONTROL2, fishMiddleX, fishMiddleY, 1.6f * headRadius, angle / 2);
+        //终点是触摸点偏左鱼头的距离
+        out[TRAIL_END] = touchX - headX;
+        out[TRAIL_END + 1] = touchY - headY;
+    }
+
+    /**
+     * 有几段的路线要多长的数组
+     */
+    public static int routeSize(int segments) {
+        return TRAIL_START + 2 + ROUTE_SEGMENT_SIZE * segments;
+    }
+
+    /**
+     * 经过途经点游到触摸点的路线，几段三次贝塞尔曲线首尾相接
+     * <p>
+     * 第一段的起点和第一个控制点和{@link #makeTrail}一样，{@link #alignStart}照样能用；
+     * 中间的点按Catmull-Rom取切线，每段的控制点在端点沿切线前后三分之一处，接缝处切线连续。
+     * 没有途经点时就是{@link #makeTrail}
+     *
+     * @param out           输出，长度至少{@link #routeSize}(waypointCount + 1)
+     * @param waypoints     途经点，和触摸点一样是鱼头要经过的位置，每个点x、y俩个float
+     * @param waypointCount 途经点的个数
+     * @return 几段
+     */
+    public static int makeRoute(float[] out, float fishX, float fishY, float middleX, float middleY,
+                                float headX, float headY, float headRadius, float touchX, float touchY,
+                                float[] waypoints, int waypointCount) {
+        makeTrail(out, fishX, fishY, middleX, middleY, headX, headY, headRadius, touchX, touchY);
+        if (waypointCount <= 0) {
+            return 1;
+        }
+        int segments = waypointCount + 1;
+        //先把所有端点放到各段终点的位置上，和终点一样往回偏一个鱼头在View里的坐标
+        for (int i = 0; i < segments; i++) {
+            int end = TRAIL_END + ROUTE_SEGMENT_SIZE * i;
+            out[end] = i < waypointCount ? waypoints[i * 2] - headX : touchX - headX;
+            out[end + 1] = i < waypointCount ? waypoints[i * 2 + 1] - headY : touchY - headY;
+        }
+        //第一段的第二个控制点按第一个途经点的切线放
+        float endX = out[TRAIL_END];
+        float endY = out[TRAIL_END + 1];
+        out[TRAIL_CONTROL2] = endX - tangent(out, 0, 0, segments) / 3;
+        out[TRAIL_CONTROL2 + 1] = endY - tangent(out, 0, 1, segments) / 3;
+        for (int s = 1; s < segments; s++) {
+            int start = TRAIL_START + ROUTE_SEGMENT_SIZE * s;
+            int end = start + ROUTE_SEGMENT_SIZE;
+            out[start + 2] = out[start] + tangent(out, s - 1, 0, segments) / 3;
+            out[start + 3] = out[start + 1] + tangent(out, s - 1, 1, segments) / 3;
+            out[start + 4] = out[end] - tangent(out, s, 0, segments) / 3;
+            out[start + 5] = out[end + 1] - tangent(out, s, 1, segments) / 3;
+        }
+        return segments;
+    }
+
+    /**
+     * 第i段终点处的切线，中间的点取前后俩个点连线的一半，最后一个点取最后一段的连线
+     *
+     * @param axis 0是x，1是y
+     */
+    private static float tangent(float[] route, int i, int axis, int segments) {
+        int point = TRAIL_END + ROUTE_SEGMENT_SIZE * i + axis;
+        int previous = point - ROUTE_SEGMENT_SIZE;
+        if (i == segments - 1) {
+            return route[point] - route[previous];
+        }
+        return (route[point + ROUTE_SEGMENT_SIZE] - route[previous]) / 2;
+    }
+
+    /**
+     * 游到一半换目标时，把第一个控制点转到鱼当前的朝向上，距离起点的长度不变，
+     * 新路径在起点的切线和旧路径一致，鱼不会突然掉头
+     *
+     * @param trail   {@link #makeTrail}算出的路径
+     * @param heading 当前的朝向，和FishDrawable.setMainAngle一样y轴朝下反转过
+     */
+    public static void alignStart(float[] trail, float heading) {
+        float dx = trail[TRAIL_CONTROL1] - trail[TRAIL_START];
+        float dy = trail[TRAIL_CONTROL1 + 1] - trail[TRAIL_START + 1];
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        calculatPoint(trail, TRAIL_CONTROL1, trail[TRAIL_START], trail[TRAIL_START + 1], length, heading);
+    }
+
+    /**
+     * 输入起点、长度、旋转角度计算终点，结果写进缓冲区
+     * <p>
+     * 根据极坐标系原理 x = pcog(a), y = psin(a)，符合Android坐标的y轴朝下的标准，y方向取反
+     */
+    public static void calculatPoint(float[] out, int index, float startX, float startY, float length, float angle) {
+        FishSkeleton.calculatPoint(out, index, startX, startY, length,
+                FishTrig.DEFAULT.cos(angle), FishTrig.DEFAULT.sin(angle));
+    }
+}
@@ -0,0 +1,114 @@
+package com.minminaya.fish.core;
+
+import java.util.Random;
+
+/**
+ * 按种子生成一大串点击和拖动，用来压测触摸到游动路径这一段
+ * <p>
+ * 同一个种子、同样的调用顺序生成的触摸完全一样，生成的{@link FishTouchTrace}带着这个种子，
+ * 重放时鱼的随机数也一样。点击的位置在画面里均匀分布，拖动是一条慢慢拐弯的线，碰到边就折回来
+ */
+public final class FishTouchGenerator {
+
+    /**
+     * 手指按下到抬起最长多久
+     */
+    private static final long TAP_HOLD_NANOS = 60000000L;
+    /**
+     * 间隔上下浮动的比例
+     */
+    private static final float JITTER = 0.25f;
+    /**
+     * 拖动时每个事件最多拐多少度
+     */
+    private static final float MAX_DRAG_TURN = 20;
+
+    private final long seed;
+    private final Random random;
+    private final float width;
+    private final float height;
+
+    public FishTouchGenerator(long seed, float width, float height) {
+        if (!(width > 0) || !(height > 0)) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.seed = seed;
+        random = new Random(seed);
+        this.width = width;
+        this.height = height;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * 在trace后面接着加count次点击，每次按下和抬起
+     *
+     * @param intervalNanos 相邻俩次按下的平均间隔
+     */
+    public void taps(FishTouchTrace trace, int count, long intervalNanos) {
+        long time = begin(trace, intervalNanos);
+        for (int i = 0; i < count; i++) {
+            float touchX = random.nextFloat() * width;
+            float touchY = random.nextFloat() * height;
+            trace.add(time, FishTouchTrace.ACTION_DOWN, touchX, touchY);
+            trace.add(time + Math.min(TAP_HOLD_NANOS, intervalNanos / 2), FishTouchTrace.ACTION_UP, touchX, touchY);
+            time += jitter(intervalNanos);
+        }
+    }
+
+    /**
+     * 在trace后面接着加count次拖动，每次按下、moves次移动、抬起
+     *
+     * @param moveIntervalNanos 相邻俩个事件的平均间隔，实际的触摸屏一般是一帧一个
+     * @param stepPixels        每个移动事件平均走多远
+     */
+    public void drags(FishTouchTrace trace, int count, int moves, long moveIntervalNanos, float stepPixels) {
+        long time = begin(trace, moveIntervalNanos);
+        for (int i = 0; i < count; i++) {
+            float touchX = random.nextFloat() * width;
+            float touchY = random.nextFloat() * height;
+            float heading = random.nextFloat() * 360;
+            trace.add(time, FishTouchTrace.ACTION_DOWN, touchX, touchY);
+            for (int m = 0; m < moves; m++) {
+                time += jitter(moveIntervalNanos);
+                heading += (random.nextFloat() * 2 - 1) * MAX_DRAG_TURN;
+                float step = stepPixels * (1 + (random.nextFloat() * 2 - 1) * JITTER);
+                touchX += step * FishTrig.DEFAULT.cos(heading);
+                touchY -= step * FishTrig.DEFAULT.sin(heading);
+                //碰到边就按镜面折回来
+                if (touchX < 0 || touchX > width) {
+                    touchX = Math.max(0, Math.min(width, touchX));
+                    heading = 180 - heading;
+                }
+                if (touchY < 0 || touchY > height) {
+                    touchY = Math.max(0, Math.min(height, touchY));
+                    heading = -heading;
+                }
+                trace.add(time, FishTouchTrace.ACTION_MOVE, touchX, touchY);
+            }
+            time += jitter(moveIntervalNanos);
+            trace.add(time, FishTouchTrace.ACTION_UP, touchX, touchY);
+            time += jitter(moveIntervalNanos);
+        }
+    }
+
+    /**
+     * 空的trace记下种子从0开始，不空的从最后一个事件往后隔一个间隔
+     */
+    private long begin(FishTouchTrace trace, long intervalNanos) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        if (trace.size() == 0) {
+            trace.setSeed(seed);
+            return 0;
+        }
+        return trace.getTimeNanos(trace.size() - 1) + intervalNanos;
+    }
+
+    private long jitter(long intervalNanos) {
+        return Math.max(1, (long) (intervalNanos * (1 + (random.nextFloat() * 2 - 1) * JITTER)));
+    }
+}
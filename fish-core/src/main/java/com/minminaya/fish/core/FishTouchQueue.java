@@ -0,0 +1,91 @@
+package com.minminaya.fish.core;
+
+/**
+ * 主线程往渲染线程传触摸点的队列
+ * <p>
+ * 固定容量的环形缓冲区，主线程放、渲染线程每帧开头一次取完，俩边只在放和取的那一下持有锁。
+ * 渲染线程卡住时主线程不会被挡住，队列满了就丢掉最老的点，反正一帧只用最后的位置
+ */
+public final class FishTouchQueue {
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_MOVE = 1;
+
+    /**
+     * {@link #drain(float[])}输出里每个触摸点占的float个数：动作、x、y
+     */
+    public static final int ENTRY_SIZE = 3;
+    public static final int ENTRY_ACTION = 0;
+    public static final int ENTRY_X = 1;
+    public static final int ENTRY_Y = 2;
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int[] actions;
+    private final float[] x;
+    private final float[] y;
+    private int head;
+    private int count;
+
+    public FishTouchQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FishTouchQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        actions = new int[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+    }
+
+    public int getCapacity() {
+        return actions.length;
+    }
+
+    /**
+     * 放一个触摸点，满了顶掉最老的
+     *
+     * @param action {@link #ACTION_DOWN}或{@link #ACTION_MOVE}
+     */
+    public synchronized void offer(int action, float touchX, float touchY) {
+        if (count == actions.length) {
+            head = (head + 1) % actions.length;
+            count--;
+        }
+        int slot = (head + count) % actions.length;
+        actions[slot] = action;
+        x[slot] = touchX;
+        y[slot] = touchY;
+        count++;
+    }
+
+    /**
+     * 按先后顺序取出所有触摸点
+     *
+     * @param out 输出，每个点{@link #ENTRY_SIZE}个float，长度至少容量乘ENTRY_SIZE
+     * @return 取出了几个
+     */
+    public synchronized int drain(float[] out) {
+        int n = count;
+        for (int i = 0; i < n; i++) {
+            int slot = (head + i) % actions.length;
+            out[i * ENTRY_SIZE + ENTRY_ACTION] = actions[slot];
+            out[i * ENTRY_SIZE + ENTRY_X] = x[slot];
+            out[i * ENTRY_SIZE + ENTRY_Y] = y[slot];
+        }
+        head = 0;
+        count = 0;
+        return n;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,355 @@
+package com.minminaya.fish.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 录下来的一串触摸，可以存成紧凑的二进制再按原来的时间间隔重放
+ * <p>
+ * 时间按0.1毫秒、坐标按1/8像素取整（MotionEvent的时间本来就只到毫秒），加进来的时候就取整，内存里的和读回来的完全一样，
+ * 重放录下的和重放读回来的结果相同。还带一个随机种子，重放前用它重置鱼的随机数，鱼鳍扭几下也一样；
+ * 以及开始录的时候鱼的位置、朝向和整个鱼群，重放前先摆回去，不管上次停在哪每次重放都从同一个场景开始
+ * <p>
+ * 文件格式：int魔数、byte版本、long种子、byte是否有鱼的初始位置，有的话3个float的x、y和朝向，
+ * 变长的事件个数，每个事件是变长的时间差（低2位是动作）、之字形变长编码的x和y的差，
+ * 最后是变长的鱼群条数，每条3个float和变长的颜色。拖动时一帧一个事件，相邻俩点离得很近，一般每个事件五六个字节。
+ */
+public final class FishTouchTrace {
+
+    public static final int ACTION_DOWN = FishTouchQueue.ACTION_DOWN;
+    public static final int ACTION_MOVE = FishTouchQueue.ACTION_MOVE;
+    public static final int ACTION_UP = 2;
+
+    /**
+     * "FTRC"
+     */
+    private static final int MAGIC = 0x46545243;
+    private static final int VERSION = 1;
+    /**
+     * 每条鱼群里的鱼存x、y和朝向
+     */
+    private static final int SCHOOL_STRIDE = 3;
+    /**
+     * 坐标按1/8像素存
+     */
+    private static final float POSITION_SCALE = 8;
+    /**
+     * 时间按0.1毫秒存
+     */
+    private static final long TIME_UNIT_NANOS = 100000;
+    private static final int ACTION_BITS = 2;
+
+    private long seed;
+    private int size;
+    /**
+     * 0.1毫秒
+     */
+    private long[] time;
+    private byte[] action;
+    /**
+     * 1/8像素
+     */
+    private int[] x;
+    private int[] y;
+
+    /**
+     * 开始录时主鱼的位置和朝向
+     */
+    private boolean hasStartPose;
+    private float startX;
+    private float startY;
+    private float startAngle;
+    /**
+     * 开始录时的鱼群，每条{@link #SCHOOL_STRIDE}个float和一个颜色
+     */
+    private int startSchoolSize;
+    private float[] startSchool = new float[0];
+    private int[] startSkins = new int[0];
+
+    public FishTouchTrace() {
+        this(256);
+    }
+
+    /**
+     * @param capacity 一开始能放几个事件，放满了自己扩容
+     */
+    public FishTouchTrace(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        time = new long[capacity];
+        action = new byte[capacity];
+        x = new int[capacity];
+        y = new int[capacity];
+    }
+
+    /**
+     * 重放前用来重置随机数的种子
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * 开始录时主鱼的位置和朝向，重放前摆回去
+     */
+    public void setStartPose(float x, float y, float angle) {
+        hasStartPose = true;
+        startX = x;
+        startY = y;
+        startAngle = angle;
+    }
+
+    public boolean hasStartPose() {
+        return hasStartPose;
+    }
+
+    public float getStartX() {
+        return startX;
+    }
+
+    public float getStartY() {
+        return startY;
+    }
+
+    public float getStartAngle() {
+        return startAngle;
+    }
+
+    /**
+     * 开始录时鱼群里的一条鱼，按下标顺序加
+     */
+    public void addStartSchoolFish(float x, float y, float angle, int skin) {
+        if (startSchoolSize == startSkins.length) {
+            int capacity = Math.max(8, startSchoolSize * 2);
+            startSchool = Arrays.copyOf(startSchool, capacity * SCHOOL_STRIDE);
+            startSkins = Arrays.copyOf(startSkins, capacity);
+        }
+        int o = startSchoolSize * SCHOOL_STRIDE;
+        startSchool[o] = x;
+        startSchool[o + 1] = y;
+        startSchool[o + 2] = angle;
+        startSkins[startSchoolSize] = skin;
+        startSchoolSize++;
+    }
+
+    public int getStartSchoolSize() {
+        return startSchoolSize;
+    }
+
+    public float getStartSchoolX(int i) {
+        return startSchool[i * SCHOOL_STRIDE];
+    }
+
+    public float getStartSchoolY(int i) {
+        return startSchool[i * SCHOOL_STRIDE + 1];
+    }
+
+    public float getStartSchoolAngle(int i) {
+        return startSchool[i * SCHOOL_STRIDE + 2];
+    }
+
+    public int getStartSchoolSkin(int i) {
+        return startSkins[i];
+    }
+
+    /**
+     * 加一个事件，时间不能比上一个早
+     *
+     * @param timeNanos 任意起点的时间，重放时只看和第一个事件的差
+     * @param action    {@link #ACTION_DOWN}、{@link #ACTION_MOVE}或{@link #ACTION_UP}
+     */
+    public void add(long timeNanos, int action, float touchX, float touchY) {
+        if (action < ACTION_DOWN || action > ACTION_UP) {
+            throw new IllegalArgumentException("unknown action " + action);
+        }
+        long units = timeNanos / TIME_UNIT_NANOS;
+        if (size > 0 && units < time[size - 1]) {
+            throw new IllegalArgumentException("time goes backwards");
+        }
+        if (size == time.length) {
+            int capacity = size * 2;
+            time = Arrays.copyOf(time, capacity);
+            this.action = Arrays.copyOf(this.action, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+        }
+        time[size] = units;
+        this.action[size] = (byte) action;
+        x[size] = Math.round(touchX * POSITION_SCALE);
+        y[size] = Math.round(touchY * POSITION_SCALE);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 清掉事件，种子和初始场景不变
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public long getTimeNanos(int i) {
+        return time[i] * TIME_UNIT_NANOS;
+    }
+
+    /**
+     * @return 第i个事件离第一个事件多久
+     */
+    public long getOffsetNanos(int i) {
+        return (time[i] - time[0]) * TIME_UNIT_NANOS;
+    }
+
+    public long getDurationNanos() {
+        return size == 0 ? 0 : getOffsetNanos(size - 1);
+    }
+
+    public int getAction(int i) {
+        return action[i];
+    }
+
+    public float getX(int i) {
+        return x[i] / POSITION_SCALE;
+    }
+
+    public float getY(int i) {
+        return y[i] / POSITION_SCALE;
+    }
+
+    /**
+     * 写成二进制，一个字节一个字节地写，调用方自己套一层缓冲
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        out.writeBoolean(hasStartPose);
+        if (hasStartPose) {
+            out.writeFloat(startX);
+            out.writeFloat(startY);
+            out.writeFloat(startAngle);
+        }
+        writeVarLong(out, size);
+        long lastTime = 0;
+        int lastX = 0;
+        int lastY = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarLong(out, (time[i] - lastTime) << ACTION_BITS | action[i]);
+            writeVarLong(out, zigZag(x[i] - lastX));
+            writeVarLong(out, zigZag(y[i] - lastY));
+            lastTime = time[i];
+            lastX = x[i];
+            lastY = y[i];
+        }
+        writeVarLong(out, startSchoolSize);
+        for (int i = 0; i < startSchoolSize; i++) {
+            out.writeFloat(getStartSchoolX(i));
+            out.writeFloat(getStartSchoolY(i));
+            out.writeFloat(getStartSchoolAngle(i));
+            writeVarLong(out, startSkins[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * 读回{@link #write}写的内容
+     *
+     * @throws IOException 不是这个格式或者不完整
+     */
+    public static FishTouchTrace read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a touch trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported touch trace version " + version);
+        }
+        long seed = in.readLong();
+        boolean hasStartPose = in.readBoolean();
+        float startX = 0;
+        float startY = 0;
+        float startAngle = 0;
+        if (hasStartPose) {
+            startX = in.readFloat();
+            startY = in.readFloat();
+            startAngle = in.readFloat();
+        }
+        long count = readVarLong(in);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("bad event count " + count);
+        }
+        FishTouchTrace trace = new FishTouchTrace(Math.max(1, (int) Math.min(count, 1 << 16)));
+        trace.seed = seed;
+        if (hasStartPose) {
+            trace.setStartPose(startX, startY, startAngle);
+        }
+        long lastTime = 0;
+        int lastX = 0;
+        int lastY = 0;
+        for (long i = 0; i < count; i++) {
+            long head = readVarLong(in);
+            int action = (int) (head & ((1 << ACTION_BITS) - 1));
+            lastTime += head >>> ACTION_BITS;
+            lastX += unZigZag(readVarLong(in));
+            lastY += unZigZag(readVarLong(in));
+            if (action > ACTION_UP) {
+                throw new IOException("unknown action " + action);
+            }
+            trace.add(lastTime * TIME_UNIT_NANOS, action, lastX / POSITION_SCALE, lastY / POSITION_SCALE);
+        }
+        long schoolSize = readVarLong(in);
+        if (schoolSize < 0 || schoolSize > Integer.MAX_VALUE) {
+            throw new IOException("bad school size " + schoolSize);
+        }
+        for (long i = 0; i < schoolSize; i++) {
+            float x = in.readFloat();
+            float y = in.readFloat();
+            float angle = in.readFloat();
+            trace.addStartSchoolFish(x, y, angle, (int) readVarLong(in));
+        }
+        return trace;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("varint too long");
+    }
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unZigZag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,220 @@
+package com.minminaya.fish.core;
+
+/**
+ * 按弧长等分的游动路径表
+ * <p>
+ * 点一下屏幕时把{@link FishSteering#makeTrail}算出的三次贝塞尔曲线（绕障碍物时是{@link FishSteering#makeRoute}连起来的几段）解析地求一次值，
+ * 按弧长等分成若干个采样点，每个点存位置和切线角度。游动时每帧按走过的百分比直接定位到相邻的俩个采样点插值，
+ * 代替原来每帧都要PathMeasure按长度查找，也不创建对象
+ */
+public final class FishTrail {
+
+    public static final int DEFAULT_SAMPLES = 64;
+
+    /**
+     * 求弧长时每个采样区间再细分几次
+     */
+    private static final int SUBDIVISIONS = 8;
+
+    /**
+     * {@link #sample(float, float[])}的输出：位置和切线角度
+     */
+    public static final int SAMPLE_SIZE = 3;
+    public static final int SAMPLE_X = 0;
+    public static final int SAMPLE_Y = 1;
+    public static final int SAMPLE_ANGLE = 2;
+
+    private final int samples;
+    private final float[] x;
+    private final float[] y;
+    /**
+     * 切线和x轴的夹角，按Android的y轴朝下反转过，可以直接给FishDrawable.setMainAngle
+     */
+    private final float[] angle;
+
+    /**
+     * 细分后第i个点的累计弧长，这个点的贝塞尔参数t就是i除以细分的总数
+     */
+    private final float[] fineLength;
+
+    private float length;
+
+    public FishTrail() {
+        this(DEFAULT_SAMPLES);
+    }
+
+    /**
+     * @param samples 路径分成多少段
+     */
+    public FishTrail(int samples) {
+        if (samples <= 0) {
+            throw new IllegalArgumentException("samples must be positive");
+        }
+        this.samples = samples;
+        x = new float[samples + 1];
+        y = new float[samples + 1];
+        angle = new float[samples + 1];
+        fineLength = new float[samples * SUBDIVISIONS + 1];
+    }
+
+    /**
+     * 用新的路径重建整张表
+     *
+     * @param trail 起点、俩个控制点、终点，布局同{@link FishSteering#TRAIL_SIZE}
+     */
+    public void build(float[] trail) {
+        build(trail, 1);
+    }
+
+    /**
+     * 用几段首尾相接的三次贝塞尔曲线重建整张表，弧长按整条路线等分
+     *
+     * @param trail    布局同{@link FishSteering#makeRoute}
+     * @param segments 几段
+     */
+    public void build(float[] trail, int segments) {
+        if (segments <= 0 || trail.length < FishSteering.routeSize(segments)) {
+            throw new IllegalArgumentException("trail too short for " + segments + " segments");
+        }
+
+        //先按参数细分求累计弧长，参数u从0到segments，整数部分是第几段
+        int fine = fineLength.length - 1;
+        float lastX = trail[FishSteering.TRAIL_START];
+        float lastY = trail[FishSteering.TRAIL_START + 1];
+        float total = 0;
+        fineLength[0] = 0;
+        for (int i = 1; i <= fine; i++) {
+            float u = i * segments / (float) fine;
+            int s = segment(u, segments);
+            float px = bezier(trail, s, 0, u - s);
+            float py = bezier(trail, s, 1, u - s);
+            total += (float) Math.sqrt((px - lastX) * (px - lastX) + (py - lastY) * (py - lastY));
+            fineLength[i] = total;
+            lastX = px;
+            lastY = py;
+        }
+        length = total;
+
+        //再按弧长等分，找到每个等分点对应的参数，解析地求位置和切线
+        int end = FishSteering.TRAIL_START + FishSteering.ROUTE_SEGMENT_SIZE * segments;
+        float lastAngle = chordAngle(trail[FishSteering.TRAIL_START], trail[FishSteering.TRAIL_START + 1],
+                trail[end], trail[end + 1]);
+        int j = 0;
+        for (int k = 0; k <= samples; k++) {
+            float target = total * k / samples;
+            while (j < fine - 1 && fineLength[j + 1] < target) {
+                j++;
+            }
+            float span = fineLength[j + 1] - fineLength[j];
+            float fraction = span > 0 ? Math.min(1, Math.max(0, (target - fineLength[j]) / span)) : 0;
+            float u = (j + fraction) * segments / fine;
+            int s = segment(u, segments);
+            float t = u - s;
+
+            x[k] = bezier(trail, s, 0, t);
+            y[k] = bezier(trail, s, 1, t);
+            float dx = derivative(trail, s, 0, t);
+            float dy = derivative(trail, s, 1, t);
+            //尖点处切线为0，沿用上一个点的方向
+            if (dx * dx + dy * dy > 1e-6f) {
+                lastAngle = (float) Math.toDegrees(Math.atan2(-dy, dx));
+            }
+            angle[k] = lastAngle;
+        }
+    }
+
+    /**
+     * 按走过的百分比取位置和切线角度，O(1)
+     *
+     * @param fraction 0到1，超出的按端点算
+     * @param out      输出，长度至少{@link #SAMPLE_SIZE}
+     */
+    public void sample(float fraction, float[] out) {
+        float position = Math.min(1, Math.max(0, fraction)) * samples;
+        int i = Math.min(samples - 1, (int) position);
+        float f = position - i;
+        out[SAMPLE_X] = x[i] + (x[i + 1] - x[i]) * f;
+        out[SAMPLE_Y] = y[i] + (y[i + 1] - y[i]) * f;
+        //角度走最短的那一边，跨过±180度时不会转一大圈
+        float delta = angle[i + 1] - angle[i];
+        if (delta > 180) {
+            delta -= 360;
+        } else if (delta < -180) {
+            delta += 360;
+        }
+        out[SAMPLE_ANGLE] = angle[i] + delta * f;
+    }
+
+    /**
+     * 游动的快慢曲线，先加速后减速，时间到的时候停在终点
+     * <p>
+     * 三次埃尔米特曲线，起点的速度可以不为0，游到一半换目标时接上旧路径的速度，鱼不会突然停一下。
+     * 起点速度为0时就是smoothstep，和原来的AccelerateDecelerateInterpolator差不多
+     *
+     * @param fraction   经过的时间占总时长的比例，0到1
+     * @param startSpeed 起点的速度，单位是整条路径每个总时长，0到3之间不会冲过终点
+     * @return 走过的弧长占整条路径的比例
+     */
+    public static float progress(float fraction, float startSpeed) {
+        float u = Math.min(1, Math.max(0, fraction));
+        return ((startSpeed - 2) * u + 3 - 2 * startSpeed) * u * u + startSpeed * u;
+    }
+
+    /**
+     * {@link #progress}对时间的导数，单位同startSpeed
+     */
+    public static float progressSpeed(float fraction, float startSpeed) {
+        float u = Math.min(1, Math.max(0, fraction));
+        return (3 * (startSpeed - 2) * u + 2 * (3 - 2 * startSpeed)) * u + startSpeed;
+    }
+
+    public float getLength() {
+        return length;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * 参数u落在第几段，最后一段包含终点
+     */
+    private static int segment(float u, int segments) {
+        return Math.min(segments - 1, (int) u);
+    }
+
+    /**
+     * 第s段在参数t处的坐标
+     *
+     * @param axis 0是x，1是y
+     */
+    private static float bezier(float[] trail, int s, int axis, float t) {
+        int i = FishSteering.TRAIL_START + FishSteering.ROUTE_SEGMENT_SIZE * s + axis;
+        return bezier(trail[i], trail[i + 2], trail[i + 4], trail[i + 6], t);
+    }
+
+    private static float derivative(float[] trail, int s, int axis, float t) {
+        int i = FishSteering.TRAIL_START + FishSteering.ROUTE_SEGMENT_SIZE * s + axis;
+        return derivative(trail[i], trail[i + 2], trail[i + 4], trail[i + 6], t);
+    }
+
+    private static float bezier(float p0, float p1, float p2, float p3, float t) {
+        float u = 1 - t;
+        return u * u * u * p0 + 3 * u * u * t * p1 + 3 * u * t * t * p2 + t * t * t * p3;
+    }
+
+    private static float derivative(float p0, float p1, float p2, float p3, float t) {
+        float u = 1 - t;
+        return 3 * u * u * (p1 - p0) + 6 * u * t * (p2 - p1) + 3 * t * t * (p3 - p2);
+    }
+
+    /**
+     * 整条曲线都没有切线时的方向，起点终点重合就是0度
+     */
+    private static float chordAngle(float x0, float y0, float x3, float y3) {
+        if (x0 == x3 && y0 == y3) {
+            return 0;
+        }
+        return (float) Math.toDegrees(Math.atan2(-(y3 - y0), x3 - x0));
+    }
+}
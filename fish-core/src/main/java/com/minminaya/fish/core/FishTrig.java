@@ -0,0 +1,60 @@
+package com.minminaya.fish.core;
+
+/**
+ * 查表法的float三角函数，参数都是角度制
+ * <p>
+ * 一圈分成resolution份预先算好sin值，查表时在相邻俩格之间线性插值，cos借用sin表偏移90度，
+ * 4096份时误差在1e-6量级，比鱼身上任何一个像素都小得多
+ */
+public final class FishTrig {
+
+    /**
+     * 默认精度，一圈4096份
+     */
+    public static final int DEFAULT_RESOLUTION = 4096;
+
+    public static final FishTrig DEFAULT = new FishTrig(DEFAULT_RESOLUTION);
+
+    /**
+     * sin表，多存一格方便插值时不用判断越界
+     */
+    private final float[] sinTable;
+    private final int mask;
+    /**
+     * 每度对应的格数
+     */
+    private final float stepsPerDegree;
+
+    /**
+     * @param resolution 一圈分成多少份，必须是2的幂
+     */
+    public FishTrig(int resolution) {
+        if (resolution < 4 || (resolution & (resolution - 1)) != 0) {
+            throw new IllegalArgumentException("resolution must be a power of two >= 4: " + resolution);
+        }
+        sinTable = new float[resolution + 1];
+        for (int i = 0; i <= resolution; i++) {
+            sinTable[i] = (float) Math.sin(2 * Math.PI * i / resolution);
+        }
+        mask = resolution - 1;
+        stepsPerDegree = resolution / 360f;
+    }
+
+    public float sin(float degrees) {
+        //先取余，避免动画引擎值很大时乘出来的下标丢精度
+        float position = (degrees % 360f) * stepsPerDegree;
+        int index = (int) Math.floor(position);
+        float fraction = position - index;
+        index &= mask;
+        float from = sinTable[index];
+        return from + (sinTable[index + 1] - from) * fraction;
+    }
+
+    public float cos(float degrees) {
+        return sin(degrees + 90);
+    }
+
+    public int getResolution() {
+        return mask + 1;
+    }
+}
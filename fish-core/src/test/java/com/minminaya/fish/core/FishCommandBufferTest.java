@@ -0,0 +1,122 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按画笔分组重放：图形一个不少，换画笔的次数和鱼的条数无关
+ */
+public class FishCommandBufferTest {
+
+    @Test
+    public void replay_drawsSameShapesGroupedByPart() throws Exception {
+        float[] p = new float[FishSkeleton.SIZE * 3];
+        for (int i = 0; i < 3; i++) {
+            FishSkeleton.evaluate(p, i * FishSkeleton.SIZE, 100 * i, 50, 30 * i, 400 * i, 0);
+        }
+        RecordingRenderer direct = new RecordingRenderer();
+        FishCommandBuffer buffer = new FishCommandBuffer();
+        for (int i = 0; i < 3; i++) {
+            FishGeometry.emit(p, i * FishSkeleton.SIZE, direct);
+            FishGeometry.emit(p, i * FishSkeleton.SIZE, buffer);
+        }
+        RecordingRenderer replayed = new RecordingRenderer();
+        assertEquals(FishRenderer.PART_COUNT, buffer.replay(replayed));
+        assertEquals(FishRenderer.PART_COUNT, replayed.partChanges);
+        assertTrue(direct.partChanges > 3 * FishRenderer.PART_COUNT);
+
+        //顺序变了，每个部分画的东西一样
+        Collections.sort(direct.shapes);
+        Collections.sort(replayed.shapes);
+        assertEquals(direct.shapes, replayed.shapes);
+    }
+
+    @Test
+    public void partChanges_doNotGrowWithFish() throws Exception {
+        float[] p = new float[FishSkeleton.SIZE];
+        FishSkeleton.evaluate(p, 0, 0, 0, 0, 0, 0);
+        FishCommandBuffer buffer = new FishCommandBuffer(2);
+        for (int i = 0; i < 500; i++) {
+            buffer.setVariant(i % 2);
+            FishGeometry.emit(p, 0, buffer, i % 3 == 0 ? FishLod.MINIMAL : FishLod.FULL);
+        }
+        RecordingRenderer replayed = new RecordingRenderer();
+        assertEquals(2 * FishRenderer.PART_COUNT, buffer.replay(replayed));
+        //全部细节11次，MINIMAL一次
+        assertEquals(167 + 333 * 11, replayed.shapes.size());
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty(0));
+        assertTrue(buffer.isEmpty(1));
+        assertEquals(0, buffer.replay(new RecordingRenderer()));
+    }
+
+    @Test
+    public void variants_replaySeparately() throws Exception {
+        FishCommandBuffer buffer = new FishCommandBuffer(3);
+        buffer.setVariant(2);
+        buffer.setPart(FishRenderer.PART_FINS);
+        buffer.drawCircle(1, 2, 3);
+        assertTrue(buffer.isEmpty(0));
+        assertTrue(!buffer.isEmpty(2));
+        RecordingRenderer replayed = new RecordingRenderer();
+        assertEquals(0, buffer.replay(1, replayed));
+        assertEquals(1, buffer.replay(2, replayed));
+        assertEquals(Collections.singletonList("1 circle 1.0 2.0 3.0"), replayed.shapes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setVariant_rejectsOutOfRange() throws Exception {
+        new FishCommandBuffer(2).setVariant(2);
+    }
+
+    /**
+     * 每个图形记成一行字符串，带上画的时候是哪个部分
+     */
+    private static final class RecordingRenderer implements FishRenderer {
+        final List<String> shapes = new ArrayList<>();
+        int partChanges;
+        private int part = -1;
+        private final StringBuilder path = new StringBuilder();
+
+        @Override
+        public void setPart(int part) {
+            if (part != this.part) {
+                partChanges++;
+            }
+            this.part = part;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius) {
+            shapes.add(part + " circle " + cx + " " + cy + " " + radius);
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            path.setLength(0);
+            path.append(part).append(" path M").append(x).append(' ').append(y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            path.append(" L").append(x).append(' ').append(y);
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            path.append(" Q").append(controlX).append(' ').append(controlY).append(' ').append(x).append(' ').append(y);
+        }
+
+        @Override
+        public void fillPath() {
+            shapes.add(path.toString());
+        }
+    }
+}
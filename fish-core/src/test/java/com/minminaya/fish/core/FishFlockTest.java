@@ -0,0 +1,182 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 鱼群自主游动的固定步长和并行结果
+ */
+public class FishFlockTest {
+
+    @Test
+    public void parallel_matchesSequential() throws Exception {
+        FishSchool school = randomSchool(new Random(3), 3000, 3000);
+        FishFlock sequential = new FishFlock(null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        FishFlock parallel = new FishFlock(pool);
+        try {
+            sequential.sync(school);
+            parallel.sync(school);
+            sequential.setTarget(1500, 1500, 1000);
+            parallel.setTarget(1500, 1500, 1000);
+            for (int i = 0; i < 10; i++) {
+                sequential.step();
+                parallel.step();
+            }
+            for (int i = 0; i < school.size(); i++) {
+                assertEquals(sequential.getX(i), parallel.getX(i), 0f);
+                assertEquals(sequential.getY(i), parallel.getY(i), 0f);
+                assertEquals(sequential.getVelocityX(i), parallel.getVelocityX(i), 0f);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallel_matchesSequentialWhenCrowdedAndResized() throws Exception {
+        //挤在一起，每条鱼半径内的邻居都比参考的个数多
+        FishSchool school = randomSchool(new Random(7), 2000, 600);
+        FishFlock sequential = new FishFlock(null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        FishFlock parallel = new FishFlock(pool);
+        try {
+            for (int round = 0; round < 2; round++) {
+                sequential.sync(school);
+                parallel.sync(school);
+                for (int i = 0; i < 5; i++) {
+                    sequential.step();
+                    parallel.step();
+                }
+                for (int i = 0; i < school.size(); i++) {
+                    assertEquals(sequential.getX(i), parallel.getX(i), 0f);
+                    assertEquals(sequential.getVelocityY(i), parallel.getVelocityY(i), 0f);
+                }
+                //分段数变了，任务要重建
+                for (int i = 0; i < 700; i++) {
+                    school.add(300, 300, i);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void advance_stepsAtFixedRate() throws Exception {
+        FishFlock flock = new FishFlock(null, 10);
+        flock.sync(randomSchool(new Random(4), 10, 500));
+        assertEquals(0, flock.advance(6));
+        assertEquals(1, flock.advance(6));
+        assertEquals(2, flock.advance(18));
+        //卡了很久也只补几步
+        assertEquals(4, flock.advance(1000));
+        assertEquals(1, flock.advance(0));
+    }
+
+    @Test
+    public void setStepMillis_keepsStepProgress() throws Exception {
+        FishFlock flock = new FishFlock(null, 10);
+        flock.sync(randomSchool(new Random(4), 10, 500));
+        assertEquals(0, flock.advance(5));
+        //攒了半步，换成20毫秒一步以后还是半步
+        flock.setStepMillis(20);
+        assertEquals(0, flock.advance(9));
+        assertEquals(1, flock.advance(1));
+    }
+
+    @Test
+    public void apply_interpolatesBetweenSteps() throws Exception {
+        FishSchool school = new FishSchool();
+        school.add(0, 0, 0);
+        FishFlock flock = new FishFlock(null, 10);
+        flock.sync(school);
+        flock.advance(10);
+        float x1 = flock.getX(0);
+        flock.advance(5);
+        flock.apply(school);
+        //还没走下一步，画在起点和这一步的中间
+        assertEquals(x1, flock.getX(0), 0f);
+        assertEquals(x1 / 2, school.getX(0), 1e-4f);
+    }
+
+    @Test
+    public void target_attractsFish() throws Exception {
+        FishSchool school = new FishSchool();
+        //头朝右，目标在正上方
+        school.add(0, 0, 0);
+        FishFlock flock = new FishFlock(null);
+        flock.sync(school);
+        flock.setTarget(0, -1000, 100000);
+        float before = distance(flock, 0, 0, -1000);
+        for (int i = 0; i < 200; i++) {
+            flock.step();
+        }
+        assertTrue(distance(flock, 0, 0, -1000) < before - 100);
+    }
+
+    @Test
+    public void navigationField_steersAroundWall() throws Exception {
+        FishSchool school = new FishSchool();
+        //头朝右，目标在墙后面，墙只在下面留了口
+        school.add(100, 100, 0);
+        FishFlock flock = new FishFlock(null);
+        flock.sync(school);
+        FishNavField field = new FishNavField(400, 400, 20, 0);
+        field.addObstacle(190, 0, 210, 340);
+        field.setTarget(300, 100);
+        flock.setNavigationField(field);
+        flock.setTarget(300, 100, 100000);
+        for (int i = 0; i < 100; i++) {
+            flock.step();
+        }
+        //往下绕，不是直接朝墙游
+        assertTrue(flock.getVelocityY(0) > 0);
+        assertTrue(flock.getY(0) > 110);
+    }
+
+    @Test
+    public void separation_pushesCloseFishApart() throws Exception {
+        FishSchool school = new FishSchool();
+        //并排朝右游，挨得很近
+        school.add(0, 0, 0);
+        school.add(0, 10, 0);
+        FishFlock flock = new FishFlock(null);
+        flock.setWeights(1, 0, 0);
+        flock.sync(school);
+        for (int i = 0; i < 30; i++) {
+            flock.step();
+        }
+        assertTrue(Math.abs(flock.getY(1) - flock.getY(0)) > 20);
+    }
+
+    @Test
+    public void remove_movesLastFish() throws Exception {
+        FishSchool school = randomSchool(new Random(5), 3, 100);
+        FishFlock flock = new FishFlock(null);
+        flock.sync(school);
+        float lastX = flock.getX(2);
+        flock.remove(0);
+        assertEquals(2, flock.size());
+        assertEquals(lastX, flock.getX(0), 0f);
+    }
+
+    private static float distance(FishFlock flock, int i, float x, float y) {
+        float dx = flock.getX(i) - x;
+        float dy = flock.getY(i) - y;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static FishSchool randomSchool(Random random, int count, float side) {
+        FishSchool school = new FishSchool(count);
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * side, random.nextFloat() * side, random.nextFloat() * 360);
+        }
+        return school;
+    }
+}
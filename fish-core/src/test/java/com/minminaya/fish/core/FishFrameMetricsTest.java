@@ -0,0 +1,70 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 每帧统计的环形缓冲区和直方图
+ */
+public class FishFrameMetricsTest {
+
+    private static final long MS = 1000 * 1000;
+
+    @Test
+    public void samplesInSameVsync_areOneFrame() throws Exception {
+        FishFrameMetrics metrics = new FishFrameMetrics(8);
+        metrics.beginFrame(100 * MS, 0);
+        metrics.addSimulation(100 * MS, MS);
+        metrics.addSimulation(100 * MS, 2 * MS);
+        metrics.addDraw(4 * MS, 10, 3);
+        assertEquals(0, metrics.getFrameCount());
+
+        //下一个vsync来了上一帧才定下来
+        metrics.addSimulation(116 * MS, MS);
+        assertEquals(1, metrics.getFrameCount());
+
+        FishFrameMetrics.Snapshot snapshot = new FishFrameMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+        assertEquals(1, snapshot.frames);
+        assertEquals(3 * MS, snapshot.simulationMax);
+        assertEquals(7 * MS, snapshot.totalMax);
+        assertEquals(10f, snapshot.averageDrawCalls, 0f);
+        assertEquals(3f, snapshot.averagePaths, 0f);
+    }
+
+    @Test
+    public void longDelta_countsDroppedFrames() throws Exception {
+        FishFrameMetrics metrics = new FishFrameMetrics(8);
+        metrics.beginFrame(MS, 0);
+        //隔了3个帧间隔，中间掉了2帧
+        metrics.beginFrame(MS + 3 * FishFrameMetrics.DEFAULT_FRAME_INTERVAL_NANOS, 3 * FishFrameMetrics.DEFAULT_FRAME_INTERVAL_NANOS);
+        //稍微晚一点不算掉帧
+        metrics.beginFrame(MS + 4 * FishFrameMetrics.DEFAULT_FRAME_INTERVAL_NANOS, FishFrameMetrics.DEFAULT_FRAME_INTERVAL_NANOS + 2 * MS);
+        metrics.flush();
+
+        FishFrameMetrics.Snapshot snapshot = new FishFrameMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+        assertEquals(3, snapshot.frames);
+        assertEquals(2, snapshot.droppedFrames);
+    }
+
+    @Test
+    public void ringBuffer_keepsMostRecentFrames() throws Exception {
+        FishFrameMetrics metrics = new FishFrameMetrics(5);
+        assertEquals(8, metrics.getCapacity());
+        for (int i = 1; i <= 20; i++) {
+            metrics.addSimulation(i * 16 * MS, i * MS);
+        }
+        metrics.flush();
+
+        FishFrameMetrics.Snapshot snapshot = new FishFrameMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+        //容量8，留一格给正在写的帧，只剩14到20毫秒那7帧
+        assertEquals(7, snapshot.frames);
+        assertEquals(20 * MS, snapshot.simulationMax);
+        assertEquals(17 * MS + FishFrameMetrics.BUCKET_NANOS, snapshot.totalP50);
+        assertEquals(1, snapshot.histogram[(int) (14 * MS / FishFrameMetrics.BUCKET_NANOS)]);
+        assertEquals(0, snapshot.histogram[(int) (13 * MS / FishFrameMetrics.BUCKET_NANOS)]);
+    }
+}
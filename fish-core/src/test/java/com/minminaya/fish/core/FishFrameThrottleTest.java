@@ -0,0 +1,65 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 空闲降帧：按间隔画、跳过的时间不丢
+ */
+public class FishFrameThrottleTest {
+
+    private static final long VSYNC = 16666667;
+
+    @Test
+    public void halfRate_drawsEveryOtherVsyncDespiteJitter() throws Exception {
+        FishFrameThrottle throttle = new FishFrameThrottle(30);
+        assertEquals(0, throttle.onFrame(0));
+        long advanced = 0;
+        int drawn = 0;
+        for (int i = 0; i < 60; i++) {
+            //±1ms的抖动
+            long delta = VSYNC + (i % 2 == 0 ? 1000000 : -1000000);
+            long step = throttle.onFrame(delta);
+            if (i % 2 == 0) {
+                assertEquals(-1, step);
+            } else {
+                assertEquals(2 * VSYNC, step);
+                advanced += step;
+                drawn++;
+            }
+        }
+        assertEquals(30, drawn);
+        assertEquals(60 * VSYNC, advanced);
+    }
+
+    @Test
+    public void quarterRate_keepsWallClockTime() throws Exception {
+        FishFrameThrottle throttle = new FishFrameThrottle(15);
+        long advanced = 0;
+        int drawn = 0;
+        for (int i = 0; i < 120; i++) {
+            long step = throttle.onFrame(VSYNC);
+            if (step >= 0) {
+                advanced += step;
+                drawn++;
+            }
+        }
+        assertEquals(30, drawn);
+        assertEquals(120 * VSYNC, advanced + throttle.flush());
+        assertEquals(0, throttle.flush());
+    }
+
+    @Test
+    public void slowFrames_areNeverSkipped() throws Exception {
+        FishFrameThrottle throttle = new FishFrameThrottle(30);
+        assertEquals(3 * VSYNC, throttle.onFrame(3 * VSYNC));
+        assertEquals(-1, throttle.onFrame(VSYNC));
+        assertEquals(VSYNC * 3, throttle.onFrame(VSYNC * 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setFrameRate_rejectsZero() throws Exception {
+        new FishFrameThrottle(0);
+    }
+}
@@ -0,0 +1,195 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 网格索引的查询结果和挨个扫一遍的结果对比
+ */
+public class FishGridTest {
+
+    @Test
+    public void queryRadius_matchesBruteForce() throws Exception {
+        Random random = new Random(1);
+        FishSchool school = randomSchool(random, 2000);
+        //格子小一点、桶少一点，让散列冲突多一些
+        FishGrid grid = new FishGrid(50, 64);
+        grid.update(school);
+
+        int[] out = new int[school.size()];
+        for (int q = 0; q < 100; q++) {
+            float px = random.nextFloat() * 3000 - 1000;
+            float py = random.nextFloat() * 3000 - 1000;
+            float radius = random.nextFloat() * 300;
+            int found = grid.queryRadius(px, py, radius, out);
+            int[] actual = Arrays.copyOf(out, found);
+            Arrays.sort(actual);
+            assertArrayEquals(bruteRadius(school, px, py, radius), actual);
+        }
+    }
+
+    @Test
+    public void queryNearest_matchesBruteForce() throws Exception {
+        Random random = new Random(2);
+        FishSchool school = randomSchool(random, 1000);
+        FishGrid grid = new FishGrid(80, 256);
+        grid.update(school);
+
+        int[] out = new int[8];
+        for (int q = 0; q < 100; q++) {
+            float px = random.nextFloat() * 3000 - 1000;
+            float py = random.nextFloat() * 3000 - 1000;
+            assertEquals(8, grid.queryNearest(px, py, 8, out));
+            Integer[] expected = new Integer[school.size()];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = i;
+            }
+            final float fx = px;
+            final float fy = py;
+            final FishSchool s = school;
+            Arrays.sort(expected, new java.util.Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Float.compare(distance(s, a, fx, fy), distance(s, b, fx, fy));
+                }
+            });
+            for (int k = 0; k < 8; k++) {
+                assertEquals(distance(school, expected[k], px, py), distance(school, out[k], px, py), 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void queryNearestWithinRadius_keepsClosestInsideRadius() throws Exception {
+        Random random = new Random(5);
+        FishSchool school = randomSchool(random, 2000);
+        FishGrid grid = new FishGrid(50, 64);
+        grid.update(school);
+
+        int[] out = new int[16];
+        float[] distances = new float[16];
+        int[] all = new int[school.size()];
+        for (int q = 0; q < 100; q++) {
+            float px = random.nextFloat() * 3000 - 1000;
+            float py = random.nextFloat() * 3000 - 1000;
+            float radius = random.nextFloat() * 300;
+            int inside = grid.queryRadius(px, py, radius, all);
+            int found = grid.queryNearest(px, py, radius, 16, out, distances);
+            assertEquals(Math.min(16, inside), found);
+            //和半径内的鱼按距离排好的前几条一样远
+            float[] expected = new float[inside];
+            for (int i = 0; i < inside; i++) {
+                expected[i] = distance(school, all[i], px, py);
+            }
+            Arrays.sort(expected);
+            for (int k = 0; k < found; k++) {
+                assertEquals(expected[k], distance(school, out[k], px, py), 1e-3f);
+                assertTrue(distance(school, out[k], px, py) <= radius * radius + 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void update_followsMovesAndRemovals() throws Exception {
+        FishSchool school = new FishSchool();
+        school.add(0, 0, 0);
+        school.add(1000, 1000, 0);
+        school.add(2000, 2000, 0);
+        FishGrid grid = new FishGrid(100, 16);
+        grid.update(school);
+
+        school.setPosition(0, 2010, 2010);
+        //最后一条鱼挪到下标1
+        school.remove(1);
+        grid.update(school);
+
+        int[] out = new int[4];
+        assertEquals(0, grid.queryRadius(1000, 1000, 50, out));
+        assertEquals(2, grid.queryRadius(2005, 2005, 50, out));
+        assertEquals(2, grid.queryNearest(0, 0, 5, out));
+    }
+
+    @Test
+    public void hitTest_usesDrawnBoundsAndPrefersTopmost() throws Exception {
+        FishSchool school = new FishSchool();
+        school.add(500, 500, 90);
+        school.add(510, 500, 90);
+        school.evaluate();
+        FishGrid grid = new FishGrid();
+        grid.update(school);
+
+        int[] hits = new int[16];
+        float[] bounds = new float[4];
+        float[] skeletons = school.getSkeletons();
+        //鱼头朝上，头在重心上面
+        float headX = skeletons[FishSkeleton.SIZE + FishSkeleton.HEAD];
+        float headY = skeletons[FishSkeleton.SIZE + FishSkeleton.HEAD + 1];
+        int candidates = grid.queryRadius(headX, headY, FishSkeleton.MAX_EXTENT, hits);
+        assertEquals(1, FishGrid.hitTest(headX, headY, skeletons, hits, candidates, bounds));
+        candidates = grid.queryRadius(900, 900, FishSkeleton.MAX_EXTENT, hits);
+        assertEquals(-1, FishGrid.hitTest(900, 900, skeletons, hits, candidates, bounds));
+    }
+
+    @Test
+    public void hitTest_denseSchoolFindsTopmostWithAllCandidates() throws Exception {
+        FishSchool school = new FishSchool();
+        for (int i = 0; i < 200; i++) {
+            school.add(500 + i % 7, 500 + i % 5, 90);
+        }
+        FishGrid grid = new FishGrid();
+        grid.update(school);
+        //最后加的一条还没画过，只算它的骨架
+        school.evaluate();
+        int last = school.add(503, 502, 90);
+        grid.update(school);
+        school.evaluate(last);
+
+        int[] hits = new int[64];
+        int candidates = grid.queryRadius(503, 502, FishSkeleton.MAX_EXTENT, hits);
+        assertEquals(201, candidates);
+        hits = new int[candidates];
+        grid.queryRadius(503, 502, FishSkeleton.MAX_EXTENT, hits);
+        assertEquals(last, FishGrid.hitTest(503, 502, school.getSkeletons(), hits, candidates, new float[4]));
+    }
+
+    @Test(timeout = 1000)
+    public void queryRadius_hugeRadiusOnlyWalksOccupiedCells() throws Exception {
+        FishGrid grid = new FishGrid();
+        grid.update(randomSchool(new Random(3), 50));
+        int[] out = new int[64];
+        assertEquals(50, grid.queryRadius(0, 0, Float.POSITIVE_INFINITY, out));
+        assertEquals(50, grid.queryRadius(1e9f, -1e9f, 1e10f, out));
+        assertEquals(0, new FishGrid().queryRadius(0, 0, Float.POSITIVE_INFINITY, out));
+    }
+
+    private static FishSchool randomSchool(Random random, int count) {
+        FishSchool school = new FishSchool();
+        for (int i = 0; i < count; i++) {
+            school.add(random.nextFloat() * 2000 - 500, random.nextFloat() * 2000 - 500, random.nextFloat() * 360);
+        }
+        return school;
+    }
+
+    private static float distance(FishSchool school, int i, float px, float py) {
+        float dx = school.getX(i) - px;
+        float dy = school.getY(i) - py;
+        return dx * dx + dy * dy;
+    }
+
+    private static int[] bruteRadius(FishSchool school, float px, float py, float radius) {
+        int[] result = new int[school.size()];
+        int found = 0;
+        for (int i = 0; i < school.size(); i++) {
+            if (distance(school, i, px, py) <= radius * radius) {
+                result[found++] = i;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+}
@@ -0,0 +1,50 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 细节档位的选择和防抖
+ */
+public class FishLodTest {
+
+    @Test
+    public void update_picksTierBySizeAndCount() throws Exception {
+        FishLod lod = new FishLod();
+        lod.setLengthThresholds(100, 40);
+        lod.setCountThresholds(100, 1000);
+        assertEquals(FishLod.FULL, lod.update(200, 1));
+        assertEquals(FishLod.REDUCED, lod.update(200, 500));
+        assertEquals(FishLod.MINIMAL, lod.update(200, 5000));
+        lod.reset();
+        assertEquals(FishLod.REDUCED, lod.update(50, 1));
+        assertEquals(FishLod.MINIMAL, lod.update(20, 1));
+    }
+
+    @Test
+    public void update_hysteresisAvoidsPopping() throws Exception {
+        FishLod lod = new FishLod();
+        lod.setLengthThresholds(100, 40);
+        lod.setHysteresis(0.2f);
+        assertEquals(FishLod.REDUCED, lod.update(99, 1));
+        //刚过阈值不升档
+        assertEquals(FishLod.REDUCED, lod.update(101, 1));
+        assertEquals(FishLod.REDUCED, lod.update(119, 1));
+        assertEquals(FishLod.FULL, lod.update(121, 1));
+        assertEquals(FishLod.FULL, lod.update(101, 1));
+        assertEquals(FishLod.REDUCED, lod.update(99, 1));
+    }
+
+    @Test
+    public void update_countHysteresis() throws Exception {
+        FishLod lod = new FishLod();
+        lod.setCountThresholds(100, 1000);
+        lod.setHysteresis(0.2f);
+        assertEquals(FishLod.MINIMAL, lod.update(500, 1001));
+        assertEquals(FishLod.MINIMAL, lod.update(500, 900));
+        assertEquals(FishLod.REDUCED, lod.update(500, 799));
+        assertEquals(FishLod.REDUCED, lod.update(500, 90));
+        assertEquals(FishLod.FULL, lod.update(500, 79));
+    }
+}
@@ -0,0 +1,101 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 三角形批次的拍平精度和分批
+ */
+public class FishMeshTest {
+
+    @Test
+    public void circle_areaWithinTolerance() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        FishMesh mesh = new FishMesh(target);
+        mesh.drawCircle(100, 100, 30);
+        mesh.flush();
+        float exact = (float) (Math.PI * 30 * 30);
+        //内接多边形比圆小，差的不超过周长乘容差
+        assertTrue(target.area < exact);
+        assertTrue(exact - target.area < 2 * Math.PI * 30 * FishMesh.DEFAULT_TOLERANCE);
+    }
+
+    @Test
+    public void segments_followScreenSize() throws Exception {
+        FishMesh mesh = new FishMesh(new RecordingTarget());
+        int normal = mesh.circleSegments(30);
+        mesh.setScale(4);
+        assertTrue(mesh.circleSegments(30) > normal);
+        mesh.setScale(0.1f);
+        assertTrue(mesh.circleSegments(30) < normal);
+        assertEquals(1, mesh.quadSegments(0, 0, 0.5f, 0.5f, 1, 1));
+    }
+
+    @Test
+    public void school_batchesIntoFewCalls() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        FishMesh mesh = new FishMesh(target);
+        float[] p = new float[FishSkeleton.SIZE];
+        for (int i = 0; i < 1000; i++) {
+            FishSkeleton.evaluate(p, 0, i, i, i, i * 7, 0);
+            FishGeometry.emit(p, 0, mesh);
+        }
+        mesh.flush();
+        assertEquals(target.calls, mesh.getBatchCount());
+        //每批塞满了才交出去，调用次数按顶点总数算
+        assertTrue(target.calls <= target.vertices / (FishMesh.MAX_VERTICES - 200) + 1);
+        assertTrue(target.calls < 1000);
+        assertTrue(target.maxIndex < FishMesh.MAX_VERTICES);
+    }
+
+    @Test
+    public void path_fanMatchesPolygonArea() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        FishMesh mesh = new FishMesh(target);
+        mesh.moveTo(0, 0);
+        mesh.lineTo(10, 0);
+        mesh.lineTo(10, 10);
+        mesh.lineTo(0, 10);
+        mesh.lineTo(0, 0);
+        mesh.fillPath();
+        mesh.flush();
+        assertEquals(100, target.area, 1e-3f);
+        assertEquals(4, target.vertices);
+    }
+
+    @Test
+    public void colors_carryPartAlpha() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        FishMesh mesh = new FishMesh(target);
+        mesh.setPart(FishRenderer.PART_BODY);
+        mesh.drawCircle(0, 0, 10);
+        mesh.flush();
+        assertEquals(FishGeometry.alphaOf(FishRenderer.PART_BODY), target.lastColor >>> 24);
+    }
+
+    private static final class RecordingTarget implements FishMesh.Target {
+        int calls;
+        int vertices;
+        int maxIndex;
+        int lastColor;
+        float area;
+
+        @Override
+        public void drawTriangles(float[] v, int[] colors, int vertexCount, short[] indices, int indexCount) {
+            calls++;
+            vertices += vertexCount;
+            lastColor = colors[vertexCount - 1];
+            for (int i = 0; i < indexCount; i += 3) {
+                int a = indices[i] & 0xFFFF;
+                int b = indices[i + 1] & 0xFFFF;
+                int c = indices[i + 2] & 0xFFFF;
+                maxIndex = Math.max(maxIndex, Math.max(a, Math.max(b, c)));
+                assertTrue(c < vertexCount);
+                area += Math.abs((v[b * 2] - v[a * 2]) * (v[c * 2 + 1] - v[a * 2 + 1])
+                        - (v[c * 2] - v[a * 2]) * (v[b * 2 + 1] - v[a * 2 + 1])) / 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 导航场：加删障碍物只改盖住的格子，路线绕开障碍物，看得见目标时不拐弯
+ */
+public class FishNavFieldTest {
+
+    private static final float CELL = 20;
+
+    @Test
+    public void openField_routesStraight() throws Exception {
+        FishNavField field = new FishNavField(400, 400, CELL, 0);
+        float[] waypoints = new float[FishNavField.MAX_WAYPOINTS * 2];
+        assertEquals(0, field.route(30, 200, 370, 200, waypoints));
+        //离目标越近路程越短
+        assertTrue(field.getDistance(field.cellAt(100, 200)) > field.getDistance(field.cellAt(300, 200)));
+    }
+
+    @Test
+    public void wall_routesAroundTheGap() throws Exception {
+        FishNavField field = new FishNavField(400, 400, CELL, 0);
+        //中间一堵竖墙，只在最下面留一个口
+        field.addObstacle(190, 0, 210, 340);
+        float[] waypoints = new float[FishNavField.MAX_WAYPOINTS * 2];
+        int count = field.route(30, 100, 370, 100, waypoints);
+        assertTrue(count > 0);
+
+        //拐点都在墙下面的口附近，而且每一段都不穿墙
+        float lastX = 30;
+        float lastY = 100;
+        boolean belowWall = false;
+        for (int i = 0; i < count; i++) {
+            float x = waypoints[i * 2];
+            float y = waypoints[i * 2 + 1];
+            assertFalse(field.isBlocked(x, y));
+            assertTrue(field.lineClear(lastX, lastY, x, y));
+            belowWall |= y > 340;
+            lastX = x;
+            lastY = y;
+        }
+        assertTrue(belowWall);
+        assertTrue(field.lineClear(lastX, lastY, 370, 100));
+
+        //墙边上往目标走的方向是往下绕
+        int cell = field.cellAt(170, 100);
+        assertTrue(field.getFlowY(cell) > 0.5f);
+    }
+
+    @Test
+    public void sameTarget_isCachedUntilObstaclesChange() throws Exception {
+        FishNavField field = new FishNavField(400, 400, CELL, 0);
+        assertTrue(field.setTarget(100, 100));
+        //同一个格子里换个点不用重算
+        assertFalse(field.setTarget(105, 105));
+        int id = field.addObstacle(150, 150, 250, 250);
+        assertTrue(field.setTarget(105, 105));
+        assertFalse(field.setTarget(105, 105));
+
+        //删掉以后和没加过一样
+        int before = field.getDistance(field.cellAt(390, 390));
+        field.removeObstacle(id);
+        field.setTarget(105, 105);
+        assertTrue(field.getDistance(field.cellAt(390, 390)) < before);
+        assertFalse(field.isBlocked(200, 200));
+        assertEquals(0, field.getObstacleCount());
+    }
+
+    @Test
+    public void overlappingObstacles_countPerCell() throws Exception {
+        FishNavField field = new FishNavField(400, 400, CELL, 0);
+        int a = field.addObstacle(100, 100, 200, 200);
+        int b = field.addObstacle(150, 150, 250, 250);
+        field.removeObstacle(a);
+        //重叠的部分还被b盖着
+        assertTrue(field.isBlocked(170, 170));
+        assertFalse(field.isBlocked(110, 110));
+        field.removeObstacle(b);
+        assertFalse(field.isBlocked(170, 170));
+        //删掉的编号重用
+        assertEquals(a, field.addObstacle(0, 0, 10, 10));
+    }
+
+    @Test
+    public void clearance_inflatesObstacles() throws Exception {
+        FishNavField field = new FishNavField(400, 400, CELL, 30);
+        field.addObstacle(200, 200, 220, 220);
+        assertTrue(field.isBlocked(175, 210));
+        assertFalse(field.isBlocked(130, 210));
+    }
+
+    @Test
+    public void enclosedTarget_fallsBackToStraightLine() throws Exception {
+        FishNavField field = new FishNavField(400, 400, CELL, 0);
+        //目标被围在一圈墙里面，走不到就不给途经点
+        field.addObstacle(240, 240, 360, 260);
+        field.addObstacle(240, 340, 360, 360);
+        field.addObstacle(240, 240, 260, 360);
+        field.addObstacle(340, 240, 360, 360);
+        float[] waypoints = new float[FishNavField.MAX_WAYPOINTS * 2];
+        assertEquals(0, field.route(50, 50, 300, 300, waypoints));
+        assertEquals(FishNavField.UNREACHABLE, field.getDistance(field.cellAt(50, 50)));
+    }
+
+    @Test
+    public void resize_keepsObstacles() throws Exception {
+        FishNavField field = new FishNavField(1, 1, CELL, 0);
+        field.addObstacle(100, 100, 200, 200);
+        field.setSize(400, 400);
+        assertEquals(20, field.getCols());
+        assertTrue(field.isBlocked(150, 150));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeObstacle_rejectsUnknownId() throws Exception {
+        new FishNavField(400, 400).removeObstacle(0);
+    }
+}
@@ -0,0 +1,120 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 画质调节的降档、升档和防止来回跳
+ */
+public class FishQualityGovernorTest {
+
+    private static final long FRAME = FishFrameMetrics.DEFAULT_FRAME_INTERVAL_NANOS;
+    private static final long SLOW = FRAME * 9 / 10;
+    private static final long MEDIUM = FRAME / 2;
+    private static final long FAST = FRAME / 10;
+
+    @Test
+    public void overrunsStepDownOneTierPerWindow() throws Exception {
+        FishQualityGovernor governor = new FishQualityGovernor();
+        RecordingListener listener = new RecordingListener();
+        governor.setOnQualityChangeListener(listener);
+        feed(governor, FishQualityGovernor.DEFAULT_WINDOW_FRAMES - 1, SLOW);
+        assertEquals(FishQualityGovernor.QUALITY_FULL, governor.getQuality());
+        feed(governor, 1, SLOW);
+        assertEquals(FishQualityGovernor.QUALITY_NO_DITHER, governor.getQuality());
+        assertEquals(1, listener.changes);
+        assertEquals(FishQualityGovernor.QUALITY_FULL, listener.previous);
+
+        feed(governor, FishQualityGovernor.DEFAULT_WINDOW_FRAMES * 10, SLOW);
+        assertEquals(FishQualityGovernor.LOWEST_QUALITY, governor.getQuality());
+        assertEquals(FishQualityGovernor.LOWEST_QUALITY, listener.quality);
+    }
+
+    @Test
+    public void missedVsyncCountsAsOverrun() throws Exception {
+        FishQualityGovernor governor = new FishQualityGovernor();
+        governor.setWindowFrames(10);
+        for (int i = 0; i < 10; i++) {
+            governor.onFrame(FRAME * 2, FAST);
+        }
+        assertEquals(FishQualityGovernor.QUALITY_NO_DITHER, governor.getQuality());
+    }
+
+    @Test
+    public void pausedFramesAreIgnored() throws Exception {
+        FishQualityGovernor governor = new FishQualityGovernor();
+        for (int i = 0; i < 100; i++) {
+            governor.onFrame(0, SLOW);
+        }
+        assertEquals(FishQualityGovernor.QUALITY_FULL, governor.getQuality());
+    }
+
+    @Test
+    public void stepsUpOnlyAfterCalmWindows() throws Exception {
+        FishQualityGovernor governor = new FishQualityGovernor();
+        governor.setWindowFrames(10);
+        governor.setQuality(2);
+        //有一点忙就不升
+        feed(governor, 100, MEDIUM);
+        assertEquals(2, governor.getQuality());
+        feed(governor, 10, FAST);
+        assertEquals(2, governor.getQuality());
+        feed(governor, 10, FAST);
+        assertEquals(1, governor.getQuality());
+    }
+
+    @Test
+    public void flappingDoublesTheWait() throws Exception {
+        FishQualityGovernor governor = new FishQualityGovernor();
+        governor.setWindowFrames(10);
+        governor.setQuality(1);
+        feed(governor, 20, FAST);
+        assertEquals(0, governor.getQuality());
+        //升上来第一个窗口就撑不住
+        feed(governor, 10, SLOW);
+        assertEquals(1, governor.getQuality());
+        //这次要等4个窗口
+        feed(governor, 30, FAST);
+        assertEquals(1, governor.getQuality());
+        feed(governor, 10, FAST);
+        assertEquals(0, governor.getQuality());
+    }
+
+    @Test
+    public void lowestQualityCapsTheDrop() throws Exception {
+        FishQualityGovernor governor = new FishQualityGovernor();
+        governor.setWindowFrames(5);
+        governor.setLowestQuality(FishQualityGovernor.QUALITY_NO_LAYER);
+        feed(governor, 500, SLOW);
+        assertEquals(FishQualityGovernor.QUALITY_NO_LAYER, governor.getQuality());
+        governor.setLowestQuality(FishQualityGovernor.QUALITY_NO_DITHER);
+        assertEquals(FishQualityGovernor.QUALITY_NO_DITHER, governor.getQuality());
+        governor.reset();
+        assertEquals(FishQualityGovernor.QUALITY_FULL, governor.getQuality());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setWatermarks_rejectsInvertedRange() throws Exception {
+        new FishQualityGovernor().setWatermarks(0.3f, 0.6f);
+    }
+
+    private static void feed(FishQualityGovernor governor, int frames, long work) {
+        for (int i = 0; i < frames; i++) {
+            governor.onFrame(FRAME, work);
+        }
+    }
+
+    private static final class RecordingListener implements FishQualityGovernor.OnQualityChangeListener {
+        int changes;
+        int quality;
+        int previous;
+
+        @Override
+        public void onQualityChanged(int quality, int previous) {
+            changes++;
+            this.quality = quality;
+            this.previous = previous;
+        }
+    }
+}
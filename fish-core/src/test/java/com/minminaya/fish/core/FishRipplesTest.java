@@ -0,0 +1,57 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 波纹池的环形缓冲区
+ */
+public class FishRipplesTest {
+
+    @Test
+    public void concurrentRipples_expireOldestFirst() throws Exception {
+        FishRipples ripples = new FishRipples(4, 150, 300);
+        ripples.add(10, 10);
+        ripples.advance(200);
+        ripples.add(20, 20);
+        assertEquals(2, ripples.size());
+
+        ripples.advance(100);
+        assertEquals(1, ripples.size());
+        assertEquals(20f, ripples.getX(0), 0f);
+        //走了三分之一
+        assertEquals(150 * 0.25f, ripples.getRadius(0), 1e-3f);
+
+        ripples.advance(200);
+        assertEquals(0, ripples.size());
+    }
+
+    @Test
+    public void full_replacesOldest() throws Exception {
+        FishRipples ripples = new FishRipples(3, 150, 300);
+        for (int i = 0; i < 5; i++) {
+            ripples.add(i, i);
+        }
+        assertEquals(3, ripples.size());
+        assertEquals(2f, ripples.getX(0), 0f);
+        assertEquals(4f, ripples.getX(2), 0f);
+    }
+
+    @Test
+    public void computeBounds_unionOfCircles() throws Exception {
+        FishRipples ripples = new FishRipples(4, 100, 300);
+        float[] bounds = new float[4];
+        assertFalse(ripples.computeBounds(bounds, 5));
+
+        ripples.add(100, 100);
+        ripples.add(400, 300);
+        ripples.advance(300 - 1e-3f);
+        ripples.computeBounds(bounds, 5);
+        assertEquals(-5f, bounds[0], 0.01f);
+        assertEquals(-5f, bounds[1], 0.01f);
+        assertEquals(505f, bounds[2], 0.01f);
+        assertEquals(405f, bounds[3], 0.01f);
+    }
+}
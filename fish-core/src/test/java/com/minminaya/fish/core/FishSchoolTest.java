@@ -0,0 +1,47 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 鱼群的并列数组
+ */
+public class FishSchoolTest {
+
+    @Test
+    public void add_growsPastInitialCapacity() throws Exception {
+        FishSchool school = new FishSchool(2);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, school.add(i, i * 2, 90));
+        }
+        assertEquals(100, school.size());
+        school.evaluate();
+        float[] skeletons = school.getSkeletons();
+        assertEquals(99f, skeletons[99 * FishSkeleton.SIZE + FishSkeleton.MIDDLE], 0f);
+        assertEquals(198f, skeletons[99 * FishSkeleton.SIZE + FishSkeleton.MIDDLE + 1], 0f);
+    }
+
+    @Test
+    public void remove_movesLastFishIntoSlot() throws Exception {
+        FishSchool school = new FishSchool();
+        school.add(1, 1, 0);
+        school.add(2, 2, 45);
+        school.add(3, 3, 90);
+        school.setSkin(2, 5);
+        school.remove(0);
+        assertEquals(2, school.size());
+        assertEquals(3f, school.getX(0), 0f);
+        assertEquals(90f, school.getMainAngle(0), 0f);
+        assertEquals(5, school.getSkin(0));
+        assertEquals(2f, school.getX(1), 0f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void removedFish_notAccessible() throws Exception {
+        FishSchool school = new FishSchool();
+        school.add(1, 1, 0);
+        school.remove(0);
+        school.getX(0);
+    }
+}
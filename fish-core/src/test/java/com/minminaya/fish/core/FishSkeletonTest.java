@@ -0,0 +1,224 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 查表加旋转的骨架和原来逐点Math.sin/Math.cos算出来的骨架对比
+ */
+public class FishSkeletonTest {
+
+    /**
+     * 允许的最大像素误差，引擎值很大时float乘法本身就有1e-2像素量级的误差
+     */
+    private static final float MAX_ERROR = 0.05f;
+
+    @Test
+    public void evaluate_matchesDoublePrecisionReference() throws Exception {
+        float[] actual = new float[FishSkeleton.SIZE];
+        float[] expected = new float[FishSkeleton.SIZE];
+        float maxError = 0;
+        for (float mainAngle = -180; mainAngle <= 180; mainAngle += 7.3f) {
+            for (float phase = 0; phase <= 108000; phase += 977.7f) {
+                for (float finsAngle = 0; finsAngle <= 1; finsAngle += 0.5f) {
+                    FishSkeleton.evaluate(actual, 0, 125.4f, 125.4f, mainAngle, phase, finsAngle);
+                    reference(expected, 125.4f, 125.4f, mainAngle, phase, finsAngle);
+                    for (int i = 0; i < FishSkeleton.SIZE; i++) {
+                        maxError = Math.max(maxError, Math.abs(actual[i] - expected[i]));
+                    }
+                }
+            }
+        }
+        assertTrue("max error " + maxError, maxError < MAX_ERROR);
+    }
+
+    @Test
+    public void evaluate_writesAtOffset() throws Exception {
+        float[] single = new float[FishSkeleton.SIZE];
+        float[] school = new float[FishSkeleton.SIZE * 3];
+        FishSkeleton.evaluate(single, 0, 10, 20, 45, 300, 0);
+        FishSkeleton.evaluate(school, FishSkeleton.SIZE * 2, 10, 20, 45, 300, 0);
+        for (int i = 0; i < FishSkeleton.SIZE; i++) {
+            assertTrue(single[i] == school[FishSkeleton.SIZE * 2 + i]);
+            assertTrue(school[i] == 0);
+        }
+    }
+
+    @Test
+    public void computeBounds_matchesDrawnGeometry() throws Exception {
+        float[] p = new float[FishSkeleton.SIZE];
+        float[] bounds = new float[4];
+        SamplingRenderer sampled = new SamplingRenderer();
+        for (float mainAngle = 0; mainAngle < 360; mainAngle += 15) {
+            FishSkeleton.evaluate(p, 0, 200, 200, mainAngle, mainAngle * 11, mainAngle / 360);
+            FishSkeleton.computeBounds(p, 0, bounds);
+            sampled.reset();
+            FishGeometry.emit(p, 0, sampled);
+            //把画出来的东西密集采样，包围盒四条边都要贴着
+            assertEquals(sampled.bounds[0], bounds[0], 0.05f);
+            assertEquals(sampled.bounds[1], bounds[1], 0.05f);
+            assertEquals(sampled.bounds[2], bounds[2], 0.05f);
+            assertEquals(sampled.bounds[3], bounds[3], 0.05f);
+            //比原来固定的8.38倍头部半径的方框小
+            assertTrue(bounds[2] - bounds[0] < 8.38f * FishSkeleton.HEAD_RADIUS);
+        }
+    }
+
+    @Test
+    public void lowerTiers_stayInsideBounds() throws Exception {
+        float[] p = new float[FishSkeleton.SIZE];
+        float[] bounds = new float[4];
+        SamplingRenderer sampled = new SamplingRenderer();
+        int[] expectedCalls = {11, 4, 1};
+        for (int tier = FishLod.FULL; tier <= FishLod.MINIMAL; tier++) {
+            for (float mainAngle = 0; mainAngle < 360; mainAngle += 15) {
+                FishSkeleton.evaluate(p, 0, 200, 200, mainAngle, mainAngle * 11, mainAngle / 360);
+                FishSkeleton.computeBounds(p, 0, bounds);
+                sampled.reset();
+                FishGeometry.emit(p, 0, sampled, tier);
+                //降档画的东西不会超出完整的包围盒，裁剪和刷新区域不用跟着变
+                assertTrue(sampled.bounds[0] >= bounds[0] - 0.05f);
+                assertTrue(sampled.bounds[1] >= bounds[1] - 0.05f);
+                assertTrue(sampled.bounds[2] <= bounds[2] + 0.05f);
+                assertTrue(sampled.bounds[3] <= bounds[3] + 0.05f);
+                assertEquals(expectedCalls[tier], sampled.calls);
+            }
+        }
+    }
+
+    /**
+     * 圆按圆心加半径，曲线每段采样1000个点
+     */
+    private static final class SamplingRenderer implements FishRenderer {
+        final float[] bounds = new float[4];
+        int calls;
+        private float lastX;
+        private float lastY;
+
+        void reset() {
+            bounds[0] = Float.MAX_VALUE;
+            bounds[1] = Float.MAX_VALUE;
+            bounds[2] = -Float.MAX_VALUE;
+            bounds[3] = -Float.MAX_VALUE;
+            calls = 0;
+        }
+
+        private void include(float x, float y, float r) {
+            bounds[0] = Math.min(bounds[0], x - r);
+            bounds[1] = Math.min(bounds[1], y - r);
+            bounds[2] = Math.max(bounds[2], x + r);
+            bounds[3] = Math.max(bounds[3], y + r);
+        }
+
+        @Override
+        public void setPart(int part) {
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius) {
+            include(cx, cy, radius);
+            calls++;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            include(x, y, 0);
+            lastX = x;
+            lastY = y;
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            moveTo(x, y);
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            for (int i = 1; i <= 1000; i++) {
+                float t = i / 1000f;
+                float u = 1 - t;
+                include(u * u * lastX + 2 * u * t * controlX + t * t * x, u * u * lastY + 2 * u * t * controlY + t * t * y, 0);
+            }
+            lastX = x;
+            lastY = y;
+        }
+
+        @Override
+        public void fillPath() {
+            calls++;
+        }
+    }
+
+    /**
+     * 原来makeBody → makeSegments → makeSegmentLong → makeTail的算法，每个点都单独算三角函数
+     */
+    private static void reference(float[] out, float middleX, float middleY, float mainAngle, float phase, float finsAngle) {
+        float r = FishSkeleton.HEAD_RADIUS;
+        point(out, FishSkeleton.MIDDLE, middleX, middleY, 0, 0);
+        float angle = (float) (mainAngle + Math.sin(Math.toRadians(phase * 1.2)) * 2);
+        point(out, FishSkeleton.HEAD, middleX, middleY, FishSkeleton.BODY_LENGH / 2, mainAngle);
+        float hx = out[FishSkeleton.HEAD];
+        float hy = out[FishSkeleton.HEAD + 1];
+
+        point(out, FishSkeleton.FINS_RIGHT_START, hx, hy, r * 0.9f, angle - 110);
+        fins(out, FishSkeleton.FINS_RIGHT_START, angle - finsAngle - 180, angle - finsAngle - 110);
+        point(out, FishSkeleton.FINS_LEFT_START, hx, hy, r * 0.9f, angle + 110);
+        fins(out, FishSkeleton.FINS_LEFT_START, angle + finsAngle + 180, angle + finsAngle + 110);
+
+        point(out, FishSkeleton.BODY_END, hx, hy, FishSkeleton.BODY_LENGH, angle - 180);
+        float ex = out[FishSkeleton.BODY_END];
+        float ey = out[FishSkeleton.BODY_END + 1];
+        point(out, FishSkeleton.BODY_RIGHT_TOP, hx, hy, r, angle - 80);
+        point(out, FishSkeleton.BODY_LEFT_TOP, hx, hy, r, angle + 80);
+        point(out, FishSkeleton.BODY_RIGHT_BOTTOM, ex, ey, r * 0.7f, angle - 90);
+        point(out, FishSkeleton.BODY_LEFT_BOTTOM, ex, ey, r * 0.7f, angle + 90);
+        point(out, FishSkeleton.BODY_CONTROL_RIGHT, hx, hy, FishSkeleton.BODY_LENGH * 0.56f, angle - 130);
+        point(out, FishSkeleton.BODY_CONTROL_LEFT, hx, hy, FishSkeleton.BODY_LENGH * 0.56f, angle + 130);
+
+        float segmentAngle = (float) (angle + Math.cos(Math.toRadians(phase * 1.5)) * 15);
+        segment(out, FishSkeleton.BODY_END, FishSkeleton.SEGMENT_BOTTOM, r * 0.7f, 0.6f, r * 0.7f * 1.6f, segmentAngle);
+
+        float longAngle = (float) (segmentAngle + Math.sin(Math.toRadians(phase * 1.5)) * 35);
+        float topRadius = r * 0.7f * 0.6f;
+        float longLength = topRadius * (0.4f + 2.7f);
+        segment(out, FishSkeleton.SEGMENT_BOTTOM, FishSkeleton.SEGMENT_LONG_BOTTOM, topRadius, 0.4f, longLength, longAngle);
+
+        float width = (float) (Math.abs(Math.sin(Math.toRadians(phase * 1.7))) * (topRadius + 50) + r / 5);
+        float tx = out[FishSkeleton.SEGMENT_BOTTOM];
+        float ty = out[FishSkeleton.SEGMENT_BOTTOM + 1];
+        point(out, FishSkeleton.TAIL_BIG_BOTTOM, tx, ty, longLength, longAngle - 180);
+        point(out, FishSkeleton.TAIL_SMALL_BOTTOM, tx, ty, longLength - 10, longAngle - 180);
+        float bx = out[FishSkeleton.TAIL_BIG_BOTTOM];
+        float by = out[FishSkeleton.TAIL_BIG_BOTTOM + 1];
+        float sx = out[FishSkeleton.TAIL_SMALL_BOTTOM];
+        float sy = out[FishSkeleton.TAIL_SMALL_BOTTOM + 1];
+        point(out, FishSkeleton.TAIL_BIG_RIGHT, bx, by, width, longAngle - 90);
+        point(out, FishSkeleton.TAIL_BIG_LEFT, bx, by, width, longAngle + 90);
+        point(out, FishSkeleton.TAIL_SMALL_RIGHT, sx, sy, width - 20, longAngle - 90);
+        point(out, FishSkeleton.TAIL_SMALL_LEFT, sx, sy, width - 20, longAngle + 90);
+    }
+
+    private static void fins(float[] out, int start, float endAngle, float controlAngle) {
+        point(out, start + 2, out[start], out[start + 1], FishSkeleton.FINS_LENGTH, endAngle);
+        point(out, start + 4, out[start], out[start + 1], FishSkeleton.FINS_LENGTH * 1.8f, controlAngle);
+    }
+
+    private static void segment(float[] out, int top, int bottom, float topRadius, float ratio, float length, float angle) {
+        float tx = out[top];
+        float ty = out[top + 1];
+        point(out, bottom, tx, ty, length, angle - 180);
+        float bx = out[bottom];
+        float by = out[bottom + 1];
+        point(out, bottom + 2, tx, ty, topRadius, angle - 90);
+        point(out, bottom + 4, bx, by, topRadius * ratio, angle - 90);
+        point(out, bottom + 6, bx, by, topRadius * ratio, angle + 90);
+        point(out, bottom + 8, tx, ty, topRadius, angle + 90);
+    }
+
+    private static void point(float[] out, int index, float x, float y, float length, float angle) {
+        out[index] = x + (float) Math.cos(Math.toRadians(angle)) * length;
+        out[index + 1] = y + (float) Math.sin(Math.toRadians(angle - 180)) * length;
+    }
+}
@@ -0,0 +1,142 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 数据驱动的鱼身和按它算的FishSkeleton对比，以及不同节数的开销
+ */
+public class FishSpineTest {
+
+    private static final float MAX_ERROR = 0.05f;
+
+    @Test
+    public void classic_matchesFishSkeleton() throws Exception {
+        FishSpine spine = FishSpine.classic();
+        assertEquals(3, spine.getSegmentCount());
+        float[] expected = new float[FishSkeleton.SIZE];
+        float[] actual = new float[spine.getSize()];
+        int segment = spine.segment(1);
+        int segmentLong = spine.segment(2);
+        int tail = spine.getTail();
+        for (float mainAngle = -180; mainAngle <= 180; mainAngle += 13.7f) {
+            for (float phase = 0; phase < FishSkeleton.PHASE_CYCLE; phase += 97.3f) {
+                FishSkeleton.evaluate(expected, 0, 100, 80, mainAngle, phase, 0);
+                spine.evaluate(actual, 0, 100, 80, mainAngle, phase);
+
+                assertPoint(expected, FishSkeleton.HEAD, actual, FishSpine.HEAD);
+                assertPoint(expected, FishSkeleton.BODY_END, actual, spine.segment(0));
+                assertPoint(expected, FishSkeleton.BODY_RIGHT_BOTTOM, actual, spine.segment(0) + 4);
+                assertPoint(expected, FishSkeleton.BODY_LEFT_BOTTOM, actual, spine.segment(0) + 6);
+                //俩节节肢的末端和梯形4个角布局一样
+                for (int i = 0; i < FishSpine.SEGMENT_FLOATS; i += 2) {
+                    assertPoint(expected, FishSkeleton.SEGMENT_BOTTOM + i, actual, segment + i);
+                    assertPoint(expected, FishSkeleton.SEGMENT_LONG_BOTTOM + i, actual, segmentLong + i);
+                }
+                assertPoint(expected, FishSkeleton.TAIL_BIG_BOTTOM, actual, tail);
+                assertPoint(expected, FishSkeleton.TAIL_BIG_RIGHT, actual, tail + 2);
+                assertPoint(expected, FishSkeleton.TAIL_BIG_LEFT, actual, tail + 4);
+                assertPoint(expected, FishSkeleton.TAIL_SMALL_BOTTOM, actual, tail + 6);
+                assertPoint(expected, FishSkeleton.TAIL_SMALL_RIGHT, actual, tail + 8);
+                assertPoint(expected, FishSkeleton.TAIL_SMALL_LEFT, actual, tail + 10);
+            }
+        }
+        assertEquals(FishSkeleton.SEGMENT_LONG_BOTTOM_RADIUS, spine.getJointRadius(3), 1e-4f);
+    }
+
+    @Test
+    public void size_andDrawCalls_growWithSegments() throws Exception {
+        int[] counts = {1, 2, 3, 8, 24};
+        for (int n : counts) {
+            FishSpine spine = FishSpine.eel(n, 300);
+            assertEquals(FishSpine.FIRST_SEGMENT + n * FishSpine.SEGMENT_FLOATS + 12, spine.getSize());
+            float[] p = new float[spine.getSize()];
+            spine.evaluate(p, 0, 0, 0, 30, 500);
+            CountingRenderer renderer = new CountingRenderer();
+            spine.emit(p, 0, renderer);
+            assertEquals(2 * n + 3, renderer.calls);
+            //最后只有身体一节用身体的透明度
+            assertEquals(FishRenderer.PART_BODY, renderer.part);
+        }
+    }
+
+    @Test
+    public void eel_isContinuousAndHasTheRequestedLength() throws Exception {
+        FishSpine spine = FishSpine.eel(16, 320);
+        float[] p = new float[spine.getSize()];
+        //相位为0时摆动也不为0，只检查每节首尾相连、长度不变
+        spine.evaluate(p, 0, 0, 0, 0, 1234);
+        float x = p[FishSpine.HEAD];
+        float y = p[FishSpine.HEAD + 1];
+        float total = 0;
+        for (int i = 0; i < spine.getSegmentCount(); i++) {
+            int s = spine.segment(i);
+            total += (float) Math.hypot(p[s] - x, p[s + 1] - y);
+            x = p[s];
+            y = p[s + 1];
+            assertTrue(spine.getJointRadius(i + 1) < spine.getJointRadius(i));
+        }
+        assertEquals(320, total, 0.5f);
+    }
+
+    @Test
+    public void computeBounds_containsEverything() throws Exception {
+        FishSpine spine = FishSpine.stubby();
+        float[] p = new float[spine.getSize() * 2];
+        float[] bounds = new float[4];
+        int o = spine.getSize();
+        spine.evaluate(p, o, 50, 60, 120, 777);
+        spine.computeBounds(p, o, bounds);
+        for (int i = o + 2; i < o + spine.getSize(); i += 2) {
+            assertTrue(p[i] >= bounds[0] && p[i] <= bounds[2]);
+            assertTrue(p[i + 1] >= bounds[1] && p[i + 1] <= bounds[3]);
+        }
+        float head = spine.getJointRadius(0);
+        assertTrue(bounds[0] <= p[o + FishSpine.HEAD] - head);
+        assertTrue(bounds[3] >= p[o + FishSpine.HEAD + 1] + head);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsPartialSegments() throws Exception {
+        new FishSpine(10, new float[]{10, 0.5f, 10, 1}, 10, 1, 1, 1);
+    }
+
+    private static void assertPoint(float[] expected, int e, float[] actual, int a) {
+        assertEquals(expected[e], actual[a], MAX_ERROR);
+        assertEquals(expected[e + 1], actual[a + 1], MAX_ERROR);
+    }
+
+    private static final class CountingRenderer implements FishRenderer {
+        int calls;
+        int part;
+
+        @Override
+        public void setPart(int part) {
+            this.part = part;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius) {
+            calls++;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+        }
+
+        @Override
+        public void fillPath() {
+            calls++;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 预渲染帧的编号、淘汰顺序和循环取帧的命中率
+ */
+public class FishSpriteCacheTest {
+
+    @Test
+    public void evict_dropsLeastRecentlyUsed() throws Exception {
+        FishSpriteCache cache = new FishSpriteCache(2, 1, 4);
+        cache.add(0);
+        cache.add(1);
+        assertEquals(-1, cache.evict());
+        assertTrue(cache.touch(0));
+        cache.add(2);
+        //1最久没用过
+        assertEquals(1, cache.evict());
+        assertEquals(-1, cache.evict());
+        assertFalse(cache.contains(1));
+        assertFalse(cache.touch(1));
+        assertTrue(cache.contains(0));
+        assertTrue(cache.contains(2));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void add_existingKeyOnlyRefreshes() throws Exception {
+        FishSpriteCache cache = new FishSpriteCache(2, 1, 4);
+        cache.add(0);
+        cache.add(1);
+        cache.add(0);
+        assertEquals(2, cache.size());
+        cache.add(3);
+        assertEquals(1, cache.evict());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsCycleLargerThanCapacity() throws Exception {
+        //原来的默认值：360档相位，16M只放得下二十几帧
+        new FishSpriteCache(29, 360, 36);
+    }
+
+    @Test
+    public void scaleForBudget_fitsOneCycleOfFinePhases() throws Exception {
+        int budget = 16 * 1024 * 1024;
+        int phaseSteps = FishSpriteCache.DEFAULT_PHASE_STEPS;
+        float[] bounds = FishSpriteCache.measureHeadingBounds(phaseSteps, 36);
+        float scale = FishSpriteCache.scaleForBudget(budget, phaseSteps, bounds);
+        assertTrue(scale >= FishSpriteCache.MIN_SCALE);
+        assertTrue(scale < 1);
+        long cycleBytes = (long) phaseSteps * FishSpriteCache.FINS_STEPS * FishSpriteCache.maxFrameBytes(bounds, scale);
+        assertTrue(cycleBytes <= budget);
+        //缩放不是随便往下取的，再大一点就放不下了
+        assertTrue((long) phaseSteps * FishSpriteCache.FINS_STEPS * FishSpriteCache.maxFrameBytes(bounds, scale * 1.02f) > budget);
+        //预算够就不缩
+        assertEquals(1f, FishSpriteCache.scaleForBudget(64 * 1024 * 1024, phaseSteps, bounds), 0f);
+        //太小了缩到一半也放不下
+        assertTrue(FishSpriteCache.scaleForBudget(1024 * 1024, phaseSteps, bounds) < FishSpriteCache.MIN_SCALE);
+    }
+
+    @Test
+    public void measureHeadingBounds_coversEveryFrame() throws Exception {
+        float[] bounds = FishSpriteCache.measureHeadingBounds(FishSpriteCache.DEFAULT_PHASE_STEPS, 4);
+        float[] p = new float[FishSkeleton.SIZE];
+        float[] frame = new float[4];
+        for (int h = 0; h < 4; h++) {
+            for (float phase = 0; phase < FishSkeleton.PHASE_CYCLE; phase += 10) {
+                FishSkeleton.evaluate(p, 0, 0, 0, h * 90, phase, 1);
+                FishSkeleton.computeBounds(p, 0, frame);
+                assertTrue(frame[0] >= bounds[h * 4] && frame[1] >= bounds[h * 4 + 1]);
+                assertTrue(frame[2] <= bounds[h * 4 + 2] && frame[3] <= bounds[h * 4 + 3]);
+            }
+        }
+        //横着的鱼比竖着的宽
+        assertTrue(bounds[2] - bounds[0] > bounds[3] - bounds[1]);
+    }
+
+    @Test
+    public void consecutiveVsyncs_pickNewFrameEveryFewFrames() throws Exception {
+        FishSpriteCache cache = new FishSpriteCache(720, FishSpriteCache.DEFAULT_PHASE_STEPS, 36);
+        //歇着的时候扭动频率是1，相位走得最慢，和FishDrawable一样每帧按60fps推进
+        float phasePerFrame = FishSkeleton.ENGINE_SPEED * 1000 / 60f;
+        float phase = 0;
+        int last = cache.phaseIndex(phase);
+        int sameFrames = 0;
+        for (int frame = 0; frame < FishSkeleton.PHASE_CYCLE / phasePerFrame * 2; frame++) {
+            phase = (phase + phasePerFrame) % FishSkeleton.PHASE_CYCLE;
+            int index = cache.phaseIndex(phase);
+            if (index == last) {
+                sameFrames++;
+                //最多连着三帧贴同一张
+                assertTrue("frame " + frame + " stuck on phase " + index, sameFrames < 3);
+            } else {
+                sameFrames = 0;
+                last = index;
+            }
+        }
+        //尾巴摆一下的周期里至少有十几张不同的帧
+        float tailPeriod = 360 / 1.5f;
+        assertTrue(cache.phaseIndex(tailPeriod) - cache.phaseIndex(0) >= 16);
+    }
+
+    @Test
+    public void cyclicScan_hitsEveryFrameAfterFirstCycle() throws Exception {
+        int budget = 16 * 1024 * 1024;
+        int phaseSteps = FishSpriteCache.DEFAULT_PHASE_STEPS;
+        float[] bounds = FishSpriteCache.measureHeadingBounds(phaseSteps, 36);
+        float scale = FishSpriteCache.scaleForBudget(budget, phaseSteps, bounds);
+        FishSpriteCache cache = new FishSpriteCache(budget / FishSpriteCache.maxFrameBytes(bounds, scale), phaseSteps, 36);
+        //鱼停在一个朝向上摆尾巴，每帧相位往前走一点，鱼鳍偶尔扭一下
+        float phasePerFrame = FishSkeleton.ENGINE_SPEED * 1000 / 60f;
+        int framesPerCycle = (int) Math.ceil(FishSkeleton.PHASE_CYCLE / phasePerFrame);
+        int heading = cache.headingIndex(90);
+        boolean[] seen = new boolean[cache.keyCount()];
+        float phase = 0;
+        int hits = 0;
+        int lookups = 0;
+        for (int frame = 0; frame < framesPerCycle * 4; frame++) {
+            float fins = frame % 50 < 10 ? 1 : 0;
+            int key = cache.key(cache.phaseIndex(phase), heading, FishSpriteCache.finsIndex(fins));
+            boolean hit = cache.touch(key);
+            if (!hit) {
+                //生成好以后放进去，超出预算就淘汰
+                cache.add(key);
+                while (cache.evict() >= 0) {
+                }
+            }
+            //第一次见到的帧总要生成一次，之后再用到都应该命中
+            if (seen[key]) {
+                lookups++;
+                if (hit) {
+                    hits++;
+                }
+            }
+            seen[key] = true;
+            phase += phasePerFrame;
+        }
+        assertTrue(lookups > framesPerCycle * 3);
+        assertEquals(lookups, hits);
+    }
+
+    @Test
+    public void phaseIndex_wrapsAroundCycle() throws Exception {
+        FishSpriteCache cache = new FishSpriteCache(20, 10, 36);
+        assertEquals(0, cache.phaseIndex(0));
+        assertEquals(0, cache.phaseIndex(FishSkeleton.PHASE_CYCLE));
+        assertEquals(0, cache.phaseIndex(FishSkeleton.PHASE_CYCLE * 0.99f));
+        assertEquals(9, cache.phaseIndex(-FishSkeleton.PHASE_CYCLE / 10));
+        assertEquals(18, cache.headingIndex(180));
+        assertEquals(0, cache.headingIndex(359.9f));
+    }
+}
@@ -0,0 +1,88 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 转向角度，鱼头朝上（y轴朝下）时左转为正右转为负
+ */
+public class FishSteeringTest {
+
+    @Test
+    public void caculateScrollAngle_signFollowsSide() throws Exception {
+        assertEquals(-90f, FishSteering.caculateScrollAngle(0, 0, 0, -48, 100, 0), 1e-3f);
+        assertEquals(90f, FishSteering.caculateScrollAngle(0, 0, 0, -48, -100, 0), 1e-3f);
+        assertEquals(-45f, FishSteering.caculateScrollAngle(0, 0, 0, -48, 100, -100), 1e-3f);
+    }
+
+    @Test
+    public void caculateScrollAngle_collinear() throws Exception {
+        assertEquals(0f, FishSteering.caculateScrollAngle(0, 0, 0, -48, 0, -300), 0f);
+        assertEquals(180f, FishSteering.caculateScrollAngle(0, 0, 0, -48, 0, 300), 0f);
+    }
+
+    @Test
+    public void makeTrail_endsOffsetByHead() throws Exception {
+        float[] trail = new float[FishSteering.TRAIL_SIZE];
+        FishSteering.makeTrail(trail, 10, 20, 125, 125, 125, 77, 30, 500, 600);
+        assertEquals(10f, trail[FishSteering.TRAIL_START], 0f);
+        assertEquals(20f, trail[FishSteering.TRAIL_START + 1], 0f);
+        assertEquals(135f, trail[FishSteering.TRAIL_CONTROL1], 0f);
+        assertEquals(97f, trail[FishSteering.TRAIL_CONTROL1 + 1], 0f);
+        assertEquals(375f, trail[FishSteering.TRAIL_END], 0f);
+        assertEquals(523f, trail[FishSteering.TRAIL_END + 1], 0f);
+    }
+
+    @Test
+    public void alignStart_keepsControlDistanceAlongHeading() throws Exception {
+        float[] trail = new float[FishSteering.TRAIL_SIZE];
+        FishSteering.makeTrail(trail, 10, 20, 125, 125, 125, 77, 30, 500, 600);
+        //原来第一个控制点离起点(125, 77)那么远
+        float distance = (float) Math.hypot(125, 77);
+        FishSteering.alignStart(trail, -90);
+        //朝下游，控制点在起点正下方
+        assertEquals(10f, trail[FishSteering.TRAIL_CONTROL1], 0.1f);
+        assertEquals(20f + distance, trail[FishSteering.TRAIL_CONTROL1 + 1], 0.1f);
+        assertEquals(375f, trail[FishSteering.TRAIL_END], 0f);
+    }
+
+    @Test
+    public void makeRoute_passesWaypointsWithSmoothJoints() throws Exception {
+        float[] route = new float[FishSteering.routeSize(3)];
+        float[] waypoints = {300, 100, 300, 400};
+        int segments = FishSteering.makeRoute(route, 0, 0, 125, 125, 125, 77, 30, 600, 400, waypoints, 2);
+        assertEquals(3, segments);
+        //起点和第一个控制点和makeTrail一样
+        float[] trail = new float[FishSteering.TRAIL_SIZE];
+        FishSteering.makeTrail(trail, 0, 0, 125, 125, 125, 77, 30, 600, 400);
+        for (int i = 0; i < FishSteering.TRAIL_CONTROL2; i++) {
+            assertEquals(trail[i], route[i], 0f);
+        }
+        //各段终点是途经点和触摸点往回偏鱼头
+        assertEquals(175f, route[FishSteering.TRAIL_END], 0f);
+        assertEquals(23f, route[FishSteering.TRAIL_END + 1], 0f);
+        assertEquals(475f, route[FishSteering.TRAIL_END + 2 * FishSteering.ROUTE_SEGMENT_SIZE], 0f);
+        //接缝处前后俩个控制点和端点在一条线上
+        for (int s = 0; s < 2; s++) {
+            int end = FishSteering.TRAIL_END + s * FishSteering.ROUTE_SEGMENT_SIZE;
+            float inX = route[end] - route[end - 2];
+            float inY = route[end + 1] - route[end - 1];
+            float outX = route[end + 2] - route[end];
+            float outY = route[end + 3] - route[end + 1];
+            assertEquals(0f, inX * outY - inY * outX, 1e-2f);
+            assertEquals(true, inX * outX + inY * outY > 0);
+        }
+    }
+
+    @Test
+    public void makeRoute_withoutWaypointsIsTrail() throws Exception {
+        float[] route = new float[FishSteering.routeSize(1)];
+        float[] trail = new float[FishSteering.TRAIL_SIZE];
+        assertEquals(1, FishSteering.makeRoute(route, 415, 835, 125, 125, 125, 77, 30, 900, 300, new float[0], 0));
+        FishSteering.makeTrail(trail, 415, 835, 125, 125, 125, 77, 30, 900, 300);
+        for (int i = 0; i < trail.length; i++) {
+            assertEquals(trail[i], route[i], 0f);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 生成的触摸：同一个种子结果一样，点都在画面里，时间不倒流
+ */
+public class FishTouchGeneratorTest {
+
+    @Test
+    public void sameSeed_sameTrace() throws Exception {
+        FishTouchTrace a = generate(11);
+        FishTouchTrace b = generate(11);
+        assertEquals(11, a.getSeed());
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.getTimeNanos(i), b.getTimeNanos(i));
+            assertEquals(a.getAction(i), b.getAction(i));
+            assertEquals(a.getX(i), b.getX(i), 0f);
+            assertEquals(a.getY(i), b.getY(i), 0f);
+        }
+        FishTouchTrace c = generate(12);
+        assertTrue(c.getX(0) != a.getX(0) || c.getY(0) != a.getY(0));
+    }
+
+    @Test
+    public void burst_staysOnScreenInOrder() throws Exception {
+        FishTouchTrace trace = generate(3);
+        //2000次点击各俩个事件，200次拖动各按下、20次移动、抬起
+        assertEquals(2000 * 2 + 200 * 22, trace.size());
+        int downs = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            assertTrue(trace.getX(i) >= 0 && trace.getX(i) <= 1080);
+            assertTrue(trace.getY(i) >= 0 && trace.getY(i) <= 1920);
+            if (i > 0) {
+                assertTrue(trace.getTimeNanos(i) >= trace.getTimeNanos(i - 1));
+            }
+            if (trace.getAction(i) == FishTouchTrace.ACTION_DOWN) {
+                downs++;
+            }
+        }
+        assertEquals(2200, downs);
+        //点击接着拖动，中间隔一个间隔
+        assertEquals(FishTouchTrace.ACTION_UP, trace.getAction(3999));
+        assertEquals(FishTouchTrace.ACTION_DOWN, trace.getAction(4000));
+        assertTrue(trace.getTimeNanos(4000) > trace.getTimeNanos(3999));
+    }
+
+    private static FishTouchTrace generate(long seed) {
+        FishTouchTrace trace = new FishTouchTrace();
+        FishTouchGenerator generator = new FishTouchGenerator(seed, 1080, 1920);
+        generator.taps(trace, 2000, 50000000);
+        generator.drags(trace, 200, 20, 16666667, 15);
+        return trace;
+    }
+}
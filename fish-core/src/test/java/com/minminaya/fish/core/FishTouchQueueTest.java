@@ -0,0 +1,62 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 跨线程触摸队列的顺序、丢弃和并发
+ */
+public class FishTouchQueueTest {
+
+    @Test
+    public void drain_keepsOrder() throws Exception {
+        FishTouchQueue queue = new FishTouchQueue(4);
+        queue.offer(FishTouchQueue.ACTION_DOWN, 1, 2);
+        queue.offer(FishTouchQueue.ACTION_MOVE, 3, 4);
+        float[] out = new float[4 * FishTouchQueue.ENTRY_SIZE];
+        assertEquals(2, queue.drain(out));
+        assertEquals(FishTouchQueue.ACTION_DOWN, (int) out[FishTouchQueue.ENTRY_ACTION]);
+        assertEquals(3f, out[FishTouchQueue.ENTRY_SIZE + FishTouchQueue.ENTRY_X], 0f);
+        assertEquals(0, queue.drain(out));
+    }
+
+    @Test
+    public void full_dropsOldest() throws Exception {
+        FishTouchQueue queue = new FishTouchQueue(3);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(FishTouchQueue.ACTION_MOVE, i, i);
+        }
+        float[] out = new float[3 * FishTouchQueue.ENTRY_SIZE];
+        assertEquals(3, queue.drain(out));
+        assertEquals(2f, out[FishTouchQueue.ENTRY_X], 0f);
+        assertEquals(4f, out[2 * FishTouchQueue.ENTRY_SIZE + FishTouchQueue.ENTRY_X], 0f);
+    }
+
+    @Test
+    public void concurrentProducer_nothingLostOrTorn() throws Exception {
+        final FishTouchQueue queue = new FishTouchQueue(1 << 16);
+        final int touches = 50000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < touches; i++) {
+                    queue.offer(FishTouchQueue.ACTION_MOVE, i, -i);
+                }
+            }
+        });
+        producer.start();
+        float[] out = new float[queue.getCapacity() * FishTouchQueue.ENTRY_SIZE];
+        int next = 0;
+        while (next < touches) {
+            int n = queue.drain(out);
+            for (int i = 0; i < n; i++) {
+                //x和y是一起放进去的，不会读到一半
+                assertEquals(next, out[i * FishTouchQueue.ENTRY_SIZE + FishTouchQueue.ENTRY_X], 0f);
+                assertEquals(-next, out[i * FishTouchQueue.ENTRY_SIZE + FishTouchQueue.ENTRY_Y], 0f);
+                next++;
+            }
+        }
+        producer.join();
+    }
+}
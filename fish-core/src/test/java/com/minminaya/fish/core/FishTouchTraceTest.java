@@ -0,0 +1,99 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 触摸录像：存取前后完全一样，坐标和时间在加进来的时候就取整
+ */
+public class FishTouchTraceTest {
+
+    @Test
+    public void writeRead_roundTrips() throws Exception {
+        FishTouchTrace trace = new FishTouchTrace(1);
+        trace.setSeed(-42);
+        trace.add(5000000000L, FishTouchTrace.ACTION_DOWN, 100.3f, 200.6f);
+        trace.add(5016000000L, FishTouchTrace.ACTION_MOVE, 98.1f, 230.2f);
+        trace.add(5033000000L, FishTouchTrace.ACTION_MOVE, 0, 1919.875f);
+        trace.add(5040000000L, FishTouchTrace.ACTION_UP, 0, 1919.875f);
+
+        FishTouchTrace copy = FishTouchTrace.read(new ByteArrayInputStream(toBytes(trace)));
+        assertEquals(-42, copy.getSeed());
+        assertEquals(trace.size(), copy.size());
+        for (int i = 0; i < trace.size(); i++) {
+            assertEquals(trace.getTimeNanos(i), copy.getTimeNanos(i));
+            assertEquals(trace.getAction(i), copy.getAction(i));
+            assertEquals(trace.getX(i), copy.getX(i), 0f);
+            assertEquals(trace.getY(i), copy.getY(i), 0f);
+        }
+        assertEquals(40000000L, copy.getDurationNanos());
+        //1/8像素
+        assertEquals(100.25f, trace.getX(0), 0f);
+        assertEquals(200.625f, trace.getY(0), 0f);
+    }
+
+    @Test
+    public void writeRead_keepsStartState() throws Exception {
+        FishTouchTrace trace = new FishTouchTrace();
+        trace.setStartPose(120.5f, 340.25f, -37.5f);
+        for (int i = 0; i < 20; i++) {
+            trace.addStartSchoolFish(i * 10.5f, 600 - i, i * 18, i % 3);
+        }
+        trace.add(0, FishTouchTrace.ACTION_DOWN, 10, 20);
+
+        FishTouchTrace copy = FishTouchTrace.read(new ByteArrayInputStream(toBytes(trace)));
+        assertTrue(copy.hasStartPose());
+        assertEquals(120.5f, copy.getStartX(), 0f);
+        assertEquals(340.25f, copy.getStartY(), 0f);
+        assertEquals(-37.5f, copy.getStartAngle(), 0f);
+        assertEquals(20, copy.getStartSchoolSize());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(trace.getStartSchoolX(i), copy.getStartSchoolX(i), 0f);
+            assertEquals(trace.getStartSchoolY(i), copy.getStartSchoolY(i), 0f);
+            assertEquals(trace.getStartSchoolAngle(i), copy.getStartSchoolAngle(i), 0f);
+            assertEquals(i % 3, copy.getStartSchoolSkin(i));
+        }
+        assertEquals(1, copy.size());
+    }
+
+    @Test
+    public void drag_isCompact() throws Exception {
+        FishTouchTrace trace = new FishTouchTrace();
+        FishTouchGenerator generator = new FishTouchGenerator(7, 1080, 1920);
+        generator.drags(trace, 10, 100, 16666667, 12);
+        //每个事件不超过6个字节
+        assertEquals(true, toBytes(trace).length < trace.size() * 6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsTimeGoingBackwards() throws Exception {
+        FishTouchTrace trace = new FishTouchTrace();
+        trace.add(2000000, FishTouchTrace.ACTION_DOWN, 0, 0);
+        trace.add(1000000, FishTouchTrace.ACTION_MOVE, 0, 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherData() throws Exception {
+        FishTouchTrace.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsTruncated() throws Exception {
+        FishTouchTrace trace = new FishTouchTrace();
+        new FishTouchGenerator(1, 100, 100).taps(trace, 10, 100000000);
+        byte[] bytes = toBytes(trace);
+        FishTouchTrace.read(new ByteArrayInputStream(bytes, 0, bytes.length - 3));
+    }
+
+    private static byte[] toBytes(FishTouchTrace trace) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.write(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 按弧长等分的游动路径表
+ */
+public class FishTrailTest {
+
+    @Test
+    public void straightLine_uniformSpeedAndHeading() throws Exception {
+        //控制点挤在起点附近，按t走是先慢后快，按弧长走必须是匀速的
+        float[] trail = {0, 0, 1, 0, 2, 0, 300, 0};
+        FishTrail table = new FishTrail();
+        table.build(trail);
+        assertEquals(300f, table.getLength(), 0.01f);
+
+        float[] out = new float[FishTrail.SAMPLE_SIZE];
+        for (int i = 0; i <= 10; i++) {
+            table.sample(i / 10f, out);
+            assertEquals(30f * i, out[FishTrail.SAMPLE_X], 0.5f);
+            assertEquals(0f, out[FishTrail.SAMPLE_Y], 0f);
+            assertEquals(0f, out[FishTrail.SAMPLE_ANGLE], 0.01f);
+        }
+    }
+
+    @Test
+    public void downward_isNegativeAngle() throws Exception {
+        //Android的y轴朝下，往下游是-90度
+        float[] trail = {0, 0, 0, 100, 0, 200, 0, 300};
+        FishTrail table = new FishTrail();
+        table.build(trail);
+        float[] out = new float[FishTrail.SAMPLE_SIZE];
+        table.sample(0.5f, out);
+        assertEquals(150f, out[FishTrail.SAMPLE_Y], 0.5f);
+        assertEquals(-90f, out[FishTrail.SAMPLE_ANGLE], 0.01f);
+    }
+
+    @Test
+    public void curve_matchesFineReference() throws Exception {
+        float[] trail = new float[FishSteering.TRAIL_SIZE];
+        FishSteering.makeTrail(trail, 415, 835, 125, 125, 125, 77, 30, 900, 300);
+        FishTrail table = new FishTrail();
+        table.build(trail);
+
+        //十万段折线的弧长作为参考
+        int n = 100000;
+        double reference = 0;
+        double lastX = trail[0];
+        double lastY = trail[1];
+        for (int i = 1; i <= n; i++) {
+            double t = i / (double) n;
+            double u = 1 - t;
+            double px = u * u * u * trail[0] + 3 * u * u * t * trail[2] + 3 * u * t * t * trail[4] + t * t * t * trail[6];
+            double py = u * u * u * trail[1] + 3 * u * u * t * trail[3] + 3 * u * t * t * trail[5] + t * t * t * trail[7];
+            reference += Math.hypot(px - lastX, py - lastY);
+            lastX = px;
+            lastY = py;
+        }
+        assertEquals(reference, table.getLength(), reference * 1e-3);
+
+        float[] out = new float[FishTrail.SAMPLE_SIZE];
+        table.sample(0, out);
+        assertEquals(trail[FishSteering.TRAIL_START], out[FishTrail.SAMPLE_X], 1e-3f);
+        table.sample(1, out);
+        assertEquals(trail[FishSteering.TRAIL_END], out[FishTrail.SAMPLE_X], 1e-2f);
+        assertEquals(trail[FishSteering.TRAIL_END + 1], out[FishTrail.SAMPLE_Y], 1e-2f);
+    }
+
+    @Test
+    public void route_lengthSumsSegments() throws Exception {
+        //俩段直线首尾相接，拐一个直角
+        float[] route = {0, 0, 100, 0, 200, 0, 300, 0, 300, 100, 300, 200, 300, 300};
+        FishTrail table = new FishTrail();
+        table.build(route, 2);
+        assertEquals(600f, table.getLength(), 0.5f);
+
+        float[] out = new float[FishTrail.SAMPLE_SIZE];
+        table.sample(0.25f, out);
+        assertEquals(150f, out[FishTrail.SAMPLE_X], 1f);
+        assertEquals(0f, out[FishTrail.SAMPLE_ANGLE], 0.01f);
+        table.sample(0.75f, out);
+        assertEquals(300f, out[FishTrail.SAMPLE_X], 1e-3f);
+        assertEquals(150f, out[FishTrail.SAMPLE_Y], 1f);
+        assertEquals(-90f, out[FishTrail.SAMPLE_ANGLE], 0.01f);
+        table.sample(1, out);
+        assertEquals(300f, out[FishTrail.SAMPLE_Y], 1e-2f);
+    }
+
+    @Test
+    public void progress_continuesStartSpeedAndStops() throws Exception {
+        assertEquals(0f, FishTrail.progress(0, 0), 0f);
+        assertEquals(0.5f, FishTrail.progress(0.5f, 0), 1e-6f);
+        assertEquals(1f, FishTrail.progress(1, 0), 1e-6f);
+
+        assertEquals(1.5f, FishTrail.progressSpeed(0, 1.5f), 1e-6f);
+        assertEquals(1f, FishTrail.progress(1, 1.5f), 1e-6f);
+        assertEquals(0f, FishTrail.progressSpeed(1, 1.5f), 1e-6f);
+
+        //起点速度不超过3就不会冲过终点再回来
+        float last = 0;
+        for (int i = 1; i <= 100; i++) {
+            float p = FishTrail.progress(i / 100f, 3);
+            assertEquals(true, p >= last && p <= 1 + 1e-6f);
+            last = p;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.minminaya.fish.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 查表三角函数和Math的误差
+ */
+public class FishTrigTest {
+
+    @Test
+    public void defaultResolution_matchesMath() throws Exception {
+        FishTrig trig = FishTrig.DEFAULT;
+        for (float degrees = -720f; degrees <= 720f; degrees += 0.37f) {
+            assertEquals(Math.sin(Math.toRadians(degrees)), trig.sin(degrees), 1e-5);
+            assertEquals(Math.cos(Math.toRadians(degrees)), trig.cos(degrees), 1e-5);
+        }
+    }
+
+    @Test
+    public void largeEngineValues_stayAccurate() throws Exception {
+        FishTrig trig = FishTrig.DEFAULT;
+        //动画引擎最大54000，乘以频率和波形系数以后能到18万度
+        for (float degrees = 150000f; degrees <= 190000f; degrees += 13.1f) {
+            assertEquals(Math.sin(Math.toRadians(degrees)), trig.sin(degrees), 1e-5);
+        }
+    }
+
+    @Test
+    public void coarseResolution_errorBoundedByStep() throws Exception {
+        FishTrig trig = new FishTrig(256);
+        //线性插值的误差上限是 step^2 / 8
+        double step = 2 * Math.PI / trig.getResolution();
+        double bound = step * step / 8 + 1e-6;
+        for (float degrees = 0f; degrees <= 360f; degrees += 0.1f) {
+            assertEquals(Math.sin(Math.toRadians(degrees)), trig.sin(degrees), bound);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPowerOfTwo_rejected() throws Exception {
+        new FishTrig(1000);
+    }
+}
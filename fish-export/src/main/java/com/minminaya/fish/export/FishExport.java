@@ -0,0 +1,38 @@
+package com.minminaya.fish.export;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 命令行导出预览动画，参数依次是：输出路径、帧数、帧率、边长、鱼的条数、线程数，后面的都可以省略
+ * <p>
+ * 输出路径以.gif结尾时导出动图，否则当成目录导出PNG序列
+ */
+public final class FishExport {
+
+    private FishExport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FishExport <out.gif|dir> [frames] [fps] [size] [fish] [threads]");
+            System.exit(2);
+        }
+        File out = new File(args[0]);
+        float fps = args.length > 2 ? Float.parseFloat(args[2]) : 30;
+        //默认正好游一圈，动图首尾接得上
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : Math.round(SwimmingScene.getLoopMillis() * fps / 1000);
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 540;
+        int fish = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        FishFrameExporter exporter = new FishFrameExporter(new SwimmingScene(size, size, fish), size, size, fps, threads);
+        FrameSink<?> sink = out.getName().endsWith(".gif")
+                ? new GifSink(out, exporter.getFrameMillis(), exporter.getBackground(), Java2DRenderer.fishRgb())
+                : new PngSequenceSink(out);
+        long start = System.nanoTime();
+        exporter.export(0, frames, sink);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(frames + " frames -> " + out + " in " + millis + " ms");
+    }
+}
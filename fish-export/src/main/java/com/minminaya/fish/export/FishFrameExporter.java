@@ -0,0 +1,221 @@
+package com.minminaya.fish.export;
+
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishSkeleton;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 离线把场景的一段帧画出来交给{@link FrameSink}，多个线程同时画，按帧的顺序写出去
+ * <p>
+ * 每一帧只由帧号决定，帧之间没有依赖，直接分给线程池。同时在路上的帧不超过{@link #getMaxInFlight()}，
+ * 最早的那帧没写出去之前不再提交新的帧，画得再快内存里也只有这么多帧，导出几千帧也不会爆内存。
+ * 每个线程一套画布、图层和骨架缓冲区，用完还回去给下一帧用，不会每帧新建几兆的画布。
+ * <p>
+ * 画法和FishDrawable默认的图层模式一样：鱼先画到透明图层上，再以240的透明度叠到背景上
+ */
+public final class FishFrameExporter {
+
+    /**
+     * 默认背景，白色
+     */
+    public static final int DEFAULT_BACKGROUND = 0xFFFFFF;
+    /**
+     * 图层的透明度，和FishDrawable一样
+     */
+    private static final int LAYER_ALPHA = 240;
+
+    private final FishScene scene;
+    private final int width;
+    private final int height;
+    private final float frameMillis;
+    private final int threads;
+    private int background = DEFAULT_BACKGROUND;
+
+    /**
+     * @param scene   要画的场景
+     * @param width   帧宽
+     * @param height  帧高
+     * @param fps     每秒几帧
+     * @param threads 同时画几帧，1就在调用线程上画
+     */
+    public FishFrameExporter(FishScene scene, int width, int height, float fps, int threads) {
+        if (width <= 0 || height <= 0 || fps <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("size, fps and threads must be positive");
+        }
+        this.scene = scene;
+        this.width = width;
+        this.height = height;
+        this.frameMillis = 1000 / fps;
+        this.threads = threads;
+    }
+
+    public void setBackground(int rgb) {
+        background = rgb & 0xFFFFFF;
+    }
+
+    public int getBackground() {
+        return background;
+    }
+
+    public float getFrameMillis() {
+        return frameMillis;
+    }
+
+    /**
+     * 同时最多有几帧画好了还没写出去，每个线程俩帧，一帧在画一帧等着写
+     */
+    public int getMaxInFlight() {
+        return threads * 2;
+    }
+
+    /**
+     * 单独画一帧，比对截图用
+     *
+     * @return 新建的帧，类型是TYPE_INT_RGB
+     */
+    public BufferedImage render(int index) {
+        Frame frame = new Frame();
+        frame.render(index);
+        return frame.image;
+    }
+
+    /**
+     * 画第from帧到第to帧，不含to，全部交给sink，返回时sink已经finish
+     */
+    public <T> void export(int from, int to, final FrameSink<T> sink) throws IOException {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("bad frame range: " + from + ".." + to);
+        }
+        boolean finished = false;
+        try {
+            if (threads == 1) {
+                Frame frame = new Frame();
+                for (int i = from; i < to; i++) {
+                    frame.render(i);
+                    sink.write(i, sink.encode(i, frame.image));
+                }
+            } else {
+                exportParallel(from, to, sink);
+            }
+            finished = true;
+            sink.finish();
+        } finally {
+            if (!finished) {
+                //出错了也把文件关掉，原来的异常更重要
+                try {
+                    sink.finish();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private <T> void exportParallel(int from, int to, final FrameSink<T> sink) throws IOException {
+        final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) {
+            frames.add(new Frame());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<T>> pending = new ArrayDeque<>(getMaxInFlight());
+        int next = from;
+        try {
+            for (int i = from; i < to; i++) {
+                //窗口满了先等最早的那帧，写出去再提交新的
+                if (pending.size() == getMaxInFlight()) {
+                    sink.write(next++, await(pending.poll()));
+                }
+                final int index = i;
+                pending.add(pool.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        Frame frame = frames.take();
+                        try {
+                            frame.render(index);
+                            return sink.encode(index, frame.image);
+                        } finally {
+                            frames.add(frame);
+                        }
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                sink.write(next++, await(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 一个线程画帧用的全部东西
+     */
+    private final class Frame {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final BufferedImage layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Java2DRenderer renderer = new Java2DRenderer();
+        final float[] skeletons = new float[scene.getFishCount() * FishSkeleton.SIZE];
+        final Color backgroundColor = new Color(background);
+
+        void render(int index) {
+            scene.evaluate(index * frameMillis, skeletons);
+
+            Graphics2D layerGraphics = layer.createGraphics();
+            try {
+                layerGraphics.setComposite(AlphaComposite.Clear);
+                layerGraphics.fillRect(0, 0, width, height);
+                layerGraphics.setComposite(AlphaComposite.SrcOver);
+                renderer.setGraphics(layerGraphics);
+                for (int i = 0; i < scene.getFishCount(); i++) {
+                    FishGeometry.emit(skeletons, i * FishSkeleton.SIZE, renderer);
+                }
+            } finally {
+                layerGraphics.dispose();
+            }
+
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setColor(backgroundColor);
+                graphics.fillRect(0, 0, width, height);
+                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, LAYER_ALPHA / 255f));
+                graphics.drawImage(layer, 0, 0, null);
+            } finally {
+                graphics.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.minminaya.fish.export;
+
+/**
+ * 离线导出的场景，给定时间直接算出所有鱼的骨架
+ * <p>
+ * 每一帧只由时间决定，不依赖上一帧，这样不同的帧才能交给不同的线程同时画。
+ * 会被多个线程同时调用，实现类不能改自己的状态
+ */
+public interface FishScene {
+
+    /**
+     * @return 鱼的条数，每一帧都一样
+     */
+    int getFishCount();
+
+    /**
+     * 算出某个时刻所有鱼的骨架
+     *
+     * @param timeMillis 从第0帧开始过了多少毫秒
+     * @param skeletons  输出，长度至少鱼的条数乘以{@link com.minminaya.fish.core.FishSkeleton#SIZE}
+     */
+    void evaluate(float timeMillis, float[] skeletons);
+}
@@ -0,0 +1,30 @@
+package com.minminaya.fish.export;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 导出帧的去处，分俩步：先在画帧的线程上编码，再按帧的顺序在导出线程上写出去
+ * <p>
+ * 压缩、量化这些耗时的活放在{@link #encode}里和画帧一起并行，{@link #write}只管按顺序落盘
+ */
+public interface FrameSink<T> {
+
+    /**
+     * 把一帧编码成要写出去的样子，多个线程会同时调用
+     *
+     * @param index 第几帧
+     * @param frame 画好的帧，返回以后会被拿去画别的帧，不能留着
+     */
+    T encode(int index, BufferedImage frame) throws IOException;
+
+    /**
+     * 按帧的顺序一帧帧写出去，只在调用导出的线程上调用
+     */
+    void write(int index, T encoded) throws IOException;
+
+    /**
+     * 所有帧都写完了
+     */
+    void finish() throws IOException;
+}
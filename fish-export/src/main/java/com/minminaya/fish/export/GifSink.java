@@ -0,0 +1,201 @@
+package com.minminaya.fish.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * 所有帧写进一张循环播放的GIF动图，边画边写，不攒帧
+ * <p>
+ * 画面上只有背景和同一种颜色不同透明度叠起来的鱼，混出来的颜色都在背景色到鱼的颜色这条线段上，
+ * 调色板就取这条线段上均匀的256个颜色，每个像素投影到线段上取最近的一个，不用抖动也没有色带。
+ * 量化在画帧的线程上做，导出线程只做LZW压缩
+ */
+public final class GifSink implements FrameSink<BufferedImage> {
+
+    private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+
+    private final File file;
+    private final float frameMillis;
+    private final IndexColorModel palette;
+    private final int backgroundRgb;
+    private final int foregroundRgb;
+
+    private ImageWriter writer;
+    private ImageOutputStream output;
+    private ImageWriteParam param;
+    /**
+     * 已经写了几帧，GIF的延时只精确到10毫秒，按累计时间取整每帧的延时，不会越放越慢
+     */
+    private int written;
+
+    /**
+     * @param file          输出文件
+     * @param frameMillis   每帧多少毫秒
+     * @param backgroundRgb 背景色
+     * @param foregroundRgb 鱼的颜色，不含透明度
+     */
+    public GifSink(File file, float frameMillis, int backgroundRgb, int foregroundRgb) {
+        if (frameMillis <= 0) {
+            throw new IllegalArgumentException("frame duration must be positive");
+        }
+        this.file = file;
+        this.frameMillis = frameMillis;
+        this.backgroundRgb = backgroundRgb & 0xFFFFFF;
+        this.foregroundRgb = foregroundRgb & 0xFFFFFF;
+        byte[] r = new byte[256];
+        byte[] g = new byte[256];
+        byte[] b = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            r[i] = (byte) lerp(this.backgroundRgb >> 16 & 0xFF, this.foregroundRgb >> 16 & 0xFF, i);
+            g[i] = (byte) lerp(this.backgroundRgb >> 8 & 0xFF, this.foregroundRgb >> 8 & 0xFF, i);
+            b[i] = (byte) lerp(this.backgroundRgb & 0xFF, this.foregroundRgb & 0xFF, i);
+        }
+        palette = new IndexColorModel(8, 256, r, g, b);
+    }
+
+    @Override
+    public BufferedImage encode(int index, BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        BufferedImage indexed = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette);
+        byte[] pixels = ((DataBufferByte) indexed.getRaster().getDataBuffer()).getData();
+        int br = backgroundRgb >> 16 & 0xFF;
+        int bg = backgroundRgb >> 8 & 0xFF;
+        int bb = backgroundRgb & 0xFF;
+        int dr = (foregroundRgb >> 16 & 0xFF) - br;
+        int dg = (foregroundRgb >> 8 & 0xFF) - bg;
+        int db = (foregroundRgb & 0xFF) - bb;
+        float scale = 255f / Math.max(1, dr * dr + dg * dg + db * db);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            frame.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int c = row[x];
+                //投影到背景色到鱼的颜色的线段上
+                float t = ((c >> 16 & 0xFF) - br) * dr + ((c >> 8 & 0xFF) - bg) * dg + ((c & 0xFF) - bb) * db;
+                int level = Math.round(t * scale);
+                pixels[y * width + x] = (byte) Math.max(0, Math.min(255, level));
+            }
+        }
+        return indexed;
+    }
+
+    @Override
+    public void write(int index, BufferedImage encoded) throws IOException {
+        if (writer == null) {
+            open(encoded.getWidth(), encoded.getHeight());
+        }
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(encoded), param);
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(IMAGE_FORMAT);
+        //所有帧共用全局调色板，每帧不再带一份
+        IIOMetadataNode local = child(root, "LocalColorTable");
+        root.removeChild(local);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("transparentColorIndex", "0");
+        int delay = Math.round((written + 1) * frameMillis / 10) - Math.round(written * frameMillis / 10);
+        control.setAttribute("delayTime", Integer.toString(Math.max(1, delay)));
+
+        if (written == 0) {
+            //NETSCAPE2.0扩展，循环次数0表示一直循环
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0});
+            child(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(IMAGE_FORMAT, root);
+        writer.writeToSequence(new IIOImage(encoded, null, metadata), param);
+        written++;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+            output.close();
+            writer = null;
+        }
+    }
+
+    private void open(int width, int height) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("no gif writer");
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        //先删掉旧文件，ImageOutputStream不会截断比这次长的旧内容
+        if (file.exists() && !file.delete()) {
+            throw new IOException("cannot overwrite " + file);
+        }
+        writer = writers.next();
+        output = ImageIO.createImageOutputStream(file);
+        writer.setOutput(output);
+        param = writer.getDefaultWriteParam();
+
+        IIOMetadata stream = writer.getDefaultStreamMetadata(param);
+        IIOMetadataNode root = (IIOMetadataNode) stream.getAsTree(STREAM_FORMAT);
+        IIOMetadataNode screen = child(root, "LogicalScreenDescriptor");
+        screen.setAttribute("logicalScreenWidth", Integer.toString(width));
+        screen.setAttribute("logicalScreenHeight", Integer.toString(height));
+        screen.setAttribute("colorResolution", "8");
+        screen.setAttribute("pixelAspectRatio", "0");
+        IIOMetadataNode table = child(root, "GlobalColorTable");
+        while (table.getFirstChild() != null) {
+            table.removeChild(table.getFirstChild());
+        }
+        table.setAttribute("sizeOfGlobalColorTable", "256");
+        table.setAttribute("backgroundColorIndex", "0");
+        table.setAttribute("sortFlag", "FALSE");
+        for (int i = 0; i < palette.getMapSize(); i++) {
+            IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+            entry.setAttribute("index", Integer.toString(i));
+            entry.setAttribute("red", Integer.toString(palette.getRed(i)));
+            entry.setAttribute("green", Integer.toString(palette.getGreen(i)));
+            entry.setAttribute("blue", Integer.toString(palette.getBlue(i)));
+            table.appendChild(entry);
+        }
+        stream.setFromTree(STREAM_FORMAT, root);
+        writer.prepareWriteSequence(stream);
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+    private static int lerp(int from, int to, int level) {
+        return from + Math.round((to - from) * level / 255f);
+    }
+}
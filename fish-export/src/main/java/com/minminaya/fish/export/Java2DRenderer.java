@@ -0,0 +1,105 @@
+package com.minminaya.fish.export;
+
+import com.minminaya.fish.core.FishGeometry;
+import com.minminaya.fish.core.FishRenderer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+
+/**
+ * 把{@link FishGeometry}输出的圆和路径画到Java2D的Graphics2D上，和Android上的FishPainter一一对应
+ * <p>
+ * 开抗锯齿，颜色和各部分的透明度都和FishPainter一样，离开手机也能画出同样的鱼。
+ * 路径和圆只有一份，每个线程一个对象，不能多个线程共用
+ */
+public final class Java2DRenderer implements FishRenderer {
+
+    private static final int FISH_RED = 244;
+    private static final int FISH_GREEN = 92;
+    private static final int FISH_BLUE = 71;
+
+    private final Path2D.Float mPath = new Path2D.Float();
+    private final Ellipse2D.Float mCircle = new Ellipse2D.Float();
+    /**
+     * 三种部分的颜色，整体透明度变了才重建
+     */
+    private final Color[] mColors = new Color[3];
+
+    private int mGlobalAlpha = -1;
+    private Graphics2D mGraphics;
+
+    public Java2DRenderer() {
+        setGlobalAlpha(255);
+    }
+
+    /**
+     * 接下来画到哪个Graphics2D上，顺便打开抗锯齿
+     */
+    public void setGraphics(Graphics2D graphics) {
+        mGraphics = graphics;
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        //和Android一样按浮点坐标画，不往像素中心对齐
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        graphics.setColor(mColors[PART_OTHER]);
+    }
+
+    /**
+     * 整体透明度，乘进每个部分的颜色里，255就是原来的颜色
+     */
+    public void setGlobalAlpha(int globalAlpha) {
+        if (globalAlpha < 0 || globalAlpha > 255) {
+            throw new IllegalArgumentException("alpha out of range: " + globalAlpha);
+        }
+        if (mGlobalAlpha == globalAlpha) {
+            return;
+        }
+        mGlobalAlpha = globalAlpha;
+        for (int part = 0; part < mColors.length; part++) {
+            int alpha = FishGeometry.alphaOf(part) * globalAlpha / 255;
+            mColors[part] = new Color(FISH_RED, FISH_GREEN, FISH_BLUE, alpha);
+        }
+    }
+
+    /**
+     * 鱼的颜色，不含透明度
+     */
+    public static int fishRgb() {
+        return (FISH_RED << 16) | (FISH_GREEN << 8) | FISH_BLUE;
+    }
+
+    @Override
+    public void setPart(int part) {
+        mGraphics.setColor(mColors[part]);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius) {
+        mCircle.setFrame(cx - radius, cy - radius, radius * 2, radius * 2);
+        mGraphics.fill(mCircle);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        mPath.reset();
+        mPath.moveTo(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        mPath.lineTo(x, y);
+    }
+
+    @Override
+    public void quadTo(float controlX, float controlY, float x, float y) {
+        mPath.quadTo(controlX, controlY, x, y);
+    }
+
+    @Override
+    public void fillPath() {
+        mPath.closePath();
+        mGraphics.fill(mPath);
+    }
+}
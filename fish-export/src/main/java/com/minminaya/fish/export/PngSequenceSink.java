@@ -0,0 +1,68 @@
+package com.minminaya.fish.export;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 每一帧存成一张PNG，文件名按帧号补零，frame_0000.png、frame_0001.png……
+ * <p>
+ * PNG压缩在画帧的线程上做，导出线程只写字节
+ */
+public final class PngSequenceSink implements FrameSink<byte[]> {
+
+    private final File directory;
+    private final String prefix;
+
+    public PngSequenceSink(File directory) {
+        this(directory, "frame_");
+    }
+
+    /**
+     * @param directory 输出目录，不存在就创建
+     * @param prefix    文件名前缀
+     */
+    public PngSequenceSink(File directory, String prefix) {
+        this.directory = directory;
+        this.prefix = prefix;
+    }
+
+    /**
+     * 第index帧的文件
+     */
+    public File fileOf(int index) {
+        return new File(directory, String.format(Locale.US, "%s%04d.png", prefix, index));
+    }
+
+    @Override
+    public byte[] encode(int index, BufferedImage frame) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.getWidth() * frame.getHeight() / 4);
+        if (!ImageIO.write(frame, "png", out)) {
+            throw new IOException("no png writer");
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void write(int index, byte[] encoded) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        OutputStream out = new FileOutputStream(fileOf(index));
+        try {
+            out.write(encoded);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public void finish() {
+    }
+}
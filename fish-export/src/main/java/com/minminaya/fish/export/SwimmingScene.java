@@ -0,0 +1,67 @@
+package com.minminaya.fish.export;
+
+import com.minminaya.fish.core.FishSkeleton;
+
+/**
+ * 鱼沿着画面中心的圆逆时针游，几条鱼在圆上均匀排开，和README里的预览动画差不多
+ * <p>
+ * 游一圈的时间正好是摆动周期的整数倍，导出一圈的帧做成动图可以无缝循环
+ */
+public final class SwimmingScene implements FishScene {
+
+    /**
+     * 摆动频率，和FishDrawable游动时一样
+     */
+    private static final float WAVE_FREQUENCE = 2;
+
+    private final int count;
+    private final float centerX;
+    private final float centerY;
+    private final float radius;
+    private final float loopMillis;
+
+    /**
+     * @param width  画面宽
+     * @param height 画面高
+     * @param count  鱼的条数
+     */
+    public SwimmingScene(int width, int height, int count) {
+        if (width <= 0 || height <= 0 || count <= 0) {
+            throw new IllegalArgumentException("size and count must be positive");
+        }
+        this.count = count;
+        centerX = width / 2f;
+        centerY = height / 2f;
+        //留出一条鱼的位置，鱼不出画面
+        radius = Math.max(0, Math.min(width, height) / 2f - FishSkeleton.MAX_EXTENT);
+        loopMillis = getLoopMillis();
+    }
+
+    /**
+     * 游一圈的时间，摆动的相位正好走完一个周期
+     */
+    public static float getLoopMillis() {
+        return FishSkeleton.PHASE_CYCLE / (FishSkeleton.ENGINE_SPEED * WAVE_FREQUENCE);
+    }
+
+    @Override
+    public int getFishCount() {
+        return count;
+    }
+
+    @Override
+    public void evaluate(float timeMillis, float[] skeletons) {
+        float t = timeMillis % loopMillis;
+        float phase = t * FishSkeleton.ENGINE_SPEED * WAVE_FREQUENCE % FishSkeleton.PHASE_CYCLE;
+        for (int i = 0; i < count; i++) {
+            //在圆上转过的角度，y轴朝下所以y取反才是逆时针
+            double angle = 360.0 * (t / loopMillis + i / (double) count);
+            double radians = Math.toRadians(angle);
+            float x = centerX + (float) (radius * Math.cos(radians));
+            float y = centerY - (float) (radius * Math.sin(radians));
+            //头朝切线方向
+            float mainAngle = (float) ((angle + 90) % 360);
+            FishSkeleton.evaluate(skeletons, i * FishSkeleton.SIZE, x, y, mainAngle, phase, 0);
+        }
+    }
+}
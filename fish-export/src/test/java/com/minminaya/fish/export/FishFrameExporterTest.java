@@ -0,0 +1,162 @@
+package com.minminaya.fish.export;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FishFrameExporterTest {
+
+    private static final int SIZE = 240;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void render_drawsFishOnBackground() {
+        FishFrameExporter exporter = new FishFrameExporter(new SwimmingScene(SIZE, SIZE, 1), SIZE, SIZE, 30, 1);
+        BufferedImage frame = exporter.render(0);
+
+        assertEquals(0xFFFFFF, frame.getRGB(0, 0) & 0xFFFFFF);
+        int fishPixels = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int rgb = frame.getRGB(x, y);
+                //偏红的像素就是鱼
+                if ((rgb >> 16 & 0xFF) > (rgb & 0xFF) + 40) {
+                    fishPixels++;
+                }
+            }
+        }
+        assertTrue("fish pixels " + fishPixels, fishPixels > 1000);
+    }
+
+    @Test
+    public void render_isDeterministic() {
+        FishFrameExporter exporter = new FishFrameExporter(new SwimmingScene(SIZE, SIZE, 3), SIZE, SIZE, 30, 1);
+        assertArrayEquals(pixels(exporter.render(7)), pixels(exporter.render(7)));
+        assertNotEquals(Arrays.hashCode(pixels(exporter.render(7))), Arrays.hashCode(pixels(exporter.render(8))));
+    }
+
+    @Test
+    public void parallel_matchesSequentialInOrder() throws IOException {
+        SwimmingScene scene = new SwimmingScene(SIZE, SIZE, 3);
+        RecordingSink sequential = new RecordingSink();
+        new FishFrameExporter(scene, SIZE, SIZE, 30, 1).export(0, 20, sequential);
+        RecordingSink parallel = new RecordingSink();
+        FishFrameExporter exporter = new FishFrameExporter(scene, SIZE, SIZE, 30, 3);
+        exporter.export(0, 20, parallel);
+
+        assertEquals(sequential.order, parallel.order);
+        assertEquals(sequential.hashes, parallel.hashes);
+        assertEquals(1, parallel.finished);
+        //画好了还没写出去的帧不超过窗口
+        assertTrue("in flight " + parallel.maxInFlight, parallel.maxInFlight <= exporter.getMaxInFlight());
+    }
+
+    @Test
+    public void export_writesPngSequence() throws IOException {
+        File directory = new File(folder.getRoot(), "frames");
+        PngSequenceSink sink = new PngSequenceSink(directory);
+        new FishFrameExporter(new SwimmingScene(SIZE, SIZE, 1), SIZE, SIZE, 30, 2).export(3, 8, sink);
+
+        assertEquals(5, directory.list().length);
+        BufferedImage first = ImageIO.read(sink.fileOf(3));
+        assertEquals(SIZE, first.getWidth());
+        assertEquals(SIZE, first.getHeight());
+    }
+
+    @Test
+    public void export_writesAnimatedGif() throws IOException {
+        File file = new File(folder.getRoot(), "fish.gif");
+        FishFrameExporter exporter = new FishFrameExporter(new SwimmingScene(SIZE, SIZE, 2), SIZE, SIZE, 30, 2);
+        exporter.export(0, 12, new GifSink(file, exporter.getFrameMillis(), exporter.getBackground(), Java2DRenderer.fishRgb()));
+
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        try {
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            reader.setInput(in);
+            assertEquals(12, reader.getNumImages(true));
+            BufferedImage frame = reader.read(0);
+            assertEquals(SIZE, frame.getWidth());
+            //背景量化以后还是白色
+            assertEquals(0xFFFFFF, frame.getRGB(0, 0) & 0xFFFFFF);
+            reader.dispose();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void gif_quantizesAlongFishColor() {
+        GifSink sink = new GifSink(new File(folder.getRoot(), "unused.gif"), 33, 0xFFFFFF, Java2DRenderer.fishRgb());
+        BufferedImage frame = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        frame.setRGB(0, 0, 0xFFFFFF);
+        frame.setRGB(1, 0, Java2DRenderer.fishRgb());
+        BufferedImage indexed = sink.encode(0, frame);
+
+        assertEquals(0xFFFFFF, indexed.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(Java2DRenderer.fishRgb(), indexed.getRGB(1, 0) & 0xFFFFFF);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void encodeFailure_isRethrown() throws IOException {
+        new FishFrameExporter(new SwimmingScene(SIZE, SIZE, 1), SIZE, SIZE, 30, 2).export(0, 10, new RecordingSink() {
+            @Override
+            public Integer encode(int index, BufferedImage frame) {
+                if (index == 5) {
+                    throw new IllegalStateException("boom");
+                }
+                return super.encode(index, frame);
+            }
+        });
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static class RecordingSink implements FrameSink<Integer> {
+        final List<Integer> order = new ArrayList<>();
+        final List<Integer> hashes = new ArrayList<>();
+        final AtomicInteger encoded = new AtomicInteger();
+        volatile int maxInFlight;
+        int finished;
+
+        @Override
+        public Integer encode(int index, BufferedImage frame) {
+            int inFlight = encoded.incrementAndGet() - order.size();
+            synchronized (this) {
+                maxInFlight = Math.max(maxInFlight, inFlight);
+            }
+            return Arrays.hashCode(pixels(frame));
+        }
+
+        @Override
+        public void write(int index, Integer encoded) {
+            order.add(index);
+            hashes.add(encoded);
+        }
+
+        @Override
+        public void finish() {
+            finished++;
+        }
+    }
+}